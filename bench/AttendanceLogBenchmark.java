@@ -0,0 +1,118 @@
+import java.io.File;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+
+/**
+ * AttendanceLogBenchmark class: measures writing check-in history through AttendanceLog's group commit
+ * against committing every event on its own, and reading occupancy by day from the hourly totals
+ * against counting the raw events.
+ * The database is first filled with a history of made-up stays, several per dog per day.
+ * Run with the SQLite JDBC driver on the classpath:
+ *   java -cp out:sqlite-jdbc.jar AttendanceLogBenchmark [days of history] [results file]
+ */
+public class AttendanceLogBenchmark {
+    private static final String DEFAULT_RESULTS_FILE = "bench-attendance-log.json";
+    // Dogs checked in and out each day of the made-up history
+    private static final int DOGS_PER_DAY = 200;
+    // Check-ins (each followed by a check-out) written per measured operation
+    private static final int RUSH_DOGS = 500;
+    private static final long DAY_MILLIS = 24 * AttendanceLog.HOUR_MILLIS;
+
+    public static void main(String[] args) throws Exception {
+        int days = args.length > 0 ? Integer.parseInt(args[0]) : 365;
+        String resultsFile = args.length > 1 ? args[1] : DEFAULT_RESULTS_FILE;
+        Bench bench = new Bench(3, 5, 1000);
+        File dbFile = File.createTempFile("attendance-bench", ".db");
+        String dbURL = "jdbc:sqlite:" + dbFile.getPath();
+        ZoneId zone = ZoneId.systemDefault();
+        Map<String, String> rushParams = Bench.params("events", String.valueOf(RUSH_DOGS * 2));
+
+        try (Connection conn = DriverManager.getConnection(dbURL);
+             Connection logConn = DriverManager.getConnection(dbURL)) {
+            SchemaMigrator.configure(conn);
+            SchemaMigrator.migrate(conn);
+            SchemaMigrator.configure(logConn);
+
+            // History: each dog arrives in the morning and leaves in the afternoon
+            long firstDay = LocalDate.now(zone).minusDays(days).atStartOfDay(zone).toInstant().toEpochMilli();
+            try (AttendanceLog log = new AttendanceLog(logConn)) {
+                for (int day = 0; day < days; day++) {
+                    long morning = firstDay + day * DAY_MILLIS + 7 * AttendanceLog.HOUR_MILLIS;
+                    for (int dog = 1; dog <= DOGS_PER_DAY; dog++) {
+                        log.record(dog, true, morning + dog * 60_000L);
+                        log.record(dog, false, morning + 9 * AttendanceLog.HOUR_MILLIS + dog * 30_000L);
+                    }
+                }
+                log.flush(600_000);
+                System.out.println("History: " + log.getWrittenCount() + " events in " + log.getCommitCount() + " commits");
+
+                int[] nextDog = {1_000_000};
+                bench.measure("AttendanceLog.groupCommit", rushParams, i -> {
+                    for (int n = 0; n < RUSH_DOGS; n++) {
+                        log.record(nextDog[0] + n, true);
+                        log.record(nextDog[0] + n, false);
+                    }
+                    nextDog[0] += RUSH_DOGS;
+                    log.flush(60_000);
+                });
+            }
+
+            // Before: one transaction per event
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO checkin_events (dog_id, at, checked_in) VALUES (?, ?, ?);")) {
+                bench.measure("events.commitEach", rushParams, i -> {
+                    for (int n = 0; n < RUSH_DOGS * 2; n++) {
+                        stmt.setInt(1, 2_000_000 + n / 2);
+                        stmt.setLong(2, System.currentTimeMillis());
+                        stmt.setBoolean(3, n % 2 == 0);
+                        stmt.executeUpdate();
+                    }
+                });
+            }
+
+            LocalDate today = LocalDate.now(zone);
+            for (int range : new int[] {7, 90}) {
+                Map<String, String> params = Bench.params("historyDays", String.valueOf(days), "rangeDays", String.valueOf(range));
+                LocalDate from = today.minusDays(range - 1);
+                bench.measure("AttendanceHistory.occupancyByDay", params,
+                        i -> Bench.sink = AttendanceHistory.occupancyByDay(from, today, zone, conn));
+                long fromMillis = from.atStartOfDay(zone).toInstant().toEpochMilli();
+                bench.measure("events.checkInsByDay", params, i -> Bench.sink = checkInsByDay(fromMillis, conn));
+            }
+        } finally {
+            dbFile.delete();
+            new File(dbFile.getPath() + "-wal").delete();
+            new File(dbFile.getPath() + "-shm").delete();
+        }
+        bench.writeJson(Paths.get(resultsFile));
+        System.out.println("Results written to " + resultsFile);
+    }
+
+    /**
+     * Counts check-ins per day straight from the raw events, for comparison.
+     */
+    private static long[] checkInsByDay(long fromMillis, Connection conn) throws SQLException {
+        long[] counts = new long[100];
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT (at - ?) / " + DAY_MILLIS + ", COUNT(*) "
+                + "FROM checkin_events WHERE at >= ? AND checked_in = 1 GROUP BY 1")) {
+            stmt.setLong(1, fromMillis);
+            stmt.setLong(2, fromMillis);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int day = rs.getInt(1);
+                    if (day < counts.length) {
+                        counts[day] = rs.getLong(2);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,233 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bench class: a small microbenchmark runner for the benchmarks in this folder.
+ * Each benchmark is warmed up, then measured over several timed iterations. The score is the
+ * average time per operation, with the spread between iterations as the error, and the bytes
+ * allocated per operation. Results are written as JSON in the same layout JMH uses
+ * (benchmark, params, mode, primaryMetric, secondaryMetrics), so existing JMH tooling can compare runs.
+ */
+public class Bench {
+
+    /**
+     * Op interface: the operation being measured.
+     * The invocation number lets an operation vary its input (for example, which dog to look up).
+     */
+    public interface Op {
+        void run(long invocation) throws Exception;
+    }
+
+    /**
+     * Setup interface: work done before each invocation that is not timed.
+     */
+    public interface Setup {
+        void run(long invocation) throws Exception;
+    }
+
+    /**
+     * Result class: the measurement of one benchmark with one set of parameters.
+     */
+    public static class Result {
+        final String benchmark;
+        final Map<String, String> params;
+        final double nanosPerOp;
+        final double error;
+        final double bytesPerOp;
+        final double[] iterationScores;
+
+        Result(String benchmark, Map<String, String> params, double nanosPerOp, double error, double bytesPerOp,
+               double[] iterationScores) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.nanosPerOp = nanosPerOp;
+            this.error = error;
+            this.bytesPerOp = bytesPerOp;
+            this.iterationScores = iterationScores;
+        }
+
+        public double getNanosPerOp() { return nanosPerOp; }
+        public double getBytesPerOp() { return bytesPerOp; }
+
+        @Override
+        public String toString() {
+            return String.format("%-40s %-20s %14.1f +- %10.1f ns/op %12.1f B/op", benchmark, params, nanosPerOp, error, bytesPerOp);
+        }
+    }
+
+    // Reads per-thread allocation counts; null on JVMs that don't provide them
+    private static final com.sun.management.ThreadMXBean THREADS =
+            ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+                    ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+
+    // Results are stored here so the JIT can't remove the work that produced them
+    public static volatile Object sink;
+
+    private final int warmupIterations;
+    private final int measureIterations;
+    private final long iterationNanos;
+    private final List<Result> results = new ArrayList<>();
+
+    /**
+     * Creates a runner.
+     * @param warmupIterations The number of untimed iterations before measuring.
+     * @param measureIterations The number of timed iterations.
+     * @param iterationMillis How long each iteration runs.
+     */
+    public Bench(int warmupIterations, int measureIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measureIterations = measureIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+    }
+
+    /**
+     * Measures an operation that needs no setup. Operations are timed in groups, so even very fast ones are measured accurately.
+     * @param benchmark The benchmark's name.
+     * @param params The parameters it ran with (for example, the number of dogs).
+     * @param op The operation.
+     * @return Returns the result, which is also kept for writeJson.
+     */
+    public Result measure(String benchmark, Map<String, String> params, Op op) throws Exception {
+        return measure(benchmark, params, null, op);
+    }
+
+    /**
+     * Measures an operation. If there is a setup step, each invocation is timed on its own and the setup isn't counted.
+     * @param benchmark The benchmark's name.
+     * @param params The parameters it ran with (for example, the number of dogs).
+     * @param setup Untimed work before each invocation, or null.
+     * @param op The operation.
+     * @return Returns the result, which is also kept for writeJson.
+     */
+    public Result measure(String benchmark, Map<String, String> params, Setup setup, Op op) throws Exception {
+        long invocation = 0;
+        for (int i = 0; i < warmupIterations; i++) {
+            invocation = iteration(setup, op, invocation, new long[3]);
+        }
+        double[] scores = new double[measureIterations];
+        long totalOps = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < measureIterations; i++) {
+            long[] stats = new long[3]; // operations, timed nanoseconds, bytes allocated
+            invocation = iteration(setup, op, invocation, stats);
+            scores[i] = (double) stats[1] / stats[0];
+            totalOps += stats[0];
+            totalBytes += stats[2];
+        }
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double error = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+
+        Result result = new Result(benchmark, params, mean, error, (double) totalBytes / totalOps, scores);
+        results.add(result);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * Runs one iteration and adds its operation count, timed nanoseconds, and allocated bytes to stats.
+     * @return Returns the next invocation number.
+     */
+    private long iteration(Setup setup, Op op, long invocation, long[] stats) throws Exception {
+        long end = System.nanoTime() + iterationNanos;
+        long bytesBefore = allocatedBytes();
+        long setupBytes = 0;
+        if (setup == null) {
+            // Time groups of invocations so the clock isn't read around every fast operation
+            int group = 1;
+            while (System.nanoTime() < end) {
+                long start = System.nanoTime();
+                for (int i = 0; i < group; i++) {
+                    op.run(invocation++);
+                }
+                stats[1] += System.nanoTime() - start;
+                stats[0] += group;
+                if (group < 1024) {
+                    group <<= 1;
+                }
+            }
+        } else {
+            do {
+                long setupStart = allocatedBytes();
+                setup.run(invocation);
+                setupBytes += allocatedBytes() - setupStart;
+                long start = System.nanoTime();
+                op.run(invocation++);
+                stats[1] += System.nanoTime() - start;
+                stats[0]++;
+            } while (System.nanoTime() < end);
+        }
+        stats[2] += allocatedBytes() - bytesBefore - setupBytes;
+        return invocation;
+    }
+
+    /**
+     * Reads the number of bytes this thread has allocated so far, or 0 if the JVM can't tell.
+     */
+    static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Makes a parameter map for a result.
+     * @param keysAndValues Alternating names and values.
+     * @return Returns the parameters in the order given.
+     */
+    public static Map<String, String> params(String... keysAndValues) {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+            params.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return params;
+    }
+
+    /**
+     * Writes every result so far as JSON, in the layout JMH uses for "-rf json".
+     * @param file The file to write.
+     * @throws IOException If the file can't be written.
+     */
+    public void writeJson(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("[\n");
+            for (int r = 0; r < results.size(); r++) {
+                Result result = results.get(r);
+                out.write("  {\n");
+                out.write("    \"benchmark\": \"" + result.benchmark + "\",\n");
+                out.write("    \"mode\": \"avgt\",\n");
+                out.write("    \"warmupIterations\": " + warmupIterations + ",\n");
+                out.write("    \"measurementIterations\": " + measureIterations + ",\n");
+                out.write("    \"params\": {");
+                int p = 0;
+                for (Map.Entry<String, String> param : result.params.entrySet()) {
+                    out.write((p++ > 0 ? ", " : "") + "\"" + param.getKey() + "\": \"" + param.getValue() + "\"");
+                }
+                out.write("},\n");
+                out.write("    \"primaryMetric\": {\"score\": " + result.nanosPerOp + ", \"scoreError\": " + result.error
+                        + ", \"scoreUnit\": \"ns/op\", \"rawData\": [[");
+                for (int i = 0; i < result.iterationScores.length; i++) {
+                    out.write((i > 0 ? ", " : "") + result.iterationScores[i]);
+                }
+                out.write("]]},\n");
+                out.write("    \"secondaryMetrics\": {\"gc.alloc.rate.norm\": {\"score\": " + result.bytesPerOp
+                        + ", \"scoreUnit\": \"B/op\"}}\n");
+                out.write(r + 1 < results.size() ? "  },\n" : "  }\n");
+            }
+            out.write("]\n");
+        }
+    }
+}
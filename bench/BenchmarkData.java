@@ -0,0 +1,64 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * BenchmarkData class: fills a benchmark database with made-up dogs.
+ * The same seed always gives the same dogs, so runs can be compared.
+ */
+public class BenchmarkData {
+    private static final String[] NAMES = {"Buddy", "Luna", "Max", "Bella", "Charlie", "Daisy", "Rocky", "Molly",
+            "Cooper", "Sadie", "Bear", "Lucy", "Duke", "Bailey", "Tucker", "Maggie", "Zeus", "Rosie", "Milo", "Coco"};
+    private static final String[] BREEDS = {"Labrador Retriever", "German Shepherd", "Bulldog", "Poodle", "Beagle",
+            "Boxer", "Dachshund", "Golden Retriever", "Chihuahua", "Great Dane", "Pug", "Shih Tzu"};
+
+    /**
+     * Creates a made-up dog. About one dog in five is checked in.
+     * @param random The random number source.
+     * @param id The dog's ID.
+     * @return Returns the dog.
+     */
+    public static Dog randomDog(Random random, int id) {
+        String name = NAMES[random.nextInt(NAMES.length)] + " " + Integer.toString(id, 36);
+        String breed = BREEDS[random.nextInt(BREEDS.length)];
+        String dob = String.format("%04d-%02d-%02d", 2008 + random.nextInt(17), 1 + random.nextInt(12), 1 + random.nextInt(28));
+        return new Dog(id, name, breed, dob, random.nextInt(4), random.nextBoolean() ? "M" : "F",
+                String.valueOf("UYN".charAt(random.nextInt(3))), random.nextInt(5) == 0);
+    }
+
+    /**
+     * Inserts dogs with IDs 1 to count into the dogs table, in large transactions.
+     * @param conn The benchmark database; the dogs table must exist.
+     * @param count The number of dogs to insert.
+     * @throws SQLException If the dogs can't be inserted.
+     */
+    public static void seed(Connection conn, int count) throws SQLException {
+        Random random = new Random(42);
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO dogs (id, name, breed, dob, food, gender, "
+                + "spayedneutered, checkedin) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int id = 1; id <= count; id++) {
+                Dog dog = randomDog(random, id);
+                stmt.setInt(1, dog.getId());
+                stmt.setString(2, dog.getName());
+                stmt.setString(3, dog.getBreed());
+                stmt.setString(4, dog.getDob());
+                stmt.setInt(5, dog.getFood());
+                stmt.setString(6, dog.getGender());
+                stmt.setString(7, dog.getSpayedNeutered());
+                stmt.setBoolean(8, dog.isCheckedIn());
+                stmt.addBatch();
+                if (id % 10_000 == 0) {
+                    stmt.executeBatch();
+                    conn.commit();
+                }
+            }
+            stmt.executeBatch();
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+}
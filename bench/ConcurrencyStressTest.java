@@ -0,0 +1,149 @@
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ConcurrencyStressTest class: several "desks" (each its own DogManager, as if in its own program)
+ * share one database, and every desk runs several threads, each with its own pooled connection.
+ * Every thread keeps adding one to a counter kept in the name of a few popular dogs: read the dog,
+ * change it, update it, and read again and retry if someone else changed it first.
+ * Mixed in are check-in toggles, which also change the dogs. At the end, every counter must equal
+ * the number of updates that succeeded on it: a lost update would make it smaller.
+ * Run with the SQLite JDBC driver on the classpath:
+ *   java -cp out:sqlite-jdbc.jar ConcurrencyStressTest [desks] [threads per desk] [seconds]
+ */
+public class ConcurrencyStressTest {
+    // Number of dogs every thread changes; few, so threads often change the same dog at once
+    private static final int HOT_DOGS = 8;
+    private static final String COUNTER_PREFIX = "Counter ";
+
+    public static void main(String[] args) throws Exception {
+        int desks = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int threadsPerDesk = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        File dbFile = File.createTempFile("stress", ".db");
+        String dbURL = "jdbc:sqlite:" + dbFile.getPath();
+
+        try (Connection conn = DriverManager.getConnection(dbURL)) {
+            SchemaMigrator.configure(conn);
+            SchemaMigrator.migrate(conn);
+            DogManager setup = new DogManager();
+            for (int id = 1; id <= HOT_DOGS; id++) {
+                setup.addDog(new Dog(id, COUNTER_PREFIX + 0, "Beagle", "2020-01-01", 1, "M", "Y", false), conn);
+            }
+        }
+
+        AtomicLongArray increments = new AtomicLongArray(HOT_DOGS + 1);
+        AtomicLong updates = new AtomicLong();
+        AtomicLong toggles = new AtomicLong();
+        AtomicLong retries = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.currentTimeMillis() + seconds * 1000L;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<ConnectionPool> pools = new ArrayList<>();
+
+        for (int desk = 0; desk < desks; desk++) {
+            DogManager manager = new DogManager();
+            ConnectionPool pool = new ConnectionPool(dbURL, threadsPerDesk);
+            pools.add(pool);
+            for (int t = 0; t < threadsPerDesk; t++) {
+                Random random = new Random(desk * 1000 + t);
+                threads.add(new Thread(() -> {
+                    try (Connection conn = pool.borrow()) {
+                        start.await();
+                        while (System.currentTimeMillis() < deadline) {
+                            int id = 1 + random.nextInt(HOT_DOGS);
+                            if (random.nextInt(4) == 0) {
+                                if (manager.toggleCheckedIn(id, conn) != null) {
+                                    toggles.incrementAndGet();
+                                }
+                                continue;
+                            }
+                            Dog dog = manager.findDogById(id, conn);
+                            while (true) {
+                                Dog changed = new Dog(dog);
+                                changed.setName(COUNTER_PREFIX + (counterOf(dog) + 1));
+                                try {
+                                    if (manager.updateDog(id, changed, conn)) {
+                                        increments.incrementAndGet(id);
+                                        updates.incrementAndGet();
+                                    } else {
+                                        errors.incrementAndGet();
+                                    }
+                                    break;
+                                } catch (StaleDogException ex) {
+                                    // Someone else got there first: start again from their change
+                                    retries.incrementAndGet();
+                                    dog = ex.getCurrent();
+                                }
+                            }
+                        }
+                    } catch (Exception ex) {
+                        errors.incrementAndGet();
+                        ex.printStackTrace();
+                    }
+                }, "desk-" + desk + "-" + t));
+            }
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        for (ConnectionPool pool : pools) {
+            pool.close();
+        }
+
+        int lost = 0;
+        try (Connection conn = DriverManager.getConnection(dbURL);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM dogs ORDER BY id")) {
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                long stored = Long.parseLong(rs.getString("name").substring(COUNTER_PREFIX.length()));
+                if (stored != increments.get(id)) {
+                    System.out.printf("Dog %d: counter is %d but %d updates succeeded%n", id, stored, increments.get(id));
+                    lost++;
+                }
+            }
+        } finally {
+            dbFile.delete();
+            new File(dbFile.getPath() + "-wal").delete();
+            new File(dbFile.getPath() + "-shm").delete();
+        }
+
+        System.out.printf("%d desks x %d threads for %.1f s%n", desks, threadsPerDesk, elapsed);
+        System.out.printf("Updates: %d (%.0f/s), check-in toggles: %d (%.0f/s)%n",
+                updates.get(), updates.get() / elapsed, toggles.get(), toggles.get() / elapsed);
+        System.out.printf("Retries after a stale read: %d, errors: %d%n", retries.get(), errors.get());
+        System.out.println(lost == 0 ? "No lost updates." : lost + " dogs lost updates!");
+        if (lost > 0 || errors.get() > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads the counter kept in a dog's name.
+     */
+    private static long counterOf(Dog dog) throws SQLException {
+        if (dog == null) {
+            throw new SQLException("Counter dog was removed");
+        }
+        return Long.parseLong(dog.getName().substring(COUNTER_PREFIX.length()));
+    }
+}
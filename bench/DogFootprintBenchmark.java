@@ -0,0 +1,70 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * DogFootprintBenchmark class: compares the memory a large roster takes as Dog objects, as CompactDog
+ * records, and as a DogTable. The dogs are made the way the database driver makes them, with
+ * separate String objects for every text field. The compact forms share the names with the Dog objects,
+ * so their numbers don't include the names, which every form needs.
+ * Run with a heap big enough for the roster:
+ *   java -Xmx2g -cp out DogFootprintBenchmark [number of dogs]
+ */
+public class DogFootprintBenchmark {
+
+    public static void main(String[] args) {
+        int dogCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.println("Dogs: " + dogCount);
+
+        long before = usedHeap();
+        List<Dog> dogs = makeDogs(dogCount);
+        long dogBytes = usedHeap() - before;
+        report("Dog", dogBytes, dogCount);
+
+        before = usedHeap();
+        List<CompactDog> compact = new ArrayList<>(dogCount);
+        BreedRegistry breeds = new BreedRegistry();
+        for (Dog dog : dogs) {
+            compact.add(new CompactDog(dog, breeds));
+        }
+        report("CompactDog", usedHeap() - before, dogCount);
+
+        before = usedHeap();
+        DogTable table = DogTable.of(dogs);
+        report("DogTable", usedHeap() - before, dogCount);
+
+        // Keep everything reachable until every measurement is taken
+        Bench.sink = new Object[] {dogs, compact, table};
+    }
+
+    /**
+     * Makes made-up dogs with their own copy of every text field, as if read from the database.
+     */
+    private static List<Dog> makeDogs(int count) {
+        Random random = new Random(42);
+        List<Dog> dogs = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            Dog dog = BenchmarkData.randomDog(random, id);
+            dogs.add(new Dog(id, new String(dog.getName()), new String(dog.getBreed()), new String(dog.getDob()),
+                    dog.getFood(), new String(dog.getGender()), new String(dog.getSpayedNeutered()), dog.isCheckedIn()));
+        }
+        return dogs;
+    }
+
+    private static void report(String form, long bytes, int dogCount) {
+        System.out.printf("%-12s %,14d bytes  %8.1f bytes/dog%n", form, bytes, (double) bytes / dogCount);
+    }
+
+    /**
+     * Measures the heap in use after garbage collection has settled.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DogServerLoadTest class: starts DogServer on this computer with a database of made-up dogs, then
+ * several client threads send requests over kept-alive connections as fast as they can: mostly
+ * lookups, some check-in toggles, and now and then a page of checked-in dogs or a search.
+ * It prints the requests per second and the latency percentiles of each kind of request.
+ * Run with the SQLite JDBC driver on the classpath:
+ *   java -cp out:sqlite-jdbc.jar DogServerLoadTest [dogs] [client threads] [seconds]
+ */
+public class DogServerLoadTest {
+    private static final String[] KINDS = {"lookup", "toggle", "list", "search"};
+
+    public static void main(String[] args) throws Exception {
+        int dogs = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        File dbFile = File.createTempFile("server-load", ".db");
+        String dbURL = "jdbc:sqlite:" + dbFile.getPath();
+
+        ConnectionPool pool = new ConnectionPool(dbURL, 8);
+        DogManager manager = new DogManager();
+        try (Connection conn = pool.borrow()) {
+            SchemaMigrator.migrate(conn);
+            BenchmarkData.seed(conn, dogs);
+            manager.warmCache(conn);
+        }
+        AttendanceLog attendanceLog = new AttendanceLog(pool.borrow());
+        manager.setAttendanceLog(attendanceLog);
+        DogServer server = new DogServer(manager, pool, new InetSocketAddress("127.0.0.1", 0), 16);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getPort();
+
+        LatencyHistogram[] latencies = new LatencyHistogram[KINDS.length];
+        for (int k = 0; k < KINDS.length; k++) {
+            latencies[k] = new LatencyHistogram();
+        }
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.currentTimeMillis() + seconds * 1000L;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < clients; t++) {
+            Random random = new Random(t);
+            threads.add(new Thread(() -> {
+                // One client per thread, so each keeps its own connection open
+                HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+                try {
+                    start.await();
+                    while (System.currentTimeMillis() < deadline) {
+                        int roll = random.nextInt(100);
+                        int id = 1 + random.nextInt(dogs);
+                        int kind;
+                        HttpRequest request;
+                        if (roll < 80) {
+                            kind = 0;
+                            request = HttpRequest.newBuilder(URI.create(base + "/dogs/" + id)).build();
+                        } else if (roll < 95) {
+                            kind = 1;
+                            request = HttpRequest.newBuilder(URI.create(base + "/dogs/" + id + "/toggle"))
+                                    .POST(HttpRequest.BodyPublishers.noBody()).build();
+                        } else if (roll < 97) {
+                            kind = 2;
+                            request = HttpRequest.newBuilder(URI.create(base + "/dogs?checkedIn=true")).build();
+                        } else {
+                            kind = 3;
+                            request = HttpRequest.newBuilder(URI.create(base + "/dogs?q=" + (char) ('a' + random.nextInt(26)) + "&limit=20")).build();
+                        }
+                        long started = System.nanoTime();
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        latencies[kind].record(System.nanoTime() - started);
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                } catch (Exception ex) {
+                    errors.incrementAndGet();
+                    ex.printStackTrace();
+                }
+            }, "client-" + t));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        server.stop();
+        attendanceLog.close();
+        pool.close();
+        dbFile.delete();
+        new File(dbFile.getPath() + "-wal").delete();
+        new File(dbFile.getPath() + "-shm").delete();
+
+        long total = 0;
+        for (LatencyHistogram histogram : latencies) {
+            total += histogram.getCount();
+        }
+        System.out.printf("%d dogs, %d client threads for %.1f s: %d requests (%.0f/s), %d errors%n",
+                dogs, clients, elapsed, total, total / elapsed, errors.get());
+        System.out.printf("%-8s %10s %10s %10s %10s %10s%n", "request", "count", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (int k = 0; k < KINDS.length; k++) {
+            LatencyHistogram histogram = latencies[k];
+            System.out.printf("%-8s %10d %10.3f %10.3f %10.3f %10.3f%n", KINDS[k], histogram.getCount(),
+                    histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                    histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMax() / 1e6);
+        }
+        if (errors.get() > 0) {
+            System.exit(1);
+        }
+    }
+}
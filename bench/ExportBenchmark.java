@@ -0,0 +1,114 @@
+import java.io.File;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * ExportBenchmark class: times DogManager.exportRoster in each format on a large roster, then imports
+ * the CSV and binary files into empty databases and checks that every dog came back exactly as it was.
+ * The export streams the dogs, so the heap needed doesn't grow with the roster; run with a small heap
+ * to see that:
+ *   java -Xmx128m -cp out:sqlite-jdbc.jar ExportBenchmark [number of dogs] [results file]
+ */
+public class ExportBenchmark {
+    private static final String DEFAULT_RESULTS_FILE = "bench-export.json";
+
+    public static void main(String[] args) throws Exception {
+        int dogCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String resultsFile = args.length > 1 ? args[1] : DEFAULT_RESULTS_FILE;
+        Bench bench = new Bench(1, 3, 1);
+        File dbFile = File.createTempFile("export-bench", ".db");
+        String dbURL = "jdbc:sqlite:" + dbFile.getPath();
+        boolean lossless = true;
+
+        try (Connection conn = DriverManager.getConnection(dbURL)) {
+            SchemaMigrator.configure(conn);
+            SchemaMigrator.migrate(conn);
+            BenchmarkData.seed(conn, dogCount);
+            DogManager manager = new DogManager();
+
+            for (RosterExporter.Format format : RosterExporter.Format.values()) {
+                File exportFile = File.createTempFile("export-bench", "." + format.name().toLowerCase());
+                Map<String, String> params = Bench.params("dogs", String.valueOf(dogCount), "format", format.name());
+                bench.measure("DogManager.exportRoster", params,
+                        i -> Bench.sink = manager.exportRoster(exportFile.getPath(), format, conn));
+                RosterExporter.ExportResult result = manager.exportRoster(exportFile.getPath(), format, conn);
+                System.out.printf("%s: %s, %.1f bytes per dog; heap in use %d MB%n", format, result,
+                        (double) result.getBytes() / Math.max(1, result.getWrittenCount()), usedHeapMegabytes());
+
+                if (format != RosterExporter.Format.NDJSON) {
+                    lossless &= reimportMatches(exportFile, format, conn);
+                }
+                exportFile.delete();
+            }
+        } finally {
+            deleteDatabase(dbFile);
+        }
+        bench.writeJson(Paths.get(resultsFile));
+        System.out.println("Results written to " + resultsFile);
+        if (!lossless) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Imports an export into an empty database and compares every dog with the original database.
+     */
+    private static boolean reimportMatches(File exportFile, RosterExporter.Format format,
+                                           Connection original) throws Exception {
+        File copyFile = File.createTempFile("export-bench-copy", ".db");
+        try (Connection copy = DriverManager.getConnection("jdbc:sqlite:" + copyFile.getPath())) {
+            SchemaMigrator.configure(copy);
+            SchemaMigrator.migrate(copy);
+            long start = System.nanoTime();
+            // A small bounded cache, so the import doesn't keep every dog in memory either
+            ImportResult imported = new DogManager(1000).importFromFile(exportFile.getPath(), copy);
+            System.out.printf("  re-imported %d dogs in %d ms%n", imported.getLoadedCount(),
+                    (System.nanoTime() - start) / 1_000_000);
+
+            String columns = "id, name, breed, dob, food, gender, spayedneutered, checkedin";
+            try (Statement stmtOriginal = original.createStatement();
+                 Statement stmtCopy = copy.createStatement();
+                 ResultSet rsOriginal = stmtOriginal.executeQuery("SELECT " + columns + " FROM dogs ORDER BY id");
+                 ResultSet rsCopy = stmtCopy.executeQuery("SELECT " + columns + " FROM dogs ORDER BY id")) {
+                long compared = 0;
+                while (rsOriginal.next()) {
+                    if (!rsCopy.next()) {
+                        System.out.println("  " + format + ": dogs missing after dog " + compared);
+                        return false;
+                    }
+                    for (int column = 1; column <= 8; column++) {
+                        if (!rsOriginal.getString(column).equals(rsCopy.getString(column))) {
+                            System.out.println("  " + format + ": dog " + rsOriginal.getInt(1) + " differs in column " + column);
+                            return false;
+                        }
+                    }
+                    compared++;
+                }
+                if (rsCopy.next()) {
+                    System.out.println("  " + format + ": extra dogs after re-import");
+                    return false;
+                }
+                System.out.println("  " + format + ": all " + compared + " dogs match");
+                return true;
+            }
+        } finally {
+            deleteDatabase(copyFile);
+        }
+    }
+
+    private static long usedHeapMegabytes() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+    }
+
+    private static void deleteDatabase(File dbFile) {
+        dbFile.delete();
+        new File(dbFile.getPath() + "-wal").delete();
+        new File(dbFile.getPath() + "-shm").delete();
+    }
+}
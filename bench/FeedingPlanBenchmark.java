@@ -0,0 +1,107 @@
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * FeedingPlanBenchmark class: measures the feeding plan kept by AttendanceTracker through a busy day
+ * at several locations, each with its own tracker, and the combined plan for all of them.
+ * A day is a check-in for every dog expected (10,000 by default, spread over the locations) with the
+ * combined plan read after every 100 check-ins, as a kitchen screen would, then a check-out for each.
+ * For comparison, the plan is also worked out the old way, by going through every checked-in dog.
+ * No database is needed:
+ *   java -cp out FeedingPlanBenchmark [check-ins per day] [locations] [results file]
+ */
+public class FeedingPlanBenchmark {
+    private static final String DEFAULT_RESULTS_FILE = "bench-feeding-plan.json";
+    private static final String[] FOOD_TYPES = {"No Food", "Dry Food", "Wet Food", "Customer Provided"};
+    // Check-ins between two reads of the combined plan
+    private static final int PLAN_EVERY = 100;
+
+    public static void main(String[] args) throws Exception {
+        int checkIns = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int locationCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        String resultsFile = args.length > 2 ? args[2] : DEFAULT_RESULTS_FILE;
+        Bench bench = new Bench(3, 5, 1000);
+        Map<String, String> params = Bench.params("checkIns", String.valueOf(checkIns),
+                "locations", String.valueOf(locationCount));
+
+        // Each location's dogs, all checked out to start with
+        Random random = new Random(42);
+        List<List<Dog>> rosters = new ArrayList<>();
+        AttendanceTracker[] locations = new AttendanceTracker[locationCount];
+        for (int l = 0; l < locationCount; l++) {
+            rosters.add(new ArrayList<>());
+            locations[l] = new AttendanceTracker(FOOD_TYPES);
+            locations[l].load(new ArrayList<>());
+        }
+        for (int id = 1; id <= checkIns; id++) {
+            Dog dog = BenchmarkData.randomDog(random, id);
+            dog.setCheckedIn(false);
+            rosters.get(id % locationCount).add(dog);
+        }
+
+        bench.measure("feedingPlan.day", params, i -> {
+            int done = 0;
+            for (int n = 0; n < checkIns; n++) {
+                List<Dog> roster = rosters.get(n % locationCount);
+                Dog before = roster.get(n / locationCount);
+                Dog after = new Dog(before);
+                after.setCheckedIn(true);
+                locations[n % locationCount].dogChanged(before, after);
+                if (++done % PLAN_EVERY == 0) {
+                    Bench.sink = combinedPlan(locations);
+                }
+            }
+            for (int l = 0; l < locationCount; l++) {
+                for (Dog dog : rosters.get(l)) {
+                    locations[l].dogChanged(dog, dog); // The roster copy is checked out
+                }
+            }
+        });
+
+        // Every dog checked in: the busiest moment of the day
+        for (int l = 0; l < locationCount; l++) {
+            for (Dog dog : rosters.get(l)) {
+                Dog after = new Dog(dog);
+                after.setCheckedIn(true);
+                locations[l].dogChanged(dog, after);
+            }
+        }
+        FeedingPlan plan = combinedPlan(locations);
+        System.out.print(plan);
+        bench.measure("feedingPlan.tracked", params, i -> Bench.sink = combinedPlan(locations));
+        bench.measure("feedingPlan.scan", params, i -> Bench.sink = scannedPlan(rosters));
+
+        bench.writeJson(Paths.get(resultsFile));
+        System.out.println("Results written to " + resultsFile);
+    }
+
+    /**
+     * Adds up every location's plan.
+     */
+    private static FeedingPlan combinedPlan(AttendanceTracker[] locations) {
+        FeedingPlan plan = locations[0].feedingPlan();
+        for (int l = 1; l < locations.length; l++) {
+            plan = plan.plus(locations[l].feedingPlan());
+        }
+        return plan;
+    }
+
+    /**
+     * Works out the plan without the tracker: goes through every dog, working out its size and age.
+     */
+    private static FeedingPlan scannedPlan(List<List<Dog>> rosters) {
+        LocalDate today = LocalDate.now();
+        double[] dogs = new double[FeedingPlan.cellCount(FOOD_TYPES.length)];
+        for (List<Dog> roster : rosters) {
+            for (Dog dog : roster) {
+                dogs[FeedingPlan.cell(dog.getFood(), DogSize.forBreed(dog.getBreed()),
+                        AgeBand.forBirthDate(dog.getDob(), today))]++;
+            }
+        }
+        return new FeedingPlan(today, "scanned", false, FOOD_TYPES, dogs);
+    }
+}
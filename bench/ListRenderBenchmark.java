@@ -0,0 +1,84 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * ListRenderBenchmark class: measures painting dog list rows the old way (HTML strings drawn by the
+ * default renderer) and the new way (Dog objects drawn by DogCellRenderer).
+ * Each operation sizes and paints a screenful of rows into an off-screen image, the way a JList
+ * does when it is scrolled, so both the time and the memory allocated per screen are shown.
+ * Runs without a display:
+ *   java -cp out ListRenderBenchmark [number of dogs] [results file]
+ */
+public class ListRenderBenchmark {
+    private static final String DEFAULT_RESULTS_FILE = "bench-list-render.json";
+    private static final String[] FOOD_TYPES = {"No Food", "Dry Food", "Wet Food", "Customer Provided"};
+    // Rows painted per operation: about one screen of the dog list
+    private static final int ROWS_PER_SCREEN = 40;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int dogCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String resultsFile = args.length > 1 ? args[1] : DEFAULT_RESULTS_FILE;
+        Bench bench = new Bench(3, 5, 1000);
+        Map<String, String> params = Bench.params("dogs", String.valueOf(dogCount),
+                "rows", String.valueOf(ROWS_PER_SCREEN));
+
+        Random random = new Random(42);
+        List<Dog> dogs = new ArrayList<>(dogCount);
+        List<String> htmlRows = new ArrayList<>(dogCount);
+        for (int id = 1; id <= dogCount; id++) {
+            Dog dog = BenchmarkData.randomDog(random, id);
+            dogs.add(dog);
+            htmlRows.add(htmlRow(dog));
+        }
+
+        Graphics2D graphics = new BufferedImage(600, 24, BufferedImage.TYPE_INT_RGB).createGraphics();
+
+        // Before: the model held an HTML string per row, drawn by the default renderer
+        JList<String> htmlList = new JList<>();
+        ListCellRenderer<? super String> htmlRenderer = htmlList.getCellRenderer();
+        bench.measure("list.paint.html", params, i ->
+                paintScreen(htmlList, htmlRenderer, htmlRows, (int) (i * ROWS_PER_SCREEN % dogCount), graphics));
+
+        // After: the model holds the dogs and DogCellRenderer draws plain colored text
+        JList<Dog> dogList = new JList<>();
+        DogCellRenderer dogRenderer = new DogCellRenderer(FOOD_TYPES);
+        bench.measure("list.paint.renderer", params, i ->
+                paintScreen(dogList, dogRenderer, dogs, (int) (i * ROWS_PER_SCREEN % dogCount), graphics));
+
+        graphics.dispose();
+        bench.writeJson(Paths.get(resultsFile));
+        System.out.println("Results written to " + resultsFile);
+    }
+
+    /**
+     * Sizes and paints one screen of rows, starting at a given row.
+     */
+    private static <T> void paintScreen(JList<T> list, ListCellRenderer<? super T> renderer, List<T> rows, int first,
+                                        Graphics2D graphics) {
+        for (int row = first; row < first + ROWS_PER_SCREEN && row < rows.size(); row++) {
+            Component cell = renderer.getListCellRendererComponent(list, rows.get(row), row, false, false);
+            Dimension size = cell.getPreferredSize();
+            cell.setBounds(0, 0, size.width, size.height);
+            cell.paint(graphics);
+        }
+    }
+
+    /**
+     * The dog list row as it was built before DogCellRenderer, for comparison.
+     */
+    private static String htmlRow(Dog dog) {
+        String dogDetails = "[" + dog.getId() + "] " + dog.getName() + " (" + dog.getBreed() + ") " + FOOD_TYPES[dog.getFood()];
+        if (dog.isCheckedIn()) {
+            return "<html><font color='#008800'>" + dogDetails + "</font></html>";
+        } else {
+            return "<html><font color='#880000'>" + dogDetails + "</font></html>";
+        }
+    }
+}
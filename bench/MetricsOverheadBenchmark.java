@@ -0,0 +1,64 @@
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * MetricsOverheadBenchmark class: shows what the always-on DogManager metrics cost.
+ * It times a cached dog lookup (the fastest DogManager operation) on its own and wrapped the way
+ * DogManager wraps it, plus the cost of recording into a histogram, from one thread and from several.
+ * No database is needed:
+ *   java -cp out MetricsOverheadBenchmark [results file]
+ */
+public class MetricsOverheadBenchmark {
+    private static final String DEFAULT_RESULTS_FILE = "bench-metrics.json";
+    private static final int DOGS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        String resultsFile = args.length > 0 ? args[0] : DEFAULT_RESULTS_FILE;
+        Bench bench = new Bench(3, 5, 1000);
+        Map<String, String> params = Bench.params("dogs", String.valueOf(DOGS));
+
+        DogIndex index = new DogIndex(0);
+        java.util.Random random = new java.util.Random(42);
+        for (int id = 1; id <= DOGS; id++) {
+            index.put(BenchmarkData.randomDog(random, id));
+        }
+        DogMetrics metrics = new DogMetrics();
+
+        bench.measure("lookup.plain", params, i -> Bench.sink = index.get(pick(i)));
+        bench.measure("lookup.timed", params, i -> Bench.sink =
+                metrics.time(DogMetrics.Operation.FIND_DOG_BY_ID, () -> index.get(pick(i))));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        bench.measure("histogram.record", params, i -> histogram.record(i & 0xFFFFF));
+
+        // Several threads recording into the same histogram at once, as with the connection pool
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        LatencyHistogram shared = new LatencyHistogram();
+        Thread[] others = new Thread[threads - 1];
+        for (int t = 0; t < others.length; t++) {
+            others[t] = new Thread(() -> {
+                long n = 0;
+                while (!Thread.currentThread().isInterrupted()) {
+                    shared.record(n++ & 0xFFFFF);
+                }
+            });
+            others[t].setDaemon(true);
+            others[t].start();
+        }
+        bench.measure("histogram.record.contended", Bench.params("dogs", String.valueOf(DOGS),
+                "threads", String.valueOf(threads)), i -> shared.record(i & 0xFFFFF));
+        for (Thread other : others) {
+            other.interrupt();
+        }
+
+        bench.writeJson(Paths.get(resultsFile));
+        System.out.println("Results written to " + resultsFile);
+    }
+
+    /**
+     * Spreads lookups over every ID from 1 to DOGS.
+     */
+    private static int pick(long invocation) {
+        return (int) (invocation * 7919 % DOGS) + 1;
+    }
+}
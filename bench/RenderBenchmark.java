@@ -0,0 +1,133 @@
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * RenderBenchmark class: measures the time and memory allocated to render a large roster as text,
+ * as list rows, and as an attendance report, the old way (a new string per dog, HTML list rows) and with
+ * DogRenderer writing into one reused buffer. Each operation renders every dog; the B/op column shows
+ * the allocation for the whole roster. The cost of painting list rows is in ListRenderBenchmark.
+ * No database is needed:
+ *   java -cp out RenderBenchmark [number of dogs] [results file]
+ */
+public class RenderBenchmark {
+    private static final String DEFAULT_RESULTS_FILE = "bench-render.json";
+    private static final String[] FOOD_TYPES = {"No Food", "Dry Food", "Wet Food", "Customer Provided"};
+
+    public static void main(String[] args) throws Exception {
+        int dogCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String resultsFile = args.length > 1 ? args[1] : DEFAULT_RESULTS_FILE;
+        Bench bench = new Bench(3, 5, 1000);
+        Map<String, String> params = Bench.params("dogs", String.valueOf(dogCount));
+
+        Random random = new Random(42);
+        List<Dog> dogs = new ArrayList<>(dogCount);
+        int[] foodTotals = new int[FOOD_TYPES.length];
+        for (int id = 1; id <= dogCount; id++) {
+            Dog dog = BenchmarkData.randomDog(random, id);
+            dog.setCheckedIn(true);
+            foodTotals[dog.getFood()]++;
+            dogs.add(dog);
+        }
+        StringBuilder buffer = new StringBuilder(256 + dogCount * 128);
+
+        bench.measure("render.text.concat", params, i -> {
+            for (Dog dog : dogs) {
+                Bench.sink = legacyText(dog);
+            }
+        });
+        bench.measure("render.text.buffer", params, i -> {
+            buffer.setLength(0);
+            for (Dog dog : dogs) {
+                DogRenderer.appendText(buffer, dog).append('\n');
+            }
+            Bench.sink = buffer;
+        });
+
+        bench.measure("render.html.concat", params, i -> {
+            for (Dog dog : dogs) {
+                Bench.sink = legacyHtmlRow(dog);
+            }
+        });
+        bench.measure("render.row.buffer", params, i -> {
+            for (Dog dog : dogs) {
+                buffer.setLength(0);
+                Bench.sink = DogRenderer.appendListRow(buffer, dog, FOOD_TYPES);
+            }
+        });
+
+        AttendanceReport report = new AttendanceReport(dogCount, FOOD_TYPES, foodTotals, new int[AgeBand.values().length], () -> dogs);
+        bench.measure("report.concat", params, i -> Bench.sink = legacyReport(dogs, foodTotals));
+        bench.measure("report.buffer", params, i -> {
+            buffer.setLength(0);
+            report.appendTo(buffer);
+            Bench.sink = buffer;
+        });
+
+        bench.writeJson(Paths.get(resultsFile));
+        System.out.println("Results written to " + resultsFile);
+    }
+
+    /**
+     * Dog.toString() as it was before DogRenderer, for comparison.
+     */
+    private static String legacyText(Dog dog) {
+        String foodString = "";
+        int food = dog.getFood();
+        if (food == 0) {
+            foodString = "No Food";
+        } else if (food == 1) {
+            foodString = "Dry";
+        } else if (food == 2) {
+            foodString = "Wet";
+        } else if (food == 3) {
+            foodString = "Customer Provided";
+        } else {
+            foodString = "Unknown";
+        }
+        String checkStatus = dog.isCheckedIn() ? "Checked In" : "Not Checked In";
+        return "ID: " + dog.getId() +
+                " | Name: " + dog.getName() +
+                " | Breed: " + dog.getBreed() +
+                " | DOB: " + dog.getDob() +
+                " | Food: " + foodString +
+                " | Gender: " + dog.getGender() +
+                " | Spayed/Neutered: " + dog.getSpayedNeutered() +
+                " | " + checkStatus;
+    }
+
+    /**
+     * The dog list row as it was built before DogRenderer, for comparison.
+     */
+    private static String legacyHtmlRow(Dog dog) {
+        String dogDetails = "[" + dog.getId() + "] " + dog.getName() + " (" + dog.getBreed() + ") " + FOOD_TYPES[dog.getFood()];
+        if (dog.isCheckedIn()) {
+            return "<html><font color='#008800'>" + dogDetails + "</font></html>";
+        } else {
+            return "<html><font color='#880000'>" + dogDetails + "</font></html>";
+        }
+    }
+
+    /**
+     * The attendance report as it was built before DogRenderer, for comparison.
+     */
+    private static String legacyReport(List<Dog> dogs, int[] foodTotals) {
+        StringBuilder report = new StringBuilder();
+        report.append("Attendance Report:\n");
+        report.append("--\n");
+        report.append("Dogs currently checked in: ").append(dogs.size()).append("\n");
+        report.append("--\n");
+        report.append("Checked-In Dog Details:\n");
+        for (Dog dog : dogs) {
+            report.append(legacyText(dog)).append("\n");
+        }
+        report.append("--\n");
+        report.append("Food Needed Today:\n");
+        for (int i = 0; i < foodTotals.length; i++) {
+            report.append("  - ").append(FOOD_TYPES[i]).append(": ").append(foodTotals[i]).append("\n");
+        }
+        return report.toString();
+    }
+}
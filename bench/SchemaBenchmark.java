@@ -0,0 +1,80 @@
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * SchemaBenchmark class: shows the query plan and latency of the hot dog queries before and after
+ * the indexes and settings added by schema version 2.
+ * Run with the SQLite JDBC driver on the classpath:
+ *   java -cp out:sqlite-jdbc.jar SchemaBenchmark [number of dogs]
+ */
+public class SchemaBenchmark {
+    // The queries the program runs most, with sample parameters
+    private static final String[][] QUERIES = {
+            {"Checked-in dogs by name", "SELECT * FROM dogs WHERE checkedin = 1 ORDER BY name ASC, id ASC"},
+            {"First page of all dogs", "SELECT * FROM dogs ORDER BY name ASC, id ASC LIMIT 201"},
+            {"Next page of all dogs", "SELECT * FROM dogs WHERE (name, id) > ('M', 0) ORDER BY name ASC, id ASC LIMIT 201"},
+            {"First page of checked-in dogs", "SELECT * FROM dogs WHERE checkedin = 1 ORDER BY name ASC, id ASC LIMIT 201"},
+            {"Dog by ID", "SELECT * FROM dogs WHERE ID = 4242"},
+    };
+    // Timed runs of each query
+    private static final int RUNS = 25;
+
+    public static void main(String[] args) throws Exception {
+        int dogCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        File dbFile = File.createTempFile("schema-bench", ".db");
+        dbFile.deleteOnExit();
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getPath())) {
+            // Before: the table as the program used to create it, with default settings
+            SchemaMigrator.migrate(conn, 1);
+            BenchmarkData.seed(conn, dogCount);
+            System.out.println("Dogs: " + dogCount);
+            System.out.println("== Before (schema version 1, default settings) ==");
+            report(conn);
+
+            // After: the current schema and settings
+            SchemaMigrator.configure(conn);
+            SchemaMigrator.migrate(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+            System.out.println("== After (schema version " + SchemaMigrator.latestVersion() + ", tuned settings) ==");
+            report(conn);
+        }
+    }
+
+    /**
+     * Prints the plan and the median and worst time of every query.
+     */
+    private static void report(Connection conn) throws SQLException {
+        for (String[] query : QUERIES) {
+            System.out.println(query[0] + ":");
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + query[1])) {
+                while (rs.next()) {
+                    System.out.println("    plan: " + rs.getString("detail"));
+                }
+            }
+            long[] times = new long[RUNS];
+            try (PreparedStatement stmt = conn.prepareStatement(query[1])) {
+                for (int run = 0; run < RUNS; run++) {
+                    long start = System.nanoTime();
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            rs.getString("name");
+                        }
+                    }
+                    times[run] = System.nanoTime() - start;
+                }
+            }
+            Arrays.sort(times);
+            System.out.printf("    median %.3f ms, worst %.3f ms%n", times[RUNS / 2] / 1e6, times[RUNS - 1] / 1e6);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * SearchBenchmark class: measures type-ahead searches against a large roster with DogSearchIndex,
+ * and the same searches done by checking every dog in a list, for comparison.
+ * Each query is measured on its own, since a short prefix matches far more dogs than a full word.
+ * No database is needed:
+ *   java -Xmx2g -cp out SearchBenchmark [number of dogs] [results file]
+ */
+public class SearchBenchmark {
+    private static final String DEFAULT_RESULTS_FILE = "bench-search.json";
+    // Dogs returned per search, as in the search box
+    private static final int LIMIT = 200;
+    // A short prefix, a whole word, two words, a breed, an ID, and a prefix nothing starts with
+    private static final String[] QUERIES = {"b", "luna", "max gold", "retriever", "123456", "qqq"};
+
+    public static void main(String[] args) throws Exception {
+        int dogCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String resultsFile = args.length > 1 ? args[1] : DEFAULT_RESULTS_FILE;
+        Bench bench = new Bench(3, 5, 1000);
+
+        Random random = new Random(42);
+        List<Dog> dogs = new ArrayList<>(dogCount);
+        for (int id = 1; id <= dogCount; id++) {
+            dogs.add(BenchmarkData.randomDog(random, id));
+        }
+
+        long start = System.nanoTime();
+        DogSearchIndex index = new DogSearchIndex();
+        index.load(dogs);
+        System.out.printf("Index of %d dogs built in %d ms%n", dogCount, (System.nanoTime() - start) / 1_000_000);
+
+        for (String query : QUERIES) {
+            Map<String, String> params = Bench.params("dogs", String.valueOf(dogCount), "query", query);
+            bench.measure("search.index", params, i -> Bench.sink = index.search(query, LIMIT));
+        }
+        // The scan is far slower, so only the queries that show the range are repeated with it
+        for (String query : new String[] {"b", "qqq"}) {
+            Map<String, String> params = Bench.params("dogs", String.valueOf(dogCount), "query", query);
+            bench.measure("search.scan", params, i -> Bench.sink = scan(dogs, query));
+        }
+
+        bench.writeJson(Paths.get(resultsFile));
+        System.out.println("Results written to " + resultsFile);
+    }
+
+    /**
+     * Searches without an index: checks every dog's name and breed until enough are found.
+     */
+    private static List<Integer> scan(List<Dog> dogs, String query) {
+        String[] terms = query.toLowerCase(Locale.ROOT).split(" ");
+        List<Integer> found = new ArrayList<>();
+        for (Dog dog : dogs) {
+            String text = " " + dog.getName().toLowerCase(Locale.ROOT) + " " + dog.getBreed().toLowerCase(Locale.ROOT);
+            boolean matches = true;
+            for (String term : terms) {
+                if (!text.contains(" " + term)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                found.add(dog.getId());
+                if (found.size() == LIMIT) {
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,110 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ShardedReportBenchmark class: times the reports for every location of a ShardedDogStore, made with
+ * a fork/join task per location, against asking the locations one after another. Each location has
+ * its own database of random dogs in a temporary directory.
+ * The last run makes one location slow by holding all of its connections: the reports should still
+ * take about the report timeout, listing that location as unavailable, instead of waiting for it.
+ *   java -cp out:sqlite-jdbc.jar ShardedReportBenchmark [locations] [dogs per location] [results file]
+ */
+public class ShardedReportBenchmark {
+    private static final String DEFAULT_RESULTS_FILE = "bench-sharded-report.json";
+    // Report timeout used by the benchmark, short so the slow-location run is quick
+    private static final long REPORT_TIMEOUT_MILLIS = 250;
+
+    public static void main(String[] args) throws Exception {
+        int locationCount = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        int dogsPerLocation = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        String resultsFile = args.length > 2 ? args[2] : DEFAULT_RESULTS_FILE;
+        Bench bench = new Bench(3, 5, 1000);
+        Path directory = Files.createTempDirectory("sharded-bench");
+        List<String> locations = new ArrayList<>();
+        for (int l = 1; l <= locationCount; l++) {
+            locations.add("location-" + l);
+        }
+
+        try (ShardedDogStore store = new ShardedDogStore(directory, locations, REPORT_TIMEOUT_MILLIS)) {
+            for (String location : locations) {
+                store.call(location, (manager, conn) -> {
+                    SchemaMigrator.migrate(conn);
+                    BenchmarkData.seed(conn, dogsPerLocation);
+                    return null;
+                });
+            }
+            long start = System.nanoTime();
+            ShardedDogStore.Results<Integer> opened = store.open();
+            System.out.printf("Opened %d locations in %.1f ms%s%n", opened.getAnswers().size(),
+                    (System.nanoTime() - start) / 1e6, opened.isComplete() ? "" : "; unavailable: " + opened.getUnavailable());
+            System.out.print(store.getAttendanceReport());
+
+            for (String mode : new String[] {"forkJoin", "sequential"}) {
+                Map<String, String> params = Bench.params("locations", String.valueOf(locationCount),
+                        "dogsPerLocation", String.valueOf(dogsPerLocation), "mode", mode);
+                boolean forkJoin = mode.equals("forkJoin");
+                bench.measure("shards.attendanceReport", params, i -> Bench.sink = forkJoin
+                        ? store.getAttendanceReport()
+                        : sequentially(store, locations, DogManager::getAttendanceReport));
+                // A different day each time, so the expected plans are read from the database rather than kept ones
+                bench.measure("shards.expectedFeedingPlan", params, i -> {
+                    LocalDate date = LocalDate.now().plusDays(i);
+                    Bench.sink = forkJoin
+                            ? store.getExpectedFeedingPlans(date)
+                            : sequentially(store, locations, (manager, conn) -> manager.getExpectedFeedingPlan(date, conn));
+                });
+            }
+
+            // Hold every connection of the first location, so its tasks wait for one
+            ConnectionPool slowPool = store.getShard(locations.get(0)).getPool();
+            List<Connection> held = new ArrayList<>();
+            try {
+                for (int c = 1; c < ShardedDogStore.SHARD_POOL_SIZE; c++) {
+                    held.add(slowPool.borrow());
+                }
+                Map<String, String> params = Bench.params("locations", String.valueOf(locationCount),
+                        "dogsPerLocation", String.valueOf(dogsPerLocation), "mode", "forkJoin", "slowLocations", "1");
+                bench.measure("shards.attendanceReport", params, i -> Bench.sink = store.getAttendanceReport());
+                System.out.println("With one location slow: " + store.getAttendanceReport().getUnavailable());
+            } finally {
+                for (Connection conn : held) {
+                    conn.close();
+                }
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+        bench.writeJson(Paths.get(resultsFile));
+        System.out.println("Results written to " + resultsFile);
+    }
+
+    /**
+     * Asks each location in turn, the way a report would without the fork/join pool.
+     */
+    private static <T> List<T> sequentially(ShardedDogStore store, List<String> locations,
+                                            ShardedDogStore.ShardCall<T> call) throws SQLException {
+        List<T> answers = new ArrayList<>(locations.size());
+        for (String location : locations) {
+            answers.add(store.call(location, call));
+        }
+        return answers;
+    }
+
+    private static void deleteDirectory(Path directory) {
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.Map;
+
+/**
+ * StartupBenchmark class: times how long the desktop program takes to show the first page of dogs,
+ * and to have every dog loaded into memory, on a database of 100,000 dogs by default.
+ * The steps are the ones DaycareUI takes once the database file is known: connect, create or upgrade
+ * the tables, read the attendance numbers and the first page of checked-in dogs, and warm the cache.
+ * They are timed in two orders: the first page before warming the cache (as the program does now),
+ * and warming the cache first (as it used to).
+ * Cold starts run each time in a new Java process, so they include starting Java and loading the
+ * classes; warm starts repeat the steps in this process, with the code already compiled and the file
+ * in the operating system's cache. The prompts the program used to show at every start aren't counted.
+ *   java -cp out:sqlite-jdbc.jar StartupBenchmark [number of dogs] [results file]
+ */
+public class StartupBenchmark {
+    private static final String DEFAULT_RESULTS_FILE = "bench-startup.json";
+    // Lines a cold-start process prints as it reaches each point
+    private static final String FIRST_PAGE = "first page";
+    private static final String CACHE_WARM = "cache warm";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3 && args[0].equals("--start")) {
+            // A cold start, run by the benchmark in a new process
+            start("jdbc:sqlite:" + args[1], Boolean.parseBoolean(args[2]), true);
+            return;
+        }
+        int dogCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String resultsFile = args.length > 1 ? args[1] : DEFAULT_RESULTS_FILE;
+        File dbFile = File.createTempFile("startup-bench", ".db");
+        String dbURL = "jdbc:sqlite:" + dbFile.getPath();
+
+        try {
+            try (Connection conn = DriverManager.getConnection(dbURL)) {
+                SchemaMigrator.configure(conn);
+                SchemaMigrator.migrate(conn);
+                BenchmarkData.seed(conn, dogCount);
+            }
+
+            Bench cold = new Bench(1, 5, 1);
+            for (boolean warmFirst : new boolean[] {false, true}) {
+                Map<String, String> params = Bench.params("dogs", String.valueOf(dogCount),
+                        "order", warmFirst ? "warmFirst" : "firstPageFirst");
+                cold.measure("startup.cold.firstPage", params, i -> coldStart(dbFile, warmFirst, FIRST_PAGE));
+                cold.measure("startup.cold.cacheWarm", params, i -> coldStart(dbFile, warmFirst, CACHE_WARM));
+            }
+
+            Bench warm = new Bench(3, 5, 1000);
+            for (boolean warmFirst : new boolean[] {false, true}) {
+                Map<String, String> params = Bench.params("dogs", String.valueOf(dogCount),
+                        "order", warmFirst ? "warmFirst" : "firstPageFirst");
+                warm.measure("startup.warm.firstPage", params, i -> start(dbURL, warmFirst, false));
+                warm.measure("startup.warm.cacheWarm", params, i -> start(dbURL, warmFirst, true));
+            }
+            cold.writeJson(Paths.get("cold-" + resultsFile));
+            warm.writeJson(Paths.get(resultsFile));
+            System.out.println("Results written to " + resultsFile + " and cold-" + resultsFile);
+        } finally {
+            dbFile.delete();
+            new File(dbFile.getPath() + "-wal").delete();
+            new File(dbFile.getPath() + "-shm").delete();
+        }
+    }
+
+    /**
+     * Takes the program's startup steps, printing a line as the first page is read and as the cache is warm.
+     * @param dbURL The database.
+     * @param warmFirst True to warm the cache before reading the first page, as the program used to.
+     * @param untilWarm False to stop once the first page has been read.
+     */
+    private static void start(String dbURL, boolean warmFirst, boolean untilWarm) throws Exception {
+        DogManager manager = new DogManager();
+        try (ConnectionPool pool = new ConnectionPool(dbURL); Connection conn = pool.borrow()) {
+            SchemaMigrator.migrate(conn);
+            if (warmFirst) {
+                manager.warmCache(conn);
+            }
+            // What refreshDogList and the list read for the checked-in dogs shown at startup
+            Bench.sink = manager.getAttendanceReport(conn);
+            Bench.sink = manager.countDogs(true, conn);
+            Bench.sink = manager.getDogsPage(true, null, LazyDogListModel.DEFAULT_PAGE_SIZE, conn);
+            System.out.println(FIRST_PAGE);
+            if (!untilWarm) {
+                return;
+            }
+            if (!warmFirst) {
+                manager.warmCache(conn);
+            }
+            System.out.println(CACHE_WARM);
+        }
+    }
+
+    /**
+     * Starts the steps in a new Java process and waits until it prints a line.
+     */
+    private static void coldStart(File dbFile, boolean warmFirst, String until) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                StartupBenchmark.class.getName(), "--start", dbFile.getPath(), String.valueOf(warmFirst))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null && !line.equals(until)) {
+                // Keep reading until the line
+            }
+            if (line == null) {
+                throw new IOException("The start failed; exit code " + process.waitFor());
+            }
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+}
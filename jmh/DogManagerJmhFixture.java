@@ -0,0 +1,130 @@
+import dogbench.DogManagerFixture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+/**
+ * DogManagerJmhFixture class: does the work for the JMH benchmarks in the dogbench package (see DogManagerFixture).
+ * It fills a temporary SQLite database with made-up dogs from BenchmarkData and keeps a DogManager on it.
+ */
+public class DogManagerJmhFixture implements DogManagerFixture {
+    // Number of dogs in the roster file used by the import benchmark
+    static final int IMPORT_LINES = 10_000;
+
+    private final int dogCount;
+    private final File dbFile;
+    private final File rosterFile;
+    private final Connection conn;
+    private final DogManager manager = new DogManager();
+    // Holds at most one dog, so nearly every lookup goes to the database
+    private final DogManager uncached = new DogManager(1);
+    private final Dog sample;
+    private final Random random = new Random(7);
+    private DogManager importer;
+
+    /**
+     * Creates the database and fills it; called by DogManagerFixture.open.
+     * @param dogCount The number of dogs, with IDs 1 to dogCount.
+     * @throws Exception If the database or the roster file can't be made.
+     */
+    public DogManagerJmhFixture(int dogCount) throws Exception {
+        this.dogCount = dogCount;
+        dbFile = File.createTempFile("dogmanager-jmh", ".db");
+        rosterFile = File.createTempFile("dogmanager-jmh", ".txt");
+        conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getPath());
+        SchemaMigrator.configure(conn);
+        SchemaMigrator.migrate(conn);
+        BenchmarkData.seed(conn, dogCount);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE");
+        }
+        manager.warmCache(conn);
+        sample = manager.findDogById(1, conn);
+        writeRoster(rosterFile, dogCount + 1, IMPORT_LINES);
+    }
+
+    @Override
+    public Object dogToString() {
+        return sample.toString();
+    }
+
+    @Override
+    public Object findDogById(int id) throws SQLException {
+        return manager.findDogById(id, conn);
+    }
+
+    @Override
+    public Object findDogByIdUncached(int id) throws SQLException {
+        return uncached.findDogById(id, conn);
+    }
+
+    @Override
+    public Object getDogs(boolean checkedIn) throws SQLException {
+        return manager.getDogs(checkedIn, conn);
+    }
+
+    @Override
+    public Object generateAttendanceReport() throws SQLException {
+        return manager.generateAttendanceReport(conn);
+    }
+
+    @Override
+    public boolean updateDog(int id) throws SQLException {
+        Dog dog = manager.findDogById(id, conn);
+        dog.setFood((dog.getFood() + 1) % 4);
+        return manager.updateDog(id, dog, conn);
+    }
+
+    @Override
+    public boolean addDog(int id) throws SQLException {
+        return manager.addDog(BenchmarkData.randomDog(random, id), conn);
+    }
+
+    @Override
+    public void removeAddedDogs() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM dogs WHERE id > " + dogCount);
+        }
+    }
+
+    @Override
+    public void prepareImport() throws SQLException {
+        removeAddedDogs();
+        importer = new DogManager();
+    }
+
+    @Override
+    public Object importRoster() throws Exception {
+        return importer.importFromFile(rosterFile.getPath(), conn);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        conn.close();
+        rosterFile.delete();
+        dbFile.delete();
+        new File(dbFile.getPath() + "-wal").delete();
+        new File(dbFile.getPath() + "-shm").delete();
+    }
+
+    /**
+     * Writes a roster file of made-up dogs with IDs firstId and up.
+     */
+    private static void writeRoster(File file, int firstId, int count) throws IOException {
+        Random random = new Random(11);
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8)) {
+            for (int id = firstId; id < firstId + count; id++) {
+                Dog dog = BenchmarkData.randomDog(random, id);
+                out.println(dog.getId() + "," + dog.getName() + "," + dog.getBreed() + "," + dog.getDob() + ","
+                        + dog.getFood() + "," + dog.getGender() + "," + dog.getSpayedNeutered() + "," + dog.isCheckedIn());
+            }
+        }
+    }
+}
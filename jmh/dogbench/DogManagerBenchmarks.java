@@ -0,0 +1,130 @@
+package dogbench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DogManagerBenchmarks class: JMH benchmarks for the DogManager operations the program uses most, against a
+ * temporary SQLite database of made-up dogs at several sizes. Each size gets its own database, made before
+ * anything is measured. Every result goes to a Blackhole (or is returned, which JMH does the same with), so
+ * the JIT can't skip the work.
+ * Run with "gradle jmh"; the results are written as JSON to build/results/jmh/results.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DogManagerBenchmarks {
+    @Param({"1000", "100000", "1000000"})
+    public int dogs;
+
+    private DogManagerFixture fixture;
+    // Counts the calls, to spread lookups and changes over every dog
+    private long calls;
+    // The ID addDog uses next; always above the dogs the database was filled with
+    private int nextNewId;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        fixture = DogManagerFixture.open(dogs);
+        nextNewId = dogs + 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        fixture.close();
+    }
+
+    /**
+     * Puts the database back to its first size after each iteration, so addDog doesn't keep growing it.
+     */
+    @TearDown(Level.Iteration)
+    public void removeAddedDogs() throws Exception {
+        fixture.removeAddedDogs();
+        nextNewId = dogs + 1;
+    }
+
+    /**
+     * Picks the next dog: every ID from 1 to dogs, in an order that jumps around the table.
+     */
+    private int nextId() {
+        return (int) (calls++ * 7919 % dogs) + 1;
+    }
+
+    @Benchmark
+    public Object dogToString() {
+        return fixture.dogToString();
+    }
+
+    @Benchmark
+    public Object findDogById() throws Exception {
+        return fixture.findDogById(nextId());
+    }
+
+    @Benchmark
+    public Object findDogByIdUncached() throws Exception {
+        return fixture.findDogByIdUncached(nextId());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void getDogs(Blackhole blackhole) throws Exception {
+        blackhole.consume(fixture.getDogs(false));
+        blackhole.consume(fixture.getDogs(true));
+    }
+
+    @Benchmark
+    public Object generateAttendanceReport() throws Exception {
+        return fixture.generateAttendanceReport();
+    }
+
+    @Benchmark
+    public boolean updateDog() throws Exception {
+        return fixture.updateDog(nextId());
+    }
+
+    @Benchmark
+    public boolean addDog() throws Exception {
+        return fixture.addDog(nextNewId++);
+    }
+
+    /**
+     * Imports the same roster file of new dogs once per iteration, into a new DogManager, after the dogs
+     * the last import added are removed.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public Object loadFromFile(ImportRun run) throws Exception {
+        return fixture.importRoster();
+    }
+
+    /**
+     * ImportRun class: gets the database and a new DogManager ready before each import.
+     */
+    @State(Scope.Benchmark)
+    public static class ImportRun {
+        @Setup(Level.Iteration)
+        public void prepare(DogManagerBenchmarks benchmarks) throws Exception {
+            benchmarks.fixture.prepareImport();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package dogbench;
+
+import java.sql.SQLException;
+
+/**
+ * DogManagerFixture interface: a temporary database of made-up dogs and the DogManager the JMH benchmarks measure.
+ * JMH only runs benchmarks that are in a named package, and code in a named package can't use the program's
+ * classes, which are in the default package. So the benchmarks call DogManager through this interface, and the
+ * class that does the work (DogManagerJmhFixture, in the default package) is found by name once, before
+ * anything is measured.
+ */
+public interface DogManagerFixture extends AutoCloseable {
+    /**
+     * Creates a database holding dogCount made-up dogs, with a warm DogManager and a cold one.
+     * @param dogCount The number of dogs, with IDs 1 to dogCount.
+     * @return Returns the fixture; close it to delete the database.
+     * @throws Exception If the database can't be made.
+     */
+    static DogManagerFixture open(int dogCount) throws Exception {
+        return (DogManagerFixture) Class.forName("DogManagerJmhFixture")
+                .getDeclaredConstructor(int.class)
+                .newInstance(dogCount);
+    }
+
+    /**
+     * Formats a dog with Dog.toString.
+     * @return Returns the text.
+     */
+    Object dogToString();
+
+    /**
+     * Finds a dog with the DogManager whose cache holds every dog.
+     * @param id The dog's ID.
+     * @return Returns the dog.
+     * @throws SQLException If the dog can't be read.
+     */
+    Object findDogById(int id) throws SQLException;
+
+    /**
+     * Finds a dog with a DogManager that caches one dog, so the database is read nearly every time.
+     * @param id The dog's ID.
+     * @return Returns the dog.
+     * @throws SQLException If the dog can't be read.
+     */
+    Object findDogByIdUncached(int id) throws SQLException;
+
+    /**
+     * Reads every dog, or every checked-in dog.
+     * @param checkedIn True for only the checked-in dogs.
+     * @return Returns the dogs.
+     * @throws SQLException If the dogs can't be read.
+     */
+    Object getDogs(boolean checkedIn) throws SQLException;
+
+    /**
+     * Makes the attendance report text.
+     * @return Returns the report.
+     * @throws SQLException If the checked-in dogs can't be read.
+     */
+    Object generateAttendanceReport() throws SQLException;
+
+    /**
+     * Changes one dog's food with updateDog, after looking it up in the cache.
+     * @param id The dog's ID.
+     * @return Returns true if the dog was updated.
+     * @throws SQLException If the dog can't be written.
+     */
+    boolean updateDog(int id) throws SQLException;
+
+    /**
+     * Adds a made-up dog with addDog.
+     * @param id The new dog's ID; it must not be in use.
+     * @return Returns true if the dog was added.
+     * @throws SQLException If the dog can't be written.
+     */
+    boolean addDog(int id) throws SQLException;
+
+    /**
+     * Removes every dog added after the database was filled, putting it back to its first size.
+     * @throws SQLException If the dogs can't be removed.
+     */
+    void removeAddedDogs() throws SQLException;
+
+    /**
+     * Gets ready for importRoster: removes the dogs the last import added and makes a new DogManager for the next one.
+     * @throws SQLException If the dogs can't be removed.
+     */
+    void prepareImport() throws SQLException;
+
+    /**
+     * Imports a roster file of new dogs with importFromFile (the work loadFromFile does, without its result dialog).
+     * @return Returns the import result.
+     * @throws Exception If the file or the database can't be read or written.
+     */
+    Object importRoster() throws Exception;
+}
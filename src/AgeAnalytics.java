@@ -0,0 +1,300 @@
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * AgeAnalytics class: keeps the number of dogs in each age band (puppies, adults, seniors) for the whole roster.
+ * The dogs are kept in a histogram by date of birth: for every birthday, the IDs of the dogs born on it.
+ * The count for each band is kept up to date as dogs are added, changed, and removed, so reading it
+ * takes the same time for any roster. On a new day the counts are worked out again from the histogram,
+ * which has one entry per birthday rather than per dog.
+ * The dogs in a band are one range of the histogram, youngest first.
+ * DogManager keeps it in step with the database. All methods are synchronized.
+ */
+public class AgeAnalytics {
+    // Birthday of the dogs whose date of birth can't be read; they count as adults
+    private static final int NO_DATE = CompactDog.NO_DATE;
+
+    // Dog IDs by birthday (days since 1970-01-01)
+    private TreeMap<Integer, IdList> births = new TreeMap<>();
+    // Number of dogs in each age band, by AgeBand ordinal
+    private final int[] bandCounts = new int[AgeBand.values().length];
+    // Dogs whose date of birth can't be read
+    private int unknownCount = 0;
+    // Birthday of every dog, by ID, so a dog can be taken out without knowing how it was before
+    private IntIntMap birthdays = new IntIntMap();
+
+    private final Clock clock;
+    // The day the band counts are for, and the latest birthdays of adults and seniors on that day
+    private LocalDate day;
+    private long lastAdultBirthDay;
+    private long lastSeniorBirthDay;
+    // False until the analytics have been filled; changes before then are ignored
+    private boolean loaded = false;
+
+    /**
+     * Creates empty analytics that use the computer's clock and time zone.
+     */
+    public AgeAnalytics() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates empty analytics that get the date from a clock, e.g. a fixed clock in a test.
+     * @param clock The clock that gives today's date, in the daycare's time zone.
+     */
+    public AgeAnalytics(Clock clock) {
+        this.clock = clock;
+        setDay(LocalDate.now(clock));
+    }
+
+    /**
+     * Fills the analytics with every dog, replacing anything in them.
+     * @param dogs Every dog in the database.
+     */
+    public synchronized void load(Iterable<Dog> dogs) {
+        clear();
+        for (Dog dog : dogs) {
+            add(dog);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Takes over every dog in other analytics and marks these as loaded; the other analytics are left empty.
+     * Used to fill the analytics off to the side (new analytics and add() for every dog) while these keep
+     * answering, then swap the result in all at once. The band counts are worked out again for today.
+     * @param other The filled analytics; only the calling thread may be using them.
+     */
+    public synchronized void replaceWith(AgeAnalytics other) {
+        births = other.births;
+        birthdays = other.birthdays;
+        unknownCount = other.unknownCount;
+        other.births = new TreeMap<>();
+        other.birthdays = new IntIntMap();
+        other.unknownCount = 0;
+        Arrays.fill(other.bandCounts, 0);
+        recount(LocalDate.now(clock));
+        loaded = true;
+    }
+
+    /**
+     * Empties the analytics and marks them as not loaded.
+     */
+    public synchronized void clear() {
+        births = new TreeMap<>();
+        birthdays = new IntIntMap();
+        Arrays.fill(bandCounts, 0);
+        unknownCount = 0;
+        setDay(LocalDate.now(clock));
+        loaded = false;
+    }
+
+    /**
+     * Checks if the analytics have been filled.
+     * @return Returns true if every dog is counted.
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Adds a dog, replacing any dog with the same ID.
+     * @param dog The dog to add.
+     */
+    public synchronized void add(Dog dog) {
+        add(dog.getId(), dog.getDobEpochDay());
+    }
+
+    /**
+     * Adds a dog by its ID and birthday, replacing any dog with the same ID.
+     * @param id The dog's ID.
+     * @param dobEpochDay The date of birth as days since 1970-01-01, or CompactDog.NO_DATE.
+     */
+    synchronized void add(int id, int dobEpochDay) {
+        remove(id);
+        newDayCheck();
+        IdList born = births.get(dobEpochDay);
+        if (born == null) {
+            born = new IdList();
+            births.put(dobEpochDay, born);
+        }
+        born.add(id);
+        bandCounts[band(dobEpochDay).ordinal()]++;
+        if (dobEpochDay == NO_DATE) {
+            unknownCount++;
+        }
+        birthdays.put(id, dobEpochDay);
+    }
+
+    /**
+     * Takes a dog out.
+     * @param id The dog's ID.
+     */
+    public synchronized void remove(int id) {
+        if (!birthdays.containsKey(id)) {
+            return;
+        }
+        newDayCheck();
+        int dobEpochDay = birthdays.get(id, NO_DATE);
+        birthdays.remove(id);
+        IdList born = births.get(dobEpochDay);
+        born.remove(id);
+        if (born.size == 0) {
+            births.remove(dobEpochDay);
+        }
+        bandCounts[band(dobEpochDay).ordinal()]--;
+        if (dobEpochDay == NO_DATE) {
+            unknownCount--;
+        }
+    }
+
+    /**
+     * Updates the counts for one dog that was added, changed, or removed.
+     * @param before The dog as it was, or null if it was just added; not needed, since the birthday is kept by ID.
+     * @param after The dog as it is now, or null if it was just removed.
+     */
+    public synchronized void dogChanged(Dog before, Dog after) {
+        if (!loaded) {
+            return; // The changes will be picked up when the analytics are loaded
+        }
+        if (after != null) {
+            add(after);
+        } else {
+            remove(before.getId());
+        }
+    }
+
+    /**
+     * Gets the number of dogs in an age band today.
+     * @param band The age band.
+     * @return Returns the number of dogs.
+     */
+    public synchronized int getCount(AgeBand band) {
+        newDayCheck();
+        return bandCounts[band.ordinal()];
+    }
+
+    /**
+     * Gets the number of dogs counted.
+     * @return Returns the number of dogs.
+     */
+    public synchronized int getDogCount() {
+        return birthdays.size();
+    }
+
+    /**
+     * Gets the number of dogs whose date of birth can't be read. They are counted as adults.
+     * @return Returns the number of dogs.
+     */
+    public synchronized int getUnknownCount() {
+        return unknownCount;
+    }
+
+    /**
+     * Lists the dogs in an age band today, youngest first. Dogs born on the same day are in no set order.
+     * @param band The age band.
+     * @return Returns the dogs' IDs.
+     */
+    public synchronized int[] getDogIds(AgeBand band) {
+        newDayCheck();
+        int[] found = new int[bandCounts[band.ordinal()]];
+        int count = 0;
+        for (Map.Entry<Integer, IdList> entry : births.descendingMap().entrySet()) {
+            if (band(entry.getKey()) == band) {
+                IdList born = entry.getValue();
+                System.arraycopy(born.ids, 0, found, count, born.size);
+                count += born.size;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Counts the dogs by age in whole years today; dogs whose date of birth can't be read (or is after today) are left out.
+     * @return Returns the number of dogs of each age, where index 0 is dogs under 1 year old; empty if there are none.
+     */
+    public synchronized int[] getAgeHistogram() {
+        newDayCheck();
+        long today = day.toEpochDay();
+        NavigableMap<Integer, IdList> born = births.subMap(NO_DATE, false, (int) today, true);
+        if (born.isEmpty()) {
+            return new int[0];
+        }
+        int oldest = (int) ChronoUnit.YEARS.between(LocalDate.ofEpochDay(born.firstKey()), day);
+        int[] histogram = new int[oldest + 1];
+        // Walk from the youngest dogs back, one year of age at a time
+        int age = 0;
+        long lastBirthDay = AgeBand.lastBirthDay(1, day);
+        for (Map.Entry<Integer, IdList> entry : born.descendingMap().entrySet()) {
+            while (entry.getKey() <= lastBirthDay) {
+                age++;
+                lastBirthDay = AgeBand.lastBirthDay(age + 1, day);
+            }
+            histogram[age] += entry.getValue().size;
+        }
+        return histogram;
+    }
+
+    /**
+     * Writes the counts for each age band and the number of dogs of each age, e.g. for the report.
+     * @param out The buffer to write to.
+     * @return Returns out, so calls can be chained.
+     */
+    public synchronized StringBuilder appendTo(StringBuilder out) {
+        out.append("Ages of All Dogs:\n");
+        for (AgeBand band : AgeBand.values()) {
+            out.append("  - ").append(band.getTitle()).append(": ").append(getCount(band)).append("\n");
+        }
+        if (unknownCount > 0) {
+            out.append("  (").append(unknownCount).append(" with no readable date of birth, counted as adults)\n");
+        }
+        int[] histogram = getAgeHistogram();
+        if (histogram.length > 0) {
+            out.append("Dogs by age in years:");
+            for (int age = 0; age < histogram.length; age++) {
+                out.append(age == 0 ? " " : ", ").append(age).append(": ").append(histogram[age]);
+            }
+            out.append("\n");
+        }
+        return out;
+    }
+
+    // ---- Helpers ----
+
+    private AgeBand band(int dobEpochDay) {
+        return AgeBand.forBirthDay(dobEpochDay, day.toEpochDay(), lastAdultBirthDay, lastSeniorBirthDay);
+    }
+
+    private void setDay(LocalDate today) {
+        day = today;
+        lastAdultBirthDay = AgeBand.lastBirthDay(AgeBand.ADULT_YEARS, today);
+        lastSeniorBirthDay = AgeBand.lastBirthDay(AgeBand.SENIOR_YEARS, today);
+    }
+
+    /**
+     * Works out the band counts again from the histogram when the day has changed, since dogs move
+     * from one band to the next on their birthdays.
+     */
+    private void newDayCheck() {
+        LocalDate today = LocalDate.now(clock);
+        if (!today.equals(day)) {
+            recount(today);
+        }
+    }
+
+    /**
+     * Works out the band counts from the histogram for the given day.
+     */
+    private void recount(LocalDate today) {
+        setDay(today);
+        Arrays.fill(bandCounts, 0);
+        for (Map.Entry<Integer, IdList> entry : births.entrySet()) {
+            bandCounts[band(entry.getKey()).ordinal()] += entry.getValue().size;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import java.time.LocalDate;
+
+/**
+ * AgeBand enum: the stage of life a dog is in on a given day, which changes what and how much it eats.
+ * Puppies are under 1 year old and seniors are 7 or older; every other dog is an adult.
+ * A dog whose date of birth can't be read counts as an adult.
+ */
+public enum AgeBand {
+    PUPPY("puppy", "Puppies"),
+    ADULT("adult", "Adults"),
+    SENIOR("senior", "Seniors");
+
+    // Age in whole years at which each band starts
+    static final int ADULT_YEARS = 1;
+    static final int SENIOR_YEARS = 7;
+
+    private final String label;
+    private final String title;
+
+    AgeBand(String label, String title) {
+        this.label = label;
+        this.title = title;
+    }
+
+    /**
+     * Gets the lower-case name used in reports, e.g. "puppy".
+     * @return Returns the label.
+     */
+    public String getLabel() { return label; }
+
+    /**
+     * Gets the name used as a heading, e.g. "Puppies".
+     * @return Returns the title.
+     */
+    public String getTitle() { return title; }
+
+    /**
+     * Works out which band a dog of a given age is in.
+     * @param years The dog's age in whole years.
+     * @return Returns the age band.
+     */
+    public static AgeBand forAge(long years) {
+        if (years < ADULT_YEARS) {
+            return PUPPY;
+        }
+        return years < SENIOR_YEARS ? ADULT : SENIOR;
+    }
+
+    /**
+     * Works out which band a dog is in on a given day.
+     * @param dob The date of birth, in YYYY-MM-DD format.
+     * @param on The day to work out the age for.
+     * @return Returns the age band, or ADULT if the date of birth can't be read or is after the day.
+     */
+    public static AgeBand forBirthDate(String dob, LocalDate on) {
+        return forBirthDay(CompactDog.dobToEpochDay(dob), on);
+    }
+
+    /**
+     * Works out which band a dog is in on a given day, from its date of birth as a day number.
+     * @param dobEpochDay The date of birth as days since 1970-01-01, or CompactDog.NO_DATE.
+     * @param on The day to work out the age for.
+     * @return Returns the age band, or ADULT if the date of birth is unknown or after the day.
+     */
+    public static AgeBand forBirthDay(int dobEpochDay, LocalDate on) {
+        return forBirthDay(dobEpochDay, on.toEpochDay(), lastBirthDay(ADULT_YEARS, on), lastBirthDay(SENIOR_YEARS, on));
+    }
+
+    /**
+     * Works out the band from day numbers worked out beforehand, for callers placing many dogs on the same day.
+     * @param dobEpochDay The date of birth as days since 1970-01-01, or CompactDog.NO_DATE.
+     * @param today The day to work out the age for.
+     * @param lastAdultBirthDay The latest birthday of a dog that is an adult on that day.
+     * @param lastSeniorBirthDay The latest birthday of a dog that is a senior on that day.
+     * @return Returns the age band.
+     */
+    static AgeBand forBirthDay(int dobEpochDay, long today, long lastAdultBirthDay, long lastSeniorBirthDay) {
+        if (dobEpochDay == CompactDog.NO_DATE || dobEpochDay > today) {
+            return ADULT;
+        }
+        if (dobEpochDay > lastAdultBirthDay) {
+            return PUPPY;
+        }
+        return dobEpochDay > lastSeniorBirthDay ? ADULT : SENIOR;
+    }
+
+    /**
+     * Gets the latest date of birth of a dog that is at least a number of years old on a day, as a day number.
+     * @param years The age in years.
+     * @param on The day.
+     * @return Returns the day number of the date of birth.
+     */
+    static long lastBirthDay(int years, LocalDate on) {
+        return on.minusYears(years).toEpochDay();
+    }
+}
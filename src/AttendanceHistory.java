@@ -0,0 +1,258 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * AttendanceHistory class: answers questions about past attendance, such as how many dogs were
+ * here each hour or day, and how long a stay lasts on average.
+ * The answers come from the hourly totals AttendanceLog keeps in attendance_hourly, plus the
+ * stays still going on in open_stays, so a month is about 700 rows no matter how many
+ * check-ins there were. The expected feeding plan for a day is the exception: it reads the check-ins
+ * of a few past days, since it needs to know which dogs came.
+ */
+public class AttendanceHistory {
+    private static final String SQL_SELECT_HOURS = "SELECT hour, check_ins, check_outs, present_ms, stays, stay_ms "
+            + "FROM attendance_hourly WHERE hour >= ? AND hour < ? ORDER BY hour";
+    private static final String SQL_SELECT_STAY_TOTALS = "SELECT SUM(stays), SUM(stay_ms) "
+            + "FROM attendance_hourly WHERE hour >= ? AND hour < ?";
+    private static final String SQL_SELECT_OPEN_STAYS = "SELECT since FROM open_stays";
+    // The dogs that checked in during a time range, each once; dogs removed since then are left out
+    private static final String SQL_SELECT_DOGS_CHECKED_IN = "SELECT DISTINCT d.id, d.breed, d.dob, d.food "
+            + "FROM checkin_events e JOIN dogs d ON d.id = e.dog_id "
+            + "WHERE e.checked_in = 1 AND e.at >= ? AND e.at < ?";
+
+    /**
+     * Period class: attendance during one hour or one day.
+     */
+    public static class Period {
+        private final long start;
+        private final long end;
+        private final long checkIns;
+        private final long checkOuts;
+        private final long presentMillis;
+
+        Period(long start, long end, long checkIns, long checkOuts, long presentMillis) {
+            this.start = start;
+            this.end = end;
+            this.checkIns = checkIns;
+            this.checkOuts = checkOuts;
+            this.presentMillis = presentMillis;
+        }
+
+        public long getStart() { return start; }
+        public long getEnd() { return end; }
+        public long getCheckIns() { return checkIns; }
+        public long getCheckOuts() { return checkOuts; }
+        public long getPresentMillis() { return presentMillis; }
+
+        /**
+         * Gets the average number of dogs here during the period; 2.5 means two dogs all the time and one half the time.
+         * @return Returns the average number of dogs present.
+         */
+        public double getAverageDogs() {
+            return end > start ? (double) presentMillis / (end - start) : 0;
+        }
+    }
+
+    /**
+     * Gets the attendance for every hour in a time range, including hours nobody was here.
+     * @param fromMillis The start of the range, in milliseconds since 1970 UTC; rounded down to the hour.
+     * @param toMillis The end of the range (not included); rounded up to the hour.
+     * @param conn This is the active database connection.
+     * @return Returns one period per hour, in order.
+     * @throws SQLException If the totals can't be read.
+     */
+    public static List<Period> occupancyByHour(long fromMillis, long toMillis, Connection conn) throws SQLException {
+        long firstHour = AttendanceLog.hourOf(fromMillis);
+        long endHour = AttendanceLog.hourOf(toMillis - 1) + 1;
+        TreeMap<Long, long[]> hours = readHours(firstHour, endHour, conn);
+
+        List<Period> periods = new ArrayList<>();
+        for (long hour = firstHour; hour < endHour; hour++) {
+            long[] totals = hours.get(hour);
+            long start = hour * AttendanceLog.HOUR_MILLIS;
+            if (totals == null) {
+                periods.add(new Period(start, start + AttendanceLog.HOUR_MILLIS, 0, 0, 0));
+            } else {
+                periods.add(new Period(start, start + AttendanceLog.HOUR_MILLIS, totals[AttendanceLog.CHECK_INS],
+                        totals[AttendanceLog.CHECK_OUTS], totals[AttendanceLog.PRESENT_MS]));
+            }
+        }
+        return periods;
+    }
+
+    /**
+     * Gets the attendance for every day in a range of dates, including days nobody was here.
+     * @param from The first day.
+     * @param to The last day (included).
+     * @param zone The time zone the days are in, usually ZoneId.systemDefault().
+     * @param conn This is the active database connection.
+     * @return Returns one period per day, in order.
+     * @throws SQLException If the totals can't be read.
+     */
+    public static List<Period> occupancyByDay(LocalDate from, LocalDate to, ZoneId zone, Connection conn) throws SQLException {
+        long fromMillis = from.atStartOfDay(zone).toInstant().toEpochMilli();
+        long toMillis = to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        TreeMap<Long, long[]> hours = readHours(AttendanceLog.hourOf(fromMillis), AttendanceLog.hourOf(toMillis - 1) + 1, conn);
+
+        List<Period> periods = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            // Days aren't always 24 hours long when the clocks change. In a time zone that isn't a whole number
+            // of hours from UTC, the hour a day starts in is counted in that day
+            long start = day.atStartOfDay(zone).toInstant().toEpochMilli();
+            long end = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            long checkIns = 0;
+            long checkOuts = 0;
+            long present = 0;
+            for (long[] totals : hours.subMap(AttendanceLog.hourOf(start), AttendanceLog.hourOf(end)).values()) {
+                checkIns += totals[AttendanceLog.CHECK_INS];
+                checkOuts += totals[AttendanceLog.CHECK_OUTS];
+                present += totals[AttendanceLog.PRESENT_MS];
+            }
+            periods.add(new Period(start, end, checkIns, checkOuts, present));
+        }
+        return periods;
+    }
+
+    /**
+     * Gets the average length of the stays that ended in a time range.
+     * @param fromMillis The start of the range, in milliseconds since 1970 UTC; rounded down to the hour.
+     * @param toMillis The end of the range (not included); rounded up to the hour.
+     * @param conn This is the active database connection.
+     * @return Returns the average stay in milliseconds, or 0 if no stays ended in the range.
+     * @throws SQLException If the totals can't be read.
+     */
+    public static long averageStayMillis(long fromMillis, long toMillis, Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_SELECT_STAY_TOTALS)) {
+            stmt.setLong(1, AttendanceLog.hourOf(fromMillis));
+            stmt.setLong(2, AttendanceLog.hourOf(toMillis - 1) + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return 0;
+                }
+                long stays = rs.getLong(1);
+                return stays == 0 ? 0 : rs.getLong(2) / stays;
+            }
+        }
+    }
+
+    /**
+     * Writes a short summary of the last few days: the average number of dogs and check-ins per day,
+     * and the average stay.
+     * @param out The buffer to write to.
+     * @param days The number of days, ending today.
+     * @param zone The time zone the days are in.
+     * @param conn This is the active database connection.
+     * @return Returns out, so calls can be chained.
+     * @throws SQLException If the totals can't be read.
+     */
+    public static StringBuilder appendRecentDays(StringBuilder out, int days, ZoneId zone, Connection conn) throws SQLException {
+        LocalDate today = LocalDate.now(zone);
+        List<Period> periods = occupancyByDay(today.minusDays(days - 1), today, zone, conn);
+        out.append("Attendance, last ").append(days).append(" days:\n");
+        for (int i = 0; i < periods.size(); i++) {
+            Period period = periods.get(i);
+            out.append("  ").append(today.minusDays(days - 1 - i)).append(": ");
+            out.append(String.format("%.1f", period.getAverageDogs())).append(" dogs on average, ");
+            out.append(period.getCheckIns()).append(" check-ins\n");
+        }
+        long averageStay = averageStayMillis(periods.get(0).getStart(), periods.get(periods.size() - 1).getEnd(), conn);
+        out.append("Average stay: ").append(averageStay / 3_600_000).append(" h ")
+                .append(averageStay / 60_000 % 60).append(" min\n");
+        return out;
+    }
+
+    /**
+     * Works out the feeding plan expected on a day from the dogs that came on the same day of the week
+     * in the last few weeks: each food, size, and age band gets the average number of dogs over the
+     * days anyone came (days the daycare was closed don't lower the average). Ages are worked out for
+     * the day of the plan, and each dog's current breed and food are used.
+     * @param date The day to plan for, e.g. tomorrow.
+     * @param weeks The number of past weeks to look at.
+     * @param foodTypes The readable name of each food type, by food code.
+     * @param zone The time zone the days are in, usually ZoneId.systemDefault().
+     * @param conn This is the active database connection.
+     * @return Returns the expected feeding plan; it has no dogs if there is no history yet.
+     * @throws SQLException If the check-ins can't be read.
+     */
+    public static FeedingPlan expectedFeedingPlan(LocalDate date, int weeks, String[] foodTypes, ZoneId zone,
+                                                  Connection conn) throws SQLException {
+        double[] dogs = new double[FeedingPlan.cellCount(foodTypes.length)];
+        LocalDate today = LocalDate.now(zone);
+        // Only whole days that are over count, so today is skipped when planning for next week
+        LocalDate day = date.minusWeeks(1);
+        while (!day.isBefore(today)) {
+            day = day.minusWeeks(1);
+        }
+        int openDays = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_SELECT_DOGS_CHECKED_IN)) {
+            for (int week = 0; week < weeks; week++, day = day.minusWeeks(1)) {
+                stmt.setLong(1, day.atStartOfDay(zone).toInstant().toEpochMilli());
+                stmt.setLong(2, day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+                boolean open = false;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        open = true;
+                        int food = rs.getInt("food");
+                        if (food >= 0 && food < foodTypes.length) {
+                            dogs[FeedingPlan.cell(food, DogSize.forBreed(rs.getString("breed")),
+                                    AgeBand.forBirthDate(rs.getString("dob"), date))]++;
+                        }
+                    }
+                }
+                if (open) {
+                    openDays++;
+                }
+            }
+        }
+        if (openDays > 1) {
+            for (int i = 0; i < dogs.length; i++) {
+                dogs[i] /= openDays;
+            }
+        }
+        String dayName = date.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+        String basis = "expected from " + openDays + " of the last " + weeks + " " + dayName + "s";
+        return new FeedingPlan(date, basis, true, foodTypes, dogs);
+    }
+
+    /**
+     * Reads the hourly totals for a range of hours, with the time of the stays still going on added in.
+     */
+    private static TreeMap<Long, long[]> readHours(long firstHour, long endHour, Connection conn) throws SQLException {
+        TreeMap<Long, long[]> hours = new TreeMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_SELECT_HOURS)) {
+            stmt.setLong(1, firstHour);
+            stmt.setLong(2, endHour);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long[] totals = AttendanceLog.totalsFor(hours, rs.getLong("hour"));
+                    totals[AttendanceLog.CHECK_INS] = rs.getLong("check_ins");
+                    totals[AttendanceLog.CHECK_OUTS] = rs.getLong("check_outs");
+                    totals[AttendanceLog.PRESENT_MS] = rs.getLong("present_ms");
+                    totals[AttendanceLog.STAYS] = rs.getLong("stays");
+                    totals[AttendanceLog.STAY_MS] = rs.getLong("stay_ms");
+                }
+            }
+        }
+
+        // Dogs still here have been present since they arrived; count that time up to now
+        long rangeStart = firstHour * AttendanceLog.HOUR_MILLIS;
+        long rangeEnd = Math.min(endHour * AttendanceLog.HOUR_MILLIS, System.currentTimeMillis());
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(SQL_SELECT_OPEN_STAYS)) {
+            while (rs.next()) {
+                AttendanceLog.addPresence(hours, Math.max(rs.getLong("since"), rangeStart), rangeEnd);
+            }
+        }
+        return hours;
+    }
+}
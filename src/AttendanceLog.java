@@ -0,0 +1,306 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AttendanceLog class: keeps a history of every check-in and check-out in the checkin_events table.
+ * Changes are queued by record() and written by a background thread, which takes everything waiting
+ * in the queue and writes it in one transaction (a "group commit"), so a rush of check-ins costs one
+ * commit instead of one per dog, and the caller never waits for the disk.
+ * In the same transaction the hourly totals in attendance_hourly are brought up to date, so
+ * AttendanceHistory can answer questions about a date range without reading the raw events.
+ * A check-in for a dog that is already checked in (or a check-out for one that isn't) changes nothing and isn't logged.
+ * That is decided inside the write transaction from open_stays, not from memory, so a dog checked in at
+ * one desk and checked out at another sharing the database is logged by both.
+ */
+public class AttendanceLog implements AutoCloseable {
+    // Most events written in one transaction
+    static final int MAX_BATCH = 1000;
+    static final long HOUR_MILLIS = 3_600_000L;
+
+    // Columns of a row of hourly totals, as kept in memory while a batch is rolled up
+    static final int CHECK_INS = 0;
+    static final int CHECK_OUTS = 1;
+    static final int PRESENT_MS = 2;
+    static final int STAYS = 3;
+    static final int STAY_MS = 4;
+
+    private static final String SQL_INSERT_EVENT = "INSERT INTO checkin_events (dog_id, at, checked_in) VALUES (?, ?, ?);";
+    // Opens a stay unless the dog already has one; changes no row if the dog is already checked in
+    private static final String SQL_OPEN_STAY = "INSERT INTO open_stays (dog_id, since) VALUES (?, ?) "
+            + "ON CONFLICT (dog_id) DO NOTHING;";
+    // Closes a stay and gives back when it started; returns no row if the dog isn't checked in (needs SQLite 3.35 or newer)
+    private static final String SQL_CLOSE_STAY = "DELETE FROM open_stays WHERE dog_id = ? RETURNING since;";
+    // Adds to the hour's totals, creating the row the first time (needs SQLite 3.24 or newer)
+    private static final String SQL_ADD_TO_HOUR = "INSERT INTO attendance_hourly "
+            + "(hour, check_ins, check_outs, present_ms, stays, stay_ms) VALUES (?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (hour) DO UPDATE SET "
+            + "check_ins = check_ins + excluded.check_ins, "
+            + "check_outs = check_outs + excluded.check_outs, "
+            + "present_ms = present_ms + excluded.present_ms, "
+            + "stays = stays + excluded.stays, "
+            + "stay_ms = stay_ms + excluded.stay_ms;";
+
+    /**
+     * Event class: one check-in or check-out waiting to be written.
+     */
+    private static final class Event {
+        final int dogId;
+        final boolean checkedIn;
+        final long at;
+
+        Event(int dogId, boolean checkedIn, long at) {
+            this.dogId = dogId;
+            this.checkedIn = checkedIn;
+            this.at = at;
+        }
+    }
+
+    // Only used by the writer thread
+    private final Connection conn;
+    private final BlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    // Events queued, and events the writer has finished with (written, skipped, or lost to an error)
+    private long queued = 0;
+    private long processed = 0;
+    private long failed = 0;
+    private long commits = 0;
+
+    /**
+     * Starts logging. The connection should be one nothing else uses, such as a second one from the pool;
+     * it isn't closed by this class.
+     * @param conn The database connection the writer thread uses, with the schema up to date.
+     */
+    public AttendanceLog(Connection conn) {
+        this.conn = conn;
+        writer = new Thread(this::writeLoop, "attendance-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a check-in or check-out that happened now.
+     * @param dogId The dog's ID.
+     * @param checkedIn True if the dog was checked in, false if it was checked out (or removed).
+     */
+    public void record(int dogId, boolean checkedIn) {
+        record(dogId, checkedIn, System.currentTimeMillis());
+    }
+
+    /**
+     * Queues a check-in or check-out. Returns at once; the event is written in the background.
+     * @param dogId The dog's ID.
+     * @param checkedIn True if the dog was checked in, false if it was checked out (or removed).
+     * @param atMillis When it happened, in milliseconds since 1970 UTC.
+     */
+    public void record(int dogId, boolean checkedIn, long atMillis) {
+        if (closed) {
+            return;
+        }
+        synchronized (this) {
+            queued++;
+        }
+        queue.add(new Event(dogId, checkedIn, atMillis));
+    }
+
+    /**
+     * Waits until every event queued so far has been handled: written, or lost to a database error (see getFailedCount).
+     * @param timeoutMillis The longest time to wait.
+     * @return Returns true if everything was handled in time.
+     * @throws InterruptedException If the wait is interrupted.
+     */
+    public synchronized boolean flush(long timeoutMillis) throws InterruptedException {
+        long target = queued;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (processed < target) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || !writer.isAlive()) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Writes everything still queued and stops the writer thread. Later events are ignored.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized long getQueuedCount() { return queued; }
+    public synchronized long getWrittenCount() { return processed - failed; }
+    public synchronized long getFailedCount() { return failed; }
+    public synchronized long getCommitCount() { return commits; }
+
+    /**
+     * The writer thread: waits for events and writes whatever has piled up, in one transaction.
+     */
+    private void writeLoop() {
+        List<Event> batch = new ArrayList<>(MAX_BATCH);
+        try (PreparedStatement stmtEvent = conn.prepareStatement(SQL_INSERT_EVENT);
+             PreparedStatement stmtOpen = conn.prepareStatement(SQL_OPEN_STAY);
+             PreparedStatement stmtClose = conn.prepareStatement(SQL_CLOSE_STAY);
+             PreparedStatement stmtHour = conn.prepareStatement(SQL_ADD_TO_HOUR)) {
+            conn.setAutoCommit(false);
+            while (!closed || !queue.isEmpty()) {
+                Event first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                boolean written = false;
+                try {
+                    writeBatch(batch, stmtEvent, stmtOpen, stmtClose, stmtHour);
+                    written = true;
+                } catch (SQLException ex) {
+                    conn.rollback();
+                }
+                finished(batch.size(), written);
+                batch.clear();
+            }
+        } catch (SQLException | InterruptedException ex) {
+            // The log can't be written any more; anything still queued is lost
+            synchronized (this) {
+                failed += queued - processed;
+                processed = queued;
+                notifyAll();
+            }
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException ex) {
+                // The connection is unusable anyway
+            }
+        }
+    }
+
+    /**
+     * Writes one batch of events and the hourly totals they change, and commits.
+     */
+    private void writeBatch(List<Event> batch, PreparedStatement stmtEvent, PreparedStatement stmtOpen,
+                            PreparedStatement stmtClose, PreparedStatement stmtHour) throws SQLException {
+        // Changes to the hourly totals, by hour
+        TreeMap<Long, long[]> hours = new TreeMap<>();
+        int events = 0;
+        for (Event event : batch) {
+            // Each stay is opened or closed at once, so the next event for the same dog sees it
+            if (event.checkedIn) {
+                stmtOpen.setInt(1, event.dogId);
+                stmtOpen.setLong(2, event.at);
+                if (stmtOpen.executeUpdate() == 0) {
+                    continue; // Already checked in
+                }
+                totalsFor(hours, hourOf(event.at))[CHECK_INS]++;
+            } else {
+                stmtClose.setInt(1, event.dogId);
+                try (ResultSet rs = stmtClose.executeQuery()) {
+                    if (!rs.next()) {
+                        continue; // Already checked out
+                    }
+                    addStay(hours, rs.getLong("since"), event.at);
+                }
+            }
+            stmtEvent.setInt(1, event.dogId);
+            stmtEvent.setLong(2, event.at);
+            stmtEvent.setBoolean(3, event.checkedIn);
+            stmtEvent.addBatch();
+            events++;
+        }
+        if (events > 0) {
+            stmtEvent.executeBatch();
+        }
+        for (Map.Entry<Long, long[]> hour : hours.entrySet()) {
+            long[] totals = hour.getValue();
+            stmtHour.setLong(1, hour.getKey());
+            stmtHour.setLong(2, totals[CHECK_INS]);
+            stmtHour.setLong(3, totals[CHECK_OUTS]);
+            stmtHour.setLong(4, totals[PRESENT_MS]);
+            stmtHour.setLong(5, totals[STAYS]);
+            stmtHour.setLong(6, totals[STAY_MS]);
+            stmtHour.addBatch();
+        }
+        if (!hours.isEmpty()) {
+            stmtHour.executeBatch();
+        }
+        conn.commit();
+    }
+
+    /**
+     * Counts a batch as done and wakes up anyone waiting in flush().
+     */
+    private synchronized void finished(int count, boolean written) {
+        processed += count;
+        if (written) {
+            commits++;
+        } else {
+            failed += count;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Adds a finished stay to the hourly totals: a check-out in the hour it ended, the stay's length
+     * in that hour too (for the average stay), and the time the dog was present in every hour it covers.
+     * @param hours Totals by hour; rows are added as needed.
+     * @param since When the dog was checked in, in milliseconds since 1970 UTC.
+     * @param until When the dog was checked out, in milliseconds since 1970 UTC.
+     */
+    static void addStay(TreeMap<Long, long[]> hours, long since, long until) {
+        // A clock set backwards can't make a stay shorter than nothing
+        until = Math.max(since, until);
+        long[] last = totalsFor(hours, hourOf(until));
+        last[CHECK_OUTS]++;
+        last[STAYS]++;
+        last[STAY_MS] += until - since;
+        addPresence(hours, since, until);
+    }
+
+    /**
+     * Adds the time a dog was present, from since to until, to every hour it covers.
+     * @param hours Totals by hour; rows are added as needed.
+     * @param since The start, in milliseconds since 1970 UTC.
+     * @param until The end, in milliseconds since 1970 UTC.
+     */
+    static void addPresence(TreeMap<Long, long[]> hours, long since, long until) {
+        for (long hour = hourOf(since); hour * HOUR_MILLIS < until; hour++) {
+            long start = Math.max(since, hour * HOUR_MILLIS);
+            long end = Math.min(until, (hour + 1) * HOUR_MILLIS);
+            totalsFor(hours, hour)[PRESENT_MS] += end - start;
+        }
+    }
+
+    /**
+     * Gets the totals for an hour, adding a row of zeros if there isn't one yet.
+     */
+    static long[] totalsFor(TreeMap<Long, long[]> hours, long hour) {
+        return hours.computeIfAbsent(hour, h -> new long[5]);
+    }
+
+    /**
+     * Gets the hour (since 1970 UTC) a time falls in.
+     * @param millis Milliseconds since 1970 UTC.
+     * @return Returns the hour number.
+     */
+    static long hourOf(long millis) {
+        return Math.floorDiv(millis, HOUR_MILLIS);
+    }
+}
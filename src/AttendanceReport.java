@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * AttendanceReport class: the attendance numbers at one moment, as a structured object.
+ * The counts and the checked-in dogs are taken at the same moment, when the report is created.
+ * The list of the dogs and the text version of the report are only built when they are asked for.
+ */
+public class AttendanceReport {
+    // Number of dogs checked in
+    private final int checkedInCount;
+    // Readable name of each food type, by food code
+    private final String[] foodTypes;
+    // Number of checked-in dogs for each food code
+    private final int[] foodTotals;
+    // Number of checked-in dogs in each age band, by AgeBand ordinal
+    private final int[] ageBandTotals;
+    // Builds the list of checked-in dogs the first time it is needed
+    private final Supplier<List<Dog>> detailSource;
+    private List<Dog> checkedInDogs;
+
+    /**
+     * Creates a report.
+     * @param checkedInCount The number of dogs checked in.
+     * @param foodTypes The readable name of each food type.
+     * @param foodTotals The number of checked-in dogs for each food code; copied.
+     * @param ageBandTotals The number of checked-in dogs in each age band, by AgeBand ordinal; copied.
+     * @param detailSource Builds the checked-in dogs, sorted by name, when they are first needed;
+     *                     they must be the dogs that were counted.
+     */
+    public AttendanceReport(int checkedInCount, String[] foodTypes, int[] foodTotals, int[] ageBandTotals,
+                            Supplier<List<Dog>> detailSource) {
+        this.checkedInCount = checkedInCount;
+        this.foodTypes = foodTypes;
+        this.foodTotals = foodTotals.clone();
+        this.ageBandTotals = ageBandTotals.clone();
+        this.detailSource = detailSource;
+    }
+
+    public int getCheckedInCount() { return checkedInCount; }
+    public int getFoodTypeCount() { return foodTotals.length; }
+    public String getFoodType(int food) { return foodTypes[food]; }
+    public int getFoodTotal(int food) { return foodTotals[food]; }
+    public int getAgeBandTotal(AgeBand band) { return ageBandTotals[band.ordinal()]; }
+
+    /**
+     * Gets the checked-in dogs, sorted by name.
+     * The list is built on the first call and reused after that.
+     * @return Returns an unmodifiable list of the checked-in dogs.
+     */
+    public synchronized List<Dog> getCheckedInDogs() {
+        if (checkedInDogs == null) {
+            checkedInDogs = Collections.unmodifiableList(detailSource.get());
+        }
+        return checkedInDogs;
+    }
+
+    /**
+     * Renders the full report as text: checked-in count, each checked-in dog's info, food needed, and ages.
+     * @return Returns a formatted String of the attendance report.
+     */
+    @Override
+    public String toString() {
+        // Room for the headings plus about one line of details per dog, so the buffer rarely has to grow
+        StringBuilder report = new StringBuilder(256 + checkedInCount * 128);
+        try {
+            appendTo(report);
+        } catch (IOException e) {
+            throw new AssertionError(e); // A StringBuilder never throws IOException
+        }
+        return report.toString();
+    }
+
+    /**
+     * Writes the full report, e.g. to a StringBuilder or a Writer, without building it as one string first.
+     * Each dog's details are written straight into out by DogRenderer.
+     * @param out Where to write.
+     * @throws IOException If out can't be written to.
+     */
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Attendance Report:\n");
+        out.append("--\n");
+        out.append("Dogs currently checked in: ");
+        DogRenderer.appendInt(out, checkedInCount);
+        out.append("\n");
+        out.append("--\n");
+        if (checkedInCount == 0) {
+            out.append("No dogs are currently checked in.\n");
+        } else {
+            out.append("Checked-In Dog Details:\n");
+            StringBuilder buffer = out instanceof StringBuilder ? (StringBuilder) out : null;
+            for (Dog dog : getCheckedInDogs()) {
+                if (buffer != null) {
+                    DogRenderer.appendText(buffer, dog).append('\n');
+                } else {
+                    DogRenderer.appendText(out, dog);
+                    out.append('\n');
+                }
+            }
+        }
+        out.append("--\n");
+        out.append("Food Needed Today:\n");
+        for (int i = 0; i < foodTotals.length; i++) {
+            out.append("  - ").append(foodTypes[i]).append(": ");
+            DogRenderer.appendInt(out, foodTotals[i]);
+            out.append("\n");
+        }
+        out.append("--\n");
+        out.append("Ages of Checked-In Dogs:\n");
+        for (AgeBand band : AgeBand.values()) {
+            out.append("  - ").append(band.getTitle()).append(": ");
+            DogRenderer.appendInt(out, ageBandTotals[band.ordinal()]);
+            out.append("\n");
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * AttendanceTracker class: keeps the attendance count and food totals up to date as dogs change.
+ * DogManager tells the tracker about every add, update, and remove, and the tracker adjusts its
+ * numbers for just that dog, so a report never has to rescan every checked-in dog.
+ * The same goes for the feeding plan: the dogs are also counted by food, size, and age band, so
+ * feedingPlan() only copies a few dozen numbers. Age bands depend on the day, so the first change or
+ * plan on a new day recounts the checked-in dogs once.
+ */
+public class AttendanceTracker {
+    // Checked-in dogs are listed by name, then by ID for dogs with the same name
+    static final Comparator<Dog> BY_NAME = Comparator.comparing(Dog::getName).thenComparingInt(Dog::getId);
+
+    // Readable name of each food type, by food code
+    private final String[] foodTypes;
+    // Number of checked-in dogs for each food code
+    private final int[] foodTotals;
+    // Number of checked-in dogs for each food code, size, and age band (see FeedingPlan.cell())
+    private final int[] feedingCounts;
+    // Number of checked-in dogs in each age band, by AgeBand ordinal; unlike feedingCounts, this includes dogs with unknown food codes
+    private final int[] ageBandTotals = new int[AgeBand.values().length];
+    // The day the age bands in feedingCounts were worked out for
+    private LocalDate feedingDay;
+    // Latest birthdays of adults and seniors on feedingDay, as day numbers, so placing a dog is two comparisons
+    private long lastAdultBirthDay;
+    private long lastSeniorBirthDay;
+    // Tells the tracker what day it is
+    private final Clock clock;
+    // The checked-in dogs, sorted by name; copies, so outside changes can't affect them
+    private final TreeSet<Dog> checkedIn = new TreeSet<>(BY_NAME);
+    // Checked-in dogs by ID, to find the sorted entry when a dog changes
+    private final DogIndex checkedInById = new DogIndex();
+    // The checked-in dogs in name order for reports, or null if they have changed since the last report
+    private Dog[] reportDogs;
+    // False until the tracker has been filled from the database
+    private boolean loaded = false;
+
+    /**
+     * Creates an empty tracker.
+     * @param foodTypes The readable name of each food type, by food code.
+     */
+    public AttendanceTracker(String[] foodTypes) {
+        this(foodTypes, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates an empty tracker that gets the date from a clock, e.g. a fixed clock in a test.
+     * @param foodTypes The readable name of each food type, by food code.
+     * @param clock The clock that gives today's date, in the daycare's time zone.
+     */
+    public AttendanceTracker(String[] foodTypes, Clock clock) {
+        this.foodTypes = foodTypes;
+        this.foodTotals = new int[foodTypes.length];
+        this.feedingCounts = new int[FeedingPlan.cellCount(foodTypes.length)];
+        this.clock = clock;
+        setFeedingDay(LocalDate.now(clock));
+    }
+
+    /**
+     * Fills the tracker with the dogs that are checked in right now, replacing anything it held.
+     * @param dogs The checked-in dogs.
+     */
+    public synchronized void load(List<Dog> dogs) {
+        checkedIn.clear();
+        checkedInById.clear();
+        Arrays.fill(foodTotals, 0);
+        Arrays.fill(feedingCounts, 0);
+        Arrays.fill(ageBandTotals, 0);
+        reportDogs = null;
+        setFeedingDay(LocalDate.now(clock));
+        for (Dog dog : dogs) {
+            if (dog.isCheckedIn()) {
+                checkIn(dog);
+            }
+        }
+        loaded = true;
+    }
+
+    public synchronized boolean isLoaded() { return loaded; }
+
+    /**
+     * Forgets every dog; the tracker has to be loaded again before it is used.
+     */
+    public synchronized void reset() {
+        loaded = false;
+        checkedIn.clear();
+        checkedInById.clear();
+        Arrays.fill(foodTotals, 0);
+        Arrays.fill(feedingCounts, 0);
+        Arrays.fill(ageBandTotals, 0);
+        reportDogs = null;
+    }
+
+    /**
+     * Updates the numbers for one dog that was added, changed, or removed.
+     * @param before The dog as it was, or null if it was just added.
+     * @param after The dog as it is now, or null if it was just removed.
+     */
+    public synchronized void dogChanged(Dog before, Dog after) {
+        if (!loaded) {
+            return; // The changes will be picked up when the tracker is loaded
+        }
+        recountIfNewDay();
+        int id = (before != null) ? before.getId() : after.getId();
+        // Always take out the tracker's own copy, which may differ from "before"
+        Dog tracked = checkedInById.get(id);
+        if (tracked != null) {
+            checkOut(tracked);
+        }
+        if (after != null && after.isCheckedIn()) {
+            checkIn(after);
+        }
+    }
+
+    /**
+     * Creates a report from the current numbers. The dogs in the report are the ones checked in now,
+     * taken under the same lock as the numbers; copies of them are only made if the report asks for them.
+     * @return Returns the attendance report.
+     */
+    public synchronized AttendanceReport snapshot() {
+        recountIfNewDay();
+        if (reportDogs == null) {
+            // Reports share one array until the next change; the tracker's copies are never changed
+            reportDogs = checkedIn.toArray(new Dog[0]);
+        }
+        Dog[] dogs = reportDogs;
+        return new AttendanceReport(dogs.length, foodTypes, foodTotals, ageBandTotals, () -> copyDogs(dogs));
+    }
+
+    /**
+     * Gets today's feeding plan for the dogs checked in now. Takes the same time however many dogs are checked in.
+     * @return Returns the feeding plan.
+     */
+    public synchronized FeedingPlan feedingPlan() {
+        recountIfNewDay();
+        double[] dogs = new double[feedingCounts.length];
+        for (int i = 0; i < dogs.length; i++) {
+            dogs[i] = feedingCounts[i];
+        }
+        return new FeedingPlan(feedingDay, "checked in now", false, foodTypes, dogs);
+    }
+
+    /**
+     * Copies dogs for a report, so changes to the report's dogs can't affect the tracker.
+     */
+    private static List<Dog> copyDogs(Dog[] dogs) {
+        List<Dog> copies = new ArrayList<>(dogs.length);
+        for (Dog dog : dogs) {
+            copies.add(new Dog(dog));
+        }
+        return copies;
+    }
+
+    private void checkIn(Dog dog) {
+        Dog copy = new Dog(dog);
+        checkedIn.add(copy);
+        checkedInById.put(copy);
+        reportDogs = null;
+        ageBandTotals[ageBand(copy).ordinal()]++;
+        int food = copy.getFood();
+        if (food >= 0 && food < foodTotals.length) {
+            foodTotals[food]++;
+            feedingCounts[feedingCell(copy)]++;
+        }
+    }
+
+    private void checkOut(Dog dog) {
+        checkedIn.remove(dog);
+        checkedInById.remove(dog.getId());
+        reportDogs = null;
+        ageBandTotals[ageBand(dog).ordinal()]--;
+        int food = dog.getFood();
+        if (food >= 0 && food < foodTotals.length) {
+            foodTotals[food]--;
+            feedingCounts[feedingCell(dog)]--;
+        }
+    }
+
+    /**
+     * Gets the feeding plan cell a checked-in dog is counted in today.
+     */
+    private int feedingCell(Dog dog) {
+        return FeedingPlan.cell(dog.getFood(), DogSize.forBreed(dog.getBreed()), ageBand(dog));
+    }
+
+    /**
+     * Gets the age band a checked-in dog is counted in today.
+     */
+    private AgeBand ageBand(Dog dog) {
+        return AgeBand.forBirthDay(dog.getDobEpochDay(), feedingDay.toEpochDay(), lastAdultBirthDay, lastSeniorBirthDay);
+    }
+
+    private void setFeedingDay(LocalDate day) {
+        feedingDay = day;
+        lastAdultBirthDay = AgeBand.lastBirthDay(AgeBand.ADULT_YEARS, day);
+        lastSeniorBirthDay = AgeBand.lastBirthDay(AgeBand.SENIOR_YEARS, day);
+    }
+
+    /**
+     * Recounts the feeding plan and the age bands when the day has changed since the age bands were worked out,
+     * since some dogs may have had a birthday that moves them to another band.
+     */
+    private void recountIfNewDay() {
+        LocalDate today = LocalDate.now(clock);
+        if (today.equals(feedingDay)) {
+            return;
+        }
+        setFeedingDay(today);
+        Arrays.fill(feedingCounts, 0);
+        Arrays.fill(ageBandTotals, 0);
+        for (Dog dog : checkedIn) {
+            ageBandTotals[ageBand(dog).ordinal()]++;
+            int food = dog.getFood();
+            if (food >= 0 && food < foodTotals.length) {
+                feedingCounts[feedingCell(dog)]++;
+            }
+        }
+    }
+}
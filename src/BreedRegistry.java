@@ -0,0 +1,83 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * BreedRegistry class: gives every breed name a small ID number, so compact records can store
+ * the number instead of their own copy of the name.
+ * A roster has a handful of breeds and many dogs, so each breed name is kept once here.
+ * Each DogTable has a registry of its own, so the breeds of a roster are let go along with it.
+ * IDs are handed out in the order breeds are first seen and never change.
+ * Safe to use from any thread.
+ */
+public class BreedRegistry {
+    // The ID stored for a dog with no breed (null)
+    public static final int NO_BREED = -1;
+    // Room for breeds before the array of names has to grow
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // Breed names by ID; a full array is replaced by one twice the size, so readers don't need a lock
+    private volatile String[] names = new String[DEFAULT_CAPACITY];
+    // Number of breeds registered
+    private volatile int size;
+
+    /**
+     * Gets the ID for a breed, giving it a new one the first time it is seen.
+     * @param breed The breed name, exactly as stored on the dog.
+     * @return Returns the breed's ID, or NO_BREED if breed is null.
+     */
+    public int idOf(String breed) {
+        if (breed == null) {
+            return NO_BREED;
+        }
+        Integer id = ids.get(breed);
+        return id != null ? id : register(breed);
+    }
+
+    /**
+     * Gets the breed name for an ID.
+     * @param id An ID returned by idOf.
+     * @return Returns the breed name, or null for NO_BREED.
+     */
+    public String nameOf(int id) {
+        return id == NO_BREED ? null : names[id];
+    }
+
+    /**
+     * Gets the registry's own copy of a breed name, so records can all point to one String per breed.
+     * @param breed The breed name.
+     * @return Returns the same name, as kept here, or null if breed is null.
+     */
+    public String share(String breed) {
+        return nameOf(idOf(breed));
+    }
+
+    /**
+     * Gets the number of different breeds seen so far.
+     * @return Returns the number of breeds.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a new breed. Two threads adding the same breed at once still get the same ID.
+     */
+    private synchronized int register(String breed) {
+        Integer id = ids.get(breed);
+        if (id != null) {
+            return id;
+        }
+        int newId = size;
+        String[] current = names;
+        if (newId == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[newId] = breed;
+        names = current; // Publish the name before the ID, so nameOf always works for an ID it is given
+        size = newId + 1;
+        ids.put(breed, newId);
+        return newId;
+    }
+}
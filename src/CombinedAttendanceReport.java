@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * CombinedAttendanceReport class: the attendance of every location of a ShardedDogStore, with the totals.
+ * Each location's own AttendanceReport is kept, so its checked-in dogs can still be listed.
+ * Locations that didn't answer in time are listed with the reason, and left out of the totals.
+ */
+public class CombinedAttendanceReport {
+    // Each location's report, by location key; unmodifiable
+    private final Map<String, AttendanceReport> reports;
+    // Why each location that isn't in the report didn't answer, by location key; unmodifiable
+    private final Map<String, String> unavailable;
+    // Readable name of each food type, by food code; every location uses the same ones
+    private final String[] foodTypes;
+    // Totals over the locations that answered
+    private final int checkedInCount;
+    private final int[] foodTotals;
+    private final int[] ageBandTotals = new int[AgeBand.values().length];
+
+    /**
+     * Adds up the locations' reports.
+     * @param results Each location's attendance report, and the locations that didn't answer.
+     */
+    public CombinedAttendanceReport(ShardedDogStore.Results<AttendanceReport> results) {
+        reports = results.getAnswers();
+        unavailable = results.getUnavailable();
+        AttendanceReport first = reports.isEmpty() ? null : reports.values().iterator().next();
+        foodTypes = new String[first == null ? 0 : first.getFoodTypeCount()];
+        for (int i = 0; i < foodTypes.length; i++) {
+            foodTypes[i] = first.getFoodType(i);
+        }
+        foodTotals = new int[foodTypes.length];
+        int checkedIn = 0;
+        for (AttendanceReport report : reports.values()) {
+            checkedIn += report.getCheckedInCount();
+            for (int i = 0; i < foodTotals.length; i++) {
+                foodTotals[i] += report.getFoodTotal(i);
+            }
+            for (AgeBand band : AgeBand.values()) {
+                ageBandTotals[band.ordinal()] += report.getAgeBandTotal(band);
+            }
+        }
+        checkedInCount = checkedIn;
+    }
+
+    public int getCheckedInCount() { return checkedInCount; }
+    public int getFoodTypeCount() { return foodTotals.length; }
+    public String getFoodType(int food) { return foodTypes[food]; }
+    public int getFoodTotal(int food) { return foodTotals[food]; }
+    public int getAgeBandTotal(AgeBand band) { return ageBandTotals[band.ordinal()]; }
+
+    /**
+     * Gets the report of each location that answered.
+     * @return Returns the reports by location key.
+     */
+    public Map<String, AttendanceReport> getLocationReports() {
+        return reports;
+    }
+
+    /**
+     * Gets the locations that didn't answer in time.
+     * @return Returns the reason for each, by location key.
+     */
+    public Map<String, String> getUnavailable() {
+        return unavailable;
+    }
+
+    /**
+     * Renders the report as text: the number checked in at each location, then the food needed and the ages for all of them.
+     * @return Returns a formatted String of the report.
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(512);
+        try {
+            appendTo(report);
+        } catch (IOException e) {
+            throw new AssertionError(e); // A StringBuilder never throws IOException
+        }
+        return report.toString();
+    }
+
+    /**
+     * Writes the report, e.g. to a StringBuilder or a Writer.
+     * @param out Where to write.
+     * @throws IOException If out can't be written to.
+     */
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Attendance Report for All Locations:\n");
+        out.append("--\n");
+        out.append("Dogs currently checked in: ");
+        DogRenderer.appendInt(out, checkedInCount);
+        out.append("\n");
+        for (Map.Entry<String, AttendanceReport> entry : reports.entrySet()) {
+            out.append("  - ").append(entry.getKey()).append(": ");
+            DogRenderer.appendInt(out, entry.getValue().getCheckedInCount());
+            out.append("\n");
+        }
+        for (Map.Entry<String, String> entry : unavailable.entrySet()) {
+            out.append("  - ").append(entry.getKey()).append(": not available (").append(entry.getValue()).append(")\n");
+        }
+        out.append("--\n");
+        out.append("Food Needed Today:\n");
+        for (int i = 0; i < foodTotals.length; i++) {
+            out.append("  - ").append(foodTypes[i]).append(": ");
+            DogRenderer.appendInt(out, foodTotals[i]);
+            out.append("\n");
+        }
+        out.append("--\n");
+        out.append("Ages of Checked-In Dogs:\n");
+        for (AgeBand band : AgeBand.values()) {
+            out.append("  - ").append(band.getTitle()).append(": ");
+            DogRenderer.appendInt(out, ageBandTotals[band.ordinal()]);
+            out.append("\n");
+        }
+    }
+}
@@ -0,0 +1,208 @@
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * CompactDog class: a dog record that takes far less memory than a Dog, for holding very large rosters.
+ * Gender, spay/neuter status and food are stored as byte codes, the date of birth as a day number
+ * (days since 1970-01-01), and the breed as the one copy of its name kept by a BreedRegistry, so the only
+ * other object per dog is its name.
+ *
+ * Converting a Dog to a CompactDog and back always gives the same values. Values the codes can't
+ * hold (a date not written as YYYY-MM-DD, a gender other than M/F, and so on) are kept as they
+ * are in a small side object that only those dogs have.
+ * CompactDog objects can't be changed; make a new one from an updated Dog instead.
+ */
+public final class CompactDog {
+    // Gender codes
+    public static final byte GENDER_MALE = 0;
+    public static final byte GENDER_FEMALE = 1;
+    // Spayed/neutered codes
+    public static final byte SPAY_UNKNOWN = 0;
+    public static final byte SPAY_YES = 1;
+    public static final byte SPAY_NO = 2;
+    // Code for a value that is kept in the side object instead
+    public static final byte OTHER = -1;
+    // Day number for a date of birth that is kept in the side object instead
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final int id;
+    private final String name;
+    // Shared with every other record of the same breed made with the same registry
+    private final String breed;
+    private final int dobEpochDay;
+    private final byte food;
+    private final byte gender;
+    private final byte spayedNeutered;
+    private final boolean checkedIn;
+    // The values the codes can't hold, or null (the usual case)
+    private final Irregular irregular;
+
+    /**
+     * Irregular class: the original values of fields that have no code.
+     * A field that does have a code is left as null (or 0 for food) here.
+     */
+    static final class Irregular {
+        final String dob;
+        final String gender;
+        final String spayedNeutered;
+        final int food;
+
+        Irregular(String dob, String gender, String spayedNeutered, int food) {
+            this.dob = dob;
+            this.gender = gender;
+            this.spayedNeutered = spayedNeutered;
+            this.food = food;
+        }
+    }
+
+    /**
+     * Creates a compact copy of a dog.
+     * @param dog The dog to copy.
+     * @param breeds The registry that keeps one copy of each breed name for a roster's records.
+     */
+    public CompactDog(Dog dog, BreedRegistry breeds) {
+        this(dog.getId(), dog.getName(), breeds.share(dog.getBreed()), dobToEpochDay(dog.getDob()),
+                foodToCode(dog.getFood()), genderToCode(dog.getGender()), spayToCode(dog.getSpayedNeutered()),
+                dog.isCheckedIn(), irregularOf(dog));
+    }
+
+    CompactDog(int id, String name, String breed, int dobEpochDay, byte food, byte gender, byte spayedNeutered,
+               boolean checkedIn, Irregular irregular) {
+        this.id = id;
+        this.name = name;
+        this.breed = breed;
+        this.dobEpochDay = dobEpochDay;
+        this.food = food;
+        this.gender = gender;
+        this.spayedNeutered = spayedNeutered;
+        this.checkedIn = checkedIn;
+        this.irregular = irregular;
+    }
+
+    /**
+     * Creates a Dog with the same values as this record.
+     * @return Returns a new Dog.
+     */
+    public Dog toDog() {
+        return new Dog(id, name, getBreed(), getDob(), getFood(), getGender(), getSpayedNeutered(), checkedIn);
+    }
+
+    // Getters that give the same values as the Dog this was made from
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public String getBreed() { return breed; }
+    public String getDob() { return dobEpochDay != NO_DATE ? epochDayToDob(dobEpochDay) : irregular.dob; }
+    public int getFood() { return food != OTHER ? food : irregular.food; }
+    public String getGender() { return gender != OTHER ? codeToGender(gender) : irregular.gender; }
+    public String getSpayedNeutered() { return spayedNeutered != OTHER ? codeToSpay(spayedNeutered) : irregular.spayedNeutered; }
+    public boolean isCheckedIn() { return checkedIn; }
+
+    // Getters for the codes themselves, for fast comparisons and counting
+    public int getDobEpochDay() { return dobEpochDay; }
+    public byte getFoodCode() { return food; }
+    public byte getGenderCode() { return gender; }
+    public byte getSpayedNeuteredCode() { return spayedNeutered; }
+    Irregular getIrregular() { return irregular; }
+
+    @Override
+    public String toString() {
+        return toDog().toString();
+    }
+
+    // ---- Converting between values and codes ----
+
+    /**
+     * Converts a date of birth written as YYYY-MM-DD to a day number.
+     * @param dob The date of birth.
+     * @return Returns the number of days since 1970-01-01, or NO_DATE if dob isn't a real date written exactly that way.
+     */
+    static int dobToEpochDay(String dob) {
+        if (dob == null || dob.length() != 10 || dob.charAt(4) != '-' || dob.charAt(7) != '-') {
+            return NO_DATE;
+        }
+        int year = digits(dob, 0, 4);
+        int month = digits(dob, 5, 7);
+        int day = digits(dob, 8, 10);
+        if (year < 0 || month < 0 || day < 0) {
+            return NO_DATE;
+        }
+        try {
+            return (int) LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            return NO_DATE;
+        }
+    }
+
+    /**
+     * Converts a day number back to a date of birth written as YYYY-MM-DD.
+     */
+    static String epochDayToDob(int epochDay) {
+        return LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    /**
+     * Reads the number in dob from start up to end.
+     * @return Returns the number, or -1 if there is anything other than digits.
+     */
+    private static int digits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    static byte foodToCode(int food) {
+        return food >= 0 && food <= Byte.MAX_VALUE ? (byte) food : OTHER;
+    }
+
+    static byte genderToCode(String gender) {
+        if ("M".equals(gender)) {
+            return GENDER_MALE;
+        }
+        if ("F".equals(gender)) {
+            return GENDER_FEMALE;
+        }
+        return OTHER;
+    }
+
+    static String codeToGender(byte code) {
+        return code == GENDER_MALE ? "M" : "F";
+    }
+
+    static byte spayToCode(String spayedNeutered) {
+        if ("U".equals(spayedNeutered)) {
+            return SPAY_UNKNOWN;
+        }
+        if ("Y".equals(spayedNeutered)) {
+            return SPAY_YES;
+        }
+        if ("N".equals(spayedNeutered)) {
+            return SPAY_NO;
+        }
+        return OTHER;
+    }
+
+    static String codeToSpay(byte code) {
+        return code == SPAY_UNKNOWN ? "U" : code == SPAY_YES ? "Y" : "N";
+    }
+
+    /**
+     * Gets the values of a dog that have no code, or null if every value has one.
+     */
+    static Irregular irregularOf(Dog dog) {
+        boolean dobIrregular = dobToEpochDay(dog.getDob()) == NO_DATE;
+        boolean genderIrregular = genderToCode(dog.getGender()) == OTHER;
+        boolean spayIrregular = spayToCode(dog.getSpayedNeutered()) == OTHER;
+        boolean foodIrregular = foodToCode(dog.getFood()) == OTHER;
+        if (!dobIrregular && !genderIrregular && !spayIrregular && !foodIrregular) {
+            return null;
+        }
+        return new Irregular(dobIrregular ? dog.getDob() : null, genderIrregular ? dog.getGender() : null,
+                spayIrregular ? dog.getSpayedNeutered() : null, foodIrregular ? dog.getFood() : 0);
+    }
+}
@@ -0,0 +1,268 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConnectionPool class: reuses SQLite connections instead of opening a new one for every task.
+ * New connections get the settings from SchemaMigrator.configure.
+ * Connections handed out by borrow() go back to the pool when they are closed, so they can be
+ * used in a try-with-resources block. Each borrow gets its own handle on a pooled connection: once it
+ * is closed, closing it again does nothing and any other call fails, so a handle kept by mistake can't
+ * use a connection another thread has borrowed since. DogManager keeps its prepared statements for the
+ * real connection behind the handle (see unwrapPooled), so they stay valid from one borrow to the next.
+ */
+public class ConnectionPool implements AutoCloseable {
+    // Default number of connections in a pool
+    static final int DEFAULT_MAX_SIZE = 4;
+    // How long borrow() waits for a free connection before giving up
+    static final long BORROW_TIMEOUT_MILLIS = 30_000;
+
+    private final String dbURL;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    // Real connections waiting to be borrowed
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    // Every real connection the pool has opened, borrowed or not
+    private final Set<Connection> open = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Connections being opened right now; they count against maxSize
+    private int opening;
+    private boolean closed;
+
+    // Counters for monitoring the pool
+    private long borrowCount;
+    private long waitCount;
+
+    /**
+     * Creates a pool with the default size.
+     * @param dbURL The JDBC connection string, for example "jdbc:sqlite:dogs.db".
+     */
+    public ConnectionPool(String dbURL) {
+        this(dbURL, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a pool.
+     * @param dbURL The JDBC connection string, for example "jdbc:sqlite:dogs.db".
+     * @param maxSize The largest number of connections the pool will open.
+     */
+    public ConnectionPool(String dbURL, int maxSize) {
+        this(dbURL, maxSize, BORROW_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a pool that gives up sooner (or later) when every connection is in use, e.g. one of
+     * several pools in a ShardedDogStore, so callers don't queue for long behind a slow database.
+     * @param dbURL The JDBC connection string, for example "jdbc:sqlite:dogs.db".
+     * @param maxSize The largest number of connections the pool will open.
+     * @param borrowTimeoutMillis How long borrow() waits for a free connection before giving up.
+     */
+    public ConnectionPool(String dbURL, int maxSize, long borrowTimeoutMillis) {
+        this.dbURL = dbURL;
+        this.maxSize = Math.max(1, maxSize);
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    /**
+     * Borrows a connection, opening a new one if none are free and the pool isn't full.
+     * Close the connection to give it back.
+     * @return Returns a pooled connection.
+     * @throws SQLException If a connection can't be opened, or none became free in time.
+     */
+    public Connection borrow() throws SQLException {
+        synchronized (this) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+            while (true) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                if (!idle.isEmpty()) {
+                    borrowCount++;
+                    return lease(idle.pop());
+                }
+                if (open.size() + opening < maxSize) {
+                    opening++;
+                    break; // Open a new one below, without keeping other threads waiting
+                }
+                long waitNanos = deadline - System.nanoTime();
+                if (waitNanos <= 0) {
+                    throw new SQLException("Timed out waiting for a database connection");
+                }
+                waitCount++;
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection", e);
+                }
+            }
+        }
+
+        Connection conn = null;
+        try {
+            conn = DriverManager.getConnection(dbURL);
+            SchemaMigrator.configure(conn);
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(conn);
+            synchronized (this) {
+                opening--;
+                notifyAll(); // Someone else may open one instead
+            }
+            throw e;
+        }
+        synchronized (this) {
+            opening--;
+            if (closed) {
+                closeQuietly(conn);
+                throw new SQLException("Connection pool is closed");
+            }
+            open.add(conn);
+            borrowCount++;
+            return lease(conn);
+        }
+    }
+
+    /**
+     * Gives a connection back to the pool. Called when a pooled connection is closed.
+     * @param conn The real connection behind the pooled connection.
+     */
+    synchronized void release(Connection conn) {
+        if (closed || !open.contains(conn)) {
+            return;
+        }
+        try {
+            if (conn.isClosed()) {
+                // The connection broke; forget it so a new one can be opened
+                open.remove(conn);
+            } else {
+                if (!conn.getAutoCommit()) {
+                    // Don't hand out a connection with half a transaction in it
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+                idle.push(conn);
+            }
+        } catch (SQLException e) {
+            // Leave the connection out of the pool if it can't be reset
+            open.remove(conn);
+            closeQuietly(conn);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Creates the pooled connection handed out for one borrow of a real connection.
+     */
+    private Connection lease(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                new Lease(conn));
+    }
+
+    /**
+     * Gets the real connection behind a pooled connection, e.g. to keep something for the connection
+     * itself rather than for one borrow of it.
+     * @param conn A connection, pooled or not.
+     * @return Returns the real connection, or conn itself if it didn't come from a ConnectionPool.
+     */
+    static Connection unwrapPooled(Connection conn) {
+        if (conn != null && Proxy.isProxyClass(conn.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(conn);
+            if (handler instanceof Lease) {
+                return ((Lease) handler).conn;
+            }
+        }
+        return conn;
+    }
+
+    /**
+     * Closes a connection, ignoring any failure.
+     */
+    private static void closeQuietly(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // Nothing more can be done with it
+        }
+    }
+
+    /**
+     * Lease class: one borrow of a real connection. Every call is passed through, except close(),
+     * which gives the connection back to the pool the first time and does nothing after that.
+     * Once it has been given back, isClosed() is true and any other call throws an SQLException.
+     * A pooled connection is only equal to itself.
+     */
+    private class Lease implements InvocationHandler {
+        private final Connection conn;
+        private volatile boolean released;
+
+        Lease(Connection conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(conn);
+                    }
+                    return null;
+                case "isClosed":
+                    if (released) {
+                        return true;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + conn;
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connection has already been given back to the pool");
+            }
+            try {
+                return method.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    public String getDbURL() { return dbURL; }
+    public long getBorrowTimeoutMillis() { return borrowTimeoutMillis; }
+    public synchronized int getOpenCount() { return open.size(); }
+    public synchronized int getIdleCount() { return idle.size(); }
+    public synchronized long getBorrowCount() { return borrowCount; }
+    public synchronized long getWaitCount() { return waitCount; }
+
+    /**
+     * Closes every connection the pool opened, including ones that are still borrowed.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Connection conn : open) {
+            closeQuietly(conn);
+        }
+        open.clear();
+        idle.clear();
+        notifyAll();
+    }
+}
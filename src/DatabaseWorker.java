@@ -0,0 +1,125 @@
+import javax.swing.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * DatabaseWorker class: runs database work off the Swing event dispatch thread.
+ * Every task runs as a SwingWorker on one background thread, in the order it was submitted,
+ * so tasks can share a single database connection. Results and errors are handed back on
+ * the event dispatch thread, where it is safe to update the window.
+ */
+public class DatabaseWorker {
+
+    /**
+     * Task interface: a piece of database work that returns a result.
+     * @param <T> The type of the result.
+     */
+    public interface Task<T> {
+        T run() throws Exception;
+    }
+
+    /**
+     * ProgressTask interface: database work that reports progress as it goes.
+     * @param <T> The type of the result.
+     */
+    public interface ProgressTask<T> {
+        T run(IntConsumer progress) throws Exception;
+    }
+
+    // One thread, so tasks run in order and never use the connection at the same time
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "database-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Coalesced tasks that are waiting to run, by key
+    private final Map<String, AtomicBoolean> queued = new ConcurrentHashMap<>();
+
+    /**
+     * Runs a task in the background.
+     * @param task The database work.
+     * @param onSuccess Called on the event dispatch thread with the result.
+     * @param onError Called on the event dispatch thread if the task throws an exception.
+     * @param <T> The type of the result.
+     */
+    public <T> void submit(Task<T> task, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        submit(progress -> task.run(), onSuccess, onError, null);
+    }
+
+    /**
+     * Runs a task in the background, passing its progress to the event dispatch thread.
+     * Progress updates that arrive faster than the window can show them are merged; only the latest is shown.
+     * @param task The database work; it calls progress.accept(n) as it goes.
+     * @param onSuccess Called on the event dispatch thread with the result.
+     * @param onError Called on the event dispatch thread if the task throws an exception.
+     * @param onProgress Called on the event dispatch thread with the latest progress, or null to ignore progress.
+     * @param <T> The type of the result.
+     */
+    public <T> void submit(ProgressTask<T> task, Consumer<T> onSuccess, Consumer<Exception> onError, IntConsumer onProgress) {
+        executor.execute(new SwingWorker<T, Integer>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return task.run(this::publish);
+            }
+
+            @Override
+            protected void process(List<Integer> chunks) {
+                if (onProgress != null) {
+                    onProgress.accept(chunks.get(chunks.size() - 1));
+                }
+            }
+
+            @Override
+            protected void done() {
+                T result;
+                try {
+                    result = get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    onError.accept(cause instanceof Exception ? (Exception) cause : e);
+                    return;
+                } catch (InterruptedException e) {
+                    onError.accept(e);
+                    return;
+                }
+                onSuccess.accept(result);
+            }
+        });
+    }
+
+    /**
+     * Runs a task in the background unless the same kind of task is already waiting to run.
+     * Used for refreshes: ten refresh requests in a row cause one refresh, not ten.
+     * A request made after the waiting task has started causes one more run, so no change is missed.
+     * @param key Names the kind of task; requests with the same key are merged.
+     * @param task The database work.
+     * @param onSuccess Called on the event dispatch thread with the result.
+     * @param onError Called on the event dispatch thread if the task throws an exception.
+     * @param <T> The type of the result.
+     */
+    public <T> void coalesce(String key, Task<T> task, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        AtomicBoolean waiting = queued.computeIfAbsent(key, k -> new AtomicBoolean());
+        if (!waiting.compareAndSet(false, true)) {
+            return; // Already waiting to run; that run will see this request too
+        }
+        submit(() -> {
+            waiting.set(false);
+            return task.run();
+        }, onSuccess, onError);
+    }
+
+    /**
+     * Stops the background thread after the tasks already submitted have run.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,14 +1,18 @@
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.IOException;
+import java.io.File;
 import java.sql.*;
-import java.util.ArrayList;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.prefs.Preferences;
 
 /**
  * DaycareUI extends JFrame.
@@ -46,16 +50,45 @@ public class DaycareUI extends JFrame {
     private JLabel lblListType;
     private JLabel lblDogNameHeader;
     private JTextField txtFileName;
-    private JList dogList;
+    private JList<Dog> dogList;
     private JButton btnAddNewDog;
     private JCheckBox chkShowAll;
     private JButton btnAttendanceReport;
     private JLabel txtStatus;
+    private JLabel lblSummary;
+    private JLabel lblSearch;
+    private JTextField txtSearch;
 
     // Connection String for database
     String dbURL;
+    // Where the database used last is kept between runs (the user's preferences)
+    private static final String PREFERENCES_NODE = "DoggyDaycareAMS";
+    private static final String LAST_DATABASE_KEY = "lastDatabase";
+    // Pool of connections to the database in dbURL
+    private ConnectionPool pool;
 
     private final DogManager manager = new DogManager();
+    // Runs all database work off the event dispatch thread
+    private final DatabaseWorker worker = new DatabaseWorker();
+    // The session's database connection; only used on the worker thread
+    private Connection conn;
+    // Writes the history of check-ins and check-outs in the background, on a connection of its own
+    private AttendanceLog attendanceLog;
+    // The dog shown in the form, as it was read; its version is checked when it is updated or removed
+    private Dog formDog;
+    // Whether the list shows all dogs; read by the background refresh
+    private volatile boolean showAllDogs = false;
+    // What is typed in the search box; read by the background refresh
+    private volatile String searchText = "";
+    // Most dogs shown for a search
+    private static final int SEARCH_LIMIT = 200;
+    // The last change already included when the list was loaded; later changes are applied to it as they come
+    private long listSequence = 0;
+    // The attendance numbers shown above the list, kept up to date by the changes
+    private boolean attendanceShown = false;
+    private int shownCheckedIn = 0;
+    private int[] shownFoodTotals;
+    private int[] shownAgeTotals;
 
     private void createUIComponents() {
         // TODO: place custom component creation code here
@@ -65,6 +98,7 @@ public class DaycareUI extends JFrame {
      * Clears the form on the right side of the window.
      */
     public void clearForm(){
+        formDog = null;
         chkShowAll.setSelected(false);
         lblDogNameHeader.setText(null);
         txtDogID.setText(null);
@@ -88,6 +122,7 @@ public class DaycareUI extends JFrame {
      * @param dog The dog to display.
      */
     public void populateForm(Dog dog) {
+        formDog = dog;
         lblDogNameHeader.setText(dog.getName());
         txtDogID.setText(Integer.toString(dog.getId()));
         txtDogID.setEditable(false);
@@ -111,68 +146,229 @@ public class DaycareUI extends JFrame {
     /**
      * Populate dog list on left side of window from database.
      * Uses chkShowAll to display either checked-in or all dogs.
-     * @param conn This is the active database connection.
-     * @throws SQLException Exception is handled by other methods.
+     * The database work runs in the background; refresh requests that arrive while one is waiting are merged into it.
+     * Dogs are fetched a page at a time as the list is scrolled, and each row is only built when it is shown.
+     * While something is typed in the search box, the list shows the dogs matching it instead.
+     * After that, changes to single dogs are applied to the list as they happen (see dogsChanged), so this
+     * is only needed when what the list shows is changed, or after an import.
      */
-    public void populateDogList(Connection conn) throws SQLException {
+    public void refreshDogList() {
+        showAllDogs = chkShowAll.isSelected();
+        searchText = txtSearch.getText().trim();
+        worker.coalesce("dogList", () -> {
+            // Changes are made on this thread too, so none can happen between here and the reads below
+            long sequence = manager.getEvents().getLastSequence();
+            String search = searchText;
+            if (!search.isEmpty()) {
+                return new DogListData(manager.searchDogs(search, SEARCH_LIMIT, conn), sequence);
+            }
+            boolean showAll = showAllDogs;
+            // Only the counts are needed here, so the report text is never built
+            AttendanceReport report = showAll ? null : manager.getAttendanceReport(conn);
+            return new DogListData(showAll, report, manager.countDogs(!showAll, conn), sequence);
+        }, data -> {
+            listSequence = data.sequence;
+            if (data.matches != null) {
+                populateSearchResults(data.matches);
+            } else {
+                populateDogList(data.showAll, data.report, data.count);
+            }
+        }, ex -> showError("Unable to populate dog list"));
+    }
+
+    /**
+     * DogListData class: what a background refresh loads for the dog list.
+     */
+    private static class DogListData {
+        final boolean showAll;
+        final AttendanceReport report;
+        final int count;
+        // The dogs matching the search box, or null if nothing is typed in it
+        final List<Dog> matches;
+        // The last change included in the data
+        final long sequence;
+
+        DogListData(boolean showAll, AttendanceReport report, int count, long sequence) {
+            this.showAll = showAll;
+            this.report = report;
+            this.count = count;
+            this.matches = null;
+            this.sequence = sequence;
+        }
+
+        DogListData(List<Dog> matches, long sequence) {
+            this.showAll = true;
+            this.report = null;
+            this.count = matches.size();
+            this.matches = matches;
+            this.sequence = sequence;
+        }
+    }
 
-        ArrayList<Dog> dogListTemp = new ArrayList<>();
-        List<String> dogListArray = new ArrayList<>();
-        String report = null;
+    /**
+     * Shows the dogs matching the search box. Runs on the event dispatch thread.
+     * @param matches The matching dogs.
+     */
+    private void populateSearchResults(List<Dog> matches) {
+        attendanceShown = false;
+        lblListType.setText("Search Results");
+        if (matches.isEmpty()) {
+            lblSummary.setText("No dogs found");
+        } else {
+            lblSummary.setText(matches.size() + (matches.size() == 1 ? " dog found" : " dogs found"));
+        }
+        DefaultListModel<Dog> model = new DefaultListModel<>();
+        model.addAll(matches);
+        dogList.setModel(model);
+    }
 
-        if (chkShowAll.isSelected()) {  // Create an array list of all dogs
+    /**
+     * Shows freshly loaded list data. Runs on the event dispatch thread.
+     * @param showAll True if all dogs are listed, otherwise only checked-in dogs.
+     * @param report The attendance report, or null when all dogs are listed.
+     * @param count The number of dogs in the list.
+     */
+    private void populateDogList(boolean showAll, AttendanceReport report, int count) {
+        attendanceShown = !showAll;
+        if (showAll) {  // List all dogs
             lblListType.setText("All Dogs");
-        } else {  // Create an array list of the checked-in dogs (attendance list)
+            lblSummary.setText(null);
+        } else {  // List the checked-in dogs (attendance list)
             lblListType.setText("Attendance Report");
-            report = manager.generateAttendanceReport(conn);
+            shownCheckedIn = report.getCheckedInCount();
+            shownFoodTotals = new int[report.getFoodTypeCount()];
+            for (int i = 0; i < shownFoodTotals.length; i++) {
+                shownFoodTotals[i] = report.getFoodTotal(i);
+            }
+            shownAgeTotals = new int[AgeBand.values().length];
+            for (AgeBand band : AgeBand.values()) {
+                shownAgeTotals[band.ordinal()] = report.getAgeBandTotal(band);
+            }
+            showAttendanceSummary();
         }
 
-        // Get dog list from database, if checkShowAll is checked, include all dogs
-        List<Dog> dogs = manager.getDogs(!chkShowAll.isSelected(),conn);
+        // Display list on left side of window; if showAll is set, include all dogs
+        dogList.setModel(new LazyDogListModel(manager, conn, worker, !showAll, count, LazyDogListModel.DEFAULT_PAGE_SIZE));
+    }
 
-        for (Dog dog : dogs) {
-            dogListTemp.add(dog);
+    /**
+     * Shows the attendance numbers above the list of checked-in dogs. Runs on the event dispatch thread.
+     */
+    private void showAttendanceSummary() {
+        StringBuilder summary = new StringBuilder("<html><br>");
+        summary.append("Dogs currently checked in: ").append(shownCheckedIn); // Number of dogs checked-in
+        summary.append("<br>Food Needed Today:<br>");
+        for (int i = 0; i < shownFoodTotals.length; i++) { // Food preference counts
+            summary.append("  - ").append(manager.foodTypes[i]).append(": ").append(shownFoodTotals[i]).append("<br>");
         }
+        summary.append("Ages: ");
+        for (AgeBand band : AgeBand.values()) { // Puppies, adults, and seniors checked in
+            summary.append(band.ordinal() > 0 ? ", " : "").append(band.getTitle()).append(" ").append(shownAgeTotals[band.ordinal()]);
+        }
+        summary.append("<br>");
+        summary.append("</html>");
+        lblSummary.setText(summary.toString());
+    }
 
-        dogListArray.add("<html>Checked in dogs are displayed in green<br><br></html");
-
-        // Make display list colorful
-        for (Dog dog: dogListTemp) {
-            String dogDetails = "[" + dog.getId() + "] " + dog.getName() + " (" + dog.getBreed() + ") " + manager.foodTypes[dog.getFood()];
-            if (dog.isCheckedIn()) {  // Display the line in green
-                dogDetails = "<html><font color='#008800'>" + dogDetails + "</font></html>";
-            } else {  // Display the line in red
-                dogDetails = "<html><font color='#880000'>" + dogDetails + "</font></html>";
+    /**
+     * Applies changes to the list and the attendance numbers, without reading them again.
+     * Called on the event dispatch thread with the changes of the last moment; see DogEventBus.swingListener.
+     * Search results are simply searched again (the search is answered from memory), and the whole list is
+     * reloaded after an import, or if a change doesn't say how the dog was before.
+     * @param events The changes, oldest first.
+     */
+    private void dogsChanged(List<DogEvent> events) {
+        ListModel<Dog> model = dogList.getModel();
+        if (!(model instanceof LazyDogListModel)) {
+            refreshDogList(); // Search results, or the list hasn't been loaded yet
+            return;
+        }
+        LazyDogListModel listModel = (LazyDogListModel) model;
+        for (DogEvent event : events) {
+            if (event.getSequence() <= listSequence) {
+                continue; // Already in the list when it was loaded
             }
-            dogListArray.add(dogDetails);
+            if (!event.isBeforeKnown()) {
+                refreshDogList();
+                return;
+            }
+            listModel.dogChanged(event.getBefore(), event.getAfter());
+            if (attendanceShown) {
+                countAttendance(event.getBefore(), -1);
+                countAttendance(event.getAfter(), 1);
+            }
+            listSequence = event.getSequence();
         }
+        if (attendanceShown) {
+            showAttendanceSummary();
+        }
+    }
 
-        if (!chkShowAll.isSelected()) {
-            String[] reportParts = report.split("--");
-            String summary = "<html><br>"
-                    + reportParts[1] // Number of dogs checked-in
-                    + "<br>"
-                    + reportParts[3].replace("\n", "<br>") // Food preference counts
-                    + "</html>";
-
-            dogListArray.add(summary);
+    /**
+     * Adds a dog to (or takes it out of) the attendance numbers shown, if it is checked in.
+     * @param dog The dog, or null.
+     * @param change 1 to add the dog, -1 to take it out.
+     */
+    private void countAttendance(Dog dog, int change) {
+        if (dog == null || !dog.isCheckedIn()) {
+            return;
         }
+        shownCheckedIn += change;
+        if (dog.getFood() >= 0 && dog.getFood() < shownFoodTotals.length) {
+            shownFoodTotals[dog.getFood()] += change;
+        }
+        shownAgeTotals[dog.getAgeBand(LocalDate.now()).ordinal()] += change;
+    }
 
-        // Display list on left side of window
-        dogList.setListData(dogListArray.toArray());
+    /**
+     * Shows an error message. Used when background database work fails.
+     * @param message The message to show.
+     */
+    private void showError(String message) {
+        JOptionPane.showMessageDialog(null, message, "Error", JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * Shows why a change failed. If the dog was changed or removed at another desk, the form is
+     * brought up to date so the user can see the other change and try again.
+     * @param ex The exception from the background work.
+     * @param message The message to show for any other failure.
+     */
+    private void showError(Exception ex, String message) {
+        if (!(ex instanceof StaleDogException)) {
+            showError(message);
+            return;
+        }
+        Dog current = ((StaleDogException) ex).getCurrent();
+        if (current == null) {
+            clearForm();
+            showError("This dog was removed at another desk.");
+        } else {
+            populateForm(current);
+            showError("This dog was changed at another desk. Its latest details are now shown; please make your change again.");
+        }
+        // The list picks up the other desk's change from the event published when the dog was read again
     }
 
     /**
      * Get database from user.
-     * Ask user for database name and attempt a connection.
+     * Ask user for database name, then open it in the background (see openDatabase).
      * If a database does not exist, it will be created and the dog table will be added.
      * If database exists, we will just use it.
      */
     public void setupDatabase() {
-        Boolean haveDB =  false; // Will be set true when database connection is successful
-        do {
+        openDatabase(askForDatabase(rememberedDatabase()));
+    }
+
+    /**
+     * Asks the user for the database file. Exits the program if the user cancels and confirms.
+     * @param suggested The file name filled in to start with, or null for "dogs.db".
+     * @return Returns the file name entered.
+     */
+    public String askForDatabase(String suggested) {
+        while (true) {
             String dbFilename = JOptionPane.showInputDialog("Enter Database Name (including full path).\n" +
-                    "If database does not exist, it will be created.","dogs.db");
+                    "If database does not exist, it will be created.", suggested == null ? DoggyDaycareAMS.DEFAULT_DB_FILE : suggested);
 
             if (dbFilename == null) { // User clicked cancel or 'X' in pop-up
                 if( JOptionPane.showConfirmDialog(null, "Are you sure you want to exit?", "Exit", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION)
@@ -184,50 +380,119 @@ public class DaycareUI extends JFrame {
                 JOptionPane.showMessageDialog(null, "Please enter a file name", "Error", JOptionPane.ERROR_MESSAGE);
                 continue;
             }
+            return dbFilename;
+        }
+    }
 
-            // Create Database connect string
-            dbURL = "jdbc:sqlite:" + dbFilename;
+    /**
+     * Opens a database in the background: connects, creates or upgrades the tables, and starts the
+     * attendance log, while the window is already showing. Then the first page of dogs is shown, and
+     * only after that is every dog loaded into memory, so the window is usable as soon as the first
+     * page has been read. The file is remembered for the next start.
+     * The buttons and the list that use the database are disabled until it is open. A new database is
+     * announced with instructions for importing dogs; an existing one just shows its dogs, without the
+     * "Database connected" message that used to hold up every start.
+     * If the database can't be opened, the user is asked for another one.
+     * @param dbFilename The database file; it is created if it doesn't exist.
+     */
+    public void openDatabase(String dbFilename) {
+        boolean created = !new File(dbFilename).exists();
+        dbURL = "jdbc:sqlite:" + dbFilename;
+        ConnectionPool pool = new ConnectionPool(dbURL);
+        this.pool = pool;
+        setDatabaseEnabled(false);
+        lblListType.setText("Opening " + dbFilename + "...");
+
+        worker.submit(() -> {
+            // Connection "conn" will be passed into multiple methods
+            // It is borrowed from the pool, so the statements DogManager prepares on it are kept for the whole session
+            // It is only used on the database worker thread, one task at a time
+            try {
+                Connection conn = pool.borrow();
+                // Creates "dogs" table if it does not exist, and brings older databases up to date
+                SchemaMigrator.migrate(conn);
+                // Keep a history of check-ins and check-outs, on a connection of its own
+                attendanceLog = new AttendanceLog(pool.borrow());
+                manager.setAttendanceLog(attendanceLog);
+                this.conn = conn;
+                return conn;
+            } catch (SQLException e) {
+                pool.close();
+                throw e;
+            }
+        }, conn -> {
+            setDatabaseEnabled(true);
+            rememberDatabase(dbFilename);
+            // Anything not yet written to the attendance history is saved when the program exits
+            Runtime.getRuntime().addShutdownHook(new Thread(attendanceLog::close, "attendance-log-close"));
+            // The first page of dogs is read before the cache is warmed, which takes much longer on a large database
+            refreshDogList();
+            // Load every dog into memory so clicking a dog doesn't need a database round trip
+            worker.submit(() -> manager.warmCache(conn), count -> { }, ex -> showError("Unable to load dogs"));
+            if (created) {
+                JOptionPane.showMessageDialog(null, "Database created.\n\n" +
+                        "Use settings in upper left of main window to import dogs.\n\n");
+            }
+        }, ex -> {
+            showError("Error creating database connection.");
+            rememberDatabase(null);
+            openDatabase(askForDatabase(dbFilename));
+        });
+    }
 
-            // Connect to Database
-            try (Connection conn = DriverManager.getConnection(dbURL)) {
-                if (conn == null) {
-                    JOptionPane.showMessageDialog(null, "Error creating database connection.", "Error", JOptionPane.ERROR_MESSAGE);
-                    continue;
-                }
+    /**
+     * Enables or disables everything in the window that uses the database, so nothing is asked of it before it is open.
+     * The check-in and remove buttons are enabled by populateForm, once a dog is shown.
+     * @param enabled True once the database is open.
+     */
+    private void setDatabaseEnabled(boolean enabled) {
+        btnImport.setEnabled(enabled);
+        btnAdd.setEnabled(enabled);
+        btnAddNewDog.setEnabled(enabled);
+        btnAttendanceReport.setEnabled(enabled);
+        chkShowAll.setEnabled(enabled);
+        txtSearch.setEnabled(enabled);
+        dogList.setEnabled(enabled);
+    }
 
-                // Creates "dogs" table if it does not exist
-                String sql = "CREATE TABLE IF NOT EXISTS dogs ("
-                        + "id integer PRIMARY KEY,"
-                        + "name text NOT NULL,"
-                        + "breed text NOT NULL,"
-                        + "dob text NOT NULL,"
-                        + "food integer NOT NULL,"
-                        + "gender text NOT NULL,"
-                        + "spayedneutered text NOT NULL,"
-                        + "checkedin boolean NOT NULL);";
-                Statement stmt = conn.createStatement();
-                stmt.execute(sql);
-
-                // Close Database connection
-                conn.close();
-
-                JOptionPane.showMessageDialog(null, "Database connected.\n\n" +
-                        "Use settings in upper left of main window to import dogs.\n\n");
+    /**
+     * Gets the database file used last time, if it is still there.
+     * @return Returns the file name, or null if there is none.
+     */
+    static String rememberedDatabase() {
+        String dbFilename = Preferences.userRoot().node(PREFERENCES_NODE).get(LAST_DATABASE_KEY, null);
+        return dbFilename != null && new File(dbFilename).isFile() ? dbFilename : null;
+    }
 
-                haveDB = true;
-            } catch (SQLException e) { // Couldn't connect to Database
-                JOptionPane.showMessageDialog(null, "Error creating database connection.", "Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-        } while (!haveDB);
+    /**
+     * Remembers the database file for the next start, or forgets it.
+     * @param dbFilename The database file, or null to forget it.
+     */
+    static void rememberDatabase(String dbFilename) {
+        Preferences preferences = Preferences.userRoot().node(PREFERENCES_NODE);
+        if (dbFilename == null) {
+            preferences.remove(LAST_DATABASE_KEY);
+        } else {
+            preferences.put(LAST_DATABASE_KEY, new File(dbFilename).getAbsolutePath());
+        }
     }
 
     /**
-     * Shows the main program window.
+     * Shows the main program window, asking for the database to use.
      * Sets up action listeners for all buttons in the window, and in the dog list.
      * @throws SQLException
      */
     public DaycareUI() throws SQLException {
+        this(null);
+    }
+
+    /**
+     * Shows the main program window and opens a database in the background.
+     * Sets up action listeners for all buttons in the window, and in the dog list.
+     * @param dbFilename The database file, or null to ask for it.
+     * @throws SQLException
+     */
+    public DaycareUI(String dbFilename) throws SQLException {
         setTitle("Doggy Daycare Attendance Management System");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setContentPane(panel1);
@@ -241,6 +506,16 @@ public class DaycareUI extends JFrame {
             cmbFood.addItem(new ComboItem(food,Integer.toString(cnt++)));
         }
 
+        // Rows are drawn by DogCellRenderer: plain text colored by check-in status
+        dogList.setCellRenderer(new DogCellRenderer(manager.foodTypes));
+        // Every row is one line, so the list can lay itself out without building every row
+        dogList.setPrototypeCellValue(new Dog(99999999, "Sample Dog Name", "Labrador Retriever", "2020-01-01", 3, "M", "Y", true));
+        // The color key stays above the list instead of scrolling away with the first row
+        JScrollPane dogScrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, dogList);
+        if (dogScrollPane != null) {
+            dogScrollPane.setColumnHeaderView(new JLabel("Checked in dogs are displayed in green"));
+        }
+
         // Add Spay/Neuter status to combo box
         cmbSpayNeuter.addItem(new ComboItem("Unknown", "U"));
         cmbSpayNeuter.addItem(new ComboItem("Yes", "Y"));
@@ -248,34 +523,52 @@ public class DaycareUI extends JFrame {
 
         setVisible(true);
 
-        setupDatabase();
+        // Publish the operation metrics through JMX, and dump them periodically if asked to on the command line
+        manager.getMetrics().register();
+        manager.getMetrics().startDumpFromProperties();
 
-        // Connection "conn" will be passed into multiple methods
-        Connection conn = DriverManager.getConnection(dbURL);
+        // Apply every saved change to the list as it happens, a few times a second at most
+        // The list itself is no longer reloaded after each add, update, check-in, or removal
+        manager.getEvents().addListener(DogEventBus.swingListener(this::dogsChanged, DogEventBus.DEFAULT_SWING_DELAY_MILLIS));
 
-        populateDogList(conn);
+        // The window shows while the database opens; the parts that use the database are enabled once it is open
+        if (dbFilename != null) {
+            openDatabase(dbFilename);
+        } else {
+            setupDatabase();
+        }
 
         // Import button
         btnImport.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
                 clearForm();
-                if (txtFileName.getText().equals("")) {
+                String filename = txtFileName.getText();
+                if (filename.equals("")) {
                     JOptionPane.showMessageDialog(null, "Please enter a file name", "Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
-                try {
-                    manager.loadFromFile(txtFileName.getText(), conn);
-
-                    populateDogList(conn);
-
-                } catch (IOException ex) {
-                    JOptionPane.showMessageDialog(null, "Error loading file", "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(null, "Error loading file", "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
+                // Show progress while the import runs in the background
+                JProgressBar progressBar = new JProgressBar();
+                progressBar.setIndeterminate(true);
+                progressBar.setStringPainted(true);
+                progressBar.setString("Importing " + filename + "...");
+                JDialog progressDialog = new JDialog(DaycareUI.this, "Import Data", false);
+                progressDialog.add(progressBar);
+                progressDialog.setSize(350, 70);
+                progressDialog.setLocationRelativeTo(DaycareUI.this);
+                progressDialog.setVisible(true);
+                btnImport.setEnabled(false);
+
+                worker.submit(progress -> manager.importFromFile(filename, conn, progress), result -> {
+                    progressDialog.dispose();
+                    btnImport.setEnabled(true);
+                    JOptionPane.showMessageDialog(null, result.toString());
+                }, ex -> {
+                    progressDialog.dispose();
+                    btnImport.setEnabled(true);
+                    showError("Error loading file");
+                }, lines -> progressBar.setString("Imported " + lines + " lines..."));
             }
         });
 
@@ -291,13 +584,6 @@ public class DaycareUI extends JFrame {
                     JOptionPane.showMessageDialog(null, "Enter a valid dog ID", "Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
-                Dog currentDog = null;
-                try {
-                    currentDog = manager.findDogById(id, conn);
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(null, "Unable to add dog", "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
                 String name;
                 if (!txtName.getText().trim().equals("")) {  // Dog name cannot be empty
                     name = txtName.getText().trim();
@@ -314,8 +600,6 @@ public class DaycareUI extends JFrame {
                 }
                 Object foodObj = cmbFood.getSelectedItem();
                 int food = Integer.parseInt(((ComboItem)foodObj).getValue());
-                // If adding a dog, set checked-in to false, otherwise leave it unchanged
-                boolean checkedIn = (btnAdd.getText().equals("Update")) ? currentDog.isCheckedIn() : Boolean.parseBoolean("false".trim());
                 String dob = txtDOB.getText().trim();
                 if (!manager.isValidDob(dob)) {
                     JOptionPane.showMessageDialog(null, "Please enter a valid date of birth", "Error", JOptionPane.ERROR_MESSAGE);
@@ -332,41 +616,37 @@ public class DaycareUI extends JFrame {
                     JOptionPane.showMessageDialog(null, "Please select a food choice", "Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
-                // Create dog object from items above
-                Dog dog = new Dog(id, name, breed, dob, food, gender, spayedNeutered, checkedIn);
+                // Create dog object from items above; new dogs start checked out
+                Dog dog = new Dog(id, name, breed, dob, food, gender, spayedNeutered, false);
+                int dogId = id;
                 if (btnAdd.getText().equals("Add")) {
                     // Add new dog
-                    try {
-                        if (manager.addDog(dog, conn))
+                    worker.submit(() -> manager.addDog(dog, conn), added -> {
+                        if (added) {
                             JOptionPane.showMessageDialog(null, "Dog added successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
-                        else {
+                            populateForm(dog); // Update form on right with dog
+                        } else {
                             JOptionPane.showMessageDialog(null, "Dog not added", "Error", JOptionPane.ERROR_MESSAGE);
-                        return;
                         }
-                    } catch (SQLException ex) {
-                        JOptionPane.showMessageDialog(null, "Unable to add dog", "Error", JOptionPane.ERROR_MESSAGE);
+                    }, ex -> showError("Unable to add dog"));
+                } else {
+                    // Update existing dog, leaving its check-in status unchanged;
+                    // the update fails if the dog was changed at another desk after it was shown
+                    Dog shownDog = formDog;
+                    if (shownDog == null || shownDog.getId() != dogId) {
+                        JOptionPane.showMessageDialog(null, "Dog not updated", "Error", JOptionPane.ERROR_MESSAGE);
                         return;
                     }
-                } else {
-                    // Update existing dog
-                    try {
-                        if (manager.updateDog(id, dog, conn))
+                    dog.setCheckedIn(shownDog.isCheckedIn());
+                    dog.setVersion(shownDog.getVersion());
+                    worker.submit(() -> manager.updateDog(dogId, dog, conn), updated -> {
+                        if (updated) {
                             JOptionPane.showMessageDialog(null, "Dog updated successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
-                        else {
+                            populateForm(dog); // Update form on right with dog
+                        } else {
                             JOptionPane.showMessageDialog(null, "Dog not updated", "Error", JOptionPane.ERROR_MESSAGE);
-                            return;
                         }
-                    } catch (SQLException ex) {
-                        JOptionPane.showMessageDialog(null, "Unable to update dog", "Error", JOptionPane.ERROR_MESSAGE);
-                        return;
-                    }
-                }
-                populateForm(dog); // Update form on right with dog
-                try {
-                    populateDogList(conn);
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(null, "Unable to populate dog list", "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
+                    }, ex -> showError(ex, "Unable to update dog"));
                 }
             }
         });
@@ -391,40 +671,21 @@ public class DaycareUI extends JFrame {
                     JOptionPane.showMessageDialog(null, "Enter a valid dog ID", "Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
-                // Get dog info
-                Dog updatedDog = null;
-                try {
-                    updatedDog = manager.findDogById(id, conn);
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(null, "Unable to check dog in", "Error", JOptionPane.ERROR_MESSAGE);
+                int dogId = id;
+                Dog shownDog = formDog;
+                if (shownDog == null || shownDog.getId() != dogId) {
+                    JOptionPane.showMessageDialog(null, "Unable to check dog in/out.", "Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
-                // Invert dog check-in status
-                updatedDog.setCheckedIn(!updatedDog.isCheckedIn());
-
-                try {
-                    if (manager.updateDog(id, updatedDog, conn)) {
-                        // Change button text for check-out/in button
-                        if (updatedDog.isCheckedIn()) {
-                            btnCheckIn.setText("Check Out");
-                        } else {
-                            btnCheckIn.setText("Check In");
-                        }
-                        populateForm(updatedDog);
-                    } else {
+                // Invert the check-in status shown; only that column is written, so pressing twice can't undo it
+                boolean checkIn = !shownDog.isCheckedIn();
+                worker.submit(() -> manager.setCheckedIn(dogId, checkIn, conn), updatedDog -> {
+                    if (updatedDog == null) {
                         JOptionPane.showMessageDialog(null, "Unable to check dog in/out.", "Error", JOptionPane.ERROR_MESSAGE);
                         return;
                     }
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(null, "Unable to check dog in/out.", "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
-                try {
-                    populateDogList(conn);
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(null, "Unable to check dog in/out.", "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
+                    populateForm(updatedDog); // Also changes the check-in/out button text
+                }, ex -> showError("Unable to check dog in/out."));
             }
         });
 
@@ -440,21 +701,26 @@ public class DaycareUI extends JFrame {
                     JOptionPane.showMessageDialog(null, "Enter a valid dog ID", "Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
-                try {
-                    Dog removedDog = manager.removeDog(id, conn);
+                int dogId = id;
+                Dog shownDog = formDog;
+                if (shownDog == null || shownDog.getId() != dogId) {
+                    JOptionPane.showMessageDialog(null, "Unable to remove dog", "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                // The removal fails if the dog was changed at another desk after it was shown
+                worker.submit(() -> manager.removeDog(dogId, shownDog.getVersion(), conn), removedDog -> {
                     if (removedDog != null) {
+                        boolean showingAll = chkShowAll.isSelected();
                         clearForm(); // Clear dog info from form
-                        populateDogList(conn);
+                        if (showingAll) {
+                            refreshDogList(); // Clearing the form went back to the attendance list
+                        }
                         JOptionPane.showMessageDialog(null,  removedDog.getName()
                                 + " (ID # " + removedDog.getId() + ") has been removed from the database");
                     } else {
                         JOptionPane.showMessageDialog(null, "Unable to remove dog", "Error", JOptionPane.ERROR_MESSAGE);
-                        return;
                     }
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(null, "Unable to remove dog", "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
+                }, ex -> showError(ex, "Unable to remove dog"));
             }
         });
 
@@ -470,19 +736,10 @@ public class DaycareUI extends JFrame {
         dogList.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                if (dogList.getSelectedValue() != null) {
-                    String dogInfo = dogList.getSelectedValue().toString();
-                    try {
-                        // Extract dogID from []
-                        dogInfo = dogInfo.split("\\[")[1];
-                        dogInfo = dogInfo.split("\\]")[0];
-                        int id = Integer.parseInt(dogInfo);
-                        Dog dog = manager.findDogById(id, conn);
-                        populateForm(dog); // Add selected dog info to form
-                    }
-                    catch (Exception ex) {
-                        // User didn't click on a line starting with an integer (i.e., a dog)
-                    }
+                // The list holds the dogs themselves; null means the row is still loading
+                Dog dog = dogList.getSelectedValue();
+                if (dog != null) {
+                    populateForm(dog); // Add selected dog info to form
                 }
             }
         });
@@ -500,37 +757,55 @@ public class DaycareUI extends JFrame {
         chkShowAll.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                try {
-                    // Repopulate dogList based on current check box state
-                    populateDogList(conn);
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(null, "Unable to update dog list.", "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
+                // Repopulate dogList based on current check box state
+                refreshDogList();
+            }
+        });
+
+        // Search box; the list follows what is typed
+        txtSearch.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                refreshDogList();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                refreshDogList();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Only fired for style changes, which don't change the text
             }
         });
 
         btnAttendanceReport.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                String report = null;
-                try {
-                    report = manager.generateAttendanceReport(conn);
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(null, "Unable to display detailed attendance report.", "Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
-                JOptionPane.showMessageDialog(null, report, "Attendance Report", JOptionPane.INFORMATION_MESSAGE);
+                // Build the report text in the background too; it lists every checked-in dog
+                worker.submit(() -> {
+                    StringBuilder report = new StringBuilder(manager.getAttendanceReport(conn).toString());
+                    report.append("--\n");
+                    manager.getAgeAnalytics(conn).appendTo(report).append("--\n");
+                    AttendanceHistory.appendRecentDays(report, 7, ZoneId.systemDefault(), conn).append("--\n");
+                    return manager.appendFeedingPlans(report, conn).toString();
+                },
+                        report -> JOptionPane.showMessageDialog(null, report, "Attendance Report", JOptionPane.INFORMATION_MESSAGE),
+                        ex -> showError("Unable to display detailed attendance report."));
             }
         });
     }
 
     /**
      * This is the main method.
-     * @param args Unused.
+     * Opens the database given, or else the one used last time, without asking; if there is neither,
+     * or --choose is given, the user is asked for it.
+     * @param args Optional: a database file, or --choose.
      * @throws SQLException Exceptions are handled respective methods.
      */
     public static void main(String[] args) throws SQLException {
-        new DaycareUI();
+        String dbFilename = args.length > 0 ? args[0] : rememberedDatabase();
+        new DaycareUI("--choose".equals(dbFilename) ? null : dbFilename);
     }
 }
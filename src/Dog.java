@@ -1,3 +1,6 @@
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
 /**
  * Dog class: represents a single dog's record in the system.
  * Each Dog object holds all the required information about a daycare guest.
@@ -11,6 +14,9 @@ public class Dog {
     private String breed;
     // Date of birth in YYYY-MM-DD format; used for validation and age calculation
     private String dob;
+    // The date of birth as a day number (days since 1970-01-01), worked out once when dob is set,
+    // or CompactDog.NO_DATE if dob isn't a real date in YYYY-MM-DD format
+    private int dobEpochDay;
     // Integer code for food type: 0=no food, 1=dry, 2=wet, 3=customer provided
     private int food;
     // The dog's gender ("M" or "F")
@@ -19,6 +25,8 @@ public class Dog {
     private String spayedNeutered;
     // Whether the dog is currently checked in at the daycare
     private boolean checkedIn;
+    // How many times the record has been changed in the database; used to notice changes made at another desk
+    private int version;
 
     /**
      * Each Dog object holds all the required information about a daycare guest.
@@ -38,12 +46,31 @@ public class Dog {
         this.name = name;
         this.breed = breed;
         this.dob = dob;
+        this.dobEpochDay = CompactDog.dobToEpochDay(dob);
         this.food = food;
         this.gender = gender;
         this.spayedNeutered = spayedNeutered;
         this.checkedIn = checkedIn;
     }
 
+    /**
+     * Copy constructor: creates a new Dog with the same information as another dog.
+     * Used by the in-memory cache so cached records can't be changed from outside.
+     * @param other Dog - The dog to copy
+     */
+    public Dog(Dog other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.breed = other.breed;
+        this.dob = other.dob;
+        this.dobEpochDay = other.dobEpochDay; // Already worked out, so the date isn't read again
+        this.food = other.food;
+        this.gender = other.gender;
+        this.spayedNeutered = other.spayedNeutered;
+        this.checkedIn = other.checkedIn;
+        this.version = other.version;
+    }
+
     // Getters for every field, to allow other classes to read the dog's info
     public int getId() { return id; }
     public String getName() { return name; }
@@ -53,15 +80,48 @@ public class Dog {
     public String getGender() { return gender; }
     public String getSpayedNeutered() { return spayedNeutered; }
     public boolean isCheckedIn() { return checkedIn; }
+    public int getVersion() { return version; }
+
+    /**
+     * Gets the date of birth as a day number, read from dob when it was set.
+     * @return Returns the number of days from 1970-01-01 to the date of birth, or CompactDog.NO_DATE
+     *         if dob isn't a real date in YYYY-MM-DD format.
+     */
+    public int getDobEpochDay() { return dobEpochDay; }
+
+    /**
+     * Works out the dog's age in whole years on a given day.
+     * @param on The day, usually today.
+     * @return Returns the age in years, or -1 if the date of birth can't be read or is after the day.
+     */
+    public int getAge(LocalDate on) {
+        if (dobEpochDay == CompactDog.NO_DATE || dobEpochDay > on.toEpochDay()) {
+            return -1;
+        }
+        return (int) ChronoUnit.YEARS.between(LocalDate.ofEpochDay(dobEpochDay), on);
+    }
+
+    /**
+     * Works out which age band (puppy, adult, or senior) the dog is in on a given day.
+     * @param on The day, usually today.
+     * @return Returns the age band; ADULT if the date of birth can't be read.
+     */
+    public AgeBand getAgeBand(LocalDate on) {
+        return AgeBand.forBirthDay(dobEpochDay, on);
+    }
 
     // Setters for each field, so info can be changed if needed
     public void setName(String name) { this.name = name; }
     public void setBreed(String breed) { this.breed = breed; }
-    public void setDob(String dob) { this.dob = dob; }
+    public void setDob(String dob) {
+        this.dob = dob;
+        this.dobEpochDay = CompactDog.dobToEpochDay(dob);
+    }
     public void setFood(int food) { this.food = food; }
     public void setGender(String gender) { this.gender = gender; }
     public void setSpayedNeutered(String spayedNeutered) { this.spayedNeutered = spayedNeutered; }
     public void setCheckedIn(boolean checkedIn) { this.checkedIn = checkedIn; }
+    public void setVersion(int version) { this.version = version; }
 
     /**
      * Converts this dog's record to a readable string.
@@ -69,29 +129,7 @@ public class Dog {
      * @return Returns a String containing the dog's information
      */
     public String toString() {
-        // Choose a readable word for food code
-        String foodString = "";
-        if (food == 0) {
-            foodString = "No Food";
-        } else if (food == 1) {
-            foodString = "Dry";
-        } else if (food == 2) {
-            foodString = "Wet";
-        } else if (food == 3) {
-            foodString = "Customer Provided";
-        } else {
-            foodString = "Unknown";
-        }
-        // Show whether the dog is checked in or not
-        String checkStatus = checkedIn ? "Checked In" : "Not Checked In";
-        // Build the display string (used everywhere in the program)
-        return "ID: " + id +
-                " | Name: " + name +
-                " | Breed: " + breed +
-                " | DOB: " + dob +
-                " | Food: " + foodString +
-                " | Gender: " + gender +
-                " | Spayed/Neutered: " + spayedNeutered +
-                " | " + checkStatus;
+        // DogRenderer writes the fields into one buffer using constant labels
+        return DogRenderer.appendText(new StringBuilder(128), this).toString();
     }
 }
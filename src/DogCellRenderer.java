@@ -0,0 +1,48 @@
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * DogCellRenderer class: draws one dog in the dog list as plain text, "[ID] name (breed) food type",
+ * in green if the dog is checked in and red if not.
+ * The color is set directly instead of through HTML markup, so Swing doesn't have to parse
+ * and lay out an HTML document for every row it paints. A row whose dog hasn't been loaded
+ * yet (a null value) is shown as "Loading...".
+ */
+public class DogCellRenderer extends DefaultListCellRenderer {
+    private static final long serialVersionUID = 1L;
+
+    // Shown in rows whose dog hasn't been loaded yet
+    static final String LOADING = "Loading...";
+    static final Color CHECKED_IN_COLOR = new Color(0x008800);
+    static final Color NOT_CHECKED_IN_COLOR = new Color(0x880000);
+
+    // Readable name of each food type, by food code
+    private final String[] foodTypes;
+    // Reused for the text of every row; rendering only happens on the event dispatch thread
+    private final StringBuilder rowText = new StringBuilder(128);
+
+    /**
+     * Creates a renderer.
+     * @param foodTypes The readable name of each food type, by food code.
+     */
+    public DogCellRenderer(String[] foodTypes) {
+        this.foodTypes = foodTypes;
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected,
+                                                  boolean cellHasFocus) {
+        Dog dog = (Dog) value;
+        String text = LOADING;
+        if (dog != null) {
+            rowText.setLength(0);
+            text = DogRenderer.appendListRow(rowText, dog, foodTypes).toString();
+        }
+        super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+        if (dog != null) {
+            // Keep the status color on selected rows too, as the list always has
+            setForeground(dog.isCheckedIn() ? CHECKED_IN_COLOR : NOT_CHECKED_IN_COLOR);
+        }
+        return this;
+    }
+}
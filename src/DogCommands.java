@@ -0,0 +1,444 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DogCommands class: runs the program without menus, one command at a time, for scripts and cron jobs.
+ * Each command does one thing, writes only its own result (never the whole dog list), and returns an
+ * exit code: 0 if it worked, 1 if it failed, 2 if it wasn't understood. Errors go to a separate stream.
+ * Long output, like export, is written as the dogs are read, so it never has to fit in memory.
+ *
+ * Commands (add --format json to any of them for JSON output):
+ *   import FILE               import a roster file
+ *   checkin ID...             check dogs in, in one transaction; IDs can be separated by spaces or commas
+ *   checkout ID...            check dogs out
+ *   toggle ID                 check a dog in if it is out, or out if it is in
+ *   show ID                   print one dog
+ *   search WORDS...           find dogs by name, breed, or ID
+ *   remove ID                 remove a dog
+ *   report [--dogs]           print the attendance report (--dogs lists the checked-in dogs in JSON)
+ *   feeding [DATE]            print the feeding plans for today and tomorrow, or the plan expected on DATE
+ *   export [--checked-in]     print every dog as roster lines (which import can read back) or JSON
+ *   export FILE               write every dog to a file: .csv/.txt roster lines, .ndjson JSON lines, or .dogs binary
+ *   batch                     read commands from standard input, one per line
+ */
+public class DogCommands {
+    public static final int OK = 0;
+    public static final int FAILED = 1;
+    public static final int USAGE = 2;
+
+    // Dogs read from the database at a time by export
+    static final int EXPORT_PAGE_SIZE = 1000;
+    // Most dogs printed for one search
+    static final int SEARCH_LIMIT = 50;
+
+    private final DogManager manager;
+    private final Connection conn;
+    private final Writer out;
+    private final Writer err;
+
+    /**
+     * Creates a command runner.
+     * @param manager The dog manager to use.
+     * @param conn This is the active database connection.
+     * @param out Where results are written; it is flushed by batch mode when there is no more input waiting,
+     *            and should be flushed by the caller at the end.
+     * @param err Where error messages are written; flushed after every message.
+     */
+    public DogCommands(DogManager manager, Connection conn, Writer out, Writer err) {
+        this.manager = manager;
+        this.conn = conn;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Runs one command.
+     * @param args The command and its arguments, e.g. ["checkin", "1,2,3"].
+     * @return Returns OK, FAILED, or USAGE.
+     * @throws IOException If the output can't be written.
+     */
+    public int run(List<String> args) throws IOException {
+        boolean json = false;
+        boolean withDogs = false;
+        boolean checkedInOnly = false;
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (arg.equals("--format") && i + 1 < args.size()) {
+                String format = args.get(++i);
+                if (!format.equals("json") && !format.equals("text")) {
+                    return usage("Unknown format " + format + "; use text or json");
+                }
+                json = format.equals("json");
+            } else if (arg.equals("--json")) {
+                json = true;
+            } else if (arg.equals("--dogs")) {
+                withDogs = true;
+            } else if (arg.equals("--checked-in")) {
+                checkedInOnly = true;
+            } else if (arg.startsWith("--")) {
+                return usage("Unknown option " + arg);
+            } else {
+                words.add(arg);
+            }
+        }
+        if (words.isEmpty()) {
+            return usage("No command given");
+        }
+
+        String command = words.get(0);
+        List<String> params = words.subList(1, words.size());
+        try {
+            switch (command) {
+                case "import":
+                    return params.size() == 1 ? importFile(params.get(0), json) : usage("import needs one file name");
+                case "checkin":
+                case "checkout":
+                    return checkIn(params, command.equals("checkin"), json);
+                case "toggle":
+                    return params.size() == 1 ? toggle(Integer.parseInt(params.get(0)), json) : usage("toggle needs one dog ID");
+                case "show":
+                    return params.size() == 1 ? show(Integer.parseInt(params.get(0)), json) : usage("show needs one dog ID");
+                case "search":
+                    return params.isEmpty() ? usage("search needs something to search for") : search(String.join(" ", params), json);
+                case "remove":
+                    return params.size() == 1 ? remove(Integer.parseInt(params.get(0)), json) : usage("remove needs one dog ID");
+                case "report":
+                    return report(json, withDogs);
+                case "feeding":
+                    if (params.size() > 1) {
+                        return usage("feeding takes at most one date");
+                    }
+                    return feeding(params.isEmpty() ? null : params.get(0), json);
+                case "export":
+                    if (params.size() > 1) {
+                        return usage("export takes at most one file name");
+                    }
+                    return params.isEmpty() ? export(checkedInOnly, json) : exportFile(params.get(0), json);
+                case "help":
+                    out.write(usageText());
+                    return OK;
+                default:
+                    return usage("Unknown command " + command);
+            }
+        } catch (NumberFormatException e) {
+            return usage("Dog IDs must be whole numbers");
+        } catch (DateTimeParseException e) {
+            return usage("Dates must be in YYYY-MM-DD format");
+        } catch (SQLException e) {
+            return failed("Database error: " + e.getMessage(), json);
+        }
+    }
+
+    /**
+     * Runs commands read from a stream, one per line, until the stream ends. Blank lines and lines starting
+     * with # are skipped. A failed command doesn't stop the batch.
+     * Output is only flushed when no more input is waiting, so a long batch is written in big blocks.
+     * @param in The commands.
+     * @param input The stream the commands are read from, to see whether more input is waiting; may be null.
+     * @return Returns OK if every command worked, otherwise the exit code of the last one that didn't.
+     * @throws IOException If the commands can't be read or the output can't be written.
+     */
+    public int runBatch(BufferedReader in, InputStream input) throws IOException {
+        int result = OK;
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                int code = run(split(line));
+                if (code != OK) {
+                    result = code;
+                }
+            }
+            if (input == null || (!in.ready() && input.available() == 0)) {
+                out.flush(); // Whoever is feeding us may be waiting for the answer
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Splits a batch line into words at spaces; words in double quotes can contain spaces.
+     * @param line The line.
+     * @return Returns the words.
+     */
+    static List<String> split(String line) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean quoted = false;
+        boolean inWord = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                inWord = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (inWord) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                    inWord = false;
+                }
+            } else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+        if (inWord) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    /**
+     * Reads dog IDs given as separate words, comma-separated, or both.
+     * @param params The words.
+     * @return Returns the IDs.
+     * @throws NumberFormatException If an ID isn't a whole number.
+     */
+    static int[] parseIds(List<String> params) {
+        List<Integer> ids = new ArrayList<>();
+        for (String param : params) {
+            for (String id : param.split(",")) {
+                if (!id.isEmpty()) {
+                    ids.add(Integer.parseInt(id.trim()));
+                }
+            }
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the help text listing the commands.
+     * @return Returns the help text.
+     */
+    static String usageText() {
+        return "Usage: DoggyDaycareAMS [--db FILE] [COMMAND] [--format text|json]\n"
+                + "With no command, the menus are shown. Commands:\n"
+                + "  import FILE            import a roster file\n"
+                + "  checkin ID...          check dogs in (IDs separated by spaces or commas)\n"
+                + "  checkout ID...         check dogs out\n"
+                + "  toggle ID              check a dog in or out\n"
+                + "  show ID                print one dog\n"
+                + "  search WORDS...        find dogs by name, breed, or ID\n"
+                + "  remove ID              remove a dog\n"
+                + "  report [--dogs]        print the attendance report\n"
+                + "  feeding [DATE]         print the feeding plans for today and tomorrow, or the one expected on DATE\n"
+                + "  export [--checked-in]  print every dog as roster lines (or JSON)\n"
+                + "  export FILE            write every dog to FILE (.csv, .ndjson, or .dogs for binary)\n"
+                + "  batch                  read commands from standard input, one per line\n";
+    }
+
+    // ---- Commands ----
+
+    private int importFile(String filename, boolean json) throws IOException, SQLException {
+        ImportResult result;
+        try {
+            result = manager.importFromFile(filename, conn);
+        } catch (IOException e) {
+            return failed("Unable to read " + filename + ": " + e.getMessage(), json);
+        }
+        if (json) {
+            DogJson.appendImportResult(out, result);
+            out.write('\n');
+        } else {
+            out.write(result.toString());
+            out.write('\n');
+        }
+        return OK;
+    }
+
+    private int checkIn(List<String> params, boolean checkedIn, boolean json) throws IOException, SQLException {
+        int[] ids = parseIds(params);
+        if (ids.length == 0) {
+            return usage((checkedIn ? "checkin" : "checkout") + " needs at least one dog ID");
+        }
+        int changed = manager.setCheckedIn(ids, checkedIn, conn);
+        if (json) {
+            out.write("{\"changed\":" + changed + ",\"notFound\":" + (ids.length - changed) + "}\n");
+        } else {
+            out.write((checkedIn ? "Checked in " : "Checked out ") + changed + (changed == 1 ? " dog" : " dogs"));
+            if (changed < ids.length) {
+                out.write("; " + (ids.length - changed) + " not found");
+            }
+            out.write('\n');
+        }
+        return changed == ids.length ? OK : FAILED;
+    }
+
+    private int toggle(int id, boolean json) throws IOException, SQLException {
+        return printDog(manager.toggleCheckedIn(id, conn), id, json);
+    }
+
+    private int show(int id, boolean json) throws IOException, SQLException {
+        return printDog(manager.findDogById(id, conn), id, json);
+    }
+
+    private int remove(int id, boolean json) throws IOException, SQLException {
+        Dog removed = manager.removeDog(id, conn);
+        if (removed == null) {
+            return failed("No dog with ID " + id, json);
+        }
+        if (json) {
+            out.write("{\"removed\":" + id + "}\n");
+        } else {
+            out.write("Removed " + removed.getName() + " (ID # " + id + ")\n");
+        }
+        return OK;
+    }
+
+    private int search(String query, boolean json) throws IOException, SQLException {
+        List<Dog> dogs = manager.searchDogs(query, SEARCH_LIMIT, conn);
+        if (json) {
+            DogJson.appendDogs(out, dogs);
+            out.write('\n');
+        } else {
+            for (Dog dog : dogs) {
+                DogRenderer.appendText(out, dog);
+                out.write('\n');
+            }
+        }
+        return OK;
+    }
+
+    private int report(boolean json, boolean withDogs) throws IOException, SQLException {
+        AttendanceReport report = manager.getAttendanceReport(conn);
+        if (json) {
+            DogJson.appendReport(out, report, withDogs);
+            out.write('\n');
+        } else {
+            report.appendTo(out);
+        }
+        return OK;
+    }
+
+    /**
+     * Prints the feeding plans: the dogs checked in now plus the plans expected today and tomorrow,
+     * or only the plan expected on the given date.
+     */
+    private int feeding(String date, boolean json) throws IOException, SQLException {
+        List<FeedingPlan> plans = new ArrayList<>();
+        if (date == null) {
+            LocalDate today = LocalDate.now();
+            plans.add(manager.getFeedingPlan(conn));
+            plans.add(manager.getExpectedFeedingPlan(today, conn));
+            plans.add(manager.getExpectedFeedingPlan(today.plusDays(1), conn));
+        } else {
+            plans.add(manager.getExpectedFeedingPlan(LocalDate.parse(date), conn));
+        }
+        if (json) {
+            out.write('[');
+            for (int i = 0; i < plans.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                DogJson.appendFeedingPlan(out, plans.get(i));
+            }
+            out.write("]\n");
+        } else {
+            for (FeedingPlan plan : plans) {
+                plan.appendTo(out);
+            }
+        }
+        return OK;
+    }
+
+    /**
+     * Writes every dog (or every checked-in dog), a page at a time, as roster lines or as a JSON array.
+     */
+    private int export(boolean checkedInOnly, boolean json) throws IOException, SQLException {
+        if (json) {
+            out.write('[');
+        }
+        boolean first = true;
+        DogPage page = manager.getDogsPage(checkedInOnly, null, EXPORT_PAGE_SIZE, conn);
+        while (true) {
+            for (Dog dog : page.getDogs()) {
+                if (json) {
+                    if (!first) {
+                        out.write(',');
+                    }
+                    DogJson.appendDog(out, dog);
+                } else {
+                    DogRenderer.appendRosterLine(out, dog);
+                    out.write('\n');
+                }
+                first = false;
+            }
+            if (!page.hasMore()) {
+                break;
+            }
+            page = manager.getDogsPage(checkedInOnly, page.getLast(), EXPORT_PAGE_SIZE, conn);
+        }
+        if (json) {
+            out.write("]\n");
+        }
+        return OK;
+    }
+
+    /**
+     * Writes every dog to a file in the format its name ends with. Fails if any dog couldn't be written exactly.
+     */
+    private int exportFile(String filename, boolean json) throws IOException, SQLException {
+        RosterExporter.ExportResult result;
+        try {
+            result = manager.exportRoster(filename, RosterExporter.Format.forFileName(filename), conn);
+        } catch (IOException e) {
+            return failed("Unable to write " + filename + ": " + e.getMessage(), json);
+        }
+        if (json) {
+            out.write("{\"written\":" + result.getWrittenCount() + ",\"bytes\":" + result.getBytes() + ",\"skipped\":[");
+            List<String> skipped = result.getSkipped();
+            for (int i = 0; i < skipped.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                DogJson.appendString(out, skipped.get(i));
+            }
+            out.write("]}\n");
+        } else {
+            out.write(result.toString());
+            out.write('\n');
+        }
+        return result.getSkipped().isEmpty() ? OK : FAILED;
+    }
+
+    // ---- Helpers ----
+
+    private int printDog(Dog dog, int id, boolean json) throws IOException {
+        if (dog == null) {
+            return failed("No dog with ID " + id, json);
+        }
+        if (json) {
+            DogJson.appendDog(out, dog);
+        } else {
+            DogRenderer.appendText(out, dog);
+        }
+        out.write('\n');
+        return OK;
+    }
+
+    private int failed(String message, boolean json) throws IOException {
+        err.write(json ? DogJson.message("error", message) : "Error: " + message);
+        err.write('\n');
+        err.flush();
+        return FAILED;
+    }
+
+    private int usage(String message) throws IOException {
+        err.write("Error: " + message + " (use the help command to list the commands)\n");
+        err.flush();
+        return USAGE;
+    }
+}
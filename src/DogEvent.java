@@ -0,0 +1,117 @@
+/**
+ * DogEvent class: tells listeners that dogs changed, so a window can update just those dogs
+ * instead of reading everything again. DogManager publishes one on its DogEventBus after every
+ * change it has saved: one per dog for adds, updates, check-ins, and removals, and one per batch
+ * of dogs for an import.
+ */
+public final class DogEvent {
+
+    /**
+     * Type enum: what happened.
+     */
+    public enum Type {
+        ADDED,
+        UPDATED,
+        CHECKED_IN,
+        CHECKED_OUT,
+        REMOVED,
+        // Many dogs were added at once; only the number is given, so listeners should reload
+        IMPORTED
+    }
+
+    private final Type type;
+    private final int dogId;
+    private final Dog before;
+    private final Dog after;
+    private final int count;
+    private long sequence;
+
+    private DogEvent(Type type, int dogId, Dog before, Dog after, int count) {
+        this.type = type;
+        this.dogId = dogId;
+        this.before = before;
+        this.after = after;
+        this.count = count;
+    }
+
+    /**
+     * Creates the event for one dog that was added, changed, or removed.
+     * @param before The dog as it was, or null if it was just added or its old details aren't known.
+     * @param after The dog as it is now, or null if it was just removed.
+     * @param added True if the dog was just added.
+     * @return Returns the event.
+     */
+    static DogEvent changed(Dog before, Dog after, boolean added) {
+        Type type;
+        if (after == null) {
+            type = Type.REMOVED;
+        } else if (added) {
+            type = Type.ADDED;
+        } else if (before != null && before.isCheckedIn() != after.isCheckedIn()) {
+            type = after.isCheckedIn() ? Type.CHECKED_IN : Type.CHECKED_OUT;
+        } else {
+            type = Type.UPDATED;
+        }
+        return new DogEvent(type, after != null ? after.getId() : before.getId(), before, after, 1);
+    }
+
+    /**
+     * Creates the event for a batch of imported dogs.
+     * @param count The number of dogs added.
+     * @return Returns the event.
+     */
+    static DogEvent imported(int count) {
+        return new DogEvent(Type.IMPORTED, 0, null, null, count);
+    }
+
+    public Type getType() { return type; }
+
+    /**
+     * Gets the ID of the dog that changed.
+     * @return Returns the dog ID, or 0 for an import.
+     */
+    public int getDogId() { return dogId; }
+
+    /**
+     * Gets the dog as it was before the change.
+     * @return Returns the old dog, or null if it was just added, for an import, or if its old details
+     * weren't known (e.g. it wasn't in a bounded cache); listeners that need them should then reload.
+     */
+    public Dog getBefore() { return before; }
+
+    /**
+     * Gets the dog as it is now.
+     * @return Returns the dog as stored, or null if it was removed or for an import.
+     */
+    public Dog getAfter() { return after; }
+
+    /**
+     * Gets the number of dogs the event is about.
+     * @return Returns the number of dogs imported, or 1.
+     */
+    public int getCount() { return count; }
+
+    /**
+     * Gets the event's place in the order events were published, starting at 1.
+     * A listener that has just reloaded can skip events up to DogEventBus.getLastSequence() from before the reload.
+     * @return Returns the sequence number.
+     */
+    public long getSequence() { return sequence; }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Tells whether the old details of the dog are known, so a listener can apply the change without reloading.
+     * @return Returns true for adds and for changes to dogs that were known before.
+     */
+    public boolean isBeforeKnown() {
+        return type != Type.IMPORTED && (before != null || type == Type.ADDED);
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.IMPORTED ? "IMPORTED " + count + " dogs" : type + " dog " + dogId;
+    }
+}
@@ -0,0 +1,152 @@
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DogEventBus class: passes DogEvents from DogManager to whoever wants to know about changes.
+ * Listeners are called on the thread that made the change, right after it is saved. A window should
+ * use swingListener(), which collects the events and hands them over on the event dispatch thread
+ * at most a few times a second, so a burst of changes (like an import) causes a few repaints, not thousands.
+ */
+public class DogEventBus {
+
+    /**
+     * Listener interface: told about changes, in the order they were published.
+     */
+    public interface Listener {
+        /**
+         * Called with one or more changes.
+         * @param events The changes, oldest first.
+         */
+        void dogsChanged(List<DogEvent> events);
+    }
+
+    // How long a Swing listener collects events before handing them over
+    public static final int DEFAULT_SWING_DELAY_MILLIS = 250;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong lastSequence = new AtomicLong();
+    // Told about listeners that throw; null to use the publishing thread's own handler
+    private volatile Thread.UncaughtExceptionHandler errorHandler;
+
+    /**
+     * Starts telling a listener about changes.
+     * @param listener The listener; it is called on the thread that made the change, so it must be quick.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops telling a listener about changes.
+     * @param listener A listener passed to addListener.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Numbers an event and tells every listener about it.
+     * @param event The change that was saved.
+     */
+    public void publish(DogEvent event) {
+        event.setSequence(lastSequence.incrementAndGet());
+        if (listeners.isEmpty()) {
+            return;
+        }
+        List<DogEvent> events = Collections.singletonList(event);
+        for (Listener listener : listeners) {
+            try {
+                listener.dogsChanged(events);
+            } catch (RuntimeException ex) {
+                // The change is already saved; a broken listener must not make it look like it failed
+                listenerFailed(ex);
+            }
+        }
+    }
+
+    /**
+     * Sets what is told when a listener throws. The other listeners are still called, and the change still counts as saved.
+     * @param errorHandler The handler, or null to use the uncaught exception handler of the thread that made the change.
+     */
+    public void setErrorHandler(Thread.UncaughtExceptionHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Reports an exception thrown by a listener to the error handler.
+     */
+    private void listenerFailed(RuntimeException ex) {
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = errorHandler;
+        if (handler == null) {
+            handler = thread.getUncaughtExceptionHandler();
+        }
+        handler.uncaughtException(thread, ex);
+    }
+
+    /**
+     * Gets the sequence number of the latest event. Read it before reloading, then skip events up to it.
+     * @return Returns the last sequence number handed out, or 0 if there have been no events.
+     */
+    public long getLastSequence() {
+        return lastSequence.get();
+    }
+
+    /**
+     * Wraps a listener so it is called on the event dispatch thread, with the events of up to
+     * delayMillis collected into one call. Pass the result to addListener.
+     * @param target The listener to call on the event dispatch thread.
+     * @param delayMillis The longest time to collect events; target is called at most once per delay.
+     * @return Returns the wrapping listener.
+     */
+    public static Listener swingListener(Listener target, int delayMillis) {
+        return new SwingListener(target, delayMillis);
+    }
+
+    /**
+     * SwingListener class: collects events from any thread and hands them to a listener on the event dispatch thread.
+     */
+    private static class SwingListener implements Listener {
+        private final Listener target;
+        private final Timer timer;
+        // Events waiting to be handed over; guarded by this
+        private List<DogEvent> pending = new ArrayList<>();
+
+        SwingListener(Listener target, int delayMillis) {
+            this.target = target;
+            timer = new Timer(delayMillis, e -> deliver());
+            timer.setRepeats(false);
+        }
+
+        @Override
+        public void dogsChanged(List<DogEvent> events) {
+            boolean first;
+            synchronized (this) {
+                first = pending.isEmpty();
+                pending.addAll(events);
+            }
+            if (first) {
+                // The first event of a burst starts the timer; the rest wait for it
+                timer.start();
+            }
+        }
+
+        /**
+         * Hands the collected events over. Runs on the event dispatch thread when the timer fires.
+         */
+        private void deliver() {
+            List<DogEvent> events;
+            synchronized (this) {
+                events = pending;
+                pending = new ArrayList<>();
+            }
+            if (!events.isEmpty()) {
+                target.dogsChanged(events);
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * DogIndex class: an in-memory map from dog ID to Dog, used by DogManager as a primary-key cache.
+ * Keys are stored in a plain int array (open addressing with linear probing), so looking up a dog
+ * never allocates a boxed Integer.
+ *
+ * The index can be unbounded, or bounded to a maximum number of dogs. When a bounded index is full,
+ * adding a dog evicts one that hasn't been looked up recently (the "clock" algorithm).
+ *
+ * Dogs are copied on the way in and on the way out, so callers can change the Dog objects they
+ * get back without changing the cache.
+ */
+public class DogIndex {
+    // Largest fraction of the slots that may be used before the table grows
+    private static final double MAX_LOAD = 0.5;
+    // Smallest table size
+    private static final int MIN_CAPACITY = 16;
+
+    // Maximum number of dogs to keep, or 0 for no limit
+    private final int maxSize;
+
+    // Parallel arrays: slot i holds the dog with ID keys[i], or nothing when values[i] is null
+    private int[] keys;
+    private Dog[] values;
+    // Set when a dog is looked up, cleared by the clock hand as it passes
+    private boolean[] referenced;
+
+    private int size;
+    // Clock hand for eviction: the next slot to look at
+    private int hand;
+    // Number of dogs evicted to stay under maxSize
+    private long evictions;
+
+    /**
+     * Creates an unbounded index.
+     */
+    public DogIndex() {
+        this(0);
+    }
+
+    /**
+     * Creates an index.
+     * @param maxSize The maximum number of dogs to keep, or 0 for no limit.
+     */
+    public DogIndex(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        int capacity = MIN_CAPACITY;
+        if (this.maxSize > 0) {
+            // A bounded index never grows past this size
+            while (capacity * MAX_LOAD < this.maxSize) {
+                capacity <<= 1;
+            }
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Looks up a dog by ID.
+     * @param id The dog's ID.
+     * @return Returns a copy of the cached dog, or null if it isn't cached.
+     */
+    public synchronized Dog get(int id) {
+        int slot = find(id);
+        if (slot < 0) {
+            return null;
+        }
+        referenced[slot] = true;
+        return new Dog(values[slot]);
+    }
+
+    /**
+     * Checks if a dog is cached, without counting it as a use.
+     * @param id The dog's ID.
+     * @return Returns true if the dog is cached.
+     */
+    public synchronized boolean contains(int id) {
+        return find(id) >= 0;
+    }
+
+    /**
+     * Adds or replaces a dog. If the index is bounded and full, another dog is evicted first.
+     * @param dog The dog to cache; a copy is stored.
+     */
+    public synchronized void put(Dog dog) {
+        int id = dog.getId();
+        int slot = find(id);
+        if (slot >= 0) {
+            values[slot] = new Dog(dog);
+            referenced[slot] = true;
+            return;
+        }
+        if (maxSize > 0 && size >= maxSize) {
+            evictOne();
+        } else if (size + 1 > keys.length * MAX_LOAD) {
+            rehash(keys.length << 1);
+        }
+        slot = home(id);
+        while (values[slot] != null) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = id;
+        values[slot] = new Dog(dog);
+        referenced[slot] = true;
+        size++;
+    }
+
+    /**
+     * Removes a dog from the index.
+     * @param id The dog's ID.
+     * @return Returns true if the dog was cached.
+     */
+    public synchronized boolean remove(int id) {
+        int slot = find(id);
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Removes every dog from the index.
+     */
+    public synchronized void clear() {
+        allocate(maxSize > 0 ? keys.length : MIN_CAPACITY);
+        size = 0;
+        hand = 0;
+    }
+
+    public synchronized int size() { return size; }
+    public int getMaxSize() { return maxSize; }
+    public boolean isBounded() { return maxSize > 0; }
+    public synchronized long getEvictions() { return evictions; }
+
+    // ---- Hash table internals ----
+
+    /**
+     * Finds the slot holding an ID.
+     * @return Returns the slot, or -1 if the ID isn't in the table.
+     */
+    private int find(int id) {
+        int mask = keys.length - 1;
+        int slot = home(id);
+        while (values[slot] != null) {
+            if (keys[slot] == id) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Picks the first slot to try for an ID. The multiply spreads nearby IDs across the table.
+     */
+    private int home(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (keys.length - 1);
+    }
+
+    /**
+     * Empties a slot, then moves later entries of the same probe run back so lookups still find them.
+     */
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        values[slot] = null;
+        referenced[slot] = false;
+        size--;
+        int next = (slot + 1) & mask;
+        while (values[next] != null) {
+            int home = home(keys[next]);
+            // Move the entry back if its home slot is not between the gap and its current slot
+            boolean move = (next > slot) ? (home <= slot || home > next) : (home <= slot && home > next);
+            if (move) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                referenced[slot] = referenced[next];
+                values[next] = null;
+                referenced[next] = false;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    /**
+     * Evicts one dog using the clock algorithm: dogs looked up since the hand last passed get a second chance.
+     */
+    private void evictOne() {
+        int mask = keys.length - 1;
+        while (true) {
+            if (values[hand] != null) {
+                if (referenced[hand]) {
+                    referenced[hand] = false;
+                } else {
+                    removeSlot(hand);
+                    evictions++;
+                    return;
+                }
+            }
+            hand = (hand + 1) & mask;
+        }
+    }
+
+    /**
+     * Moves every entry into a new table of the given size.
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Dog[] oldValues = values;
+        boolean[] oldReferenced = referenced;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = home(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                referenced[slot] = oldReferenced[i];
+            }
+        }
+        hand = 0;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Dog[capacity];
+        referenced = new boolean[capacity];
+    }
+}
@@ -0,0 +1,320 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DogJson class: writes dogs, attendance reports, and import results as JSON, straight into a buffer
+ * or stream, for the network service. Like DogRenderer, it creates no objects per dog, so long
+ * lists can be streamed to a client as they are read from the database.
+ */
+public final class DogJson {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private DogJson() {
+    }
+
+    /**
+     * Writes one dog as a JSON object, e.g. {"id":1,"name":"Rex",...,"checkedIn":true,"version":2}.
+     * @param out Where to write.
+     * @param dog The dog to write.
+     * @throws IOException If out can't be written to.
+     */
+    public static void appendDog(Appendable out, Dog dog) throws IOException {
+        out.append("{\"id\":");
+        DogRenderer.appendInt(out, dog.getId());
+        out.append(",\"name\":");
+        appendString(out, dog.getName());
+        out.append(",\"breed\":");
+        appendString(out, dog.getBreed());
+        out.append(",\"dob\":");
+        appendString(out, dog.getDob());
+        out.append(",\"food\":");
+        DogRenderer.appendInt(out, dog.getFood());
+        out.append(",\"gender\":");
+        appendString(out, dog.getGender());
+        out.append(",\"spayedNeutered\":");
+        appendString(out, dog.getSpayedNeutered());
+        out.append(",\"checkedIn\":").append(dog.isCheckedIn() ? "true" : "false");
+        out.append(",\"version\":");
+        DogRenderer.appendInt(out, dog.getVersion());
+        out.append('}');
+    }
+
+    /**
+     * Writes a list of dogs as a JSON array.
+     * @param out Where to write.
+     * @param dogs The dogs to write.
+     * @throws IOException If out can't be written to.
+     */
+    public static void appendDogs(Appendable out, List<Dog> dogs) throws IOException {
+        out.append('[');
+        for (int i = 0; i < dogs.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            appendDog(out, dogs.get(i));
+        }
+        out.append(']');
+    }
+
+    /**
+     * Writes an attendance report as a JSON object: the number checked in, the food needed, their ages,
+     * and, if asked for, the checked-in dogs.
+     * @param out Where to write.
+     * @param report The report to write.
+     * @param withDogs True to include the list of checked-in dogs.
+     * @throws IOException If out can't be written to.
+     */
+    public static void appendReport(Appendable out, AttendanceReport report, boolean withDogs) throws IOException {
+        out.append("{\"checkedIn\":");
+        DogRenderer.appendInt(out, report.getCheckedInCount());
+        out.append(",\"food\":{");
+        for (int i = 0; i < report.getFoodTypeCount(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            appendString(out, report.getFoodType(i));
+            out.append(':');
+            DogRenderer.appendInt(out, report.getFoodTotal(i));
+        }
+        out.append("},\"ages\":{");
+        for (AgeBand band : AgeBand.values()) {
+            if (band.ordinal() > 0) {
+                out.append(',');
+            }
+            appendString(out, band.getLabel());
+            out.append(':');
+            DogRenderer.appendInt(out, report.getAgeBandTotal(band));
+        }
+        out.append('}');
+        if (withDogs) {
+            out.append(",\"dogs\":");
+            appendDogs(out, report.getCheckedInDogs());
+        }
+        out.append('}');
+    }
+
+    /**
+     * Writes a feeding plan as a JSON object: the day, whether the numbers are expected, and for each
+     * food type the number of dogs by size and age band, e.g. {"Dry Food":{"dogs":3,"small puppy":1,...}}.
+     * Sizes and ages with no dogs are left out.
+     * @param out Where to write.
+     * @param plan The plan to write.
+     * @throws IOException If out can't be written to.
+     */
+    public static void appendFeedingPlan(Appendable out, FeedingPlan plan) throws IOException {
+        out.append("{\"date\":");
+        appendString(out, plan.getDate().toString());
+        out.append(",\"expected\":").append(plan.isExpected() ? "true" : "false");
+        out.append(",\"dogs\":");
+        appendNumber(out, plan.getTotalDogs());
+        out.append(",\"food\":{");
+        for (int food = 0; food < plan.getFoodTypeCount(); food++) {
+            if (food > 0) {
+                out.append(',');
+            }
+            appendString(out, plan.getFoodType(food));
+            out.append(":{\"dogs\":");
+            appendNumber(out, plan.getDogs(food));
+            for (DogSize size : DogSize.values()) {
+                for (AgeBand band : AgeBand.values()) {
+                    double count = plan.getDogs(food, size, band);
+                    if (count > 0) {
+                        out.append(',');
+                        appendString(out, size.getLabel() + " " + band.getLabel());
+                        out.append(':');
+                        appendNumber(out, count);
+                    }
+                }
+            }
+            out.append('}');
+        }
+        out.append("}}");
+    }
+
+    /**
+     * Writes the attendance of every location as a JSON object: the totals, in the same fields as
+     * appendReport, then each location's report under "locations" and the locations that didn't
+     * answer, with the reason, under "unavailable".
+     * @param out Where to write.
+     * @param report The combined report to write.
+     * @param withDogs True to include each location's checked-in dogs.
+     * @throws IOException If out can't be written to.
+     */
+    public static void appendCombinedReport(Appendable out, CombinedAttendanceReport report, boolean withDogs) throws IOException {
+        out.append("{\"checkedIn\":");
+        DogRenderer.appendInt(out, report.getCheckedInCount());
+        out.append(",\"food\":{");
+        for (int i = 0; i < report.getFoodTypeCount(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            appendString(out, report.getFoodType(i));
+            out.append(':');
+            DogRenderer.appendInt(out, report.getFoodTotal(i));
+        }
+        out.append("},\"ages\":{");
+        for (AgeBand band : AgeBand.values()) {
+            if (band.ordinal() > 0) {
+                out.append(',');
+            }
+            appendString(out, band.getLabel());
+            out.append(':');
+            DogRenderer.appendInt(out, report.getAgeBandTotal(band));
+        }
+        out.append("},\"locations\":{");
+        boolean first = true;
+        for (Map.Entry<String, AttendanceReport> entry : report.getLocationReports().entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            appendString(out, entry.getKey());
+            out.append(':');
+            appendReport(out, entry.getValue(), withDogs);
+            first = false;
+        }
+        out.append('}');
+        appendUnavailable(out, report.getUnavailable());
+        out.append('}');
+    }
+
+    /**
+     * Writes the feeding plan of every location as a JSON object: the plan for all of them under
+     * "total" (null if no location answered), each location's plan under "locations", and the
+     * locations that didn't answer under "unavailable".
+     * @param out Where to write.
+     * @param plans Each location's plan.
+     * @throws IOException If out can't be written to.
+     */
+    public static void appendFeedingPlans(Appendable out, ShardedDogStore.Results<FeedingPlan> plans) throws IOException {
+        out.append("{\"total\":");
+        FeedingPlan total = plans.combine(FeedingPlan::plus);
+        if (total == null) {
+            out.append("null");
+        } else {
+            appendFeedingPlan(out, total);
+        }
+        out.append(",\"locations\":{");
+        boolean first = true;
+        for (Map.Entry<String, FeedingPlan> entry : plans.getAnswers().entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            appendString(out, entry.getKey());
+            out.append(':');
+            appendFeedingPlan(out, entry.getValue());
+            first = false;
+        }
+        out.append('}');
+        appendUnavailable(out, plans.getUnavailable());
+        out.append('}');
+    }
+
+    /**
+     * Writes the result of an import as a JSON object, with the reason for each rejected line.
+     * @param out Where to write.
+     * @param result The import result.
+     * @throws IOException If out can't be written to.
+     */
+    public static void appendImportResult(Appendable out, ImportResult result) throws IOException {
+        out.append("{\"loaded\":");
+        DogRenderer.appendInt(out, result.getLoadedCount());
+        out.append(",\"rejected\":[");
+        List<ImportResult.Rejection> rejections = result.getRejections();
+        for (int i = 0; i < rejections.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"line\":");
+            DogRenderer.appendInt(out, rejections.get(i).getLineNumber());
+            out.append(",\"reason\":");
+            appendString(out, rejections.get(i).getReason());
+            out.append('}');
+        }
+        out.append("]}");
+    }
+
+    /**
+     * Writes a JSON object with one message, e.g. {"error":"Dog not found"}.
+     * @param key The name of the field.
+     * @param message The message.
+     * @return Returns the JSON text.
+     */
+    public static String message(String key, String message) {
+        StringBuilder json = new StringBuilder(message.length() + key.length() + 8);
+        try {
+            json.append('{');
+            appendString(json, key);
+            json.append(':');
+            appendString(json, message);
+            json.append('}');
+        } catch (IOException e) {
+            // A StringBuilder never throws
+        }
+        return json.toString();
+    }
+
+    /**
+     * Writes a string as a quoted JSON string, escaping quotes, backslashes, and control characters.
+     * @param out Where to write.
+     * @param text The string, or null for JSON null.
+     * @throws IOException If out can't be written to.
+     */
+    public static void appendString(Appendable out, String text) throws IOException {
+        if (text == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            // Copy the plain run before this character in one call
+            out.append(text, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        out.append(text, start, text.length());
+        out.append('"');
+    }
+
+    /**
+     * Writes a number of dogs: whole numbers without a decimal point, averages as they are.
+     */
+    private static void appendNumber(Appendable out, double count) throws IOException {
+        if (count == Math.rint(count)) {
+            DogRenderer.appendInt(out, (int) count);
+        } else {
+            out.append(String.valueOf(count));
+        }
+    }
+
+    /**
+     * Writes the "unavailable" field, after a comma: the reason each location didn't answer.
+     */
+    private static void appendUnavailable(Appendable out, Map<String, String> unavailable) throws IOException {
+        out.append(",\"unavailable\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> entry : unavailable.entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            appendString(out, entry.getKey());
+            out.append(':');
+            appendString(out, entry.getValue());
+            first = false;
+        }
+        out.append('}');
+    }
+}
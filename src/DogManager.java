@@ -1,21 +1,45 @@
 import javax.swing.*;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.time.ZoneId;
 
 /**
  * DogManager class: stores all dogs and provides core system features.
  * This class lets us add, find, update, remove, and report on dog records.
+ * One DogManager can be used by several threads at once, as long as each thread uses its own connection
+ * (for example, one borrowed from a ConnectionPool). Every dog has a version number that each change raises,
+ * so an update or removal based on an out-of-date copy of a dog, from this program or another desk sharing
+ * the database, fails with a StaleDogException instead of silently overwriting the other change.
+ * The dogs kept in memory are dropped, and read again as needed, whenever another desk has changed the database.
  */
 public class DogManager {
-    // List to hold all Dog objects in memory for the current session
-    private ArrayList<Dog> dogs;
+    // Cache of dog records by ID, kept in step with the database on every add, update, and remove
+    private final DogIndex dogIndex;
+    // True when every dog in the database is in dogIndex, so a cache miss means the dog doesn't exist.
+    // Only trusted after checkForOutsideChanges, which drops the cache when another connection has changed the database
+    private boolean indexComplete = false;
+    // PRAGMA data_version last seen on each connection (the one behind a pooled handle)
+    private final Map<Connection, Long> dataVersions = new IdentityHashMap<>();
+    // Raised each time the cache is dropped, so a dog read from the database before then isn't cached
+    private long cacheGeneration = 0;
+    // Raised each time a dog is removed, so a dog read from the database just before its removal isn't cached
+    private long dogsRemoved = 0;
+    // Changes applied while memory is being filled from the database (see startLoad), or null when it isn't
+    private List<Dog[]> changesDuringLoad;
+    private int loadsRunning = 0;
 
     /**
      * This holds the dogs that are currently checked in.
@@ -31,14 +55,95 @@ public class DogManager {
     String[] foodTypes = {"No Food", "Dry Food", "Wet Food", "Customer Provided"};
     int[] foodTotals = new int[foodTypes.length]; // Food totals based on food types above.
 
-    StringBuilder checkedInList = new StringBuilder();
+    // Attendance count and food totals, kept up to date as dogs are added, changed, and removed
+    private final AttendanceTracker attendance = new AttendanceTracker(foodTypes);
+    // Type-ahead search by name, breed, and ID; filled at startup (or on the first search) and kept up to date
+    private final DogSearchIndex searchIndex = new DogSearchIndex();
+    // Held while the search index is being filled, so two first searches don't both fill it
+    private final Object searchLoadLock = new Object();
+    // Number of dogs in each age band, for the whole roster; filled at startup (or when first asked for) and kept up to date
+    private final AgeAnalytics ages = new AgeAnalytics();
+    // Held while the age analytics are being filled, so two first callers don't both fill them
+    private final Object ageLoadLock = new Object();
+    // History of check-ins and check-outs, or null if it isn't kept
+    private volatile AttendanceLog attendanceLog;
+    // Tells windows and other listeners about every change once it is saved
+    private final DogEventBus events = new DogEventBus();
+    // Expected feeding plans by day; past days don't change, so each is read from the history once a day
+    private volatile ExpectedPlans expectedPlans = new ExpectedPlans(null);
+
+    // Number of past weeks of attendance an expected feeding plan is based on
+    static final int FEEDING_PLAN_WEEKS = 4;
+
+    // Number of rows sent in each JDBC batch (and committed in each transaction) during a bulk import
+    static final int IMPORT_BATCH_SIZE = 1000;
+
+    // SQL used to insert one dog; shared by addDog and the bulk import
+    private static final String SQL_INSERT = "INSERT INTO dogs (id, name, breed, dob, food, gender, spayedneutered, checkedin) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
+    // SQL for the other operations; each one is prepared once per connection by the statement cache
+    private static final String SQL_SELECT_ALL = "SELECT * FROM dogs ORDER BY name ASC, id ASC";
+    private static final String SQL_SELECT_CHECKED_IN = "SELECT * FROM dogs WHERE checkedin = 1 ORDER BY name ASC, id ASC";
+    // Keyset pagination: each page starts after the (name, id) of the last dog on the page before
+    private static final String SQL_PAGE_FIRST_ALL = "SELECT * FROM dogs ORDER BY name ASC, id ASC LIMIT ?";
+    private static final String SQL_PAGE_NEXT_ALL = "SELECT * FROM dogs WHERE (name, id) > (?, ?) "
+            + "ORDER BY name ASC, id ASC LIMIT ?";
+    private static final String SQL_PAGE_FIRST_CHECKED_IN = "SELECT * FROM dogs WHERE checkedin = 1 "
+            + "ORDER BY name ASC, id ASC LIMIT ?";
+    private static final String SQL_PAGE_NEXT_CHECKED_IN = "SELECT * FROM dogs WHERE checkedin = 1 AND (name, id) > (?, ?) "
+            + "ORDER BY name ASC, id ASC LIMIT ?";
+    private static final String SQL_COUNT_ALL = "SELECT COUNT(*) FROM dogs";
+    // Export reads every dog in one pass, in ID order (the table's own order, so no sorting is needed)
+    private static final String SQL_EXPORT = "SELECT * FROM dogs ORDER BY id";
+    // Rows the driver fetches at a time while exporting
+    static final int EXPORT_FETCH_SIZE = 1000;
+    private static final String SQL_SELECT_BY_ID = "SELECT * FROM dogs WHERE ID = ?";
+    // Changes whenever another connection (another desk, or another connection of this program) commits
+    private static final String SQL_DATA_VERSION = "PRAGMA data_version";
+    private static final String SQL_SELECT_IDS = "SELECT id FROM dogs";
+    private static final String SQL_SELECT_BIRTHDAYS = "SELECT id, dob FROM dogs";
+    private static final String SQL_DELETE = "DELETE FROM dogs WHERE id = ?;";
+    private static final String SQL_DELETE_VERSION = "DELETE FROM dogs WHERE id = ? AND version = ?;";
+    private static final String SQL_UPDATE = "UPDATE dogs SET " +
+            "name = ?, " +
+            "breed = ?, " +
+            "dob = ?, " +
+            "food = ?, " +
+            "gender = ?, " +
+            "spayedneutered = ?, " +
+            "checkedin = ?, " +
+            "version = version + 1 " +
+            "WHERE id = ? AND version = ?;";
+    // Check-in and check-out only write the one column, and hand back the row as stored (needs SQLite 3.35 or newer)
+    private static final String SQL_SET_CHECKED_IN = "UPDATE dogs SET checkedin = ?, version = version + 1 "
+            + "WHERE id = ? RETURNING *;";
+    private static final String SQL_TOGGLE_CHECKED_IN = "UPDATE dogs SET checkedin = NOT checkedin, version = version + 1 "
+            + "WHERE id = ? RETURNING *;";
+
+    // Calls, errors, and latency of every operation, and the number of SQL statements run
+    private final DogMetrics metrics = new DogMetrics();
+
+    // Prepared statements for each connection this manager has used
+    private final Map<Connection, StatementCache> statementCaches = new IdentityHashMap<>();
+    // Counters carried over from caches whose connection has been closed
+    private long retiredStatementHits = 0;
+    private long retiredStatementsPrepared = 0;
 
     /**
-     * Constructor: starts with an empty list of all dogs and dogs checked in.
+     * Constructor: starts with an empty cache of all dogs and an empty list of dogs checked in.
      * We always use the same DogManager throughout the program.
      */
     public DogManager() {
-        dogs = new ArrayList<>();
+        this(0);
+    }
+
+    /**
+     * Constructor for very large databases: the dog cache holds at most maxCachedDogs records,
+     * and the least recently used ones are evicted when it is full.
+     * @param maxCachedDogs The largest number of dogs to keep in memory, or 0 for no limit.
+     */
+    public DogManager(int maxCachedDogs) {
+        dogIndex = new DogIndex(maxCachedDogs);
         dogsCheckedIn = new ArrayList<>();
     }
 
@@ -55,31 +160,32 @@ public class DogManager {
      * @throws SQLException Exceptions are handled by returning false.
      */
     public boolean addDog(Dog dog, Connection conn) throws SQLException {
-        if (findDogById(dog.getId(), conn) != null) {
+        return metrics.time(DogMetrics.Operation.ADD_DOG, () -> insertDog(dog, conn));
+    }
+
+    /**
+     * Does the work of addDog.
+     */
+    private boolean insertDog(Dog dog, Connection conn) throws SQLException {
+        checkForOutsideChanges(conn);
+        if (lookupDog(dog.getId(), conn, DogMetrics.Operation.ADD_DOG) != null) {
             // Don't add if a dog with this ID already exists (to avoid duplicates)
             return false;
         }
 
-        String sqlInsert = "INSERT INTO dogs (id, name, breed, dob, food, gender, spayedneutered, checkedin) "
-                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
+        PreparedStatement stmtInsert = statements(conn).prepare(SQL_INSERT);
 
-        PreparedStatement stmtInsert = conn.prepareStatement(sqlInsert);
-
-        stmtInsert.setInt(1, dog.getId());
-        stmtInsert.setString(2, dog.getName());
-        stmtInsert.setString(3, dog.getBreed());
-        stmtInsert.setString(4, dog.getDob());
-        stmtInsert.setInt(5,  dog.getFood());
-        stmtInsert.setString(6, dog.getGender());
-        stmtInsert.setString(7, dog.getSpayedNeutered());
-        stmtInsert.setBoolean(8, dog.isCheckedIn());
+        bindInsert(stmtInsert, dog);
 
         try {
+            metrics.statementsExecuted(1);
             stmtInsert.executeUpdate();
         }  catch (SQLException ex) {
+            metrics.failed(DogMetrics.Operation.ADD_DOG);
             return false;
         }
 
+        dogChanged(null, dog);
         return  true;
     }
 
@@ -91,83 +197,203 @@ public class DogManager {
      * @throws SQLException Exceptions are handled by returning null.
      */
     public List<Dog> getDogs(Boolean checkedIn, Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.GET_DOGS, () -> {
+            try {
+                return readDogs(checkedIn, conn);
+            } catch (SQLException ex) {
+                metrics.failed(DogMetrics.Operation.GET_DOGS);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Does the work of getDogs.
+     * @throws SQLException If the dogs can't be read.
+     */
+    private List<Dog> readDogs(Boolean checkedIn, Connection conn) throws SQLException {
         List<Dog> allDogs = new ArrayList<>();
 
-        String sqlSelect = "SELECT * FROM dogs" + (checkedIn ? " WHERE checkedin = true" : "")
-                + " ORDER BY name ASC";
-        Statement stmtSelect = conn.createStatement();
-        try (ResultSet rs = stmtSelect.executeQuery(sqlSelect)) {
+        PreparedStatement stmtSelect = statements(conn).prepare(checkedIn ? SQL_SELECT_CHECKED_IN : SQL_SELECT_ALL);
+        metrics.statementsExecuted(1);
+        try (ResultSet rs = stmtSelect.executeQuery()) {
             while (rs.next()) {
-                Dog dog = new Dog(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("breed"),
-                        rs.getString("dob"),
-                        rs.getInt("food"),
-                        rs.getString("gender"),
-                        rs.getString("spayedneutered"),
-                        rs.getBoolean("checkedin")
-                );
-                allDogs.add(dog);
+                allDogs.add(readDog(rs));
             }
-        } catch (SQLException ex) {
-            return null;
         }
         return allDogs;
     }
 
     /**
-     * Removes a dog by their unique ID.
+     * Gets one page of dogs, sorted by name and then ID.
+     * Pages are found by keyset (the name and ID of the last dog already shown), not by offset,
+     * so every page is equally fast no matter how far into the list it is.
+     * @param checkedIn If true, list only checked in dogs, otherwise all dogs.
+     * @param after The last dog of the previous page, or null for the first page.
+     * @param limit The largest number of dogs on the page.
+     * @param conn This is the active database connection.
+     * @return Returns the page of dogs.
+     * @throws SQLException If the page can't be read.
+     */
+    public DogPage getDogsPage(boolean checkedIn, Dog after, int limit, Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.GET_DOGS_PAGE, () -> readDogsPage(checkedIn, after, limit, conn));
+    }
+
+    /**
+     * Does the work of getDogsPage.
+     */
+    private DogPage readDogsPage(boolean checkedIn, Dog after, int limit, Connection conn) throws SQLException {
+        PreparedStatement stmtSelect;
+        int param = 1;
+        if (after == null) {
+            stmtSelect = statements(conn).prepare(checkedIn ? SQL_PAGE_FIRST_CHECKED_IN : SQL_PAGE_FIRST_ALL);
+        } else {
+            stmtSelect = statements(conn).prepare(checkedIn ? SQL_PAGE_NEXT_CHECKED_IN : SQL_PAGE_NEXT_ALL);
+            stmtSelect.setString(param++, after.getName());
+            stmtSelect.setInt(param++, after.getId());
+        }
+        // Ask for one extra row to find out if there is another page
+        stmtSelect.setInt(param, limit + 1);
+
+        List<Dog> dogs = new ArrayList<>(limit);
+        boolean hasMore = false;
+        metrics.statementsExecuted(1);
+        try (ResultSet rs = stmtSelect.executeQuery()) {
+            while (rs.next()) {
+                if (dogs.size() == limit) {
+                    hasMore = true;
+                    break;
+                }
+                dogs.add(readDog(rs));
+            }
+        }
+        return new DogPage(dogs, hasMore);
+    }
+
+    /**
+     * Counts the dogs in the database.
+     * Answered from memory when the cache holds every dog, or from the attendance numbers for checked-in dogs.
+     * @param checkedIn If true, count only checked in dogs, otherwise all dogs.
+     * @param conn This is the active database connection.
+     * @return Returns the number of dogs.
+     * @throws SQLException If the dogs can't be counted.
+     */
+    public int countDogs(boolean checkedIn, Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.COUNT_DOGS, () -> count(checkedIn, conn));
+    }
+
+    /**
+     * Does the work of countDogs.
+     */
+    private int count(boolean checkedIn, Connection conn) throws SQLException {
+        if (checkedIn) {
+            return attendanceReport(conn).getCheckedInCount();
+        }
+        checkForOutsideChanges(conn);
+        if (isIndexComplete()) {
+            return dogIndex.size();
+        }
+        PreparedStatement stmtCount = statements(conn).prepare(SQL_COUNT_ALL);
+        metrics.statementsExecuted(1);
+        try (ResultSet rs = stmtCount.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Removes a dog by their unique ID, whatever changes have been made to it.
      * @param id The ID of the dog to be removed.
      * @param conn This is the active database connection.
      * @return Returns a dog object for the removed dog, or null if the dog was not found.
      * @throws SQLException Exceptions are handled by returning null.
      */
     public Dog removeDog(int id,  Connection conn) throws SQLException {
-        Dog dog = findDogById(id, conn);
+        return metrics.time(DogMetrics.Operation.REMOVE_DOG, () -> deleteDog(id, null, conn));
+    }
+
+    /**
+     * Removes a dog, but only if it hasn't been changed since it was read.
+     * @param id The ID of the dog to be removed.
+     * @param expectedVersion The version of the dog when it was read (Dog.getVersion()).
+     * @param conn This is the active database connection.
+     * @return Returns a dog object for the removed dog, or null if the dog was not found.
+     * @throws StaleDogException If the dog was changed or removed by someone else since it was read.
+     * @throws SQLException Other exceptions are handled by returning null.
+     */
+    public Dog removeDog(int id, int expectedVersion, Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.REMOVE_DOG, () -> deleteDog(id, expectedVersion, conn));
+    }
+
+    /**
+     * Does the work of removeDog.
+     * @param expectedVersion The version the dog must have, or null to remove it whatever its version.
+     */
+    private Dog deleteDog(int id, Integer expectedVersion, Connection conn) throws SQLException {
+        checkForOutsideChanges(conn);
+        Dog dog = lookupDog(id, conn, DogMetrics.Operation.REMOVE_DOG);
         if (dog == null) {
             // Don't add if a dog with this ID already exists (to avoid duplicates)
             return null;
         }
 
-        String sqlDelete = "DELETE FROM dogs WHERE id = ?;";
-        PreparedStatement stmtDelete = conn.prepareStatement(sqlDelete);
-        stmtDelete.setInt(1, id);
+        PreparedStatement stmtDelete;
+        if (expectedVersion == null) {
+            stmtDelete = statements(conn).prepare(SQL_DELETE);
+            stmtDelete.setInt(1, id);
+        } else {
+            stmtDelete = statements(conn).prepare(SQL_DELETE_VERSION);
+            stmtDelete.setInt(1, id);
+            stmtDelete.setInt(2, expectedVersion);
+        }
 
+        int deleted;
         try {
-            stmtDelete.executeUpdate();
+            metrics.statementsExecuted(1);
+            deleted = stmtDelete.executeUpdate();
         }  catch (SQLException ex) {
+            metrics.failed(DogMetrics.Operation.REMOVE_DOG);
             return null;
         }
+        if (deleted == 0) {
+            // Changed or removed since it was read (possibly at another desk)
+            Dog current = reloadDog(id, conn);
+            if (expectedVersion == null) {
+                // Removed by someone else first: the dog is gone as asked, but this call didn't remove it
+                return null;
+            }
+            throw new StaleDogException(id, current);
+        }
 
+        dogChanged(dog, null);
         return dog;
     }
 
     /**
-     * Updates the entire dog record for a specific ID.
+     * Updates the entire dog record for a specific ID, but only if it hasn't been changed since it was read.
      * @param id The ID of the dog to be updated.
-     * @param updatedDog An object of type Dog of the dog to be updated.
+     * @param updatedDog An object of type Dog of the dog to be updated. Its version must be the version
+     *                   the dog had when it was read; on success it is set to the new version.
      * @param conn This is the active database connection.
      * @return Returns true if the dog is updated, otherwise false.
-     * @throws SQLException Exceptions are handled by returning false.
+     * @throws StaleDogException If the dog was changed or removed by someone else since it was read.
+     * @throws SQLException Other exceptions are handled by returning false.
      */
     public boolean updateDog(int id, Dog updatedDog, Connection conn) throws SQLException {
-        if (findDogById(id, conn) == null) {
+        return metrics.time(DogMetrics.Operation.UPDATE_DOG, () -> writeDog(id, updatedDog, conn));
+    }
+
+    /**
+     * Does the work of updateDog.
+     */
+    private boolean writeDog(int id, Dog updatedDog, Connection conn) throws SQLException {
+        checkForOutsideChanges(conn);
+        Dog before = lookupDog(id, conn, DogMetrics.Operation.UPDATE_DOG);
+        if (before == null) {
             // Don't add if a dog with this ID already exists (to avoid duplicates)
             return false;
         }
 
-        String sqlUpdate = "UPDATE dogs SET " +
-                "name = ?, " +
-                "breed = ?, " +
-                "dob = ?, " +
-                "food = ?, " +
-                "gender = ?, " +
-                "spayedneutered = ?, " +
-                "checkedin = ? " +
-                "WHERE id = ?;";
-
-        PreparedStatement stmtUpdate = conn.prepareStatement(sqlUpdate);
+        PreparedStatement stmtUpdate = statements(conn).prepare(SQL_UPDATE);
 
         stmtUpdate.setString(1, updatedDog.getName());
         stmtUpdate.setString(2, updatedDog.getBreed());
@@ -177,48 +403,293 @@ public class DogManager {
         stmtUpdate.setString(6, updatedDog.getSpayedNeutered());
         stmtUpdate.setBoolean(7, updatedDog.isCheckedIn());
         stmtUpdate.setInt(8, id);
+        stmtUpdate.setInt(9, updatedDog.getVersion());
 
+        int updated;
         try {
-            stmtUpdate.executeUpdate();
+            metrics.statementsExecuted(1);
+            updated = stmtUpdate.executeUpdate();
         }  catch (SQLException ex) {
+            metrics.failed(DogMetrics.Operation.UPDATE_DOG);
             return false;
         }
+        if (updated == 0) {
+            // Changed or removed since it was read (possibly at another desk)
+            throw new StaleDogException(id, reloadDog(id, conn));
+        }
 
+        // Cache the row as it is now stored, under the ID that was updated
+        updatedDog.setVersion(updatedDog.getVersion() + 1);
+        Dog after = new Dog(id, updatedDog.getName(), updatedDog.getBreed(), updatedDog.getDob(), updatedDog.getFood(),
+                updatedDog.getGender(), updatedDog.getSpayedNeutered(), updatedDog.isCheckedIn());
+        after.setVersion(updatedDog.getVersion());
+        dogChanged(before, after);
         return  true;
     }
 
+    /**
+     * Checks a dog in or out. Only the checked-in status is written, in a single statement,
+     * so it doesn't need to read the dog first and can't undo another desk's change to the dog's other details.
+     * @param id The ID of the dog.
+     * @param checkedIn True to check the dog in, false to check it out.
+     * @param conn This is the active database connection.
+     * @return Returns the dog as it is now stored, or null if the dog was not found.
+     * @throws SQLException Exceptions are handled by returning null.
+     */
+    public Dog setCheckedIn(int id, boolean checkedIn, Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.SET_CHECKED_IN, () -> {
+            checkForOutsideChanges(conn);
+            PreparedStatement stmtSet = statements(conn).prepare(SQL_SET_CHECKED_IN);
+            stmtSet.setBoolean(1, checkedIn);
+            stmtSet.setInt(2, id);
+            return writeCheckedIn(stmtSet, DogMetrics.Operation.SET_CHECKED_IN);
+        });
+    }
+
+    /**
+     * Checks a dog in if it is checked out, or out if it is checked in. The status is flipped by the
+     * database in a single statement, so two desks toggling the same dog at once each flip it once.
+     * @param id The ID of the dog.
+     * @param conn This is the active database connection.
+     * @return Returns the dog as it is now stored, or null if the dog was not found.
+     * @throws SQLException Exceptions are handled by returning null.
+     */
+    public Dog toggleCheckedIn(int id, Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.TOGGLE_CHECKED_IN, () -> {
+            checkForOutsideChanges(conn);
+            PreparedStatement stmtToggle = statements(conn).prepare(SQL_TOGGLE_CHECKED_IN);
+            stmtToggle.setInt(1, id);
+            return writeCheckedIn(stmtToggle, DogMetrics.Operation.TOGGLE_CHECKED_IN);
+        });
+    }
+
+    /**
+     * Checks many dogs in or out at once, e.g. during the morning drop-off, in one transaction.
+     * Either every dog found is changed or, if anything fails, none are.
+     * @param ids The IDs of the dogs; IDs that aren't found are skipped.
+     * @param checkedIn True to check the dogs in, false to check them out.
+     * @param conn This is the active database connection.
+     * @return Returns the number of dogs found and changed.
+     * @throws SQLException If the change fails; it is rolled back.
+     */
+    public int setCheckedIn(int[] ids, boolean checkedIn, Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.SET_CHECKED_IN_BATCH, () -> writeCheckedIn(ids, checkedIn, conn));
+    }
+
+    /**
+     * Runs a check-in statement prepared from SQL_SET_CHECKED_IN or SQL_TOGGLE_CHECKED_IN and updates the cache.
+     * @param stmt The statement, with its parameters set.
+     * @param operation The operation to count a failure against.
+     * @return Returns the dog as it is now stored, or null if the dog was not found or the statement failed.
+     */
+    private Dog writeCheckedIn(PreparedStatement stmt, DogMetrics.Operation operation) {
+        Dog after;
+        try {
+            metrics.statementsExecuted(1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                after = readDog(rs);
+            }
+        } catch (SQLException ex) {
+            metrics.failed(operation);
+            return null;
+        }
+
+        cachedDogChanged(after.getId(), after, false, true);
+        return after;
+    }
+
+    /**
+     * Does the work of the batch setCheckedIn.
+     */
+    private int writeCheckedIn(int[] ids, boolean checkedIn, Connection conn) throws SQLException {
+        checkForOutsideChanges(conn);
+        List<Dog> changed = new ArrayList<>(ids.length);
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        PreparedStatement stmtSet = statements(conn).prepare(SQL_SET_CHECKED_IN);
+        try {
+            for (int id : ids) {
+                stmtSet.setBoolean(1, checkedIn);
+                stmtSet.setInt(2, id);
+                metrics.statementsExecuted(1);
+                try (ResultSet rs = stmtSet.executeQuery()) {
+                    if (rs.next()) {
+                        changed.add(readDog(rs));
+                    }
+                }
+            }
+            conn.commit();
+        } catch (SQLException | RuntimeException ex) {
+            // Roll back on any failure, or restoring auto-commit below would commit half a batch
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        // Only change what's in memory once the whole batch is stored
+        for (Dog dog : changed) {
+            cachedDogChanged(dog.getId(), dog, false, true);
+        }
+        return changed.size();
+    }
+
     /**
      * Finds a dog by a specific ID.
+     * The in-memory cache is checked first; the database is only queried on a cache miss,
+     * or not at all if the cache holds every dog and no other connection has changed the database since.
      * @param id The ID of the dog to be selected from the database.
      * @param conn This is the active database connection.
      * @return Returns the Dog object if found, or null if not found.
      * @throws SQLException Exceptions are handled by returning null.
      */
     public Dog findDogById(int id, Connection conn) throws SQLException {
-        String sqlSelect = "SELECT * FROM dogs WHERE ID = ?";
-        PreparedStatement stmtSelect = conn.prepareStatement(sqlSelect);
+        return metrics.time(DogMetrics.Operation.FIND_DOG_BY_ID, () -> {
+            checkForOutsideChanges(conn);
+            return lookupDog(id, conn, DogMetrics.Operation.FIND_DOG_BY_ID);
+        });
+    }
+
+    /**
+     * Does the work of findDogById; also used by the other operations, so their lookups aren't counted twice.
+     * Callers check for outside changes first, so the cache can be trusted.
+     * @param id The dog's ID.
+     * @param conn This is the active database connection.
+     * @param operation The operation doing the lookup, which a failed read is counted against.
+     * @return Returns the Dog object if found, or null if not found or it couldn't be read.
+     */
+    private Dog lookupDog(int id, Connection conn, DogMetrics.Operation operation) throws SQLException {
+        Dog cached = dogIndex.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long generation;
+        long removed;
+        synchronized (this) {
+            if (indexComplete) {
+                // Every dog is cached, so this one doesn't exist
+                return null;
+            }
+            generation = cacheGeneration;
+            removed = dogsRemoved;
+        }
+
+        PreparedStatement stmtSelect = statements(conn).prepare(SQL_SELECT_BY_ID);
         stmtSelect.setInt(1, id);
+        metrics.statementsExecuted(1);
         try (ResultSet rs = stmtSelect.executeQuery()) {
             if (rs.next()) {
-                Dog dog = new Dog(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("breed"),
-                        rs.getString("dob"),
-                        rs.getInt("food"),
-                        rs.getString("gender"),
-                        rs.getString("spayedneutered"),
-                        rs.getBoolean("checkedin")
-                );
+                Dog dog = readDog(rs);
+                synchronized (this) {
+                    // A dog read before the cache was dropped, or before a removal, may no longer be stored
+                    if (generation == cacheGeneration && removed == dogsRemoved) {
+                        cacheDog(dog);
+                    }
+                }
                 return dog;
             } else {
                 return null;
             }
         } catch (SQLException ex) {
+            metrics.failed(operation);
             return null;
         }
     }
 
+    /**
+     * Reads a dog straight from the database and brings the cache up to date with it.
+     * Used when a change fails because the cached copy was out of date.
+     * @param id The ID of the dog.
+     * @param conn This is the active database connection.
+     * @return Returns the dog as it is now stored, or null if it has been removed.
+     * @throws SQLException If the dog can't be read.
+     */
+    private Dog reloadDog(int id, Connection conn) throws SQLException {
+        PreparedStatement stmtSelect = statements(conn).prepare(SQL_SELECT_BY_ID);
+        stmtSelect.setInt(1, id);
+        metrics.statementsExecuted(1);
+        Dog current = null;
+        try (ResultSet rs = stmtSelect.executeQuery()) {
+            if (rs.next()) {
+                current = readDog(rs);
+            }
+        }
+        // The database is right even if the cached copy has a higher version (the dog was removed and added again)
+        cachedDogChanged(id, current, true, false);
+        return current;
+    }
+
+    /**
+     * Finds dogs as the user types: by the start of any word in their name or breed, or by ID.
+     * Answered from the in-memory search index; the first search fills it if warmCache hasn't.
+     * @param query What was typed, e.g. "bud" or "bud lab" or "42"; case doesn't matter.
+     * @param limit The largest number of dogs to return.
+     * @param conn This is the active database connection.
+     * @return Returns the matching dogs; a dog whose ID was typed comes first.
+     * @throws SQLException If the dogs can't be read.
+     */
+    public List<Dog> searchDogs(String query, int limit, Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.SEARCH, () -> search(query, limit, conn));
+    }
+
+    /**
+     * Does the work of searchDogs.
+     */
+    private List<Dog> search(String query, int limit, Connection conn) throws SQLException {
+        checkForOutsideChanges(conn);
+        List<Integer> found;
+        while (true) {
+            synchronized (this) {
+                // Under the lock, so the index can't be dropped between the check and the search
+                if (searchIndex.isLoaded()) {
+                    found = searchIndex.search(query, limit);
+                    break;
+                }
+            }
+            loadSearchIndex(conn);
+        }
+        List<Dog> dogs = new ArrayList<>();
+        for (int id : found) {
+            Dog dog = lookupDog(id, conn, DogMetrics.Operation.SEARCH);
+            if (dog != null) {
+                dogs.add(dog);
+            }
+        }
+        return dogs;
+    }
+
+    /**
+     * Fills the search index with every dog. The dogs are added to a new index off to the side, which is then
+     * swapped in with the changes made meanwhile replayed on it, so a dog added or renamed during the read isn't lost.
+     * Only one thread fills the index at a time; one that waited finds it already filled.
+     * @param conn This is the active database connection.
+     * @throws SQLException If the dogs can't be read.
+     */
+    private void loadSearchIndex(Connection conn) throws SQLException {
+        synchronized (searchLoadLock) {
+            if (searchIndex.isLoaded()) {
+                return;
+            }
+            Load load = startLoad();
+            try {
+                DogSearchIndex filled = new DogSearchIndex();
+                PreparedStatement stmtSelect = statements(conn).prepare(SQL_SELECT_ALL);
+                metrics.statementsExecuted(1);
+                try (ResultSet rs = stmtSelect.executeQuery()) {
+                    while (rs.next()) {
+                        filled.add(readDog(rs));
+                    }
+                }
+                finishLoad(load, () -> searchIndex.replaceWith(filled), searchIndex::dogChanged);
+            } finally {
+                endLoad();
+            }
+        }
+    }
+
     /**
      * Loads dog records from a comma-separated text file.
      * Each line should have: id,name,breed,dob,food,gender,spayedNeutered,checkedIn
@@ -226,48 +697,314 @@ public class DogManager {
      * @param filename The name of the file containing dog data.
      * @param conn This is the active database connection.
      * @throws IOException Errors in file are skipped.
-     * @throws SQLException Handled in "addDog" method.
+     * @throws SQLException Handled in "importFromFile" method.
      */
     public void loadFromFile(String filename, Connection conn) throws IOException, SQLException {
-        BufferedReader br = new BufferedReader(new FileReader(filename));
-        String line;
+        ImportResult result = importFromFile(filename, conn);
+        JOptionPane.showMessageDialog(null, result.toString());
+    }
+
+    /**
+     * Bulk import: loads dog records from a comma-separated text file without any user interface.
+     * Each line should have: id,name,breed,dob,food,gender,spayedNeutered,checkedIn
+     * The file is parsed in parallel by RosterFileReader and streamed to this method through a bounded queue.
+     * A binary file written by exportRoster is also accepted, and read by RosterBinaryReader.
+     * One INSERT statement is prepared and reused, rows are sent in JDBC batches, and every
+     * IMPORT_BATCH_SIZE rows are committed as one transaction.
+     * Duplicate IDs are found with a single query of the existing IDs instead of one SELECT per line.
+     * @param filename The name of the file containing dog data.
+     * @param conn This is the active database connection.
+     * @return Returns the loaded/rejected counts and the reason for every rejected line.
+     * @throws IOException If the file can't be opened or read.
+     * @throws SQLException If the database can't be read or a transaction can't be committed.
+     */
+    public ImportResult importFromFile(String filename, Connection conn) throws IOException, SQLException {
+        return importFromFile(filename, conn, null);
+    }
 
-        int cntSuccess = 0;
-        int cntFail = 0;
+    /**
+     * Bulk import that reports its progress, for showing a progress indicator during long imports.
+     * @param filename The name of the file containing dog data.
+     * @param conn This is the active database connection.
+     * @param progress Called with the number of lines read so far after each batch is committed, or null.
+     * @return Returns the loaded/rejected counts and the reason for every rejected line.
+     * @throws IOException If the file can't be opened or read.
+     * @throws SQLException If the database can't be read or a transaction can't be committed.
+     */
+    public ImportResult importFromFile(String filename, Connection conn, IntConsumer progress) throws IOException, SQLException {
+        long start = System.nanoTime();
+        try {
+            return importRoster(filename, conn, progress);
+        } catch (IOException | SQLException | RuntimeException ex) {
+            metrics.failed(DogMetrics.Operation.IMPORT);
+            throw ex;
+        } finally {
+            metrics.record(DogMetrics.Operation.IMPORT, start);
+        }
+    }
 
-        while ((line = br.readLine()) != null) {
-            try {
-                // Try to parse each field; skip if anything is wrong
-                String[] parts = line.split(",");
-                if (parts.length != 8) {
-                    cntFail++;
-                    continue; // Not enough fields
+    /**
+     * Does the work of importFromFile.
+     */
+    private ImportResult importRoster(String filename, Connection conn, IntConsumer progress) throws IOException, SQLException {
+        checkForOutsideChanges(conn);
+        ImportResult result = new ImportResult();
+        Set<Integer> knownIds = findAllIds(conn);
+
+        // Dogs waiting for the next batch, with the line each one came from
+        List<Dog> pending = new ArrayList<>(IMPORT_BATCH_SIZE);
+        List<Integer> pendingLines = new ArrayList<>(IMPORT_BATCH_SIZE);
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        PreparedStatement stmtInsert = statements(conn).prepare(SQL_INSERT);
+        // Binary exports are read back by their own reader; anything else is a roster text file
+        try (RosterSource reader = RosterBinaryReader.isBinaryFile(filename)
+                ? new RosterBinaryReader(filename) : new RosterFileReader(filename)) {
+            RosterFileReader.RosterRecord record;
+            int linesRead = 0;
+            while ((record = reader.next()) != null) {
+                linesRead++;
+                int lineNumber = record.getLineNumber();
+                Dog dog = record.getDog();
+                if (dog == null) {
+                    // Skip any line with problems (bad number format, etc.)
+                    result.reject(lineNumber, record.getError());
+                    continue;
                 }
 
-                int id = Integer.parseInt(parts[0].trim());
-                String name = parts[1].trim();
-                String breed = parts[2].trim();
-                String dob = parts[3].trim();
-                int food = Integer.parseInt(parts[4].trim());
-                String gender = parts[5].trim();
-                String spayedNeutered = parts[6].trim();
-                boolean checkedIn = Boolean.parseBoolean(parts[7].trim());
+                // Don't add if a dog with this ID already exists, in the database or earlier in the file
+                if (!knownIds.add(dog.getId())) {
+                    result.reject(lineNumber, "Duplicate ID " + dog.getId());
+                    continue;
+                }
 
-                Dog dog = new Dog(id, name, breed, dob, food, gender, spayedNeutered, checkedIn);
+                pending.add(dog);
+                pendingLines.add(lineNumber);
+                if (pending.size() == IMPORT_BATCH_SIZE) {
+                    insertBatch(pending, pendingLines, stmtInsert, conn, result);
+                    if (progress != null) {
+                        progress.accept(linesRead);
+                    }
+                }
+            }
+            insertBatch(pending, pendingLines, stmtInsert, conn, result);
+        } catch (IOException | SQLException | RuntimeException ex) {
+            // Roll back on any failure, or restoring auto-commit below would commit half a batch
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return result;
+    }
 
-                if (addDog(dog, conn))
-                    cntSuccess++;
-                else
-                    cntFail++;
+    /**
+     * Writes every dog to a file, reading them with a single forward-only query, so an export of any
+     * size uses the same small amount of memory. CSV and binary files can be imported again.
+     * @param filename The file to write; replaced if it exists.
+     * @param format The format to write; see RosterExporter.Format.forFileName.
+     * @param conn This is the active database connection.
+     * @return Returns the number of dogs written, and any the format couldn't hold exactly.
+     * @throws IOException If the file can't be written.
+     * @throws SQLException If the dogs can't be read.
+     */
+    public RosterExporter.ExportResult exportRoster(String filename, RosterExporter.Format format, Connection conn)
+            throws IOException, SQLException {
+        long start = System.nanoTime();
+        try {
+            return writeRoster(filename, format, conn);
+        } catch (IOException | SQLException | RuntimeException ex) {
+            metrics.failed(DogMetrics.Operation.EXPORT);
+            throw ex;
+        } finally {
+            metrics.record(DogMetrics.Operation.EXPORT, start);
+        }
+    }
 
-            } catch (Exception e) {
-                // Skip any line with problems (bad number format, etc.)
-                cntFail++;
+    /**
+     * Does the work of exportRoster.
+     */
+    private RosterExporter.ExportResult writeRoster(String filename, RosterExporter.Format format, Connection conn)
+            throws IOException, SQLException {
+        RosterExporter exporter = new RosterExporter(Paths.get(filename), format);
+        try (RosterExporter out = exporter;
+             PreparedStatement stmtSelect = conn.prepareStatement(SQL_EXPORT, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmtSelect.setFetchSize(EXPORT_FETCH_SIZE);
+            metrics.statementsExecuted(1);
+            try (ResultSet rs = stmtSelect.executeQuery()) {
+                while (rs.next()) {
+                    out.write(readDog(rs));
+                }
+            }
+        }
+        return exporter.getResult();
+    }
+
+    /**
+     * Writes one chunk of dogs as a JDBC batch and commits it.
+     * If the batch fails, the chunk is rolled back and retried one row at a time,
+     * so a single bad row only rejects that row.
+     * @param dogs The dogs to insert; cleared when done.
+     * @param lineNumbers The input line for each dog; cleared when done.
+     * @param stmtInsert The prepared INSERT statement, reused for every row.
+     * @param conn This is the active database connection, with auto-commit turned off.
+     * @param result The import result to update.
+     * @throws SQLException If the transaction can't be committed or rolled back.
+     */
+    private void insertBatch(List<Dog> dogs, List<Integer> lineNumbers, PreparedStatement stmtInsert,
+                             Connection conn, ImportResult result) throws SQLException {
+        if (dogs.isEmpty()) {
+            return;
+        }
+        try {
+            for (Dog dog : dogs) {
+                bindInsert(stmtInsert, dog);
+                stmtInsert.addBatch();
+            }
+            metrics.statementsExecuted(dogs.size());
+            stmtInsert.executeBatch();
+            conn.commit();
+            result.addLoaded(dogs.size());
+            for (Dog dog : dogs) {
+                applyChange(null, dog);
+            }
+            events.publish(DogEvent.imported(dogs.size()));
+        } catch (SQLException ex) {
+            stmtInsert.clearBatch();
+            conn.rollback();
+            // Retry row by row to find out which rows are bad
+            int loaded = 0;
+            List<Dog> inserted = new ArrayList<>();
+            for (int i = 0; i < dogs.size(); i++) {
+                bindInsert(stmtInsert, dogs.get(i));
+                try {
+                    metrics.statementsExecuted(1);
+                    stmtInsert.executeUpdate();
+                    loaded++;
+                    inserted.add(dogs.get(i));
+                } catch (SQLException rowEx) {
+                    result.reject(lineNumbers.get(i), "Database error: " + rowEx.getMessage());
+                }
+            }
+            conn.commit();
+            result.addLoaded(loaded);
+            for (Dog dog : inserted) {
+                applyChange(null, dog);
+            }
+            if (loaded > 0) {
+                events.publish(DogEvent.imported(loaded));
+            }
+        }
+        dogs.clear();
+        lineNumbers.clear();
+    }
+
+    /**
+     * Parses one line of a roster file into a Dog.
+     * RosterFileReader follows the same rules when it parses straight from the file's bytes.
+     * @param line A line in the format id,name,breed,dob,food,gender,spayedNeutered,checkedIn
+     * @return Returns the Dog object for the line.
+     * @throws IllegalArgumentException If the line is malformed; the message says why.
+     */
+    static Dog parseDogLine(String line) {
+        String[] parts = line.split(",");
+        if (parts.length != 8) {
+            throw new IllegalArgumentException("Expected 8 fields but found " + parts.length);
+        }
+        int id;
+        int food;
+        try {
+            id = Integer.parseInt(parts[0].trim());
+            food = Integer.parseInt(parts[4].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("ID and food type must be whole numbers");
+        }
+        String name = parts[1].trim();
+        String breed = parts[2].trim();
+        String dob = parts[3].trim();
+        String gender = parts[5].trim();
+        String spayedNeutered = parts[6].trim();
+        boolean checkedIn = Boolean.parseBoolean(parts[7].trim());
+
+        return new Dog(id, name, breed, dob, food, gender, spayedNeutered, checkedIn);
+    }
+
+    /**
+     * Reads every dog ID in the database with one query.
+     * Used by the bulk import to detect duplicates without a SELECT per line.
+     * @param conn This is the active database connection.
+     * @return Returns a set containing every existing dog ID.
+     * @throws SQLException If the query fails.
+     */
+    private Set<Integer> findAllIds(Connection conn) throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        PreparedStatement stmtSelect = statements(conn).prepare(SQL_SELECT_IDS);
+        metrics.statementsExecuted(1);
+        try (ResultSet rs = stmtSelect.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
             }
         }
-        br.close();
-        JOptionPane.showMessageDialog(null, "Loaded " + cntSuccess + " dog(s) successfully!\n\n"
-            + "failed to load " + cntFail + " dogs.");
+        return ids;
+    }
+
+    /**
+     * Creates a Dog object from the current row of a result set.
+     * @param rs A result set positioned on a row of the dogs table.
+     * @return Returns the Dog object for the row.
+     * @throws SQLException If a column can't be read.
+     */
+    private static Dog readDog(ResultSet rs) throws SQLException {
+        Dog dog = new Dog(
+                rs.getInt("id"),
+                rs.getString("name"),
+                rs.getString("breed"),
+                rs.getString("dob"),
+                rs.getInt("food"),
+                rs.getString("gender"),
+                rs.getString("spayedneutered"),
+                rs.getBoolean("checkedin")
+        );
+        dog.setVersion(rs.getInt("version"));
+        return dog;
+    }
+
+    /**
+     * Sets the parameters of an INSERT statement from a dog object.
+     * @param stmtInsert A statement prepared from SQL_INSERT.
+     * @param dog The dog to insert.
+     * @throws SQLException If a parameter can't be set.
+     */
+    private static void bindInsert(PreparedStatement stmtInsert, Dog dog) throws SQLException {
+        stmtInsert.setInt(1, dog.getId());
+        stmtInsert.setString(2, dog.getName());
+        stmtInsert.setString(3, dog.getBreed());
+        stmtInsert.setString(4, dog.getDob());
+        stmtInsert.setInt(5,  dog.getFood());
+        stmtInsert.setString(6, dog.getGender());
+        stmtInsert.setString(7, dog.getSpayedNeutered());
+        stmtInsert.setBoolean(8, dog.isCheckedIn());
+    }
+
+    /**
+     * Gets the attendance report as a structured object.
+     * The numbers are kept up to date as dogs change, so this doesn't rescan the checked-in dogs;
+     * the database is only read the first time, to fill the attendance tracker, and again after
+     * another desk has changed the database.
+     * @param conn This is the active database connection.
+     * @return Returns the attendance report; call toString() on it for the formatted text.
+     * @throws SQLException If the checked-in dogs can't be read.
+     */
+    public AttendanceReport getAttendanceReport(Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.ATTENDANCE_REPORT, () -> attendanceReport(conn));
+    }
+
+    /**
+     * Does the work of getAttendanceReport.
+     */
+    private AttendanceReport attendanceReport(Connection conn) throws SQLException {
+        return fromAttendance(attendance::snapshot, conn);
     }
 
     /**
@@ -277,42 +1014,581 @@ public class DogManager {
      * @throws SQLException Handled in "getDogs" method.
      */
     public String generateAttendanceReport(Connection conn) throws SQLException {
-        dogsCheckedIn = new ArrayList<>(); // Clear out checked-in list
-        checkedInCount = 0;
+        return metrics.time(DogMetrics.Operation.ATTENDANCE_REPORT, () -> attendanceText(conn));
+    }
+
+    /**
+     * Does the work of generateAttendanceReport.
+     */
+    private String attendanceText(Connection conn) throws SQLException {
+        AttendanceReport report = attendanceReport(conn);
+
+        // Keep the public attendance fields in step with the report
+        checkedInCount = report.getCheckedInCount();
         foodTotals = new int[foodTypes.length]; // Index: 0=no food, 1=dry, 2=wet, 3=customer provided
-        checkedInList = new StringBuilder();
+        for (int i = 0; i < foodTypes.length; i++) {
+            foodTotals[i] = report.getFoodTotal(i);
+        }
+        dogsCheckedIn = new ArrayList<>(report.getCheckedInDogs());
 
-        List<Dog> dogs = getDogs(true, conn);
+        return report.toString();
+    }
 
-        // For every checked-in dog, add up food needs and collect info
-        for (Dog dog : dogs) {
-            checkedInCount++;
-            int food = dog.getFood();
-            if (food >= 0 && food < foodTypes.length) {
-                foodTotals[food]++;
+    /**
+     * Gets today's feeding plan for the dogs checked in now: portions by food type, dog size, and age band.
+     * Like the attendance report, the numbers are kept up to date as dogs change, so this takes the
+     * same short time however many dogs are checked in.
+     * @param conn This is the active database connection.
+     * @return Returns the feeding plan.
+     * @throws SQLException If the checked-in dogs can't be read.
+     */
+    public FeedingPlan getFeedingPlan(Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.FEEDING_PLAN, () -> fromAttendance(attendance::feedingPlan, conn));
+    }
+
+    /**
+     * Reads something from the attendance tracker, first filling it from the checked-in dogs if it is empty
+     * (at the start, or because another desk changed the database).
+     * @param read Reads from the tracker; called under the lock, so the tracker can't be emptied meanwhile.
+     * @param conn This is the active database connection.
+     * @return Returns what read returned.
+     * @throws SQLException If the checked-in dogs can't be read.
+     */
+    private <T> T fromAttendance(Supplier<T> read, Connection conn) throws SQLException {
+        checkForOutsideChanges(conn);
+        while (true) {
+            synchronized (this) {
+                if (attendance.isLoaded()) {
+                    return read.get();
+                }
+            }
+            Load load = startLoad();
+            try {
+                List<Dog> checkedIn = readDogs(true, conn);
+                finishLoad(load, () -> attendance.load(checkedIn), attendance::dogChanged);
+            } finally {
+                endLoad();
             }
-            checkedInList.append(dog).append("\n"); // Use Dog's toString() to show all info
-            dogsCheckedIn.add(dog); // Add dog to checked-in dogs
         }
+    }
+
+    /**
+     * Gets the feeding plan expected on a day, from the dogs that came on the same day of the week
+     * in the last few weeks. The plan for a day is read from the history the first time it is asked
+     * for each day, then kept.
+     * @param date The day to plan for, e.g. tomorrow.
+     * @param conn This is the active database connection.
+     * @return Returns the expected feeding plan; it has no dogs if there is no history yet.
+     * @throws SQLException If the history can't be read.
+     */
+    public FeedingPlan getExpectedFeedingPlan(LocalDate date, Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.FEEDING_PLAN, () -> {
+            ZoneId zone = ZoneId.systemDefault();
+            LocalDate today = LocalDate.now(zone);
+            ExpectedPlans kept = expectedPlans;
+            if (!today.equals(kept.day)) {
+                // Yesterday is now history, so every plan may change
+                kept = new ExpectedPlans(today);
+                expectedPlans = kept;
+            }
+            FeedingPlan plan = kept.plans.get(date);
+            if (plan == null) {
+                // Read without holding a lock, so other days' plans aren't kept waiting; if two threads
+                // read the same day at once, both get the plan that was kept first
+                metrics.statementsExecuted(FEEDING_PLAN_WEEKS);
+                plan = AttendanceHistory.expectedFeedingPlan(date, FEEDING_PLAN_WEEKS, foodTypes, zone, conn);
+                FeedingPlan earlier = kept.plans.putIfAbsent(date, plan);
+                if (earlier != null) {
+                    plan = earlier;
+                }
+            }
+            return plan;
+        });
+    }
 
-        // Create a formatted summary to print or return
-        String report = "";
-        report += "Attendance Report:\n";
-        report += "--\n";
-        report += "Dogs currently checked in: " + checkedInCount + "\n";
-        report += "--\n";
-        if (checkedInCount == 0) {
-            report += "No dogs are currently checked in.\n";
+    /**
+     * ExpectedPlans class: the expected feeding plans worked out on one day, by the day they are for.
+     */
+    private static class ExpectedPlans {
+        private final LocalDate day;
+        private final Map<LocalDate, FeedingPlan> plans = new ConcurrentHashMap<>();
+
+        ExpectedPlans(LocalDate day) {
+            this.day = day;
+        }
+    }
+
+    /**
+     * Gets the number of dogs in each age band (puppies, adults, seniors) for the whole roster, and the dogs in each band.
+     * The numbers are kept up to date as dogs change; the database is only read the first time if warmCache hasn't
+     * been called, and again after another desk has changed the database.
+     * @param conn This is the active database connection.
+     * @return Returns the age analytics; they keep changing along with the roster.
+     * @throws SQLException If the dogs' dates of birth can't be read.
+     */
+    public AgeAnalytics getAgeAnalytics(Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.AGE_ANALYTICS, () -> {
+            checkForOutsideChanges(conn);
+            loadAges(conn);
+            return ages;
+        });
+    }
+
+    /**
+     * Fills the age analytics with every dog's birthday, the same way loadSearchIndex fills the search index:
+     * off to the side, then swapped in with the changes made meanwhile replayed on them.
+     * @param conn This is the active database connection.
+     * @throws SQLException If the dates of birth can't be read.
+     */
+    private void loadAges(Connection conn) throws SQLException {
+        synchronized (ageLoadLock) {
+            // Read again if the cache was dropped while reading, since what was read may be out of date
+            while (!ages.isLoaded()) {
+                Load load = startLoad();
+                try {
+                    AgeAnalytics filled = new AgeAnalytics();
+                    PreparedStatement stmtSelect = statements(conn).prepare(SQL_SELECT_BIRTHDAYS);
+                    metrics.statementsExecuted(1);
+                    try (ResultSet rs = stmtSelect.executeQuery()) {
+                        while (rs.next()) {
+                            filled.add(rs.getInt("id"), CompactDog.dobToEpochDay(rs.getString("dob")));
+                        }
+                    }
+                    finishLoad(load, () -> ages.replaceWith(filled), ages::dogChanged);
+                } finally {
+                    endLoad();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the feeding plans the kitchen needs: today's for the dogs checked in now, and the plans
+     * expected today and tomorrow from past attendance.
+     * @param out The buffer to write to.
+     * @param conn This is the active database connection.
+     * @return Returns out, so calls can be chained.
+     * @throws SQLException If the checked-in dogs or the history can't be read.
+     */
+    public StringBuilder appendFeedingPlans(StringBuilder out, Connection conn) throws SQLException {
+        LocalDate today = LocalDate.now();
+        out.append(getFeedingPlan(conn)).append("--\n");
+        out.append(getExpectedFeedingPlan(today, conn)).append("--\n");
+        out.append(getExpectedFeedingPlan(today.plusDays(1), conn));
+        return out;
+    }
+
+    // ---- In-memory dog cache ----
+
+    /**
+     * Loads dogs from the database into the in-memory cache, so later lookups don't need the database.
+     * Also fills the search index and the age counts, and the attendance numbers when every dog fits in the cache. Called once at startup.
+     * If the cache is bounded, only the first dogs that fit are cached, but every dog is added to the search index.
+     * @param conn This is the active database connection.
+     * @return Returns the number of dogs loaded into the cache.
+     * @throws SQLException If the dogs can't be read.
+     */
+    public int warmCache(Connection conn) throws SQLException {
+        return metrics.time(DogMetrics.Operation.WARM_CACHE, () -> loadCache(conn));
+    }
+
+    /**
+     * Does the work of warmCache.
+     */
+    private int loadCache(Connection conn) throws SQLException {
+        checkForOutsideChanges(conn);
+        Load load = startLoad();
+        try {
+            return loadCache(load, conn);
+        } finally {
+            endLoad();
+        }
+    }
+
+    /**
+     * Reads every dog into the cache for loadCache, as part of the given load.
+     */
+    private int loadCache(Load load, Connection conn) throws SQLException {
+        // Everything is read off to the side, then put in place at once by finishLoad
+        List<Dog> cached = new ArrayList<>();
+        boolean complete = true;
+        List<Dog> checkedIn = new ArrayList<>();
+        DogSearchIndex filledSearch = new DogSearchIndex();
+        AgeAnalytics filledAges = new AgeAnalytics();
+        PreparedStatement stmtSelect = statements(conn).prepare(SQL_SELECT_ALL);
+        metrics.statementsExecuted(1);
+        try (ResultSet rs = stmtSelect.executeQuery()) {
+            while (rs.next()) {
+                Dog dog = readDog(rs);
+                // The search index and the age counts need every dog, even those that don't fit in the cache
+                filledSearch.add(dog);
+                filledAges.add(dog);
+                if (dogIndex.isBounded() && cached.size() >= dogIndex.getMaxSize()) {
+                    complete = false;
+                    continue;
+                }
+                cached.add(dog);
+                if (dog.isCheckedIn()) {
+                    checkedIn.add(dog);
+                }
+            }
+        }
+        boolean everyDog = complete;
+        boolean installed = finishLoad(load, () -> {
+            dogIndex.clear();
+            for (Dog dog : cached) {
+                dogIndex.put(dog);
+            }
+            indexComplete = everyDog;
+            searchIndex.replaceWith(filledSearch);
+            ages.replaceWith(filledAges);
+            if (everyDog) {
+                // Every dog was read, so the attendance numbers can be filled at the same time
+                attendance.load(checkedIn);
+            }
+        }, this::replayChange);
+        // If the cache was dropped while the dogs were read, they may already be out of date and weren't kept
+        return installed ? cached.size() : 0;
+    }
+
+    /**
+     * Keeps everything in memory in step with a change that was written to the database, then tells the listeners.
+     * @param before The dog as it was, or null if it was just added.
+     * @param after The dog as it is now, or null if it was just removed.
+     */
+    private void dogChanged(Dog before, Dog after) {
+        dogChanged(before, after, before == null);
+    }
+
+    /**
+     * Keeps everything in memory in step with a change that was written to the database, then tells the listeners.
+     * The listeners are called after the lock is released, so they can call back into this manager.
+     * @param before The dog as it was, or null if it was just added or isn't known.
+     * @param after The dog as it is now, or null if it was just removed.
+     * @param added True if the dog was just added.
+     */
+    private void dogChanged(Dog before, Dog after, boolean added) {
+        if (applyChange(before, after)) {
+            events.publish(DogEvent.changed(before, after, added));
+        }
+    }
+
+    /**
+     * Like dogChanged, for a change whose old details are taken from the cache rather than read first.
+     * The cached dog is read under the same lock that applies the change, so a change to the same dog
+     * on another thread can't come in between and be counted twice.
+     * @param id The ID of the dog.
+     * @param after The dog as it is now stored, or null if it has been removed.
+     * @param replace True to replace the cached copy even if its version is higher (the dog was removed and added again).
+     * @param checkInWrite True if the change was a check-in or check-out, which is always written to the attendance log.
+     */
+    private void cachedDogChanged(int id, Dog after, boolean replace, boolean checkInWrite) {
+        Dog before;
+        synchronized (this) {
+            before = dogIndex.get(id);
+            if (replace) {
+                dogIndex.remove(id);
+            }
+            if (before == null && after == null) {
+                return;
+            }
+            if (!applyChange(before, after, !checkInWrite)) {
+                return;
+            }
+            AttendanceLog log = attendanceLog;
+            if (checkInWrite && log != null) {
+                // The cached copy may be missing or out of date; the log checks open_stays and skips a change that changes nothing
+                log.record(id, after.isCheckedIn());
+            }
+        }
+        events.publish(DogEvent.changed(before, after, false));
+    }
+
+    /**
+     * Keeps the in-memory cache, the attendance numbers, and the search index in step with a change that was written to the database.
+     * @param before The dog as it was, or null if it was just added.
+     * @param after The dog as it is now, or null if it was just removed.
+     * @return Returns false if a newer change to the dog was already applied, so this one was skipped.
+     */
+    private boolean applyChange(Dog before, Dog after) {
+        return applyChange(before, after, true);
+    }
+
+    /**
+     * Like applyChange above.
+     * @param before The dog as it was, or null if it was just added.
+     * @param after The dog as it is now, or null if it was just removed.
+     * @param logCheckIns False if the caller writes the change to the attendance log itself.
+     * @return Returns false if a newer change to the dog was already applied, so this one was skipped.
+     */
+    private synchronized boolean applyChange(Dog before, Dog after, boolean logCheckIns) {
+        if (after != null) {
+            Dog cached = dogIndex.get(after.getId());
+            if (cached != null && cached.getVersion() > after.getVersion()) {
+                // Another thread's newer change to this dog got here first
+                return false;
+            }
+            cacheDog(after);
         } else {
-            report += "Checked-In Dog Details:\n";
-            report += checkedInList.toString();
+            dogIndex.remove(before.getId());
+            dogsRemoved++;
         }
-        report += "--\n";
-        report += "Food Needed Today:\n";
-        for (int i = 0; i < foodTypes.length; i++) {
-            report += "  - " + foodTypes[i] + ": " + foodTotals[i] + "\n";
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(new Dog[] {before, after});
+        }
+        attendance.dogChanged(before, after);
+        searchIndex.dogChanged(before, after);
+        ages.dogChanged(before, after);
+
+        AttendanceLog log = attendanceLog;
+        boolean wasCheckedIn = before != null && before.isCheckedIn();
+        boolean isCheckedIn = after != null && after.isCheckedIn();
+        if (logCheckIns && log != null && wasCheckedIn != isCheckedIn) {
+            log.record(after != null ? after.getId() : before.getId(), isCheckedIn);
+        }
+        return true;
+    }
+
+    /**
+     * Applies a change again to the cache and to what warmCache filled, after warmCache put what it read in place.
+     * Unlike applyChange it doesn't count removals or write to the attendance history, since that was done the first time.
+     * @param before The dog as it was, or null if it was just added.
+     * @param after The dog as it is now, or null if it was just removed.
+     */
+    private synchronized void replayChange(Dog before, Dog after) {
+        if (after != null) {
+            cacheDog(after);
+        } else {
+            dogIndex.remove(before.getId());
+        }
+        attendance.dogChanged(before, after);
+        searchIndex.dogChanged(before, after);
+        ages.dogChanged(before, after);
+    }
+
+    /**
+     * Adds a dog to the cache. If this evicts another dog, the cache no longer holds every dog.
+     * A copy older than the one already cached is ignored.
+     * @param dog The dog as it is stored in the database.
+     */
+    private synchronized void cacheDog(Dog dog) {
+        Dog cached = dogIndex.get(dog.getId());
+        if (cached != null && cached.getVersion() > dog.getVersion()) {
+            return; // Read before a newer change that is already cached
+        }
+        long evictions = dogIndex.getEvictions();
+        dogIndex.put(dog);
+        if (dogIndex.getEvictions() != evictions) {
+            indexComplete = false;
+        }
+    }
+
+    private synchronized boolean isIndexComplete() { return indexComplete; }
+
+    /**
+     * Makes sure the cache isn't out of date because another connection changed the database, for example
+     * another desk sharing the database file. SQLite changes the data_version of a connection whenever another
+     * connection commits; if it has changed since this connection was last checked, the cache is dropped and
+     * dogs are read from the database again as they are needed. A connection seen for the first time counts as
+     * a change, since there is no telling what happened before it was opened.
+     * The other connections of this program count as well, so a change made through one pooled connection
+     * also drops the cache the next time another one is used: that costs a reload, never a wrong answer.
+     * Called at the start of every operation that answers from memory.
+     * @param conn This is the active database connection.
+     * @throws SQLException If the data version can't be read.
+     */
+    private void checkForOutsideChanges(Connection conn) throws SQLException {
+        PreparedStatement stmtVersion = statements(conn).prepare(SQL_DATA_VERSION);
+        metrics.statementsExecuted(1);
+        long version;
+        try (ResultSet rs = stmtVersion.executeQuery()) {
+            version = rs.next() ? rs.getLong(1) : 0;
+        }
+        synchronized (this) {
+            Long seen = dataVersions.put(ConnectionPool.unwrapPooled(conn), version);
+            if (seen == null || seen != version) {
+                dropCache();
+            }
+        }
+    }
+
+    /**
+     * Forgets every dog kept in memory, and the attendance numbers, after the database was changed by someone else.
+     */
+    private synchronized void dropCache() {
+        cacheGeneration++;
+        dogIndex.clear();
+        indexComplete = false;
+        attendance.reset();
+        searchIndex.clear();
+        ages.clear();
+    }
+
+    /**
+     * Load class: one read of the database to fill part of what is kept in memory.
+     */
+    private static final class Load {
+        // The cache generation when the read started; if it has changed, what was read may be out of date
+        final long generation;
+        // The first change in changesDuringLoad that happened after the read started
+        final int firstChange;
+
+        Load(long generation, int firstChange) {
+            this.generation = generation;
+            this.firstChange = firstChange;
+        }
+    }
+
+    /**
+     * Starts a load. Changes applied from now on are kept, so they can be replayed on what is read:
+     * a dog changed on another thread while the load reads the database isn't lost.
+     * Call finishLoad() with what was read, and endLoad() whether or not the read worked.
+     * @return Returns the load.
+     */
+    private synchronized Load startLoad() {
+        if (changesDuringLoad == null) {
+            changesDuringLoad = new ArrayList<>();
+        }
+        loadsRunning++;
+        return new Load(cacheGeneration, changesDuringLoad.size());
+    }
+
+    /**
+     * Puts what a load read in place, then replays the changes applied since the load started.
+     * Both happen under the lock, so no other change can come in between. Nothing is put in place if
+     * the cache was dropped during the load, since what was read may be out of date.
+     * @param load The load.
+     * @param install Puts what was read in place.
+     * @param replay Applies one change, the dog before and after, to what was put in place.
+     * @return Returns false if what was read was thrown away.
+     */
+    private synchronized boolean finishLoad(Load load, Runnable install, BiConsumer<Dog, Dog> replay) {
+        if (load.generation != cacheGeneration) {
+            return false;
         }
-        return report;
+        install.run();
+        for (int i = load.firstChange; i < changesDuringLoad.size(); i++) {
+            Dog[] change = changesDuringLoad.get(i);
+            replay.accept(change[0], change[1]);
+        }
+        return true;
+    }
+
+    /**
+     * Ends a load started by startLoad().
+     */
+    private synchronized void endLoad() {
+        if (--loadsRunning == 0) {
+            changesDuringLoad = null;
+        }
+    }
+
+    /**
+     * Gets the number of dogs in the in-memory cache.
+     * @return Returns the number of cached dogs.
+     */
+    public int getCachedDogCount() {
+        return dogIndex.size();
+    }
+
+    /**
+     * Gets the metrics for this manager's operations.
+     * @return Returns the metrics; register() them to see them through JMX.
+     */
+    public DogMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the bus that tells listeners about every add, update, check-in, removal, and import once it is saved.
+     * @return Returns the event bus; add a listener to it.
+     */
+    public DogEventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * Starts keeping a history of every check-in and check-out, including dogs added already checked in
+     * and checked-in dogs that are removed.
+     * @param attendanceLog The log to write to, or null to stop keeping history.
+     */
+    public void setAttendanceLog(AttendanceLog attendanceLog) {
+        this.attendanceLog = attendanceLog;
+    }
+
+    // ---- Prepared statement cache ----
+
+    /**
+     * Gets the statement cache for a connection, creating it the first time the connection is used.
+     * Caches for connections that have since been closed are thrown away here.
+     * @param conn This is the active database connection.
+     * @return Returns the statement cache that owns the prepared statements for this connection.
+     */
+    synchronized StatementCache statements(Connection conn) {
+        // Each borrow from a ConnectionPool is a new handle; the statements belong to the connection behind it
+        conn = ConnectionPool.unwrapPooled(conn);
+        StatementCache cache = statementCaches.get(conn);
+        if (cache == null) {
+            // Drop caches of closed connections before adding a new one
+            Iterator<Map.Entry<Connection, StatementCache>> it = statementCaches.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Connection, StatementCache> old = it.next();
+                if (old.getValue().isConnectionClosed()) {
+                    retireStatements(old.getValue());
+                    dataVersions.remove(old.getKey());
+                    it.remove();
+                }
+            }
+            cache = new StatementCache(conn);
+            statementCaches.put(conn, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Closes the prepared statements kept for a connection.
+     * Call this before closing a connection that is not going to be used again.
+     * @param conn The connection whose statements should be closed.
+     */
+    public synchronized void closeStatements(Connection conn) {
+        dataVersions.remove(ConnectionPool.unwrapPooled(conn));
+        StatementCache cache = statementCaches.remove(ConnectionPool.unwrapPooled(conn));
+        if (cache != null) {
+            retireStatements(cache);
+        }
+    }
+
+    /**
+     * Closes a statement cache and keeps its counters.
+     */
+    private void retireStatements(StatementCache cache) {
+        retiredStatementHits += cache.getHits();
+        retiredStatementsPrepared += cache.getPrepared();
+        cache.close();
+    }
+
+    /**
+     * Counts how many times a prepared statement was reused instead of prepared again.
+     * @return Returns the number of statement cache hits.
+     */
+    public synchronized long getStatementCacheHits() {
+        long hits = retiredStatementHits;
+        for (StatementCache cache : statementCaches.values()) {
+            hits += cache.getHits();
+        }
+        return hits;
+    }
+
+    /**
+     * Counts how many statements have been prepared (statement cache misses).
+     * @return Returns the number of statements prepared.
+     */
+    public synchronized long getStatementsPrepared() {
+        long prepared = retiredStatementsPrepared;
+        for (StatementCache cache : statementCaches.values()) {
+            prepared += cache.getPrepared();
+        }
+        return prepared;
     }
 
     // ---- Input validation helper methods ----
@@ -323,17 +1599,14 @@ public class DogManager {
      * @return Returns true if the date is valid and not in the future, otherwise false.
      */
     public static boolean isValidDob(String dob) {
-        try {
-            LocalDate date = LocalDate.parse(dob, DateTimeFormatter.ISO_LOCAL_DATE);
-            if (date.isAfter(LocalDate.now())) {
-                // Dog can't be born in the future!
-                return false;
-            }
-            return true;
-        } catch (DateTimeParseException e) {
+        // Read with the same quick parser Dog uses, instead of building a LocalDate through the formatter
+        int epochDay = CompactDog.dobToEpochDay(dob);
+        if (epochDay == CompactDog.NO_DATE) {
             // If the format is wrong, return false
             return false;
         }
+        // Dog can't be born in the future!
+        return epochDay <= LocalDate.now().toEpochDay();
     }
 
     /**
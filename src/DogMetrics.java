@@ -0,0 +1,366 @@
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.beans.ConstructorProperties;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DogMetrics class: measures every DogManager operation while the program runs.
+ * For each operation it keeps the number of calls, the number of errors, and a latency histogram;
+ * it also counts the SQL statements run. Recording is lock-free and allocation-free, so the metrics are always on.
+ * They can be read through JMX (register), or written to a file or the console every few
+ * seconds (startDump), as a text table or as JSON.
+ */
+public class DogMetrics implements DogMetricsMXBean {
+    // JMX name the metrics are registered under
+    static final String OBJECT_NAME = "DoggyDaycareAMS:type=DogMetrics";
+    // System properties that turn on the periodic dump: where to write it ("stdout" or a file path), and how often
+    static final String DUMP_PROPERTY = "dogmetrics.dump";
+    static final String PERIOD_PROPERTY = "dogmetrics.period";
+    static final long DEFAULT_PERIOD_SECONDS = 60;
+
+    /**
+     * Operation enum: the DogManager operations that are measured.
+     */
+    public enum Operation {
+        ADD_DOG("addDog"),
+        FIND_DOG_BY_ID("findDogById"),
+        UPDATE_DOG("updateDog"),
+        REMOVE_DOG("removeDog"),
+        SET_CHECKED_IN("setCheckedIn"),
+        TOGGLE_CHECKED_IN("toggleCheckedIn"),
+        SET_CHECKED_IN_BATCH("setCheckedInBatch"),
+        GET_DOGS("getDogs"),
+        GET_DOGS_PAGE("getDogsPage"),
+        COUNT_DOGS("countDogs"),
+        SEARCH("searchDogs"),
+        IMPORT("importFromFile"),
+        EXPORT("exportRoster"),
+        ATTENDANCE_REPORT("attendanceReport"),
+        FEEDING_PLAN("feedingPlan"),
+        AGE_ANALYTICS("ageAnalytics"),
+        WARM_CACHE("warmCache");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() { return label; }
+    }
+
+    /**
+     * Call interface: database work that is timed by time().
+     * @param <T> The type of the result.
+     */
+    public interface Call<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * OperationStats class: a snapshot of one operation's numbers. Times are in microseconds.
+     */
+    public static class OperationStats {
+        private final String name;
+        private final long calls;
+        private final long errors;
+        private final double callsPerSecond;
+        private final double meanMicros;
+        private final double p50Micros;
+        private final double p90Micros;
+        private final double p99Micros;
+        private final double maxMicros;
+
+        @ConstructorProperties({"name", "calls", "errors", "callsPerSecond", "meanMicros", "p50Micros", "p90Micros",
+                "p99Micros", "maxMicros"})
+        public OperationStats(String name, long calls, long errors, double callsPerSecond, double meanMicros,
+                              double p50Micros, double p90Micros, double p99Micros, double maxMicros) {
+            this.name = name;
+            this.calls = calls;
+            this.errors = errors;
+            this.callsPerSecond = callsPerSecond;
+            this.meanMicros = meanMicros;
+            this.p50Micros = p50Micros;
+            this.p90Micros = p90Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+        }
+
+        public String getName() { return name; }
+        public long getCalls() { return calls; }
+        public long getErrors() { return errors; }
+        public double getCallsPerSecond() { return callsPerSecond; }
+        public double getMeanMicros() { return meanMicros; }
+        public double getP50Micros() { return p50Micros; }
+        public double getP90Micros() { return p90Micros; }
+        public double getP99Micros() { return p99Micros; }
+        public double getMaxMicros() { return maxMicros; }
+    }
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[Operation.values().length];
+    private final LongAdder[] errors = new LongAdder[Operation.values().length];
+    private final LongAdder sqlStatements = new LongAdder();
+    private volatile long startNanos = System.nanoTime();
+
+    // Writes the periodic dump; null until startDump is called
+    private ScheduledExecutorService dumper;
+
+    /**
+     * Constructor: starts with every counter at zero.
+     */
+    public DogMetrics() {
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LatencyHistogram();
+            errors[i] = new LongAdder();
+        }
+    }
+
+    // ---- Recording ----
+
+    /**
+     * Runs and times an operation. If it throws an exception, the operation's error count goes up too.
+     * @param operation The operation being run.
+     * @param call The work to time.
+     * @param <T> The type of the result.
+     * @return Returns the result of the call.
+     * @throws SQLException If the call throws it.
+     */
+    public <T> T time(Operation operation, Call<T> call) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return call.run();
+        } catch (SQLException | RuntimeException ex) {
+            failed(operation);
+            throw ex;
+        } finally {
+            record(operation, start);
+        }
+    }
+
+    /**
+     * Records how long an operation took. Used where time() can't wrap the work.
+     * @param operation The operation that finished.
+     * @param startNanos The value of System.nanoTime() when it started.
+     */
+    public void record(Operation operation, long startNanos) {
+        latency[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Counts an error in an operation, including one that was handled by returning false or null.
+     * @param operation The operation that failed.
+     */
+    public void failed(Operation operation) {
+        errors[operation.ordinal()].increment();
+    }
+
+    /**
+     * Counts SQL statements that were run.
+     * @param count The number of statements.
+     */
+    public void statementsExecuted(int count) {
+        sqlStatements.add(count);
+    }
+
+    // ---- Reading ----
+
+    /**
+     * Gets the number of times an operation was called.
+     * @param operation The operation.
+     * @return Returns the number of calls.
+     */
+    public long getCalls(Operation operation) {
+        return latency[operation.ordinal()].getCount();
+    }
+
+    /**
+     * Gets the number of times an operation failed.
+     * @param operation The operation.
+     * @return Returns the number of errors.
+     */
+    public long getErrors(Operation operation) {
+        return errors[operation.ordinal()].sum();
+    }
+
+    /**
+     * Gets the latency histogram of an operation.
+     * @param operation The operation.
+     * @return Returns the histogram, in nanoseconds.
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latency[operation.ordinal()];
+    }
+
+    @Override
+    public long getUptimeSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public long getSqlStatements() {
+        return sqlStatements.sum();
+    }
+
+    @Override
+    public List<OperationStats> getOperations() {
+        double seconds = Math.max((System.nanoTime() - startNanos) / 1e9, 1e-9);
+        List<OperationStats> stats = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latency[operation.ordinal()];
+            long calls = histogram.getCount();
+            stats.add(new OperationStats(operation.getLabel(), calls, getErrors(operation), calls / seconds,
+                    histogram.getMean() / 1000, histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(90) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getMax() / 1000.0));
+        }
+        return stats;
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("DogManager metrics after ").append(getUptimeSeconds()).append(" s\n");
+        report.append(String.format(Locale.ROOT, "%-18s %9s %7s %9s %10s %10s %10s %10s %10s%n",
+                "Operation", "Calls", "Errors", "Calls/s", "Mean us", "p50 us", "p90 us", "p99 us", "Max us"));
+        for (OperationStats op : getOperations()) {
+            report.append(String.format(Locale.ROOT, "%-18s %9d %7d %9.2f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    op.getName(), op.getCalls(), op.getErrors(), op.getCallsPerSecond(), op.getMeanMicros(),
+                    op.getP50Micros(), op.getP90Micros(), op.getP99Micros(), op.getMaxMicros()));
+        }
+        report.append("SQL statements: ").append(getSqlStatements()).append("\n");
+        return report.toString();
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"uptimeSeconds\":").append(getUptimeSeconds());
+        json.append(",\"sqlStatements\":").append(getSqlStatements());
+        json.append(",\"operations\":{");
+        List<OperationStats> operations = getOperations();
+        for (int i = 0; i < operations.size(); i++) {
+            OperationStats op = operations.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(op.getName()).append("\":{");
+            json.append("\"calls\":").append(op.getCalls());
+            json.append(",\"errors\":").append(op.getErrors());
+            json.append(String.format(Locale.ROOT, ",\"callsPerSecond\":%.3f,\"meanMicros\":%.1f,\"p50Micros\":%.1f,"
+                            + "\"p90Micros\":%.1f,\"p99Micros\":%.1f,\"maxMicros\":%.1f}",
+                    op.getCallsPerSecond(), op.getMeanMicros(), op.getP50Micros(), op.getP90Micros(),
+                    op.getP99Micros(), op.getMaxMicros()));
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < latency.length; i++) {
+            latency[i].reset();
+            errors[i].reset();
+        }
+        sqlStatements.reset();
+        startNanos = System.nanoTime();
+    }
+
+    // ---- Publishing ----
+
+    /**
+     * Makes the metrics visible through JMX under "DoggyDaycareAMS:type=DogMetrics".
+     * @return Returns true if registered, or false if other metrics already have that name.
+     */
+    public boolean register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+            return true;
+        } catch (InstanceAlreadyExistsException e) {
+            return false;
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register metrics", e);
+        }
+    }
+
+    /**
+     * Starts the periodic dump if the "dogmetrics.dump" system property is set, e.g.
+     *   java -Ddogmetrics.dump=metrics.json -Ddogmetrics.period=30 ...
+     * The value is "stdout" or a file; files ending in ".json" get JSON, everything else the text table.
+     * "dogmetrics.period" is the number of seconds between dumps (60 by default).
+     */
+    public void startDumpFromProperties() {
+        String target = System.getProperty(DUMP_PROPERTY);
+        if (target == null || target.isEmpty()) {
+            return;
+        }
+        long period = DEFAULT_PERIOD_SECONDS;
+        try {
+            period = Long.parseLong(System.getProperty(PERIOD_PROPERTY, String.valueOf(DEFAULT_PERIOD_SECONDS)));
+        } catch (NumberFormatException e) {
+            // Keep the default period
+        }
+        startDump(target, Math.max(period, 1));
+    }
+
+    /**
+     * Writes the metrics every few seconds on a background thread, until stopDump is called.
+     * A file is replaced on every dump, so it always holds the latest numbers.
+     * @param target "stdout" for the console, or a file; files ending in ".json" get JSON, others the text table.
+     * @param periodSeconds The number of seconds between dumps.
+     */
+    public synchronized void startDump(String target, long periodSeconds) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(target), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic dump.
+     */
+    public synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdown();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Writes the metrics once.
+     * @param target "stdout" for the console, or a file; files ending in ".json" get JSON, others the text table.
+     */
+    void dump(String target) {
+        if ("stdout".equals(target)) {
+            System.out.print(getReport());
+            return;
+        }
+        String text = target.endsWith(".json") ? getJson() + "\n" : getReport();
+        Path file = Paths.get(target);
+        Path temp = Paths.get(target + ".tmp");
+        try {
+            // Write a temporary file and move it into place, so readers never see half a dump
+            Files.write(temp, text.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Unable to write metrics to " + target + ": " + e.getMessage());
+        }
+    }
+}
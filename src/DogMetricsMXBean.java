@@ -0,0 +1,37 @@
+import java.util.List;
+
+/**
+ * DogMetricsMXBean interface: the DogManager metrics as seen through JMX (e.g. in JConsole or VisualVM).
+ * Times are in microseconds.
+ */
+public interface DogMetricsMXBean {
+    /**
+     * @return Returns how long the metrics have been collected, in seconds.
+     */
+    long getUptimeSeconds();
+
+    /**
+     * @return Returns the number of SQL statements run; a JDBC batch counts one per row.
+     */
+    long getSqlStatements();
+
+    /**
+     * @return Returns the calls, errors, throughput, and latency of every DogManager operation.
+     */
+    List<DogMetrics.OperationStats> getOperations();
+
+    /**
+     * @return Returns the metrics as a text table.
+     */
+    String getReport();
+
+    /**
+     * @return Returns the metrics as JSON.
+     */
+    String getJson();
+
+    /**
+     * Clears every counter and histogram and restarts the uptime.
+     */
+    void reset();
+}
@@ -0,0 +1,34 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DogPage class: one page of dogs from a keyset-paginated listing, sorted by name and then ID.
+ * The last dog on the page is the cursor for the next page, so each page is found with an index
+ * seek instead of skipping over all the rows before it.
+ */
+public class DogPage {
+    private final List<Dog> dogs;
+    private final boolean hasMore;
+
+    /**
+     * Creates a page.
+     * @param dogs The dogs on this page, in listing order.
+     * @param hasMore True if there are more dogs after this page.
+     */
+    public DogPage(List<Dog> dogs, boolean hasMore) {
+        this.dogs = Collections.unmodifiableList(dogs);
+        this.hasMore = hasMore;
+    }
+
+    public List<Dog> getDogs() { return dogs; }
+    public boolean hasMore() { return hasMore; }
+    public boolean isEmpty() { return dogs.isEmpty(); }
+
+    /**
+     * Gets the last dog on the page; pass it to getDogsPage to get the next page.
+     * @return Returns the last dog, or null if the page is empty.
+     */
+    public Dog getLast() {
+        return dogs.isEmpty() ? null : dogs.get(dogs.size() - 1);
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+
+/**
+ * DogRenderer class: writes a dog's information as text straight into a buffer the caller supplies.
+ * Every label is a constant, and numbers are written digit by digit, so rendering
+ * a dog creates no objects; only the caller's buffer grows. Lists and reports reuse one buffer
+ * for every dog instead of building a new string for each.
+ */
+public final class DogRenderer {
+    // Readable word for each food code, as shown in a dog's details
+    private static final String[] FOOD_LABELS = {"No Food", "Dry", "Wet", "Customer Provided"};
+    private static final String UNKNOWN_FOOD = "Unknown";
+
+    // Pieces of the text form: "ID: 1 | Name: Rex | Breed: ... | Checked In"
+    private static final String ID = "ID: ";
+    private static final String NAME = " | Name: ";
+    private static final String BREED = " | Breed: ";
+    private static final String DOB = " | DOB: ";
+    private static final String FOOD = " | Food: ";
+    private static final String GENDER = " | Gender: ";
+    private static final String SPAYED_NEUTERED = " | Spayed/Neutered: ";
+    private static final String CHECKED_IN = " | Checked In";
+    private static final String NOT_CHECKED_IN = " | Not Checked In";
+
+    private DogRenderer() {
+    }
+
+    /**
+     * Writes a dog's full details, in the same form as Dog.toString().
+     * @param out The buffer to write to.
+     * @param dog The dog to write.
+     * @return Returns out, so calls can be chained.
+     */
+    public static StringBuilder appendText(StringBuilder out, Dog dog) {
+        // Same as the Appendable version, but StringBuilder can write the ID without going digit by digit
+        out.append(ID).append(dog.getId());
+        out.append(NAME).append(dog.getName());
+        out.append(BREED).append(dog.getBreed());
+        out.append(DOB).append(dog.getDob());
+        out.append(FOOD).append(foodLabel(dog.getFood()));
+        out.append(GENDER).append(dog.getGender());
+        out.append(SPAYED_NEUTERED).append(dog.getSpayedNeutered());
+        return out.append(dog.isCheckedIn() ? CHECKED_IN : NOT_CHECKED_IN);
+    }
+
+    /**
+     * Writes a dog's full details, in the same form as Dog.toString(), e.g. to a Writer.
+     * @param out Where to write.
+     * @param dog The dog to write.
+     * @throws IOException If out can't be written to.
+     */
+    public static void appendText(Appendable out, Dog dog) throws IOException {
+        out.append(ID);
+        appendInt(out, dog.getId());
+        out.append(NAME).append(dog.getName());
+        out.append(BREED).append(dog.getBreed());
+        out.append(DOB).append(dog.getDob());
+        out.append(FOOD).append(foodLabel(dog.getFood()));
+        out.append(GENDER).append(dog.getGender());
+        out.append(SPAYED_NEUTERED).append(dog.getSpayedNeutered());
+        out.append(dog.isCheckedIn() ? CHECKED_IN : NOT_CHECKED_IN);
+    }
+
+    /**
+     * Writes a dog as one line of a roster file, in the format the import reads:
+     * id,name,breed,dob,food,gender,spayedNeutered,checkedIn
+     * @param out Where to write.
+     * @param dog The dog to write.
+     * @throws IOException If out can't be written to.
+     */
+    public static void appendRosterLine(Appendable out, Dog dog) throws IOException {
+        appendInt(out, dog.getId());
+        out.append(',').append(dog.getName());
+        out.append(',').append(dog.getBreed());
+        out.append(',').append(dog.getDob());
+        out.append(',');
+        appendInt(out, dog.getFood());
+        out.append(',').append(dog.getGender());
+        out.append(',').append(dog.getSpayedNeutered());
+        out.append(',').append(dog.isCheckedIn() ? "true" : "false");
+    }
+
+    /**
+     * Writes the one line shown for a dog in the dog list: "[ID] name (breed) food type".
+     * @param out The buffer to write to.
+     * @param dog The dog to write.
+     * @param foodTypes The readable name of each food type, by food code.
+     * @return Returns out, so calls can be chained.
+     */
+    public static StringBuilder appendListRow(StringBuilder out, Dog dog, String[] foodTypes) {
+        out.append('[').append(dog.getId()).append("] ").append(dog.getName());
+        out.append(" (").append(dog.getBreed()).append(") ");
+        int food = dog.getFood();
+        return out.append(food >= 0 && food < foodTypes.length ? foodTypes[food] : UNKNOWN_FOOD);
+    }
+
+    /**
+     * Gets the readable word for a food code, as shown in a dog's details.
+     * @param food The food code.
+     * @return Returns the word, or "Unknown" for a code with no food type.
+     */
+    public static String foodLabel(int food) {
+        return food >= 0 && food < FOOD_LABELS.length ? FOOD_LABELS[food] : UNKNOWN_FOOD;
+    }
+
+    /**
+     * Writes a whole number without creating a String for it.
+     */
+    static void appendInt(Appendable out, int value) throws IOException {
+        if (value < 0) {
+            out.append('-');
+            if (value == Integer.MIN_VALUE) {
+                out.append("2147483648");
+                return;
+            }
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            out.append((char) ('0' + value / divisor % 10));
+            divisor /= 10;
+        }
+    }
+}
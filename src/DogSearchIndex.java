@@ -0,0 +1,263 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * DogSearchIndex class: finds dogs as the user types, by the start of any word in their name or breed, or by ID.
+ * Every word (lowercased) is a key in a sorted map, holding the IDs of the dogs that have that word,
+ * so all the words starting with what was typed are one range of the map. A query of several words
+ * ("bud lab") finds dogs that have a word starting with each one.
+ * The index is kept in step with the database by DogManager on every add, update, and remove.
+ * All methods are synchronized, so it can be searched and updated from different threads.
+ */
+public class DogSearchIndex {
+    // Dog IDs for every word, in word order
+    private TreeMap<String, IdList> postings = new TreeMap<>();
+    // The words of every dog in the index, by ID; the word strings are shared with the keys of postings
+    private Map<Integer, String[]> wordsById = new HashMap<>();
+    // False until load() is called; changes before then are ignored
+    private boolean loaded = false;
+
+    /**
+     * Fills the index with every dog, replacing anything in it.
+     * @param dogs Every dog in the database.
+     */
+    public synchronized void load(Iterable<Dog> dogs) {
+        clear();
+        for (Dog dog : dogs) {
+            add(dog);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Takes over every dog in another index and marks this one as loaded; the other index is left empty.
+     * Used to fill the index off to the side (a new index and add() for every dog) while this one keeps
+     * answering, then swap the result in all at once.
+     * @param other The filled index; only the calling thread may be using it.
+     */
+    public synchronized void replaceWith(DogSearchIndex other) {
+        postings = other.postings;
+        wordsById = other.wordsById;
+        other.postings = new TreeMap<>();
+        other.wordsById = new HashMap<>();
+        loaded = true;
+    }
+
+    /**
+     * Checks if the index has been filled.
+     * @return Returns true if the index holds every dog.
+     */
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Adds a dog to the index, replacing any dog with the same ID.
+     * @param dog The dog to add.
+     */
+    public synchronized void add(Dog dog) {
+        remove(dog.getId());
+        String[] words = wordsOf(dog);
+        for (int i = 0; i < words.length; i++) {
+            IdList ids = postings.get(words[i]);
+            if (ids == null) {
+                ids = new IdList();
+                postings.put(words[i], ids);
+            } else {
+                // Share the string already used as the key instead of keeping another copy of the word
+                words[i] = postings.ceilingKey(words[i]);
+            }
+            ids.add(dog.getId());
+        }
+        wordsById.put(dog.getId(), words);
+    }
+
+    /**
+     * Removes a dog from the index.
+     * @param id The dog's ID.
+     */
+    public synchronized void remove(int id) {
+        String[] words = wordsById.remove(id);
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            IdList ids = postings.get(word);
+            ids.remove(id);
+            if (ids.size == 0) {
+                postings.remove(word);
+            }
+        }
+    }
+
+    /**
+     * Keeps the index in step with a change that was written to the database. Ignored until the index is loaded.
+     * @param before The dog as it was, or null if it was just added.
+     * @param after The dog as it is now, or null if it was just removed.
+     */
+    public synchronized void dogChanged(Dog before, Dog after) {
+        if (!loaded) {
+            return;
+        }
+        if (after != null) {
+            add(after);
+        } else {
+            remove(before.getId());
+        }
+    }
+
+    /**
+     * Empties the index and marks it as not loaded.
+     */
+    public synchronized void clear() {
+        postings.clear();
+        wordsById.clear();
+        loaded = false;
+    }
+
+    /**
+     * Gets the number of dogs in the index.
+     * @return Returns the number of dogs.
+     */
+    public synchronized int size() {
+        return wordsById.size();
+    }
+
+    /**
+     * Finds dogs matching what was typed. If the query is a number, the dog with that ID comes first.
+     * Then come dogs with a word (in name or breed) starting with every word of the query,
+     * roughly in order of the matching word.
+     * @param query What was typed; case doesn't matter.
+     * @param limit The largest number of IDs to return.
+     * @return Returns the IDs of the matching dogs, at most limit of them.
+     */
+    public synchronized List<Integer> search(String query, int limit) {
+        Set<Integer> found = new LinkedHashSet<>();
+        String[] terms = split(query);
+        if (terms.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        // A number might be an ID
+        if (terms.length == 1 && isNumber(terms[0])) {
+            try {
+                int id = Integer.parseInt(terms[0]);
+                if (wordsById.containsKey(id)) {
+                    found.add(id);
+                }
+            } catch (NumberFormatException e) {
+                // Too long to be an ID; it can still start a word
+            }
+        }
+
+        // Walk the words starting with the term that matches the fewest dogs, and check the other terms per dog
+        NavigableMap<String, IdList> range = null;
+        int fewest = Integer.MAX_VALUE;
+        for (String term : terms) {
+            NavigableMap<String, IdList> termRange = postings.subMap(term, true, term + Character.MAX_VALUE, false);
+            if (terms.length == 1) {
+                range = termRange;
+                break;
+            }
+            int count = countUpTo(termRange, fewest);
+            if (count < fewest) {
+                range = termRange;
+                fewest = count;
+            }
+        }
+        for (IdList ids : range.values()) {
+            for (int i = 0; i < ids.size && found.size() < limit; i++) {
+                int id = ids.ids[i];
+                if (terms.length == 1 || matchesAll(wordsById.get(id), terms)) {
+                    found.add(id);
+                }
+            }
+            if (found.size() >= limit) {
+                break;
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Counts the dog IDs in a range of words, stopping once the count reaches max.
+     */
+    private static int countUpTo(NavigableMap<String, IdList> range, int max) {
+        int count = 0;
+        for (IdList ids : range.values()) {
+            count += ids.size;
+            if (count >= max) {
+                return max;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks that every term starts one of a dog's words.
+     */
+    private static boolean matchesAll(String[] words, String[] terms) {
+        for (String term : terms) {
+            boolean matched = false;
+            for (String word : words) {
+                if (word.startsWith(term)) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the different words in a dog's name and breed.
+     */
+    private static String[] wordsOf(Dog dog) {
+        Set<String> words = new LinkedHashSet<>();
+        if (dog.getName() != null) {
+            words.addAll(Arrays.asList(split(dog.getName())));
+        }
+        if (dog.getBreed() != null) {
+            words.addAll(Arrays.asList(split(dog.getBreed())));
+        }
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Splits text into lowercase words made of letters and digits.
+     */
+    static String[] split(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private static boolean isNumber(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            if (term.charAt(i) < '0' || term.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,532 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DogServer class: a small HTTP/JSON service so kiosks and tablets can share one DogManager and database.
+ * It uses the web server built into the JDK. Every request borrows its own connection from the pool,
+ * so requests run at the same time; connections are kept alive between requests, and long lists are
+ * streamed page by page instead of being built in memory first.
+ *
+ * Requests (all answers are JSON):
+ *   GET  /dogs                 every dog, by name (add ?checkedIn=true for only checked-in dogs)
+ *   GET  /dogs?q=bud&amp;limit=20  type-ahead search by name, breed, or ID
+ *   GET  /dogs/{id}            one dog
+ *   POST /dogs/{id}/checkin    check a dog in; also /checkout and /toggle
+ *   POST /checkin?ids=1,2,3    check many dogs in at once; also /checkout
+ *   POST /import               import a roster file sent as the request body
+ *   GET  /report               attendance numbers (add ?dogs=true for the checked-in dogs)
+ *   GET  /metrics              operation metrics
+ *
+ * It can also serve several locations from one program, each with its own database (see ShardedDogStore).
+ * Then every request above is sent to one location by putting its key first, e.g. GET /north/dogs/12,
+ * and these requests cover every location:
+ *   GET  /locations            the location keys
+ *   GET  /report               attendance at each location and the totals (add ?dogs=true for the dogs)
+ *   GET  /feeding              feeding plan of each location and for all of them (add ?date=YYYY-MM-DD
+ *                              for the plan expected on a day)
+ *
+ * Run it with the SQLite JDBC driver on the classpath:
+ *   java -cp out:sqlite-jdbc.jar DogServer [database file] [port] [address]
+ *   java -cp out:sqlite-jdbc.jar DogServer --locations [directory of .db files] [port] [address]
+ * By default it only accepts connections from this computer; pass 0.0.0.0 as the address to serve the network.
+ */
+public class DogServer {
+    static final int DEFAULT_PORT = 8080;
+    // Dogs read from the database for each chunk of a streamed list
+    static final int STREAM_PAGE_SIZE = 500;
+    // Most dogs returned by a search
+    static final int MAX_SEARCH_LIMIT = 1000;
+
+    // The dogs this server's routes use; null for the routes that cover every location
+    private final DogManager manager;
+    private final ConnectionPool pool;
+    // Every location, when serving several; otherwise null
+    private final ShardedDogStore store;
+    // What comes before the routes in the path: "" for one database, or e.g. "/north" for a location
+    private final String prefix;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates the server; call start() to accept requests.
+     * @param manager The dog manager shared by every request.
+     * @param pool Connections to the database; its size limits how many requests use the database at once.
+     * @param address The address and port to listen on; port 0 picks a free port.
+     * @param threads The number of request threads, if virtual threads aren't available.
+     * @throws IOException If the port can't be opened.
+     */
+    public DogServer(DogManager manager, ConnectionPool pool, InetSocketAddress address, int threads) throws IOException {
+        this(manager, pool, null, "", HttpServer.create(address, 128), newRequestExecutor(threads));
+    }
+
+    /**
+     * Creates a server for several locations; call start() to accept requests.
+     * Each location's requests use that location's DogManager and connection pool, so a slow location
+     * only holds up its own requests.
+     * @param store The locations, already opened.
+     * @param address The address and port to listen on; port 0 picks a free port.
+     * @param threads The number of request threads, if virtual threads aren't available.
+     * @throws IOException If the port can't be opened.
+     */
+    public DogServer(ShardedDogStore store, InetSocketAddress address, int threads) throws IOException {
+        this(null, null, store, "", HttpServer.create(address, 128), newRequestExecutor(threads));
+        for (String location : store.getLocations()) {
+            ShardedDogStore.Shard shard = store.getShard(location);
+            // Only adds the location's routes to this server; it is started and stopped along with it
+            new DogServer(shard.getManager(), shard.getPool(), null, "/" + location, server, executor);
+        }
+    }
+
+    /**
+     * Adds the routes for one database under a prefix, or the routes that cover every location of a store.
+     */
+    private DogServer(DogManager manager, ConnectionPool pool, ShardedDogStore store, String prefix,
+                      HttpServer server, ExecutorService executor) {
+        this.manager = manager;
+        this.pool = pool;
+        this.store = store;
+        this.prefix = prefix;
+        this.server = server;
+        this.executor = executor;
+        server.setExecutor(executor);
+        if (store != null) {
+            server.createContext("/locations", this::handleLocations);
+            server.createContext("/report", this::handleLocationsReport);
+            server.createContext("/feeding", this::handleLocationsFeeding);
+            return;
+        }
+        server.createContext(prefix + "/dogs", this::handleDogs);
+        server.createContext(prefix + "/checkin", exchange -> handleBatchCheckIn(exchange, true));
+        server.createContext(prefix + "/checkout", exchange -> handleBatchCheckIn(exchange, false));
+        server.createContext(prefix + "/import", this::handleImport);
+        server.createContext(prefix + "/report", this::handleReport);
+        server.createContext(prefix + "/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Starts accepting requests in the background.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the ones running to finish, and stops the threads.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the port the server is listening on; useful when it was started on port 0.
+     * @return Returns the port number.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Runs the server until the program is stopped.
+     * @param args Optional: the database file (dogs.db), the port (8080), and the address to listen on (127.0.0.1);
+     *             or --locations and a directory with one database per location, then the port and address.
+     * @throws Exception If the database or the port can't be opened.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 1 && args[0].equals("--locations")) {
+            serveLocations(Paths.get(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT,
+                    args.length > 3 ? args[3] : "127.0.0.1");
+            return;
+        }
+        String dbFile = args.length > 0 ? args[0] : DoggyDaycareAMS.DEFAULT_DB_FILE;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        String host = args.length > 2 ? args[2] : "127.0.0.1";
+
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + dbFile, 8);
+        DogManager manager = new DogManager();
+        try (Connection conn = pool.borrow()) {
+            SchemaMigrator.migrate(conn);
+            manager.warmCache(conn);
+        }
+        AttendanceLog attendanceLog = new AttendanceLog(pool.borrow());
+        manager.setAttendanceLog(attendanceLog);
+        manager.getMetrics().register();
+        manager.getMetrics().startDumpFromProperties();
+
+        DogServer server = new DogServer(manager, pool, new InetSocketAddress(host, port), 16);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            attendanceLog.close();
+            pool.close();
+        }, "server-shutdown"));
+        server.start();
+        System.out.println("Serving " + dbFile + " on http://" + host + ":" + server.getPort() + "/");
+    }
+
+    /**
+     * Runs the server for every location in a directory until the program is stopped.
+     * The locations are opened at the same time; one that can't be opened is reported and its requests fail.
+     */
+    private static void serveLocations(Path directory, int port, String host) throws Exception {
+        ShardedDogStore store = ShardedDogStore.inDirectory(directory);
+        ShardedDogStore.Results<Integer> opened = store.open();
+        for (Map.Entry<String, String> entry : opened.getUnavailable().entrySet()) {
+            System.err.println("Couldn't open location " + entry.getKey() + ": " + entry.getValue());
+        }
+
+        DogServer server = new DogServer(store, new InetSocketAddress(host, port), 16);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            store.close();
+        }, "server-shutdown"));
+        server.start();
+        System.out.println("Serving " + store.getLocations().size() + " locations from " + directory
+                + " on http://" + host + ":" + server.getPort() + "/");
+    }
+
+    /**
+     * Creates the threads that run requests: a virtual thread per request when the Java version has them
+     * (21 and newer), otherwise a fixed pool. Either way, the connection pool limits how many requests
+     * use the database at once.
+     */
+    private static ExecutorService newRequestExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "dog-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // ---- Request handlers ----
+
+    /**
+     * Handles /dogs, /dogs/{id}, and /dogs/{id}/checkin, /checkout, /toggle.
+     */
+    private void handleDogs(HttpExchange exchange) throws IOException {
+        String[] parts = exchange.getRequestURI().getPath().substring(prefix.length()).split("/");
+        // parts[0] is empty, parts[1] is "dogs"
+        try (Connection conn = pool.borrow()) {
+            if (parts.length == 2) {
+                if (!requireMethod(exchange, "GET")) {
+                    return;
+                }
+                Map<String, String> query = queryOf(exchange);
+                if (query.containsKey("q")) {
+                    int limit;
+                    try {
+                        limit = intParam(query, "limit", 20);
+                    } catch (NumberFormatException e) {
+                        limit = -1;
+                    }
+                    if (limit < 0) {
+                        send(exchange, 400, DogJson.message("error", "Limit must be a whole number, 0 or more"));
+                        return;
+                    }
+                    limit = Math.min(limit, MAX_SEARCH_LIMIT);
+                    StringBuilder json = new StringBuilder();
+                    DogJson.appendDogs(json, manager.searchDogs(query.get("q"), limit, conn));
+                    send(exchange, 200, json);
+                } else {
+                    streamDogs(exchange, Boolean.parseBoolean(query.get("checkedIn")), conn);
+                }
+                return;
+            }
+
+            int id = Integer.parseInt(parts[2]);
+            Dog dog;
+            if (parts.length == 3) {
+                if (!requireMethod(exchange, "GET")) {
+                    return;
+                }
+                dog = manager.findDogById(id, conn);
+            } else if (parts.length == 4 && requireMethod(exchange, "POST")) {
+                if (parts[3].equals("checkin")) {
+                    dog = manager.setCheckedIn(id, true, conn);
+                } else if (parts[3].equals("checkout")) {
+                    dog = manager.setCheckedIn(id, false, conn);
+                } else if (parts[3].equals("toggle")) {
+                    dog = manager.toggleCheckedIn(id, conn);
+                } else {
+                    send(exchange, 404, DogJson.message("error", "Unknown action " + parts[3]));
+                    return;
+                }
+            } else {
+                if (parts.length != 4) {
+                    send(exchange, 404, DogJson.message("error", "Not found"));
+                }
+                return;
+            }
+
+            if (dog == null) {
+                send(exchange, 404, DogJson.message("error", "No dog with ID " + id));
+            } else {
+                StringBuilder json = new StringBuilder(256);
+                DogJson.appendDog(json, dog);
+                send(exchange, 200, json);
+            }
+        } catch (NumberFormatException e) {
+            send(exchange, 400, DogJson.message("error", "Dog ID must be a whole number"));
+        } catch (SQLException e) {
+            send(exchange, 500, DogJson.message("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Sends every dog (or every checked-in dog) as a JSON array, a page at a time, so the whole list is
+     * never held in memory and the client starts receiving dogs right away.
+     * The first page is read before the status is sent, so a database error there is still answered with a 500.
+     * If a later page can't be read, the connection is dropped instead of ending the list early, so the client
+     * sees that the list was cut short rather than getting a shorter list.
+     */
+    private void streamDogs(HttpExchange exchange, boolean checkedIn, Connection conn) throws IOException, SQLException {
+        DogPage page = manager.getDogsPage(checkedIn, null, STREAM_PAGE_SIZE, conn);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0); // Length 0 means the body is sent in chunks
+        // Not closed on failure: closing would end the chunked body as if the list were complete
+        Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 16384);
+        try {
+            out.write('[');
+            boolean first = true;
+            while (true) {
+                for (Dog dog : page.getDogs()) {
+                    if (!first) {
+                        out.write(',');
+                    }
+                    DogJson.appendDog(out, dog);
+                    first = false;
+                }
+                if (!page.hasMore()) {
+                    break;
+                }
+                page = manager.getDogsPage(checkedIn, page.getLast(), STREAM_PAGE_SIZE, conn);
+            }
+            out.write(']');
+        } catch (SQLException e) {
+            // The 200 has been sent, so no other status can be; the web server drops the connection on an IOException
+            throw new IOException("Dog list cut short: " + e.getMessage(), e);
+        }
+        out.close();
+    }
+
+    /**
+     * Handles /checkin?ids=1,2,3 and /checkout?ids=1,2,3: changes every dog in one transaction.
+     */
+    private void handleBatchCheckIn(HttpExchange exchange, boolean checkedIn) throws IOException {
+        if (!requireMethod(exchange, "POST")) {
+            return;
+        }
+        String ids = queryOf(exchange).get("ids");
+        if (ids == null || ids.isEmpty()) {
+            send(exchange, 400, DogJson.message("error", "Give the dogs as ?ids=1,2,3"));
+            return;
+        }
+        try (Connection conn = pool.borrow()) {
+            String[] idText = ids.split(",");
+            int[] dogIds = new int[idText.length];
+            for (int i = 0; i < idText.length; i++) {
+                dogIds[i] = Integer.parseInt(idText[i].trim());
+            }
+            int changed = manager.setCheckedIn(dogIds, checkedIn, conn);
+            send(exchange, 200, "{\"changed\":" + changed + "}");
+        } catch (NumberFormatException e) {
+            send(exchange, 400, DogJson.message("error", "Dog IDs must be whole numbers"));
+        } catch (SQLException e) {
+            send(exchange, 500, DogJson.message("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Handles POST /import: the body is a roster file, in the same format the import button reads.
+     */
+    private void handleImport(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "POST")) {
+            return;
+        }
+        File roster = File.createTempFile("import", ".txt");
+        ImportResult result;
+        // The request body is closed by send(), which also reads whatever is left of it after a failure
+        try (Connection conn = pool.borrow()) {
+            Files.copy(exchange.getRequestBody(), roster.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            result = manager.importFromFile(roster.getPath(), conn);
+        } catch (SQLException e) {
+            send(exchange, 500, DogJson.message("error", e.getMessage()));
+            return;
+        } catch (IOException e) {
+            // The roster couldn't be received or read, e.g. a damaged binary roster
+            send(exchange, 400, DogJson.message("error", "Couldn't read the roster: " + e.getMessage()));
+            return;
+        } finally {
+            roster.delete();
+        }
+        StringBuilder json = new StringBuilder();
+        DogJson.appendImportResult(json, result);
+        send(exchange, 200, json);
+    }
+
+    /**
+     * Handles GET /report: the attendance numbers, and the checked-in dogs if ?dogs=true.
+     */
+    private void handleReport(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        boolean withDogs = Boolean.parseBoolean(queryOf(exchange).get("dogs"));
+        try (Connection conn = pool.borrow()) {
+            StringBuilder json = new StringBuilder();
+            DogJson.appendReport(json, manager.getAttendanceReport(conn), withDogs);
+            send(exchange, 200, json);
+        } catch (SQLException e) {
+            send(exchange, 500, DogJson.message("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Handles GET /metrics.
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        if (requireMethod(exchange, "GET")) {
+            send(exchange, 200, manager.getMetrics().getJson());
+        }
+    }
+
+    /**
+     * Handles GET /locations: the location keys.
+     */
+    private void handleLocations(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"locations\":[");
+        for (String location : store.getLocations()) {
+            if (json.charAt(json.length() - 1) != '[') {
+                json.append(',');
+            }
+            DogJson.appendString(json, location);
+        }
+        send(exchange, 200, json.append("]}"));
+    }
+
+    /**
+     * Handles GET /report for every location: each location's numbers and the totals. Locations that
+     * don't answer in time are listed under "unavailable" instead of holding up the answer.
+     */
+    private void handleLocationsReport(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        boolean withDogs = Boolean.parseBoolean(queryOf(exchange).get("dogs"));
+        StringBuilder json = new StringBuilder();
+        DogJson.appendCombinedReport(json, store.getAttendanceReport(), withDogs);
+        send(exchange, 200, json);
+    }
+
+    /**
+     * Handles GET /feeding for every location: the plan for the dogs checked in now, or with
+     * ?date=YYYY-MM-DD the plan expected on that day.
+     */
+    private void handleLocationsFeeding(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        String date = queryOf(exchange).get("date");
+        ShardedDogStore.Results<FeedingPlan> plans;
+        try {
+            plans = date == null ? store.getFeedingPlans() : store.getExpectedFeedingPlans(LocalDate.parse(date));
+        } catch (DateTimeParseException e) {
+            send(exchange, 400, DogJson.message("error", "Give the date as ?date=YYYY-MM-DD"));
+            return;
+        }
+        StringBuilder json = new StringBuilder();
+        DogJson.appendFeedingPlans(json, plans);
+        send(exchange, 200, json);
+    }
+
+    // ---- Helpers ----
+
+    /**
+     * Checks the request method, answering 405 if it is wrong.
+     * @return Returns true if the method is right.
+     */
+    private static boolean requireMethod(HttpExchange exchange, String method) throws IOException {
+        if (exchange.getRequestMethod().equals(method)) {
+            return true;
+        }
+        exchange.getResponseHeaders().set("Allow", method);
+        send(exchange, 405, DogJson.message("error", "Use " + method));
+        return false;
+    }
+
+    /**
+     * Sends a complete JSON answer with its length, so the connection can be kept alive for the next request.
+     */
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        // Read anything the client sent that wasn't used, or the connection can't be reused
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Reads the query string (?a=1&amp;b=2) into a map.
+     */
+    private static Map<String, String> queryOf(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
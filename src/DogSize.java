@@ -0,0 +1,90 @@
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DogSize enum: how big a dog of a breed grows, which sets the size of its meals.
+ * Known breeds are looked up in a table. Other breeds are guessed from words like "Toy" or "Giant"
+ * in the name, and anything else (including mixed breeds) counts as medium.
+ */
+public enum DogSize {
+    SMALL("small"),
+    MEDIUM("medium"),
+    LARGE("large"),
+    GIANT("giant");
+
+    // Breed names in lower case, by size
+    private static final Map<String, DogSize> BREEDS = new HashMap<>();
+    // Sizes already worked out, by the breed name exactly as stored; a roster only has a few breeds
+    private static final Map<String, DogSize> seen = new ConcurrentHashMap<>();
+
+    static {
+        for (String breed : new String[] {"Chihuahua", "Pug", "Shih Tzu", "Yorkshire Terrier", "Dachshund",
+                "Boston Terrier", "Miniature Schnauzer", "Pomeranian", "Maltese", "French Bulldog", "Papillon",
+                "Bichon Frise", "Havanese", "Lhasa Apso", "Jack Russell Terrier", "West Highland White Terrier",
+                "Cavalier King Charles Spaniel"}) {
+            BREEDS.put(breed.toLowerCase(Locale.ROOT), SMALL);
+        }
+        for (String breed : new String[] {"Beagle", "Bulldog", "Corgi", "Poodle", "Border Collie", "Australian Shepherd",
+                "Cocker Spaniel", "Siberian Husky", "Shiba Inu", "Whippet", "English Springer Spaniel", "Basset Hound"}) {
+            BREEDS.put(breed.toLowerCase(Locale.ROOT), MEDIUM);
+        }
+        for (String breed : new String[] {"Labrador Retriever", "Golden Retriever", "German Shepherd", "Boxer",
+                "Rottweiler", "Pointer", "Doberman Pinscher", "Weimaraner", "Dalmatian", "Bernese Mountain Dog",
+                "Rhodesian Ridgeback", "Standard Poodle"}) {
+            BREEDS.put(breed.toLowerCase(Locale.ROOT), LARGE);
+        }
+        for (String breed : new String[] {"Great Dane", "Saint Bernard", "Mastiff", "Newfoundland", "Irish Wolfhound",
+                "Great Pyrenees", "Leonberger"}) {
+            BREEDS.put(breed.toLowerCase(Locale.ROOT), GIANT);
+        }
+    }
+
+    private final String label;
+
+    DogSize(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Gets the lower-case name used in reports, e.g. "small".
+     * @return Returns the label.
+     */
+    public String getLabel() { return label; }
+
+    /**
+     * Works out the size of a breed.
+     * @param breed The breed name, in any case; may be null.
+     * @return Returns the breed's size, or MEDIUM if it isn't known.
+     */
+    public static DogSize forBreed(String breed) {
+        if (breed == null) {
+            return MEDIUM;
+        }
+        DogSize size = seen.get(breed);
+        if (size == null) {
+            size = lookUp(breed);
+            seen.put(breed, size);
+        }
+        return size;
+    }
+
+    /**
+     * Finds a breed in the table, or guesses its size from its name.
+     */
+    private static DogSize lookUp(String breed) {
+        String name = breed.trim().toLowerCase(Locale.ROOT);
+        DogSize size = BREEDS.get(name);
+        if (size != null) {
+            return size;
+        }
+        if (name.startsWith("toy ") || name.startsWith("miniature ") || name.startsWith("mini ")) {
+            return SMALL;
+        }
+        if (name.startsWith("giant ")) {
+            return GIANT;
+        }
+        return MEDIUM;
+    }
+}
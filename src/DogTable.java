@@ -0,0 +1,271 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DogTable class: holds many dogs column by column, in parallel arrays of primitive values, for bulk work in memory.
+ * Row i of the table is ids[i], names[i], breedIds[i], and so on. The codes are the same as in CompactDog;
+ * breed IDs come from the table's own BreedRegistry.
+ * Scanning one column (for example, counting checked-in dogs by food type) reads a single small array
+ * instead of visiting a Dog object per dog, and a million dogs take a few arrays plus their names.
+ *
+ * Converting dogs into the table and back always gives the same values; values with no code are kept
+ * on the side for just those rows. Rows are numbered in the order they were added.
+ * Not safe to change from several threads at once.
+ */
+public class DogTable {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int size = 0;
+    // Gives the breeds their IDs in breedIds; only this table's breeds
+    private final BreedRegistry breeds = new BreedRegistry();
+    private int[] ids;
+    private String[] names;
+    private int[] breedIds;
+    private int[] dobEpochDays;
+    private byte[] food;
+    private byte[] gender;
+    private byte[] spayedNeutered;
+    private boolean[] checkedIn;
+    // Values with no code, by row; most tables have none
+    private final Map<Integer, CompactDog.Irregular> irregular = new HashMap<>();
+
+    /**
+     * Creates an empty table.
+     */
+    public DogTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty table with room for a number of dogs before it has to grow.
+     * @param capacity The number of dogs expected.
+     */
+    public DogTable(int capacity) {
+        int length = Math.max(capacity, 1);
+        ids = new int[length];
+        names = new String[length];
+        breedIds = new int[length];
+        dobEpochDays = new int[length];
+        food = new byte[length];
+        gender = new byte[length];
+        spayedNeutered = new byte[length];
+        checkedIn = new boolean[length];
+    }
+
+    /**
+     * Creates a table holding a list of dogs, in list order.
+     * @param dogs The dogs to copy.
+     * @return Returns the table.
+     */
+    public static DogTable of(List<Dog> dogs) {
+        DogTable table = new DogTable(dogs.size());
+        for (Dog dog : dogs) {
+            table.add(dog);
+        }
+        return table;
+    }
+
+    /**
+     * Adds a dog as a new row.
+     * @param dog The dog to copy.
+     * @return Returns the row number.
+     */
+    public int add(Dog dog) {
+        if (size == ids.length) {
+            grow();
+        }
+        write(size, dog);
+        return size++;
+    }
+
+    /**
+     * Adds a compact dog record as a new row.
+     * @param dog The record to copy.
+     * @return Returns the row number.
+     */
+    public int add(CompactDog dog) {
+        if (size == ids.length) {
+            grow();
+        }
+        int row = size++;
+        ids[row] = dog.getId();
+        names[row] = dog.getName();
+        breedIds[row] = breeds.idOf(dog.getBreed());
+        dobEpochDays[row] = dog.getDobEpochDay();
+        food[row] = dog.getFoodCode();
+        gender[row] = dog.getGenderCode();
+        spayedNeutered[row] = dog.getSpayedNeuteredCode();
+        checkedIn[row] = dog.isCheckedIn();
+        if (dog.getIrregular() != null) {
+            irregular.put(row, dog.getIrregular());
+        }
+        return row;
+    }
+
+    /**
+     * Replaces the values in a row with a dog's.
+     * @param row The row number.
+     * @param dog The dog to copy.
+     */
+    public void set(int row, Dog dog) {
+        checkRow(row);
+        write(row, dog);
+    }
+
+    /**
+     * Stores a dog's values in a row, which may be the next unused one.
+     */
+    private void write(int row, Dog dog) {
+        ids[row] = dog.getId();
+        names[row] = dog.getName();
+        breedIds[row] = breeds.idOf(dog.getBreed());
+        dobEpochDays[row] = CompactDog.dobToEpochDay(dog.getDob());
+        food[row] = CompactDog.foodToCode(dog.getFood());
+        gender[row] = CompactDog.genderToCode(dog.getGender());
+        spayedNeutered[row] = CompactDog.spayToCode(dog.getSpayedNeutered());
+        checkedIn[row] = dog.isCheckedIn();
+        CompactDog.Irregular extra = CompactDog.irregularOf(dog);
+        if (extra != null) {
+            irregular.put(row, extra);
+        } else {
+            irregular.remove(row);
+        }
+    }
+
+    /**
+     * Creates a Dog from a row.
+     * @param row The row number.
+     * @return Returns a new Dog with the row's values.
+     */
+    public Dog get(int row) {
+        checkRow(row);
+        return new Dog(ids[row], names[row], getBreed(row), getDob(row), getFood(row), getGender(row),
+                getSpayedNeutered(row), checkedIn[row]);
+    }
+
+    /**
+     * Creates a compact record from a row.
+     * @param row The row number.
+     * @return Returns a new CompactDog with the row's values.
+     */
+    public CompactDog getCompact(int row) {
+        checkRow(row);
+        return new CompactDog(ids[row], names[row], breeds.nameOf(breedIds[row]), dobEpochDays[row], food[row], gender[row],
+                spayedNeutered[row], checkedIn[row], irregular.get(row));
+    }
+
+    /**
+     * Creates a Dog for every row, in row order.
+     * @return Returns the list of dogs.
+     */
+    public List<Dog> toDogs() {
+        List<Dog> dogs = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            dogs.add(get(row));
+        }
+        return dogs;
+    }
+
+    public int size() { return size; }
+    public BreedRegistry getBreeds() { return breeds; }
+
+    // Getters for one value in a row; each gives the same value as the Dog that was added
+    public int getId(int row) { checkRow(row); return ids[row]; }
+    public String getName(int row) { checkRow(row); return names[row]; }
+    public String getBreed(int row) { checkRow(row); return breeds.nameOf(breedIds[row]); }
+    public boolean isCheckedIn(int row) { checkRow(row); return checkedIn[row]; }
+
+    public String getDob(int row) {
+        checkRow(row);
+        return dobEpochDays[row] != CompactDog.NO_DATE ? CompactDog.epochDayToDob(dobEpochDays[row]) : irregular.get(row).dob;
+    }
+
+    public int getFood(int row) {
+        checkRow(row);
+        return food[row] != CompactDog.OTHER ? food[row] : irregular.get(row).food;
+    }
+
+    public String getGender(int row) {
+        checkRow(row);
+        return gender[row] != CompactDog.OTHER ? CompactDog.codeToGender(gender[row]) : irregular.get(row).gender;
+    }
+
+    public String getSpayedNeutered(int row) {
+        checkRow(row);
+        return spayedNeutered[row] != CompactDog.OTHER ? CompactDog.codeToSpay(spayedNeutered[row])
+                : irregular.get(row).spayedNeutered;
+    }
+
+    // Getters for the codes, for fast bulk work; see getBreeds() for the breed IDs
+    public int getBreedId(int row) { checkRow(row); return breedIds[row]; }
+    public int getDobEpochDay(int row) { checkRow(row); return dobEpochDays[row]; }
+
+    // ---- Bulk work ----
+
+    /**
+     * Counts the checked-in dogs.
+     * @return Returns the number of checked-in rows.
+     */
+    public int countCheckedIn() {
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (checkedIn[row]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the checked-in dogs for each food type, as in the attendance report.
+     * @param foodTypeCount The number of food types; dogs with any other food code aren't counted.
+     * @return Returns the number of checked-in dogs for each food code.
+     */
+    public int[] foodTotals(int foodTypeCount) {
+        int[] totals = new int[foodTypeCount];
+        for (int row = 0; row < size; row++) {
+            if (checkedIn[row] && food[row] >= 0 && food[row] < foodTypeCount) {
+                totals[food[row]]++;
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Finds the row holding a dog ID. Scans every row, so use an index for repeated lookups.
+     * @param id The dog's ID.
+     * @return Returns the row number, or -1 if no row has that ID.
+     */
+    public int findRow(int id) {
+        for (int row = 0; row < size; row++) {
+            if (ids[row] == id) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+        }
+    }
+
+    /**
+     * Doubles the room in every column.
+     */
+    private void grow() {
+        int length = ids.length * 2;
+        ids = Arrays.copyOf(ids, length);
+        names = Arrays.copyOf(names, length);
+        breedIds = Arrays.copyOf(breedIds, length);
+        dobEpochDays = Arrays.copyOf(dobEpochDays, length);
+        food = Arrays.copyOf(food, length);
+        gender = Arrays.copyOf(gender, length);
+        spayedNeutered = Arrays.copyOf(spayedNeutered, length);
+        checkedIn = Arrays.copyOf(checkedIn, length);
+    }
+}
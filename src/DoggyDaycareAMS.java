@@ -3,10 +3,21 @@
 // Module 7 | DMS Project Phase 1: Logic and Input Validation
 
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.util.List;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * This is the main application class for the CLI version of the program.
@@ -18,15 +29,77 @@ public class DoggyDaycareAMS {
     // Scanner is used to read user input from the command line
     private final Scanner scanner = new Scanner(System.in);
 
+    // Database file used by the CLI; the same default as the GUI
+    static final String DEFAULT_DB_FILE = "dogs.db";
+    // Most dogs printed for one search
+    private static final int SEARCH_LIMIT = 50;
+
     /**
      * This is the main method CLI version.
-     * @param args Unused
+     * Opens the database (creating or upgrading its schema if needed) and runs the menu, or, if a command
+     * is given, runs just that command without menus (see DogCommands), e.g.:
+     *   java DoggyDaycareAMS --db dogs.db checkin 12,15,31
+     *   java DoggyDaycareAMS report --format json
+     *   java DoggyDaycareAMS batch &lt; commands.txt
+     * @param args Optional: --db and the database file, then a command and its arguments.
      * @throws SQLException Exceptions handled by respective methods.
+     * @throws IOException If a command's output can't be written.
      */
-    public static void main(String[] args) throws SQLException {
-       DoggyDaycareAMS app = new DoggyDaycareAMS();
-       Connection conn = null;
-        app.run(conn);
+    public static void main(String[] args) throws SQLException, IOException {
+        String dbFile = DEFAULT_DB_FILE;
+        List<String> command = new ArrayList<>(Arrays.asList(args));
+        if (command.size() >= 2 && command.get(0).equals("--db")) {
+            dbFile = command.get(1);
+            command = command.subList(2, command.size());
+        }
+
+        DoggyDaycareAMS app = new DoggyDaycareAMS();
+        int exitCode = DogCommands.OK;
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile);
+             Connection logConn = DriverManager.getConnection("jdbc:sqlite:" + dbFile)) {
+            SchemaMigrator.configure(conn);
+            SchemaMigrator.migrate(conn);
+            SchemaMigrator.configure(logConn);
+            // Keep a history of check-ins and check-outs, written in the background on its own connection
+            try (AttendanceLog attendanceLog = new AttendanceLog(logConn)) {
+                app.manager.setAttendanceLog(attendanceLog);
+                if (command.isEmpty()) {
+                    // Publish the operation metrics through JMX, and dump them periodically if asked to on the command line
+                    app.manager.getMetrics().register();
+                    app.manager.getMetrics().startDumpFromProperties();
+                    app.run(conn);
+                } else {
+                    exitCode = app.runCommand(command, conn);
+                }
+            }
+        }
+        if (exitCode != DogCommands.OK) {
+            System.exit(exitCode);
+        }
+    }
+
+    /**
+     * Runs one command, or a batch of commands from standard input, without menus.
+     * The cache isn't warmed first, so a single command only reads the dogs it needs.
+     * @param command The command and its arguments.
+     * @param conn This is the active database connection.
+     * @return Returns the exit code: 0 if everything worked.
+     * @throws IOException If the output can't be written.
+     */
+    private int runCommand(List<String> command, Connection conn) throws IOException {
+        // Output is buffered and written in large blocks; it is flushed before the program ends
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 65536);
+        Writer err = new OutputStreamWriter(System.err, StandardCharsets.UTF_8);
+        DogCommands commands = new DogCommands(manager, conn, out, err);
+        try {
+            if (command.size() == 1 && command.get(0).equals("batch")) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                return commands.runBatch(in, System.in);
+            }
+            return commands.run(command);
+        } finally {
+            out.flush();
+        }
     }
 
     /**
@@ -37,6 +110,10 @@ public class DoggyDaycareAMS {
      */
     public void run(Connection conn) throws SQLException {
         System.out.println("Welcome to Doggy Daycare Attendance Management System!");
+        if (conn != null) {
+            // Load every dog into memory so lookups by ID don't need the database
+            manager.warmCache(conn);
+        }
         boolean running = true; // Controls whether the menu keeps looping
         while (running) {
             printMenu(); // Show the user all possible options
@@ -61,12 +138,15 @@ public class DoggyDaycareAMS {
                 // User wants to see the custom attendance report
                 handleAttendanceReport(conn);
             } else if (choice == 7) {
+                // User wants to find dogs by name, breed, or ID
+                handleSearch(conn);
+            } else if (choice == 8) {
                 // User wants to exit the program
                 System.out.println("Exiting program. Goodbye!");
                 running = false;
             } else {
-                // User typed something not in 1-7
-                System.out.println("Invalid menu option. Please enter a number 1-7.");
+                // User typed something not in 1-8
+                System.out.println("Invalid menu option. Please enter a number 1-8.");
             }
         }
     }
@@ -83,7 +163,8 @@ public class DoggyDaycareAMS {
         System.out.println("4. Update dog info");
         System.out.println("5. Remove dog");
         System.out.println("6. Generate attendance report");
-        System.out.println("7. Exit");
+        System.out.println("7. Search dogs");
+        System.out.println("8. Exit");
         System.out.println("------------------");
     }
 
@@ -303,10 +384,16 @@ public class DoggyDaycareAMS {
 
         // Make a new Dog object with updated info, and update it in the manager
         Dog updatedDog = new Dog(id, name, breed, dob, food, gender, spayedNeutered, checkedIn);
-        if (manager.updateDog(id, updatedDog, conn)) {
-            System.out.println("Dog updated.");
-        } else {
-            System.out.println("Failed to update dog.");
+        // Only update the dog as it was shown; if another desk changed it meanwhile, the update is refused
+        updatedDog.setVersion(dog.getVersion());
+        try {
+            if (manager.updateDog(id, updatedDog, conn)) {
+                System.out.println("Dog updated.");
+            } else {
+                System.out.println("Failed to update dog.");
+            }
+        } catch (StaleDogException ex) {
+            System.out.println("Dog was changed at another desk while you were editing it; please try again.");
         }
 
         // Show all dogs to prove the update worked
@@ -331,7 +418,7 @@ public class DoggyDaycareAMS {
     }
 
     /**
-     * Calls the custom action: show an attendance and food report.
+     * Calls the custom action: show an attendance and food report, with the feeding plans for the kitchen.
      * This is not a CRUD operation, but it gives business insight.
      * @param conn This is the active database connection.
      * @throws SQLException Exceptions handled by respective methods.
@@ -339,6 +426,35 @@ public class DoggyDaycareAMS {
     private void handleAttendanceReport(Connection conn) throws SQLException {
         String report = manager.generateAttendanceReport(conn);
         System.out.println(report);
+        if (conn != null) {
+            System.out.println("--");
+            System.out.print(manager.getAgeAnalytics(conn).appendTo(new StringBuilder()));
+            System.out.println("--");
+            System.out.print(AttendanceHistory.appendRecentDays(new StringBuilder(), 7, ZoneId.systemDefault(), conn));
+            System.out.println("--");
+            System.out.print(manager.appendFeedingPlans(new StringBuilder(), conn));
+        }
+    }
+
+    /**
+     * Finds dogs by part of their name or breed, or by ID, and prints them.
+     * @param conn This is the active database connection.
+     * @throws SQLException Exceptions handled by respective methods.
+     */
+    private void handleSearch(Connection conn) throws SQLException {
+        String query = getNonEmptyString("Search for (name, breed, or ID): ");
+        List<Dog> dogs = manager.searchDogs(query, SEARCH_LIMIT, conn);
+        if (dogs.isEmpty()) {
+            System.out.println("No dogs found.");
+        } else {
+            System.out.println("---- Search Results ----");
+            for (Dog dog : dogs) {
+                System.out.println(dog);
+            }
+            if (dogs.size() == SEARCH_LIMIT) {
+                System.out.println("(showing the first " + SEARCH_LIMIT + " matches; type more to narrow the search)");
+            }
+        }
     }
 
     // ----- Helper input methods -----
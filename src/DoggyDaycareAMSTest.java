@@ -1,7 +1,32 @@
 import org.junit.jupiter.api.DisplayName;
 
+import javax.swing.SwingUtilities;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -11,10 +36,64 @@ class DoggyDaycareAMSTest {
 
     String filename;
     Connection conn = null;
+    Path dbFile;
 
     @org.junit.jupiter.api.BeforeEach
-    void setUp() {
+    void setUp() throws IOException, SQLException {
+        // Every test gets its own empty database
+        dbFile = Files.createTempFile("dogs", ".db");
+        conn = openDatabase(dbFile);
+    }
+
+    @org.junit.jupiter.api.AfterEach
+    void tearDown() throws IOException, SQLException {
+        conn.close();
+        deleteDatabase(dbFile);
+    }
+
+    /**
+     * Opens a test database, creating the tables if they don't exist.
+     * @param file The database file.
+     * @return Returns the connection.
+     */
+    static Connection openDatabase(Path file) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+        SchemaMigrator.configure(connection);
+        SchemaMigrator.migrate(connection);
+        return connection;
+    }
+
+    /**
+     * Deletes a test database, with the files SQLite keeps beside it.
+     * @param file The database file.
+     */
+    static void deleteDatabase(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Path.of(file + "-wal"));
+        Files.deleteIfExists(Path.of(file + "-shm"));
+    }
+
+    /**
+     * Makes a checked-out test dog, born 2020-01-01, on dry food, male and neutered.
+     * @param id The dog's ID.
+     * @param name The dog's name.
+     * @param breed The dog's breed.
+     * @return Returns the dog.
+     */
+    static Dog testDog(int id, String name, String breed) {
+        return new Dog(id, name, breed, "2020-01-01", 1, "M", "Y", false);
+    }
+
+    // The food types, in the order of the food codes, as DogManager uses them
+    static final String[] FOOD_TYPES = {"No Food", "Dry Food", "Wet Food", "Customer Provided"};
 
+    /**
+     * Makes a clock stopped at midnight UTC at the start of a day, so age and attendance tests get the same answer every run.
+     * @param day The day the clock shows.
+     * @return Returns the clock.
+     */
+    static Clock fixedClock(LocalDate day) {
+        return Clock.fixed(day.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
     }
 
     @org.junit.jupiter.api.Test
@@ -134,6 +213,934 @@ class DoggyDaycareAMSTest {
         assertEquals(updatedDog, theDog, "Update dog failed to update the object.");
     }
 
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Parsing Roster Lines")
+    void parseDogLineTest() {
+        // Test a valid line, with spaces around the fields
+        Dog dog = DogManager.parseDogLine("7, Rex , Boxer,2020-01-02, 2,M,Y, true");
+        assertEquals(7, dog.getId(), "ID not parsed.");
+        assertEquals("Rex", dog.getName(), "Name not trimmed.");
+        assertEquals(2, dog.getFood(), "Food not parsed.");
+        assertTrue(dog.isCheckedIn(), "Checked-in status not parsed.");
+
+        // Test malformed lines
+        assertThrows(IllegalArgumentException.class, () -> DogManager.parseDogLine("7,Rex,Boxer"), "Short line did not fail.");
+        assertThrows(IllegalArgumentException.class, () -> DogManager.parseDogLine("X,Rex,Boxer,2020-01-02,2,M,Y,true"), "Bad ID did not fail.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Roster File Reader")
+    void rosterFileReaderTest() throws IOException {
+        // Write a small roster with one bad line and no newline at the end
+        Path file = Files.createTempFile("roster", ".txt");
+        Files.writeString(file, "1,Buddy,Boxer,2023-05-04,1,M,N,true\r\nbad line\n2, Luna ,Poodle,2022-01-01,2,F,Y,false");
+
+        int loaded = 0;
+        int rejected = 0;
+        try (RosterFileReader reader = new RosterFileReader(file.toString(), 2, 4)) {
+            RosterFileReader.RosterRecord record;
+            while ((record = reader.next()) != null) {
+                if (record.getDog() != null) {
+                    loaded++;
+                    if (record.getLineNumber() == 3) {
+                        assertEquals("Luna", record.getDog().getName(), "Name not trimmed.");
+                    }
+                } else {
+                    rejected++;
+                    assertEquals(2, record.getLineNumber(), "Wrong line rejected.");
+                }
+            }
+        }
+        Files.delete(file);
+
+        assertEquals(2, loaded, "Valid lines not loaded.");
+        assertEquals(1, rejected, "Bad line not rejected.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Repeated Roster IDs")
+    void repeatedRosterIdTest() throws IOException, SQLException {
+        // Enough lines for several blocks, so they are parsed on different threads; the first and last share an ID
+        Path file = Files.createTempFile("roster", ".txt");
+        StringBuilder roster = new StringBuilder("1,First,Boxer,2023-05-04,1,M,N,true\n");
+        for (int id = 2; id < 30_000; id++) {
+            roster.append(id).append(",Dog").append(id).append(",Beagle,2020-01-01,1,M,Y,false\n");
+        }
+        roster.append("1,Last,Boxer,2023-05-04,1,M,N,true\n");
+        Files.writeString(file, roster);
+
+        // Records come out in line order
+        try (RosterFileReader reader = new RosterFileReader(file.toString(), 4, 16)) {
+            int expected = 1;
+            RosterFileReader.RosterRecord record;
+            while ((record = reader.next()) != null) {
+                assertEquals(expected++, record.getLineNumber(), "Record out of line order.");
+            }
+            assertEquals(30_001, expected, "Lines lost.");
+        }
+
+        // So the first line with an ID is the one imported
+        DogManager manager = new DogManager();
+        ImportResult result = manager.importFromFile(file.toString(), conn);
+        Files.delete(file);
+        assertEquals(29_999, result.getLoadedCount(), "Wrong number of dogs imported.");
+        assertEquals(30_000, result.getRejections().get(0).getLineNumber(), "Wrong line rejected.");
+        assertEquals("First", manager.findDogById(1, conn).getName(), "Later line with the same ID won.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Roster Export")
+    void rosterExportTest() throws IOException {
+        Dog plain = new Dog(1, "Buddy", "Boxer", "2023-05-04", 1, "M", "N", true);
+        Dog comma = new Dog(2, "Rex, Jr.", "Poodle", "2022-01-01", 2, "F", "Y", false);
+
+        // CSV: the dog with a comma in its name can't be written exactly, so it is left out
+        Path csv = Files.createTempFile("export", ".csv");
+        RosterExporter csvExporter = new RosterExporter(csv, RosterExporter.Format.CSV);
+        try (csvExporter) {
+            csvExporter.write(plain);
+            csvExporter.write(comma);
+        }
+        assertEquals(1, csvExporter.getResult().getWrittenCount(), "Wrong number of dogs written.");
+        assertEquals(1, csvExporter.getResult().getSkipped().size(), "Dog with a comma not reported.");
+        assertEquals("1,Buddy,Boxer,2023-05-04,1,M,N,true\n", Files.readString(csv), "Not in the import layout.");
+        Files.delete(csv);
+
+        // Binary: every dog comes back exactly
+        Path binary = Files.createTempFile("export", ".dogs");
+        try (RosterExporter exporter = new RosterExporter(binary, RosterExporter.Format.BINARY)) {
+            exporter.write(plain);
+            exporter.write(comma);
+        }
+        assertTrue(RosterBinaryReader.isBinaryFile(binary.toString()), "Binary file not recognized.");
+        try (RosterBinaryReader reader = new RosterBinaryReader(binary.toString())) {
+            assertEquals(plain.toString(), reader.next().getDog().toString(), "First dog changed.");
+            assertEquals(comma.toString(), reader.next().getDog().toString(), "Second dog changed.");
+            assertNull(reader.next(), "Extra dogs read.");
+        }
+        Files.delete(binary);
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Feeding Plan")
+    void feedingPlanTest() {
+        LocalDate today = LocalDate.of(2026, 10, 18);
+        Clock clock = fixedClock(today);
+        AttendanceTracker tracker = new AttendanceTracker(FOOD_TYPES, clock);
+        tracker.load(new ArrayList<>());
+
+        Dog puppy = new Dog(1, "Tiny", "Chihuahua", "2026-03-01", 1, "F", "N", true);
+        Dog senior = new Dog(2, "Moose", "Great Dane", "2016-10-18", 2, "M", "Y", true);
+        Dog mixed = new Dog(3, "Scout", "Mixed", "2020-05-05", 1, "M", "Y", true);
+        tracker.dogChanged(null, puppy);
+        tracker.dogChanged(null, senior);
+        tracker.dogChanged(null, mixed);
+
+        FeedingPlan plan = tracker.feedingPlan();
+        assertEquals(today, plan.getDate(), "Plan is for the wrong day.");
+        assertEquals(3, plan.getTotalDogs(), "Wrong number of dogs.");
+        assertEquals(1, plan.getDogs(1, DogSize.SMALL, AgeBand.PUPPY), "Puppy not counted.");
+        assertEquals(1, plan.getDogs(2, DogSize.GIANT, AgeBand.SENIOR), "Senior turning 10 today not counted.");
+        assertEquals(1, plan.getDogs(1, DogSize.MEDIUM, AgeBand.ADULT), "Unknown breed not counted as medium.");
+        assertEquals(2, plan.getDogs(1), "Wrong number of dogs on dry food.");
+
+        // Checking out takes the dog out of the plan; plans already made don't change
+        Dog checkedOut = new Dog(puppy);
+        checkedOut.setCheckedIn(false);
+        tracker.dogChanged(puppy, checkedOut);
+        assertEquals(0, tracker.feedingPlan().getDogs(1, DogSize.SMALL, AgeBand.PUPPY), "Checked-out dog still counted.");
+        assertEquals(3, plan.getTotalDogs(), "Earlier plan changed.");
+
+        // Plans of two locations add up
+        assertEquals(5, plan.plus(tracker.feedingPlan()).getTotalDogs(), "Plans didn't add up.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Attendance Snapshot")
+    void attendanceSnapshotTest() {
+        LocalDate today = LocalDate.of(2026, 10, 18);
+        Clock clock = fixedClock(today);
+        AttendanceTracker tracker = new AttendanceTracker(FOOD_TYPES, clock);
+        tracker.load(new ArrayList<>());
+
+        // A dog with a food code that isn't on the list still counts in the ages
+        Dog buddy = testDog(1, "Buddy", "Boxer");
+        buddy.setCheckedIn(true);
+        Dog odd = new Dog(2, "Odd", "Boxer", "2026-03-01", 9, "F", "N", true);
+        tracker.dogChanged(null, buddy);
+        tracker.dogChanged(null, odd);
+        AttendanceReport report = tracker.snapshot();
+        assertEquals(2, report.getCheckedInCount(), "Wrong number of dogs.");
+        assertEquals(1, report.getAgeBandTotal(AgeBand.ADULT), "Adult not counted.");
+        assertEquals(1, report.getAgeBandTotal(AgeBand.PUPPY), "Dog with an unknown food code left out of the ages.");
+
+        // Dogs that change after the report was made aren't in its list
+        Dog rex = testDog(3, "Rex", "Beagle");
+        rex.setCheckedIn(true);
+        tracker.dogChanged(null, rex);
+        tracker.dogChanged(buddy, null);
+        List<Dog> dogs = report.getCheckedInDogs();
+        assertEquals(report.getCheckedInCount(), dogs.size(), "List doesn't match the count.");
+        assertEquals("Buddy", dogs.get(0).getName(), "List taken after the report was made.");
+        assertEquals("Odd", dogs.get(1).getName(), "List taken after the report was made.");
+        assertEquals(2, tracker.snapshot().getCheckedInDogs().size(), "New report missed the changes.");
+        assertEquals("Rex", tracker.snapshot().getCheckedInDogs().get(1).getName(), "New report missed the changes.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Age Analytics")
+    void ageAnalyticsTest() {
+        LocalDate today = LocalDate.of(2026, 10, 18);
+        Clock clock = fixedClock(today);
+
+        // The date of birth is read once, when it is set
+        Dog dog = new Dog(1, "Buddy", "Boxer", "2016-10-19", 1, "M", "N", true);
+        assertEquals(LocalDate.of(2016, 10, 19).toEpochDay(), dog.getDobEpochDay(), "Date of birth not read.");
+        assertEquals(9, dog.getAge(today), "Wrong age the day before a birthday.");
+        assertEquals(AgeBand.SENIOR, dog.getAgeBand(today), "Wrong age band.");
+        dog.setDob("not a date");
+        assertEquals(-1, dog.getAge(today), "Unreadable date of birth gave an age.");
+        assertEquals(AgeBand.ADULT, dog.getAgeBand(today), "Unreadable date of birth not counted as adult.");
+
+        AgeAnalytics ages = new AgeAnalytics(clock);
+        ages.load(Arrays.asList(
+                new Dog(1, "Tiny", "Pug", "2026-03-01", 1, "F", "N", false),
+                new Dog(2, "Moose", "Great Dane", "2019-10-18", 2, "M", "Y", false),
+                new Dog(3, "Scout", "Mixed", "2020-05-05", 1, "M", "Y", false),
+                new Dog(4, "Odd", "Mixed", "unknown", 1, "M", "Y", false)));
+        assertEquals(1, ages.getCount(AgeBand.PUPPY), "Wrong number of puppies.");
+        assertEquals(2, ages.getCount(AgeBand.ADULT), "Wrong number of adults.");
+        assertEquals(1, ages.getCount(AgeBand.SENIOR), "Dog turning 7 today not a senior.");
+        assertEquals(1, ages.getUnknownCount(), "Unreadable date of birth not counted.");
+        assertArrayEquals(new int[] {1, 0, 0, 0, 0, 0, 1, 1}, ages.getAgeHistogram(), "Wrong ages.");
+
+        // A changed date of birth moves the dog, even without the dog as it was; removing takes it out
+        ages.dogChanged(null, new Dog(3, "Scout", "Mixed", "2026-01-01", 1, "M", "Y", false));
+        ages.dogChanged(new Dog(2, "Moose", "Great Dane", "2019-10-18", 2, "M", "Y", false), null);
+        assertEquals(2, ages.getCount(AgeBand.PUPPY), "Changed dog not moved.");
+        assertEquals(0, ages.getCount(AgeBand.SENIOR), "Removed dog still counted.");
+        assertArrayEquals(new int[] {1, 3}, ages.getDogIds(AgeBand.PUPPY), "Puppies not listed youngest first.");
+
+        // Analytics filled off to the side replace the old ones whole
+        AgeAnalytics filled = new AgeAnalytics(clock);
+        filled.add(new Dog(5, "Gus", "Pug", "2010-01-01", 1, "M", "Y", false));
+        ages.replaceWith(filled);
+        assertEquals(1, ages.getDogCount(), "Old dogs kept after replaceWith.");
+        assertEquals(1, ages.getCount(AgeBand.SENIOR), "Band counts not worked out again.");
+        assertEquals(0, filled.getDogCount(), "Other analytics not left empty.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Int Map")
+    void intIntMapTest() {
+        IntIntMap map = new IntIntMap();
+        // Enough keys to grow the table several times, with negative keys too
+        for (int key = -500; key < 500; key++) {
+            map.put(key, key * 2);
+        }
+        for (int key = -500; key < 500; key += 2) {
+            assertTrue(map.remove(key), "Key not removed.");
+        }
+        assertEquals(500, map.size(), "Wrong size.");
+        for (int key = -500; key < 500; key++) {
+            int expected = (key % 2 == 0) ? -1 : key * 2;
+            assertEquals(expected, map.get(key, -1), "Wrong value after removals.");
+        }
+        assertFalse(map.remove(1000), "Missing key removed.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Sharded Store")
+    void shardedStoreTest() throws IOException {
+        Path directory = Files.createTempDirectory("locations");
+        try (ShardedDogStore store = new ShardedDogStore(directory, List.of("north", "south", "east"), 200)) {
+            // Each location has its own DogManager; unknown locations are refused
+            assertNotSame(store.getManager("north"), store.getManager("south"), "Locations share a DogManager.");
+            assertThrows(IllegalArgumentException.class, () -> store.getShard("west"), "Unknown location accepted.");
+
+            // Reports from every location add up
+            CombinedAttendanceReport report = new CombinedAttendanceReport(store.forEachShard(shard ->
+                    new AttendanceReport(2, FOOD_TYPES, new int[] {0, 1, 1, 0}, new int[] {1, 1, 0}, ArrayList::new), 1000));
+            assertEquals(6, report.getCheckedInCount(), "Checked-in dogs not added up.");
+            assertEquals(3, report.getFoodTotal(1), "Food not added up.");
+            assertEquals(3, report.getAgeBandTotal(AgeBand.PUPPY), "Ages not added up.");
+
+            // A slow location is left out instead of holding up the others
+            long start = System.nanoTime();
+            ShardedDogStore.Results<String> results = store.forEachShard(shard -> {
+                if (shard.getLocation().equals("east")) {
+                    Thread.sleep(5000);
+                }
+                return shard.getLocation();
+            }, 200);
+            assertTrue(System.nanoTime() - start < 2_000_000_000L, "Waited for the slow location.");
+            assertEquals(Map.of("north", "north", "south", "south"), results.getAnswers(), "Other locations didn't answer.");
+            assertTrue(results.getUnavailable().containsKey("east"), "Slow location not listed.");
+            assertEquals("northsouth", results.combine(String::concat), "Answers not combined.");
+
+            // It gets no more work until it has finished
+            results = store.forEachShard(shard -> "again", 200);
+            assertEquals("Still busy with an earlier request", results.getUnavailable().get("east"), "Slow location given more work.");
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ShardedDogStore(directory, List.of("../up")), "Bad location key accepted.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Dog Index")
+    void dogIndexTest() {
+        DogIndex index = new DogIndex();
+
+        // Add enough dogs to make the table grow, including negative and zero IDs
+        for (int id = -50; id <= 500; id++) {
+            index.put(testDog(id, "Dog" + id, "Boxer"));
+        }
+        assertEquals(551, index.size(), "Not every dog was cached.");
+        assertEquals("Dog0", index.get(0).getName(), "Couldn't get dog with ID 0.");
+
+        // Changing a dog we got back must not change the cache
+        index.get(7).setName("Changed");
+        assertEquals("Dog7", index.get(7).getName(), "Cached dog was changed from outside.");
+
+        // Remove every other dog and make sure the rest can still be found
+        for (int id = -50; id <= 500; id += 2) {
+            assertTrue(index.remove(id), "Couldn't remove cached dog.");
+        }
+        for (int id = -49; id <= 500; id += 2) {
+            assertNotNull(index.get(id), "Lost a dog after removing others.");
+        }
+        assertNull(index.get(-50), "Removed dog still cached.");
+
+        // A bounded index evicts dogs to stay at its maximum size
+        DogIndex bounded = new DogIndex(10);
+        for (int id = 1; id <= 100; id++) {
+            bounded.put(testDog(id, "Dog" + id, "Boxer"));
+        }
+        assertEquals(10, bounded.size(), "Bounded index grew past its maximum.");
+        assertEquals(90, bounded.getEvictions(), "Wrong number of evictions.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Schema Migration")
+    void schemaMigrationTest() throws IOException, SQLException {
+        // A database made before there were migrations: the dogs table as DaycareUI created it, and no schema version
+        Path oldFile = Files.createTempFile("old-dogs", ".db");
+        try (Connection old = DriverManager.getConnection("jdbc:sqlite:" + oldFile);
+             Statement stmt = old.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS dogs (id integer PRIMARY KEY, name text NOT NULL, breed text NOT NULL, "
+                    + "dob text NOT NULL, food integer NOT NULL, gender text NOT NULL, "
+                    + "spayedneutered text NOT NULL, checkedin boolean NOT NULL);");
+            stmt.execute("INSERT INTO dogs VALUES (1, 'Buddy', 'Boxer', '2020-01-01', 1, 'M', 'Y', 1)");
+            assertEquals(0, SchemaMigrator.getVersion(old), "Old database already has a version.");
+
+            assertEquals(SchemaMigrator.latestVersion(), SchemaMigrator.migrate(old), "Not every migration ran.");
+            assertEquals(SchemaMigrator.latestVersion(), SchemaMigrator.getVersion(old), "New version not saved.");
+            Dog buddy = new DogManager().findDogById(1, old);
+            assertEquals("Buddy", buddy.getName(), "Dog lost in the upgrade.");
+            assertEquals(0, buddy.getVersion(), "Existing dog has the wrong version.");
+            try (ResultSet rs = stmt.executeQuery("SELECT dog_id FROM open_stays")) {
+                assertTrue(rs.next() && rs.getInt(1) == 1, "Checked-in dog has no open stay.");
+            }
+            assertEquals(0, SchemaMigrator.migrate(old), "Migrations ran again.");
+        } finally {
+            deleteDatabase(oldFile);
+        }
+
+        // A migration that fails part way is rolled back whole, and the version stays where it was
+        Path brokenFile = Files.createTempFile("broken-dogs", ".db");
+        try (Connection broken = DriverManager.getConnection("jdbc:sqlite:" + brokenFile);
+             Statement stmt = broken.createStatement()) {
+            // Migration 3's last statement reads the checkedin column, which this dogs table doesn't have
+            stmt.execute("CREATE TABLE dogs (id integer PRIMARY KEY, name text NOT NULL)");
+            stmt.execute("PRAGMA user_version = 2");
+            SQLException ex = assertThrows(SQLException.class, () -> SchemaMigrator.migrate(broken), "Failed migration not reported.");
+            assertEquals("Schema migration 3 failed", ex.getMessage(), "Wrong migration reported.");
+            assertEquals(2, SchemaMigrator.getVersion(broken), "Version raised by a failed migration.");
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE name = 'checkin_events'")) {
+                assertEquals(0, rs.getInt(1), "Table from the failed migration kept.");
+            }
+            assertTrue(broken.getAutoCommit(), "Auto-commit not restored.");
+        } finally {
+            deleteDatabase(brokenFile);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Stale Dog")
+    void staleDogTest() throws SQLException {
+        DogManager desk = new DogManager();
+        DogManager otherDesk = new DogManager();
+        desk.addDog(testDog(1, "Buddy", "Boxer"), conn);
+        Dog mine = desk.findDogById(1, conn);
+        int readVersion = mine.getVersion();
+
+        // The other desk changes the dog first; its version goes up
+        try (Connection otherConn = openDatabase(dbFile)) {
+            Dog theirs = otherDesk.findDogById(1, otherConn);
+            theirs.setName("Rocky");
+            assertTrue(otherDesk.updateDog(1, theirs, otherConn), "Update failed.");
+            assertEquals(readVersion + 1, theirs.getVersion(), "Version not raised by the update.");
+        }
+
+        // Changes from the old version fail, and bring back the dog as it is now
+        mine.setName("Max");
+        StaleDogException stale = assertThrows(StaleDogException.class, () -> desk.updateDog(1, mine, conn),
+                "Update of an old version allowed.");
+        assertEquals(1, stale.getDogId(), "Wrong dog in the exception.");
+        assertEquals("Rocky", stale.getCurrent().getName(), "Reloaded dog not attached.");
+        assertEquals(readVersion + 1, stale.getCurrent().getVersion(), "Reloaded dog has the wrong version.");
+        assertThrows(StaleDogException.class, () -> desk.removeDog(1, readVersion, conn), "Removal of an old version allowed.");
+        assertEquals("Rocky", desk.findDogById(1, conn).getName(), "Dog changed by a stale update.");
+
+        // Trying again from the reloaded dog works
+        Dog current = stale.getCurrent();
+        current.setName("Max");
+        assertTrue(desk.updateDog(1, current, conn), "Update of the current version failed.");
+        assertEquals(readVersion + 2, current.getVersion(), "Version not raised by the update.");
+
+        // Removing without a version, after someone else removed the dog first, isn't an error
+        DogManager sameDesk = new DogManager();
+        assertEquals(1, desk.warmCache(conn), "Cache not filled.");
+        assertNotNull(sameDesk.removeDog(1, conn), "Dog not removed.");
+        assertNull(desk.removeDog(1, conn), "Dog removed by someone else not reported as not found.");
+        assertNull(desk.findDogById(1, conn), "Removed dog still cached.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Shared Database")
+    void sharedDatabaseTest() throws SQLException {
+        // Two desks, each with its own manager and connection to the same database file
+        DogManager desk = new DogManager();
+        DogManager otherDesk = new DogManager();
+        desk.addDog(testDog(1, "Buddy", "Boxer"), conn);
+        assertEquals(1, desk.warmCache(conn), "Cache not filled.");
+        assertEquals(0, desk.getAttendanceReport(conn).getCheckedInCount(), "No dog is checked in yet.");
+        try (Connection otherConn = openDatabase(dbFile)) {
+            otherDesk.addDog(testDog(2, "Rex", "Beagle"), otherConn);
+            otherDesk.setCheckedIn(1, true, otherConn);
+
+            // The first desk's full cache must not hide what the other desk did
+            assertNotNull(desk.findDogById(2, conn), "Dog added at another desk not found.");
+            assertTrue(desk.findDogById(1, conn).isCheckedIn(), "Check-in at another desk not seen.");
+            assertEquals(2, desk.countDogs(false, conn), "Dog added at another desk not counted.");
+            assertEquals(1, desk.searchDogs("rex", 10, conn).size(), "Dog added at another desk not found by search.");
+            assertEquals(2, desk.getAgeAnalytics(conn).getDogCount(), "Dog added at another desk not in the age analytics.");
+            assertEquals(1, desk.getAttendanceReport(conn).getCheckedInCount(), "Check-in at another desk not in the report.");
+            assertEquals(1, desk.getFeedingPlan(conn).getTotalDogs(), "Check-in at another desk not in the feeding plan.");
+            Dog rex = desk.findDogById(2, conn);
+            rex.setName("Rexy");
+            assertTrue(desk.updateDog(2, rex, conn), "Dog added at another desk couldn't be updated.");
+            assertEquals("Rexy", otherDesk.findDogById(2, otherConn).getName(), "Update not seen at the other desk.");
+            assertNotNull(desk.removeDog(2, conn), "Dog added at another desk couldn't be removed.");
+            assertNull(otherDesk.findDogById(2, otherConn), "Removal not seen at the other desk.");
+        }
+
+        // A report that can't read the dogs must say so
+        DogManager broken = new DogManager();
+        assertNull(broken.findDogById(5, conn), "Dog 5 shouldn't exist."); // Leaves the lookup statement prepared
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE dogs");
+        }
+        assertThrows(SQLException.class, () -> new DogManager().getAttendanceReport(conn), "Failed read not reported.");
+
+        // Failures are counted against the operation that was asked for
+        assertFalse(broken.updateDog(5, testDog(5, "Max", "Pug"), conn), "Update worked without a dogs table.");
+        assertThrows(SQLException.class, () -> broken.generateAttendanceReport(conn), "Failed report not reported.");
+        DogMetrics metrics = broken.getMetrics();
+        assertTrue(metrics.getErrors(DogMetrics.Operation.UPDATE_DOG) > 0, "Failed update lookup not counted.");
+        assertEquals(0, metrics.getErrors(DogMetrics.Operation.FIND_DOG_BY_ID), "Update lookup counted as a find.");
+        assertEquals(1, metrics.getCalls(DogMetrics.Operation.ATTENDANCE_REPORT), "Report call not timed.");
+        assertEquals(1, metrics.getErrors(DogMetrics.Operation.ATTENDANCE_REPORT), "Failed report not counted.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Compact Dogs")
+    void compactDogTest() {
+        Dog regular = new Dog(1, "Rex", "Boxer", "2023-05-04", 2, "M", "Y", true);
+        // Values the codes can't hold must come back unchanged too
+        Dog irregular = new Dog(2, "Odd", "Boxer", "2023-5-4", 200, "X", "Q", false);
+
+        BreedRegistry breeds = new BreedRegistry();
+        for (Dog dog : new Dog[] {regular, irregular}) {
+            assertEquals(dog.toString(), new CompactDog(dog, breeds).toDog().toString(), "CompactDog changed a value.");
+        }
+        assertEquals(CompactDog.GENDER_MALE, new CompactDog(regular, breeds).getGenderCode(), "Wrong gender code.");
+        assertSame(new CompactDog(regular, breeds).getBreed(), new CompactDog(irregular, breeds).getBreed(), "Breed name not shared.");
+
+        // The registry grows past its starting room, and IDs don't change as it does
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + 1, breeds.idOf("Breed " + i), "Wrong breed ID.");
+        }
+        assertEquals(101, breeds.size(), "Wrong number of breeds.");
+        assertEquals("Boxer", breeds.nameOf(0), "First breed lost when the registry grew.");
+        assertEquals(BreedRegistry.NO_BREED, breeds.idOf(null), "Missing breed got an ID.");
+
+        DogTable table = new DogTable(1);
+        table.add(regular);
+        table.add(irregular);
+        assertEquals(2, table.size(), "Table lost a row.");
+        assertEquals(irregular.toString(), table.get(1).toString(), "DogTable changed a value.");
+        assertEquals(1, table.countCheckedIn(), "Wrong checked-in count.");
+        assertEquals(1, table.foodTotals(4)[2], "Wrong food total.");
+
+        // Replacing an irregular row with a regular dog must drop the kept values
+        table.set(1, new Dog(2, "Odd", "Boxer", "2023-05-04", 1, "F", "N", false));
+        assertEquals("F", table.getGender(1), "Row wasn't replaced.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Search Index")
+    void searchIndexTest() {
+        DogSearchIndex index = new DogSearchIndex();
+        index.load(Arrays.asList(
+                testDog(1, "Buddy", "Labrador Retriever"),
+                testDog(2, "Bella", "Golden Retriever"),
+                testDog(12, "Max", "Beagle")));
+
+        assertEquals(Arrays.asList(1), index.search("BUD", 10), "Name prefix not found.");
+        assertEquals(3, index.search("b", 10).size(), "Every dog has a word starting with b.");
+        assertEquals(Arrays.asList(2), index.search("retr gold", 10), "Both words should have to match.");
+        assertEquals(12, index.search("12", 10).get(0), "Dog with the typed ID should come first.");
+        assertEquals(1, index.search("b", 1).size(), "Limit not kept.");
+
+        // Changes must show up in the next search
+        index.dogChanged(testDog(1, "Buddy", "Labrador Retriever"), testDog(1, "Rocky", "Labrador Retriever"));
+        assertTrue(index.search("buddy", 10).isEmpty(), "Old name still found.");
+        assertEquals(Arrays.asList(1), index.search("rock", 10), "New name not found.");
+        index.dogChanged(testDog(12, "Max", "Beagle"), null);
+        assertTrue(index.search("beagle", 10).isEmpty(), "Removed dog still found.");
+        assertEquals(2, index.size(), "Wrong number of dogs.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Attendance Rollup")
+    void attendanceRollupTest() {
+        long hour = AttendanceLog.HOUR_MILLIS;
+        long minute = 60_000;
+        TreeMap<Long, long[]> hours = new TreeMap<>();
+
+        // A stay from 9:30 to 11:15 on the first day of 1970 (UTC)
+        AttendanceLog.addStay(hours, 9 * hour + 30 * minute, 11 * hour + 15 * minute);
+        assertEquals(3, hours.size(), "Stay should cover three hours.");
+        assertEquals(30 * minute, hours.get(9L)[AttendanceLog.PRESENT_MS], "Wrong time in the first hour.");
+        assertEquals(hour, hours.get(10L)[AttendanceLog.PRESENT_MS], "Wrong time in a full hour.");
+        assertEquals(15 * minute, hours.get(11L)[AttendanceLog.PRESENT_MS], "Wrong time in the last hour.");
+
+        // The check-out and the stay's length go in the hour it ended
+        assertEquals(1, hours.get(11L)[AttendanceLog.CHECK_OUTS], "Check-out not counted.");
+        assertEquals(1, hours.get(11L)[AttendanceLog.STAYS], "Stay not counted.");
+        assertEquals(105 * minute, hours.get(11L)[AttendanceLog.STAY_MS], "Wrong stay length.");
+        assertEquals(0, hours.get(9L)[AttendanceLog.STAYS], "Stay counted in the wrong hour.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Shared Attendance Log")
+    void sharedAttendanceLogTest() throws SQLException, InterruptedException {
+        // Two desks on the same database, each logging through its own connection
+        DogManager desk = new DogManager();
+        DogManager otherDesk = new DogManager();
+        try (Connection logConn = openDatabase(dbFile);
+             Connection otherConn = openDatabase(dbFile);
+             Connection otherLogConn = openDatabase(dbFile);
+             AttendanceLog log = new AttendanceLog(logConn);
+             AttendanceLog otherLog = new AttendanceLog(otherLogConn)) {
+            desk.setAttendanceLog(log);
+            otherDesk.setAttendanceLog(otherLog);
+
+            // Checked in at one desk, checked out at the other
+            desk.addDog(testDog(1, "Buddy", "Boxer"), conn);
+            desk.setCheckedIn(1, true, conn);
+            assertTrue(log.flush(5000), "Check-in not written.");
+            otherDesk.setCheckedIn(1, false, otherConn);
+            assertTrue(otherLog.flush(5000), "Check-out not written.");
+            // Checking out again changes nothing
+            otherDesk.setCheckedIn(1, false, otherConn);
+            assertTrue(otherLog.flush(5000), "Second check-out not handled.");
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM open_stays")) {
+                assertEquals(0, rs.getInt(1), "Stay left open after the check-out at the other desk.");
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT SUM(check_ins), SUM(check_outs), SUM(stays) FROM attendance_hourly")) {
+                assertEquals(1, rs.getInt(1), "Wrong number of check-ins.");
+                assertEquals(1, rs.getInt(2), "Check-out at the other desk not counted.");
+                assertEquals(1, rs.getInt(3), "Stay not counted.");
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM checkin_events")) {
+                assertEquals(2, rs.getInt(1), "Wrong number of events.");
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Dog Events")
+    void dogEventTest() {
+        DogEventBus bus = new DogEventBus();
+        List<DogEvent> received = new ArrayList<>();
+        bus.addListener(received::addAll);
+        Dog out = testDog(1, "Buddy", "Labrador Retriever");
+        Dog in = new Dog(out);
+        in.setCheckedIn(true);
+
+        bus.publish(DogEvent.changed(null, out, true));
+        bus.publish(DogEvent.changed(out, in, false));
+        bus.publish(DogEvent.changed(null, in, false));
+        bus.publish(DogEvent.changed(in, null, false));
+        bus.publish(DogEvent.imported(500));
+
+        assertEquals(5, received.size(), "Every event should reach the listener.");
+        assertEquals(DogEvent.Type.ADDED, received.get(0).getType(), "New dog not reported as added.");
+        assertEquals(DogEvent.Type.CHECKED_IN, received.get(1).getType(), "Check-in not reported.");
+        assertEquals(DogEvent.Type.UPDATED, received.get(2).getType(), "Change without old details should be an update.");
+        assertFalse(received.get(2).isBeforeKnown(), "Old details should be unknown.");
+        assertEquals(DogEvent.Type.REMOVED, received.get(3).getType(), "Removal not reported.");
+        assertEquals(500, received.get(4).getCount(), "Wrong import count.");
+        assertEquals(5, bus.getLastSequence(), "Events should be numbered in order.");
+        assertEquals(2, received.get(1).getSequence(), "Events should be numbered in order.");
+
+        // A listener that throws is reported, and the listeners after it are still told
+        DogEventBus failing = new DogEventBus();
+        List<Throwable> errors = new ArrayList<>();
+        List<DogEvent> after = new ArrayList<>();
+        failing.setErrorHandler((thread, ex) -> errors.add(ex));
+        failing.addListener(events -> {
+            throw new IllegalStateException("Broken listener");
+        });
+        failing.addListener(after::addAll);
+        failing.publish(DogEvent.imported(1));
+        assertEquals(1, errors.size(), "Listener failure not reported.");
+        assertEquals("Broken listener", errors.get(0).getMessage(), "Wrong failure reported.");
+        assertEquals(1, after.size(), "Later listener not told.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Lazy Dog List")
+    void lazyDogListTest() throws Exception {
+        DogManager manager = new DogManager();
+        String[] names = {"Ace", "Cid", "Eve"};
+        for (int i = 0; i < names.length; i++) {
+            Dog dog = testDog(i + 1, names[i], "Beagle");
+            dog.setCheckedIn(true);
+            manager.addDog(dog, conn);
+        }
+        List<DogEvent> events = new ArrayList<>();
+        manager.getEvents().addListener(events::addAll);
+        int count = manager.countDogs(true, conn);
+
+        // Bob is checked in after the dogs were counted, but before the first page is fetched
+        Dog bob = testDog(4, "Bob", "Boxer");
+        bob.setCheckedIn(true);
+        manager.addDog(bob, conn);
+
+        DatabaseWorker worker = new DatabaseWorker();
+        LazyDogListModel model = new LazyDogListModel(manager, conn, worker, true, count, 2);
+        try {
+            SwingUtilities.invokeAndWait(() -> model.getElementAt(count - 1));
+            waitForRow(model, count - 1);
+
+            // The fetched page already has Bob, so the change must not list him twice
+            SwingUtilities.invokeAndWait(() -> model.dogChanged(events.get(0).getBefore(), events.get(0).getAfter()));
+            assertEquals(4, model.getSize(), "Wrong number of rows.");
+            waitForRow(model, 3);
+            List<String> listed = new ArrayList<>();
+            SwingUtilities.invokeAndWait(() -> {
+                for (int row = 0; row < model.getSize(); row++) {
+                    listed.add(model.getElementAt(row).getName());
+                }
+            });
+            assertEquals(List.of("Ace", "Bob", "Cid", "Eve"), listed, "Dog listed twice or out of order.");
+        } finally {
+            worker.shutdown();
+        }
+    }
+
+    /**
+     * Waits until a LazyDogListModel has fetched a row.
+     * @param model The model.
+     * @param row The row.
+     */
+    private static void waitForRow(LazyDogListModel model, int row) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        boolean[] fetched = new boolean[1];
+        while (!fetched[0]) {
+            assertTrue(System.currentTimeMillis() < deadline, "Row " + row + " was never fetched.");
+            SwingUtilities.invokeAndWait(() -> fetched[0] = model.getElementAt(row) != null);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Latency Histogram")
+    void latencyHistogramTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99), "Empty histogram should report 0.");
+
+        // Record 1 to 10,000 microseconds, once each
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        assertEquals(10_000, histogram.getCount(), "Wrong number of measurements.");
+        assertEquals(10_000_000, histogram.getMax(), "Maximum should be exact.");
+
+        // Percentiles are never below the real value and at most about 3% above it
+        long p50 = histogram.getValueAtPercentile(50);
+        long p99 = histogram.getValueAtPercentile(99);
+        assertTrue(p50 >= 5_000_000 && p50 <= 5_150_000, "Wrong 50th percentile: " + p50);
+        assertTrue(p99 >= 9_900_000 && p99 <= 10_000_000, "Wrong 99th percentile: " + p99);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount(), "Reset didn't clear the histogram.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Connection Pool")
+    void connectionPoolTest() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + dbFile, 2, 100)) {
+            // Closing twice gives the connection back once
+            Connection first = pool.borrow();
+            first.close();
+            first.close();
+            assertEquals(1, pool.getIdleCount(), "Connection given back twice.");
+
+            // A closed handle can't be used, even though its connection has been borrowed again
+            Connection second = pool.borrow();
+            Connection third = pool.borrow();
+            assertTrue(first.isClosed(), "Given-back connection not closed.");
+            assertThrows(SQLException.class, first::createStatement, "Given-back connection still usable.");
+            assertFalse(second.isClosed(), "Borrowed connection closed.");
+            assertNotEquals(first, second, "Borrows share a handle.");
+
+            // The pool is full, so the next borrow times out
+            assertThrows(SQLException.class, pool::borrow, "Pool opened too many connections.");
+            assertEquals(2, pool.getOpenCount(), "Wrong number of connections opened.");
+            second.close();
+            third.close();
+        }
+
+        // Statements prepared on a connection are used again the next time it is borrowed
+        DogManager manager = new DogManager();
+        try (ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + dbFile, 1)) {
+            try (Connection desk = pool.borrow()) {
+                assertNull(manager.findDogById(1, desk), "Missing dog found.");
+            }
+            long prepared = manager.getStatementsPrepared();
+            try (Connection desk = pool.borrow()) {
+                assertNull(manager.findDogById(2, desk), "Missing dog found.");
+            }
+            assertEquals(prepared, manager.getStatementsPrepared(), "Statement prepared again for the same connection.");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Concurrent Check-Ins")
+    void concurrentCheckInTest() throws Exception {
+        DogManager manager = new DogManager();
+        for (int id = 1; id <= 10; id++) {
+            manager.addDog(testDog(id, "Dog" + id, "Beagle"), conn);
+        }
+        manager.warmCache(conn);
+
+        // Several desks check the same two dogs in and out at once, each with its own connection, one dog or both at a time
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        try (ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + dbFile, 8)) {
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                threads.add(new Thread(() -> {
+                    try (Connection desk = pool.borrow()) {
+                        for (int i = 0; i < 500; i++) {
+                            boolean checkIn = (i + seed) % 3 != 0;
+                            if (seed % 2 == 0) {
+                                assertNotNull(manager.setCheckedIn(1 + (i + seed) % 2, checkIn, desk), "Dog not found.");
+                            } else {
+                                assertEquals(2, manager.setCheckedIn(new int[] {1, 2}, checkIn, desk), "Dogs not found.");
+                            }
+                        }
+                    } catch (Throwable ex) {
+                        synchronized (failures) {
+                            failures.add(ex);
+                        }
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        assertEquals(List.of(), failures, "A desk failed.");
+
+        // The numbers kept in memory must match what is stored
+        int stored = 0;
+        for (Dog dog : manager.getDogs(true, conn)) {
+            assertTrue(manager.findDogById(dog.getId(), conn).isCheckedIn(), "Cached dog has the wrong status.");
+            stored++;
+        }
+        assertEquals(stored, manager.countDogs(true, conn), "Checked-in count drifted from the database.");
+        assertEquals(stored, manager.getFeedingPlan(conn).getTotalDogs(), "Feeding plan drifted from the database.");
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Dog Renderer")
+    void dogRendererTest() throws IOException {
+        // The text must read exactly as Dog.toString() always has, including food codes with no food type
+        Dog dog = new Dog(1, "Rex", "Boxer", "2023-05-04", 3, "M", "Y", true);
+        String expected = "ID: 1 | Name: Rex | Breed: Boxer | DOB: 2023-05-04 | Food: Customer Provided | Gender: M | Spayed/Neutered: Y | Checked In";
+        assertEquals(expected, DogRenderer.appendText(new StringBuilder(), dog).toString(), "Wrong text.");
+        assertEquals(expected, dog.toString(), "Wrong toString.");
+        Dog unknownFood = new Dog(-12, "Odd", null, "2023-5-4", 7, "X", "U", false);
+        expected = "ID: -12 | Name: Odd | Breed: null | DOB: 2023-5-4 | Food: Unknown | Gender: X | Spayed/Neutered: U | Not Checked In";
+        assertEquals(expected, DogRenderer.appendText(new StringBuilder(), unknownFood).toString(), "Wrong text for unknown food.");
+        assertEquals("Unknown", DogRenderer.foodLabel(-1), "Wrong label for negative food code.");
+
+        // Writing to any Appendable gives the same text as the StringBuilder version
+        for (Dog each : new Dog[] {dog, unknownFood}) {
+            StringWriter writer = new StringWriter();
+            DogRenderer.appendText(writer, each);
+            assertEquals(each.toString(), writer.toString(), "Appendable text differs.");
+        }
+
+        // Whole numbers, including negative ones and the smallest int, which has no positive counterpart
+        for (int value : new int[] {0, 7, 10, 1234567890, Integer.MAX_VALUE, -1, -10, -987, Integer.MIN_VALUE}) {
+            StringBuilder text = new StringBuilder();
+            DogRenderer.appendInt(text, value);
+            assertEquals(String.valueOf(value), text.toString(), "Wrong digits for " + value + ".");
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Dog Server")
+    void dogServerTest() throws Exception {
+        DogManager manager = new DogManager();
+        manager.addDog(testDog(1, "Buddy", "Boxer"), conn);
+        manager.addDog(testDog(2, "Rex", "Beagle"), conn);
+        try (ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + dbFile, 2)) {
+            DogServer server = new DogServer(manager, pool, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+            server.start();
+            try {
+                HttpClient client = HttpClient.newHttpClient();
+                String base = "http://127.0.0.1:" + server.getPort();
+
+                // One dog, and the errors for a missing dog, a bad ID, and the wrong method
+                HttpResponse<String> response = request(client, "GET", base + "/dogs/1");
+                assertEquals(200, response.statusCode(), "Dog not served.");
+                assertTrue(response.body().contains("\"name\":\"Buddy\""), "Wrong dog served.");
+                assertEquals(404, request(client, "GET", base + "/dogs/99").statusCode(), "Missing dog found.");
+                assertEquals(400, request(client, "GET", base + "/dogs/abc").statusCode(), "Bad ID accepted.");
+                assertEquals(405, request(client, "GET", base + "/dogs/1/checkin").statusCode(), "Check-in allowed with GET.");
+
+                // Checking in one dog, then both at once
+                response = request(client, "POST", base + "/dogs/1/checkin");
+                assertEquals(200, response.statusCode(), "Check-in failed.");
+                assertTrue(response.body().contains("\"checkedIn\":true"), "Check-in not shown.");
+                assertTrue(manager.findDogById(1, conn).isCheckedIn(), "Check-in not stored.");
+                response = request(client, "POST", base + "/checkin?ids=1,2");
+                assertEquals("{\"changed\":2}", response.body(), "Wrong batch check-in answer.");
+                assertEquals(400, request(client, "POST", base + "/checkin?ids=1,x").statusCode(), "Bad batch ID accepted.");
+
+                // The streamed list, a search, and the report
+                response = request(client, "GET", base + "/dogs?checkedIn=true");
+                assertTrue(response.body().startsWith("[") && response.body().endsWith("]"), "List isn't a JSON array.");
+                assertTrue(response.body().contains("Buddy") && response.body().contains("Rex"), "Dog missing from the list.");
+                response = request(client, "GET", base + "/dogs?q=rex");
+                assertTrue(response.body().contains("Rex") && !response.body().contains("Buddy"), "Wrong search results.");
+                response = request(client, "GET", base + "/report");
+                assertTrue(response.body().startsWith("{\"checkedIn\":2,"), "Wrong report.");
+
+                // A bad search limit has its own message
+                response = request(client, "GET", base + "/dogs?q=rex&limit=x");
+                assertEquals(400, response.statusCode(), "Bad limit accepted.");
+                assertTrue(response.body().contains("Limit"), "Bad limit reported as something else.");
+                assertEquals(400, request(client, "GET", base + "/dogs?q=rex&limit=-1").statusCode(), "Negative limit accepted.");
+
+                // A roster that can't be read is answered, not left hanging
+                byte[] damaged = {'D', 'O', 'G', 'R', 99};
+                HttpRequest importRequest = HttpRequest.newBuilder(URI.create(base + "/import"))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(damaged))
+                        .build();
+                response = client.send(importRequest, HttpResponse.BodyHandlers.ofString());
+                assertEquals(400, response.statusCode(), "Damaged roster not refused.");
+                assertTrue(response.body().startsWith("{\"error\":"), "Damaged roster not answered with an error.");
+
+                // A list that can't be read at all gets an error status, not a 200 with a broken body
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DROP TABLE dogs");
+                }
+                response = request(client, "GET", base + "/dogs");
+                assertEquals(500, response.statusCode(), "Failed list not reported.");
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    /**
+     * Sends a request with no body to a test server.
+     * @param client The HTTP client.
+     * @param method GET or POST.
+     * @param url The address.
+     * @return Returns the answer, with its body as text.
+     */
+    static HttpResponse<String> request(HttpClient client, String method, String url) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @org.junit.jupiter.api.Test
+    @DisplayName("Test Dog Commands")
+    void dogCommandsTest() throws Exception {
+        DogManager manager = new DogManager();
+        manager.addDog(testDog(1, "Buddy", "Boxer"), conn);
+        manager.addDog(testDog(2, "Rex", "Beagle"), conn);
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        DogCommands commands = new DogCommands(manager, conn, out, err);
+
+        // Check-ins report how many dogs changed, and fail if any ID wasn't found
+        assertEquals(DogCommands.OK, commands.run(List.of("checkin", "1,2")), "Check-in failed.");
+        assertEquals("Checked in 2 dogs\n", out.toString(), "Wrong check-in output.");
+        out.getBuffer().setLength(0);
+        assertEquals(DogCommands.FAILED, commands.run(List.of("checkout", "1", "99")), "Missing dog not reported.");
+        assertEquals("Checked out 1 dog; 1 not found\n", out.toString(), "Wrong check-out output.");
+        assertFalse(manager.findDogById(1, conn).isCheckedIn(), "Check-out not stored.");
+        out.getBuffer().setLength(0);
+
+        // One dog as text and as JSON
+        assertEquals(DogCommands.OK, commands.run(List.of("show", "2")), "Show failed.");
+        assertEquals(manager.findDogById(2, conn) + "\n", out.toString(), "Wrong dog shown.");
+        out.getBuffer().setLength(0);
+        assertEquals(DogCommands.OK, commands.run(List.of("show", "2", "--format", "json")), "JSON show failed.");
+        assertTrue(out.toString().startsWith("{\"id\":2,\"name\":\"Rex\""), "Wrong JSON dog.");
+        out.getBuffer().setLength(0);
+
+        // Commands that aren't understood write only to the error stream
+        assertEquals(DogCommands.USAGE, commands.run(List.of("show", "abc")), "Bad ID accepted.");
+        assertEquals(DogCommands.USAGE, commands.run(List.of("fetch")), "Unknown command accepted.");
+        assertEquals(DogCommands.USAGE, commands.run(List.of()), "Empty command accepted.");
+        assertEquals(DogCommands.USAGE, commands.run(List.of("report", "--format", "xml")), "Unknown format accepted.");
+        assertEquals(DogCommands.FAILED, commands.run(List.of("remove", "99")), "Missing dog removed.");
+        assertEquals("", out.toString(), "Failed command wrote output.");
+        assertTrue(err.toString().startsWith("Error: Dog IDs must be whole numbers"), "Wrong error message.");
+
+        // Export writes roster lines, in name order, that import can read back
+        assertEquals(DogCommands.OK, commands.run(List.of("export")), "Export failed.");
+        assertEquals("1,Buddy,Boxer,2020-01-01,1,M,Y,false\n2,Rex,Beagle,2020-01-01,1,M,Y,true\n", out.toString(), "Wrong export.");
+        out.getBuffer().setLength(0);
+
+        // A batch skips comments and blank lines, and keeps going after a failed command
+        String batch = "# nightly\n\ntoggle 2\nshow 99\nsearch \"Bud\"\n";
+        assertEquals(DogCommands.FAILED, commands.runBatch(new BufferedReader(new StringReader(batch)), null), "Batch failure not reported.");
+        assertFalse(manager.findDogById(2, conn).isCheckedIn(), "Batch toggle not stored.");
+        assertTrue(out.toString().endsWith(manager.findDogById(1, conn) + "\n"), "Batch stopped at the failed command.");
+
+        // Batch lines are split at spaces outside quotes; IDs can be split by spaces, commas, or both
+        assertEquals(List.of("search", "Golden Retriever", "x"), DogCommands.split("search \"Golden Retriever\"  x"), "Wrong split.");
+        assertArrayEquals(new int[] {1, 2, 3}, DogCommands.parseIds(List.of("1,2", "3")), "Wrong IDs.");
+    }
+
     @org.junit.jupiter.api.Test
     @DisplayName("Test DOB")
     void isValidDobTest() {
@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * FeedingPlan class: how many portions the kitchen needs on one day, by food type, dog size, and age band.
+ * A plan is either the dogs checked in right now (from AttendanceTracker) or the dogs expected on a
+ * day, worked out from past attendance (from AttendanceHistory). Expected numbers are averages, so
+ * they can have a fraction. Plans are copies; they don't change after they are made.
+ */
+public class FeedingPlan {
+    private static final int SIZES = DogSize.values().length;
+    private static final int BANDS = AgeBand.values().length;
+
+    // The day the plan is for
+    private final LocalDate date;
+    // What the numbers are based on, e.g. "checked in now"
+    private final String basis;
+    // True if the numbers are expected rather than counted
+    private final boolean expected;
+    // Readable name of each food type, by food code
+    private final String[] foodTypes;
+    // Number of dogs in each cell (see cell())
+    private final double[] dogs;
+
+    /**
+     * Creates a plan.
+     * @param date The day the plan is for.
+     * @param basis What the numbers are based on, shown in the report.
+     * @param expected True if the numbers are expected rather than counted.
+     * @param foodTypes The readable name of each food type, by food code.
+     * @param dogs The number of dogs in each cell; copied.
+     */
+    FeedingPlan(LocalDate date, String basis, boolean expected, String[] foodTypes, double[] dogs) {
+        this.date = date;
+        this.basis = basis;
+        this.expected = expected;
+        this.foodTypes = foodTypes;
+        this.dogs = dogs.clone();
+    }
+
+    /**
+     * Gets where a food type, size, and age band are counted in a plan's array of cells.
+     * @param food The food code.
+     * @param size The dog size.
+     * @param band The age band.
+     * @return Returns the cell's index.
+     */
+    static int cell(int food, DogSize size, AgeBand band) {
+        return (food * SIZES + size.ordinal()) * BANDS + band.ordinal();
+    }
+
+    /**
+     * Gets the number of cells a plan needs for a number of food types.
+     * @param foodTypeCount The number of food types.
+     * @return Returns the number of cells.
+     */
+    static int cellCount(int foodTypeCount) {
+        return foodTypeCount * SIZES * BANDS;
+    }
+
+    public LocalDate getDate() { return date; }
+    public String getBasis() { return basis; }
+    public boolean isExpected() { return expected; }
+    public int getFoodTypeCount() { return foodTypes.length; }
+    public String getFoodType(int food) { return foodTypes[food]; }
+
+    /**
+     * Gets the number of dogs of one size and age band that eat a food type.
+     * @param food The food code.
+     * @param size The dog size.
+     * @param band The age band.
+     * @return Returns the number of dogs (an average for an expected plan).
+     */
+    public double getDogs(int food, DogSize size, AgeBand band) {
+        return dogs[cell(food, size, band)];
+    }
+
+    /**
+     * Gets the number of dogs that eat a food type.
+     * @param food The food code.
+     * @return Returns the number of dogs (an average for an expected plan).
+     */
+    public double getDogs(int food) {
+        double total = 0;
+        int first = cell(food, DogSize.SMALL, AgeBand.PUPPY);
+        for (int i = first; i < first + SIZES * BANDS; i++) {
+            total += dogs[i];
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of dogs in the plan.
+     * @return Returns the number of dogs (an average for an expected plan).
+     */
+    public double getTotalDogs() {
+        double total = 0;
+        for (double count : dogs) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Adds two plans for the same day together, e.g. the plans of two locations.
+     * @param other The other plan; must be for the same day and food types.
+     * @return Returns a new plan with the numbers of both.
+     * @throws IllegalArgumentException If the plans are for different days or food types.
+     */
+    public FeedingPlan plus(FeedingPlan other) {
+        if (!date.equals(other.date) || dogs.length != other.dogs.length) {
+            throw new IllegalArgumentException("Only plans for the same day and food types can be added");
+        }
+        double[] sum = dogs.clone();
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] += other.dogs[i];
+        }
+        String sumBasis = basis.equals(other.basis) ? basis : basis + "; " + other.basis;
+        return new FeedingPlan(date, sumBasis, expected || other.expected, foodTypes, sum);
+    }
+
+    /**
+     * Renders the plan as text: the number of dogs, then each food type with its portions by size and age.
+     * @return Returns a formatted String of the plan.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(512);
+        try {
+            appendTo(text);
+        } catch (IOException e) {
+            throw new AssertionError(e); // A StringBuilder never throws IOException
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes the plan, e.g. to a StringBuilder or a Writer. Sizes and ages with no dogs are left out.
+     * @param out Where to write.
+     * @throws IOException If out can't be written to.
+     */
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Feeding Plan for ").append(date.toString()).append(" (").append(basis).append("): ");
+        appendCount(out, getTotalDogs());
+        out.append(" dogs\n");
+        for (int food = 0; food < foodTypes.length; food++) {
+            out.append("  - ").append(foodTypes[food]).append(": ");
+            appendCount(out, getDogs(food));
+            String separator = " (";
+            for (DogSize size : DogSize.values()) {
+                for (AgeBand band : AgeBand.values()) {
+                    double count = getDogs(food, size, band);
+                    if (count > 0) {
+                        out.append(separator).append(size.getLabel()).append(' ').append(band.getLabel()).append(' ');
+                        appendCount(out, count);
+                        separator = ", ";
+                    }
+                }
+            }
+            out.append(separator.equals(", ") ? ")\n" : "\n");
+        }
+    }
+
+    /**
+     * Writes a count as a whole number when it is one, otherwise with one decimal place.
+     */
+    private static void appendCount(Appendable out, double count) throws IOException {
+        if (count == Math.rint(count)) {
+            DogRenderer.appendInt(out, (int) count);
+        } else {
+            out.append(String.format("%.1f", count));
+        }
+    }
+}
@@ -0,0 +1,30 @@
+import java.util.Arrays;
+
+/**
+ * IdList class: a growable list of dog IDs, without an object per ID.
+ * Used by the in-memory indexes (DogSearchIndex, AgeAnalytics) to hold the dogs under one key.
+ * Not synchronized; the class that holds it does the locking.
+ */
+final class IdList {
+    int[] ids = new int[4];
+    int size = 0;
+
+    void add(int id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size++] = id;
+    }
+
+    /**
+     * Removes an ID; the last ID takes its place, since the order doesn't matter.
+     */
+    void remove(int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                ids[i] = ids[--size];
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ImportResult class: the outcome of a bulk import of dog records.
+ * It counts the dogs that were loaded and rejected, and keeps the reason for every rejected line,
+ * so the caller can decide how to show it (dialog, console, log file, ...).
+ */
+public class ImportResult {
+    // Number of dogs written to the database
+    private int loadedCount;
+    // One entry for every line that was not loaded
+    private final List<Rejection> rejections = new ArrayList<>();
+
+    /**
+     * Rejection class: one line of the input that could not be loaded, and why.
+     */
+    public static class Rejection {
+        private final int lineNumber;
+        private final String reason;
+
+        /**
+         * Creates a rejection for a single line.
+         * @param lineNumber The 1-based line number in the input file.
+         * @param reason A short, readable reason the line was rejected.
+         */
+        public Rejection(int lineNumber, String reason) {
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+        }
+
+        public int getLineNumber() { return lineNumber; }
+        public String getReason() { return reason; }
+
+        /**
+         * Converts the rejection to a readable string.
+         * @return Returns a String in the format "Line n: reason".
+         */
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + reason;
+        }
+    }
+
+    /**
+     * Counts dogs that were written to the database.
+     * @param count The number of dogs loaded.
+     */
+    void addLoaded(int count) {
+        loadedCount += count;
+    }
+
+    /**
+     * Records a line that could not be loaded.
+     * @param lineNumber The 1-based line number in the input file.
+     * @param reason A short, readable reason the line was rejected.
+     */
+    void reject(int lineNumber, String reason) {
+        rejections.add(new Rejection(lineNumber, reason));
+    }
+
+    public int getLoadedCount() { return loadedCount; }
+    public int getRejectedCount() { return rejections.size(); }
+    public List<Rejection> getRejections() { return Collections.unmodifiableList(rejections); }
+
+    /**
+     * Converts the result to a short summary, matching the message shown after an import.
+     * @return Returns a String with the loaded and rejected counts.
+     */
+    @Override
+    public String toString() {
+        return "Loaded " + loadedCount + " dog(s) successfully!\n\n"
+                + "failed to load " + getRejectedCount() + " dogs.";
+    }
+}
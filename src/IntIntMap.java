@@ -0,0 +1,162 @@
+/**
+ * IntIntMap class: a map from int keys to int values, e.g. from dog ID to birthday.
+ * Keys and values are stored in plain int arrays (open addressing with linear probing, like DogIndex),
+ * so no Integer objects are made for the entries.
+ * Not synchronized; the class that holds it does the locking.
+ */
+final class IntIntMap {
+    // Largest fraction of the slots that may be used before the table grows
+    private static final double MAX_LOAD = 0.5;
+    // Smallest table size
+    private static final int MIN_CAPACITY = 16;
+
+    // Parallel arrays: slot i holds the entry keys[i] = values[i] when used[i] is true
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+
+    /**
+     * Creates an empty map.
+     */
+    IntIntMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Gets the value for a key.
+     * @param key The key.
+     * @param missing The value to return if the key isn't in the map.
+     * @return Returns the value, or missing.
+     */
+    int get(int key, int missing) {
+        int slot = find(key);
+        return slot < 0 ? missing : values[slot];
+    }
+
+    /**
+     * Checks if a key is in the map.
+     * @param key The key.
+     * @return Returns true if the key is in the map.
+     */
+    boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Adds a key, or replaces its value.
+     * @param key The key.
+     * @param value The value.
+     */
+    void put(int key, int value) {
+        int slot = find(key);
+        if (slot >= 0) {
+            values[slot] = value;
+            return;
+        }
+        if (size + 1 > keys.length * MAX_LOAD) {
+            rehash(keys.length << 1);
+        }
+        slot = home(key);
+        while (used[slot]) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        size++;
+    }
+
+    /**
+     * Removes a key.
+     * @param key The key.
+     * @return Returns true if the key was in the map.
+     */
+    boolean remove(int key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    int size() { return size; }
+
+    // ---- Hash table internals ----
+
+    /**
+     * Finds the slot holding a key.
+     * @return Returns the slot, or -1 if the key isn't in the table.
+     */
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = home(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Picks the first slot to try for a key. The multiply spreads nearby keys across the table.
+     */
+    private int home(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (keys.length - 1);
+    }
+
+    /**
+     * Empties a slot, then moves later entries of the same probe run back so lookups still find them.
+     */
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        used[slot] = false;
+        size--;
+        int next = (slot + 1) & mask;
+        while (used[next]) {
+            int home = home(keys[next]);
+            // Move the entry back if its home slot is not between the gap and its current slot
+            boolean move = (next > slot) ? (home <= slot || home > next) : (home <= slot && home > next);
+            if (move) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                used[slot] = true;
+                used[next] = false;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    /**
+     * Moves every entry into a new table of the given size.
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = home(oldKeys[i]);
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                used[slot] = true;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+    }
+}
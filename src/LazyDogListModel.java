@@ -0,0 +1,193 @@
+import javax.swing.*;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * LazyDogListModel class: a Swing list model that loads dogs from the database one page at a time.
+ * The total count is passed in up front. Pages are fetched (by keyset, in name order) on the
+ * DatabaseWorker thread the first time the list asks for a row on them; until a page arrives its
+ * rows are null, which DogCellRenderer shows as a placeholder. The list holds the Dog objects
+ * themselves, so a selected row gives back its dog; DogCellRenderer draws each row when it is displayed.
+ * Changes to single dogs are applied with dogChanged(), so the list doesn't have to be read again.
+ *
+ * Like every Swing model, this class is only used on the event dispatch thread.
+ */
+public class LazyDogListModel extends AbstractListModel<Dog> {
+    private static final long serialVersionUID = 1L;
+
+    // Number of dogs fetched from the database at a time
+    static final int DEFAULT_PAGE_SIZE = 200;
+
+    private final DogManager manager;
+    private final Connection conn;
+    private final DatabaseWorker worker;
+    private final boolean checkedIn;
+    private final int pageSize;
+
+    // Total number of dogs in the listing
+    private int dogCount;
+    // Dogs fetched so far, in listing order
+    private final List<Dog> loaded = new ArrayList<>();
+    // False once the last page has been fetched
+    private boolean hasMore = true;
+    // True while pages are being fetched in the background
+    private boolean fetching = false;
+    // The furthest dog position the list has asked for
+    private int wanted = -1;
+
+    /**
+     * Creates a model; no dogs are fetched until the list asks for them.
+     * @param manager The DogManager used to read pages.
+     * @param conn This is the active database connection.
+     * @param worker Runs the page queries in the background.
+     * @param checkedIn If true, list only checked in dogs, otherwise all dogs.
+     * @param dogCount The number of dogs in the listing.
+     * @param pageSize The number of dogs fetched at a time.
+     */
+    public LazyDogListModel(DogManager manager, Connection conn, DatabaseWorker worker, boolean checkedIn, int dogCount,
+                            int pageSize) {
+        this.manager = manager;
+        this.conn = conn;
+        this.worker = worker;
+        this.checkedIn = checkedIn;
+        this.dogCount = dogCount;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public int getSize() {
+        return dogCount;
+    }
+
+    /**
+     * Gets the dog shown in a row. If the row's page hasn't been fetched yet, the fetch is started.
+     * @param index The row in the list.
+     * @return Returns the dog, or null if its page hasn't arrived yet.
+     */
+    @Override
+    public Dog getElementAt(int index) {
+        if (index < 0 || index >= dogCount) {
+            return null;
+        }
+        if (index < loaded.size()) {
+            return loaded.get(index);
+        }
+        wanted = Math.max(wanted, index);
+        fetch();
+        return null;
+    }
+
+    /**
+     * Applies one change to the listing without reading it again: the dog is taken out of its old row
+     * and put into the row its new name sorts to. Changes to dogs on pages that haven't been fetched
+     * only change the number of rows; those pages will be read as they are now.
+     * Only pass changes made after the dog count was taken. A page fetched after the change may already
+     * show it, so the dog is never listed twice.
+     * @param before The dog as it was, or null if it was just added.
+     * @param after The dog as it is now, or null if it was just removed.
+     */
+    public void dogChanged(Dog before, Dog after) {
+        int oldRow = -1;
+        if (isListed(before)) {
+            oldRow = Collections.binarySearch(loaded, before, AttendanceTracker.BY_NAME);
+            if (oldRow >= 0) {
+                loaded.remove(oldRow);
+                dogCount--;
+            } else if (dogCount > loaded.size()) {
+                // Its row hasn't been fetched, or was fetched already gone; drop a placeholder from the end
+                dogCount--;
+                oldRow = dogCount;
+            }
+        }
+
+        int newRow = -1;
+        int shownRow = -1;
+        if (isListed(after)) {
+            dogCount++;
+            int found = Collections.binarySearch(loaded, after, AttendanceTracker.BY_NAME);
+            if (found >= 0) {
+                // A page fetched after the change already has the dog; keep its row and add a placeholder for the count
+                loaded.set(found, after);
+                shownRow = found;
+                newRow = dogCount - 1;
+            } else {
+                newRow = -(found + 1);
+                if (newRow < loaded.size() || !hasMore) {
+                    loaded.add(newRow, after);
+                } else {
+                    newRow = dogCount - 1; // Sorts after the fetched pages; add a placeholder at the end
+                }
+            }
+        }
+
+        // Tell the list which rows changed; a dog that kept its place is just redrawn, so it stays selected
+        if (oldRow >= 0 && oldRow == newRow) {
+            fireContentsChanged(this, newRow, newRow);
+        } else {
+            if (oldRow >= 0) {
+                fireIntervalRemoved(this, oldRow, oldRow);
+            }
+            if (newRow >= 0) {
+                fireIntervalAdded(this, newRow, newRow);
+            }
+        }
+        if (shownRow >= 0) {
+            fireContentsChanged(this, shownRow, shownRow);
+        }
+    }
+
+    /**
+     * Tells whether a dog belongs in this listing.
+     */
+    private boolean isListed(Dog dog) {
+        return dog != null && (!checkedIn || dog.isCheckedIn());
+    }
+
+    /**
+     * Fetches pages in the background until the furthest wanted dog is loaded.
+     * Keyset pages can only be read in order, so any pages before it are fetched too.
+     */
+    private void fetch() {
+        if (fetching || !hasMore) {
+            return;
+        }
+        fetching = true;
+        Dog last = loaded.isEmpty() ? null : loaded.get(loaded.size() - 1);
+        int needed = wanted + 1 - loaded.size();
+        worker.submit(() -> {
+            List<Dog> dogs = new ArrayList<>();
+            Dog after = last;
+            boolean more = true;
+            while (more && dogs.size() < needed) {
+                DogPage page = manager.getDogsPage(checkedIn, after, pageSize, conn);
+                dogs.addAll(page.getDogs());
+                more = page.hasMore();
+                after = page.getLast();
+            }
+            return new DogPage(dogs, more);
+        }, page -> {
+            fetching = false;
+            int first = loaded.size();
+            loaded.addAll(page.getDogs());
+            hasMore = page.hasMore();
+            if (!hasMore && loaded.size() < dogCount) {
+                // Fewer dogs than counted (the table changed): shrink the list to what exists
+                int oldSize = getSize();
+                dogCount = loaded.size();
+                fireIntervalRemoved(this, getSize(), oldSize - 1);
+            }
+            int lastRow = Math.min(first + page.getDogs().size(), getSize()) - 1;
+            if (lastRow >= first) {
+                fireContentsChanged(this, first, lastRow);
+            }
+            if (wanted >= loaded.size()) {
+                fetch(); // The list was scrolled further while this page was loading
+            }
+        }, ex -> {
+            fetching = false;
+            hasMore = false;
+        });
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * RosterBinaryReader class: reads back the binary roster files written by RosterExporter, so they can
+ * be imported. The file is read through one fixed buffer, a record at a time, so memory use stays flat
+ * for any file size. Record numbers (counting from 1) stand in for line numbers in the import result.
+ */
+public class RosterBinaryReader implements RosterSource {
+    private final String filename;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(RosterExporter.BINARY_BUFFER_SIZE);
+    private int recordNumber = 0;
+    private boolean endOfFile = false;
+
+    /**
+     * Opens a binary roster file and checks its header.
+     * @param filename The name of the file.
+     * @throws IOException If the file can't be read or isn't a binary roster file.
+     */
+    public RosterBinaryReader(String filename) throws IOException {
+        this.filename = filename;
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        buffer.limit(0);
+        if (!fill(RosterExporter.BINARY_MAGIC.length + 1)) {
+            close();
+            throw new IOException(filename + " is not a binary roster file");
+        }
+        byte[] magic = new byte[RosterExporter.BINARY_MAGIC.length];
+        buffer.get(magic);
+        byte version = buffer.get();
+        if (!Arrays.equals(magic, RosterExporter.BINARY_MAGIC) || version != RosterExporter.BINARY_VERSION) {
+            close();
+            throw new IOException(filename + " is not a binary roster file this program can read");
+        }
+    }
+
+    /**
+     * Tells whether a file starts like a binary roster file, so the import knows which reader to use.
+     * @param filename The name of the file.
+     * @return Returns true if the file starts with the binary roster header.
+     */
+    public static boolean isBinaryFile(String filename) {
+        Path path = Paths.get(filename);
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(RosterExporter.BINARY_MAGIC.length);
+            while (header.hasRemaining() && file.read(header) > 0) {
+                // Keep reading until the header is full or the file ends
+            }
+            return !header.hasRemaining() && Arrays.equals(header.array(), RosterExporter.BINARY_MAGIC);
+        } catch (IOException e) {
+            return false; // Let the text reader report the problem
+        }
+    }
+
+    /**
+     * Reads the next dog.
+     * @return Returns the next record, or null at the end of the file.
+     * @throws IOException If the file can't be read, or ends in the middle of a record.
+     */
+    @Override
+    public RosterFileReader.RosterRecord next() throws IOException {
+        if (!fill(4)) {
+            if (buffer.hasRemaining()) {
+                throw new IOException(filename + " ends in the middle of record " + (recordNumber + 1));
+            }
+            return null;
+        }
+        int length = buffer.getInt();
+        if (length < 0 || length > RosterExporter.BINARY_BUFFER_SIZE) {
+            throw new IOException(filename + " is damaged at record " + (recordNumber + 1));
+        }
+        if (!fill(length)) {
+            throw new IOException(filename + " ends in the middle of record " + (recordNumber + 1));
+        }
+        recordNumber++;
+        int end = buffer.position() + length;
+        try {
+            int id = buffer.getInt();
+            String name = getText();
+            String breed = getText();
+            String dob = getText();
+            int food = buffer.getInt();
+            String gender = getText();
+            String spayedNeutered = getText();
+            boolean checkedIn = buffer.get() != 0;
+            if (buffer.position() != end) {
+                throw new IOException(filename + " is damaged at record " + recordNumber);
+            }
+            return new RosterFileReader.RosterRecord(recordNumber,
+                    new Dog(id, name, breed, dob, food, gender, spayedNeutered, checkedIn), null);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(filename + " is damaged at record " + recordNumber, e);
+        }
+    }
+
+    /**
+     * Closes the file.
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Only read from, so nothing is lost
+        }
+    }
+
+    /**
+     * Reads a text field: an unsigned 2-byte length, then that many bytes of UTF-8.
+     */
+    private String getText() {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == 1) {
+            // The one-letter codes used for gender and spay/neuter status reuse shared String constants
+            switch (buffer.get(buffer.position())) {
+                case 'M': buffer.get(); return "M";
+                case 'F': buffer.get(); return "F";
+                case 'U': buffer.get(); return "U";
+                case 'Y': buffer.get(); return "Y";
+                case 'N': buffer.get(); return "N";
+                default: break;
+            }
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Makes sure at least the given number of bytes are in the buffer, reading more from the file if needed.
+     * @return Returns false if the file ended first.
+     */
+    private boolean fill(int needed) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < needed && !endOfFile) {
+            if (channel.read(buffer) < 0) {
+                endOfFile = true;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= needed;
+    }
+}
@@ -0,0 +1,256 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RosterExporter class: writes dogs to a file, one at a time, as they are read from the database,
+ * so an export of any size uses the same small amount of memory. Three formats:
+ *   CSV     the roster layout the import reads: id,name,breed,dob,food,gender,spayedNeutered,checkedIn
+ *   NDJSON  one JSON object per line, as written by DogJson, for other programs
+ *   BINARY  compact length-prefixed records, read back by RosterBinaryReader
+ * CSV and binary files can be imported again with nothing changed. The CSV layout has no quoting,
+ * so a dog whose text contains a comma or a line break, or starts or ends with a space, can't be
+ * written to it without changing; such dogs are left out and listed in the result instead of being
+ * exported wrongly.
+ */
+public class RosterExporter implements AutoCloseable {
+
+    /**
+     * Format enum: the kinds of file that can be written.
+     */
+    public enum Format {
+        CSV,
+        NDJSON,
+        BINARY;
+
+        /**
+         * Picks the format from a file name: .ndjson or .jsonl for NDJSON, .dogs or .bin for binary, otherwise CSV.
+         * @param filename The file name.
+         * @return Returns the format.
+         */
+        public static Format forFileName(String filename) {
+            String name = filename.toLowerCase();
+            if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+                return NDJSON;
+            }
+            if (name.endsWith(".dogs") || name.endsWith(".bin")) {
+                return BINARY;
+            }
+            return CSV;
+        }
+    }
+
+    // The first bytes of a binary roster file, then the format version
+    static final byte[] BINARY_MAGIC = {'D', 'O', 'G', 'R'};
+    static final byte BINARY_VERSION = 1;
+    // Longest text field a binary record can hold, in UTF-8 bytes (the length is an unsigned short)
+    static final int MAX_BINARY_TEXT = 0xFFFF;
+    // Room for the largest possible binary record: length, ID, food, check-in flag, and five text fields
+    static final int BINARY_BUFFER_SIZE = 512 * 1024;
+    // Characters collected before text formats are encoded and written
+    private static final int TEXT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * ExportResult class: how many dogs were written, and which couldn't be.
+     */
+    public static class ExportResult {
+        private long writtenCount;
+        private long bytes;
+        private final List<String> skipped = new ArrayList<>();
+
+        public long getWrittenCount() { return writtenCount; }
+        public long getBytes() { return bytes; }
+
+        /**
+         * Gets the dogs that were left out and why, e.g. "ID 12: name contains a comma".
+         * @return Returns an unmodifiable list of reasons, one per dog left out.
+         */
+        public List<String> getSkipped() { return Collections.unmodifiableList(skipped); }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append("Exported ").append(writtenCount).append(writtenCount == 1 ? " dog" : " dogs")
+                    .append(" (").append(bytes).append(" bytes)");
+            if (!skipped.isEmpty()) {
+                text.append("; ").append(skipped.size()).append(" left out:");
+                for (String reason : skipped) {
+                    text.append("\n  ").append(reason);
+                }
+            }
+            return text.toString();
+        }
+    }
+
+    private final Format format;
+    private final FileChannel channel;
+    // Text formats are encoded to the channel through this; null for binary
+    private final Writer text;
+    // Binary records are built here and written to the channel when it is full; null for text formats
+    private final ByteBuffer buffer;
+    private final ExportResult result = new ExportResult();
+
+    /**
+     * Creates the file (replacing any file with the same name) and gets ready to write dogs to it.
+     * @param path The file to write.
+     * @param format The format to write.
+     * @throws IOException If the file can't be created.
+     */
+    public RosterExporter(Path path, Format format) throws IOException {
+        this.format = format;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        if (format == Format.BINARY) {
+            text = null;
+            buffer = ByteBuffer.allocateDirect(BINARY_BUFFER_SIZE);
+            buffer.put(BINARY_MAGIC).put(BINARY_VERSION);
+        } else {
+            text = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), TEXT_BUFFER_SIZE),
+                    TEXT_BUFFER_SIZE);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Writes one dog, or adds it to the skipped list if the format can't hold it exactly.
+     * @param dog The dog to write.
+     * @throws IOException If the file can't be written.
+     */
+    public void write(Dog dog) throws IOException {
+        switch (format) {
+            case CSV:
+                String problem = csvProblem(dog);
+                if (problem != null) {
+                    result.skipped.add("ID " + dog.getId() + ": " + problem);
+                    return;
+                }
+                DogRenderer.appendRosterLine(text, dog);
+                text.write('\n');
+                break;
+            case NDJSON:
+                DogJson.appendDog(text, dog);
+                text.write('\n');
+                break;
+            default:
+                if (!writeBinary(dog)) {
+                    result.skipped.add("ID " + dog.getId() + ": a field is longer than " + MAX_BINARY_TEXT + " bytes");
+                    return;
+                }
+                break;
+        }
+        result.writtenCount++;
+    }
+
+    /**
+     * Gets the result so far; complete once the exporter is closed.
+     * @return Returns the export result.
+     */
+    public ExportResult getResult() {
+        return result;
+    }
+
+    /**
+     * Writes anything still buffered and closes the file.
+     * @throws IOException If the file can't be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (text != null) {
+                text.flush();
+            } else {
+                flushBuffer();
+            }
+            result.bytes = channel.size();
+        } finally {
+            if (text != null) {
+                text.close(); // Also closes the channel
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Tells why a dog can't be written to the CSV layout exactly, or returns null if it can.
+     * @param dog The dog.
+     * @return Returns the reason, or null if the dog can be written.
+     */
+    static String csvProblem(Dog dog) {
+        String[] names = {"name", "breed", "date of birth", "gender", "spayed/neutered status"};
+        String[] values = {dog.getName(), dog.getBreed(), dog.getDob(), dog.getGender(), dog.getSpayedNeutered()};
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+            if (value.indexOf(',') >= 0) {
+                return names[i] + " contains a comma";
+            }
+            if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                return names[i] + " contains a line break";
+            }
+            // The import trims every field
+            if (!value.isEmpty() && (value.charAt(0) <= ' ' || value.charAt(value.length() - 1) <= ' ')) {
+                return names[i] + " starts or ends with a space";
+            }
+        }
+        // The import ignores empty fields at the end of a line, so the last text field can't be empty
+        if (dog.getSpayedNeutered().isEmpty()) {
+            return "spayed/neutered status is empty";
+        }
+        return null;
+    }
+
+    /**
+     * Writes one binary record: its length, then ID, name, breed, date of birth, food, gender,
+     * spayed/neutered status, and check-in flag. Text is UTF-8 after an unsigned 2-byte length.
+     * @return Returns false if a field is too long for the format.
+     */
+    private boolean writeBinary(Dog dog) throws IOException {
+        byte[] name = dog.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] breed = dog.getBreed().getBytes(StandardCharsets.UTF_8);
+        byte[] dob = dog.getDob().getBytes(StandardCharsets.UTF_8);
+        byte[] gender = dog.getGender().getBytes(StandardCharsets.UTF_8);
+        byte[] spayedNeutered = dog.getSpayedNeutered().getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_BINARY_TEXT || breed.length > MAX_BINARY_TEXT || dob.length > MAX_BINARY_TEXT
+                || gender.length > MAX_BINARY_TEXT || spayedNeutered.length > MAX_BINARY_TEXT) {
+            return false;
+        }
+        int length = 4 + 4 + 1 + 5 * 2 + name.length + breed.length + dob.length + gender.length + spayedNeutered.length;
+        if (buffer.remaining() < 4 + length) {
+            flushBuffer();
+        }
+        buffer.putInt(length);
+        buffer.putInt(dog.getId());
+        putText(name);
+        putText(breed);
+        putText(dob);
+        buffer.putInt(dog.getFood());
+        putText(gender);
+        putText(spayedNeutered);
+        buffer.put(dog.isCheckedIn() ? (byte) 1 : (byte) 0);
+        return true;
+    }
+
+    private void putText(byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Writes the binary buffer to the file and empties it.
+     */
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,455 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RosterFileReader class: a streaming, parallel reader for dog roster files.
+ * Each line should have: id,name,breed,dob,food,gender,spayedNeutered,checkedIn
+ *
+ * The file is memory-mapped one segment at a time. A producer thread cuts every segment into
+ * line-aligned blocks and hands them to a work-stealing ForkJoinPool, where the blocks are parsed
+ * straight from the mapped bytes (no regex, no substring per field). The producer takes the parsed
+ * blocks back in file order and puts their records on a bounded queue, taken by the caller with next().
+ * Only a few blocks per thread are parsed ahead, so memory use stays flat for any file size.
+ *
+ * Records come out in file order, so when an ID is repeated the first line with it is seen first.
+ */
+public class RosterFileReader implements RosterSource {
+    // Size of each memory-mapped piece of the file
+    static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+    // Approximate size of the blocks a segment is split into for parsing
+    static final int BLOCK_SIZE = 256 * 1024;
+    // Number of blocks each parsing thread may have parsed ahead of the consumer
+    static final int BLOCKS_IN_FLIGHT_PER_THREAD = 4;
+    // Default number of parsed records waiting for the database writer
+    static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    // Longest line the parser accepts, in bytes
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    // Marks the end of the file on the queue
+    private static final RosterRecord END = new RosterRecord(0, null, null);
+
+    private final String filename;
+    private final ForkJoinPool pool;
+    private final BlockingQueue<RosterRecord> queue;
+
+    private Thread producer;
+    private volatile boolean cancelled;
+    private volatile IOException failure;
+    private boolean finished;
+
+    /**
+     * RosterRecord class: one parsed line of a roster file.
+     * Either the dog is set, or the error explains why the line was rejected.
+     */
+    public static class RosterRecord {
+        private final int lineNumber;
+        private final Dog dog;
+        private final String error;
+
+        RosterRecord(int lineNumber, Dog dog, String error) {
+            this.lineNumber = lineNumber;
+            this.dog = dog;
+            this.error = error;
+        }
+
+        public int getLineNumber() { return lineNumber; }
+        public Dog getDog() { return dog; }
+        public String getError() { return error; }
+    }
+
+    /**
+     * Creates a reader that uses every available core and the default queue size.
+     * @param filename The name of the file containing dog data.
+     */
+    public RosterFileReader(String filename) {
+        this(filename, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates a reader.
+     * @param filename The name of the file containing dog data.
+     * @param parallelism The number of parsing threads.
+     * @param queueCapacity The number of parsed records that may wait for the consumer.
+     */
+    public RosterFileReader(String filename, int parallelism, int queueCapacity) {
+        this.filename = filename;
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Starts reading the file in the background.
+     * Called automatically by the first call to next().
+     */
+    public synchronized void start() {
+        if (producer != null) {
+            return;
+        }
+        producer = new Thread(this::produce, "roster-reader");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /**
+     * Takes the next parsed record, waiting for one if needed.
+     * @return Returns the next record, or null when the whole file has been read.
+     * @throws IOException If the file couldn't be read.
+     */
+    @Override
+    public RosterRecord next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        start();
+        RosterRecord record;
+        try {
+            record = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IOException("Interrupted while reading " + filename, e);
+        }
+        if (record == END) {
+            finished = true;
+            if (failure != null) {
+                throw failure;
+            }
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * Stops reading and releases the parsing threads.
+     */
+    @Override
+    public void close() {
+        cancelled = true;
+        queue.clear();
+        pool.shutdownNow();
+    }
+
+    // ---- Producer: maps segments and splits them into blocks ----
+
+    /**
+     * Runs on the producer thread: maps the file one segment at a time, submits the blocks,
+     * and hands the parsed blocks to the consumer in file order.
+     */
+    private void produce() {
+        // Blocks submitted but not yet handed over, in file order
+        Deque<ParseTask> tasks = new ArrayDeque<>();
+        int maxInFlight = pool.getParallelism() * BLOCKS_IN_FLIGHT_PER_THREAD;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            int lineNumber = 1;
+            while (position < size && !cancelled) {
+                long length = Math.min(SEGMENT_SIZE, size - position);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = (int) length;
+                if (position + length < size) {
+                    // Cut the segment after its last complete line; the rest goes in the next segment
+                    end = lastLineEnd(segment, end);
+                    while (end < 0) {
+                        // A line longer than the segment: map a larger piece
+                        length = Math.min(length * 2, size - position);
+                        segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                        end = position + length < size ? lastLineEnd(segment, (int) length) : (int) length;
+                    }
+                }
+
+                List<int[]> blocks = new ArrayList<>();
+                lineNumber = splitBlocks(segment, end, lineNumber, blocks);
+                for (int[] block : blocks) {
+                    if (tasks.size() >= maxInFlight) {
+                        // Wait for the oldest block, so the parsers don't get far ahead of the consumer
+                        handOver(tasks.removeFirst());
+                    }
+                    ParseTask task = new ParseTask(segment, block);
+                    tasks.addLast(task);
+                    pool.execute(task);
+                }
+                position += end;
+            }
+            while (!tasks.isEmpty() && !cancelled) {
+                handOver(tasks.removeFirst());
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException("Unable to read " + filename, e);
+        } finally {
+            pool.shutdown();
+            if (!cancelled) {
+                put(END);
+            }
+        }
+    }
+
+    /**
+     * Waits for a block to be parsed and puts its records on the queue.
+     * @param task The block's task.
+     */
+    private void handOver(ParseTask task) {
+        for (RosterRecord record : task.join()) {
+            if (cancelled) {
+                return;
+            }
+            put(record);
+        }
+    }
+
+    /**
+     * Finds the end of the last complete line in a segment.
+     * @param segment The mapped segment.
+     * @param length The number of bytes in the segment.
+     * @return Returns the offset just after the last newline, or -1 if there is none.
+     */
+    private static int lastLineEnd(MappedByteBuffer segment, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (segment.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Cuts a segment into line-aligned blocks of about BLOCK_SIZE bytes, counting lines as it goes.
+     * Each block is stored as {start, end, first line number}.
+     * @param segment The mapped segment.
+     * @param end The number of bytes of the segment to use.
+     * @param lineNumber The line number of the first line in the segment.
+     * @param blocks The list the blocks are added to.
+     * @return Returns the line number of the first line after the segment.
+     */
+    private static int splitBlocks(MappedByteBuffer segment, int end, int lineNumber, List<int[]> blocks) {
+        int blockStart = 0;
+        int blockLine = lineNumber;
+        for (int i = 0; i < end; i++) {
+            if (segment.get(i) == '\n') {
+                lineNumber++;
+                if (i + 1 - blockStart >= BLOCK_SIZE) {
+                    blocks.add(new int[] {blockStart, i + 1, blockLine});
+                    blockStart = i + 1;
+                    blockLine = lineNumber;
+                }
+            }
+        }
+        if (blockStart < end) {
+            blocks.add(new int[] {blockStart, end, blockLine});
+        }
+        return lineNumber;
+    }
+
+    /**
+     * Puts a record on the queue, waiting for room; gives up if the reader is closed.
+     * @param record The record to put.
+     */
+    private void put(RosterRecord record) {
+        try {
+            while (!cancelled && !queue.offer(record, 100, TimeUnit.MILLISECONDS)) {
+                // Check for cancel while waiting for the consumer
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- Parsing: runs on the ForkJoinPool ----
+
+    /**
+     * ParseTask class: parses one block; idle threads steal blocks from busy ones.
+     */
+    private class ParseTask extends RecursiveTask<List<RosterRecord>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient MappedByteBuffer segment;
+        // {start, end, first line number}, as made by splitBlocks
+        private final int[] block;
+
+        ParseTask(MappedByteBuffer segment, int[] block) {
+            this.segment = segment;
+            this.block = block;
+        }
+
+        @Override
+        protected List<RosterRecord> compute() {
+            return parseBlock(segment, block[0], block[1], block[2]);
+        }
+    }
+
+    /**
+     * Parses every line in one block.
+     * @param segment The mapped segment.
+     * @param start The offset of the first byte of the block.
+     * @param end The offset just after the last byte of the block.
+     * @param lineNumber The line number of the first line in the block.
+     * @return Returns the records, in line order.
+     */
+    private List<RosterRecord> parseBlock(MappedByteBuffer segment, int start, int end, int lineNumber) {
+        List<RosterRecord> records = new ArrayList<>();
+        byte[] line = new byte[1024];
+        int lineStart = start;
+        for (int i = start; i <= end && !cancelled; i++) {
+            if (i < end && segment.get(i) != '\n') {
+                continue;
+            }
+            if (i == end && lineStart == end) {
+                break; // Block ended with a newline; no partial line left
+            }
+            int length = i - lineStart;
+            if (length > 0 && segment.get(lineStart + length - 1) == '\r') {
+                length--;
+            }
+            RosterRecord record;
+            if (length > MAX_LINE_LENGTH) {
+                record = new RosterRecord(lineNumber, null, "Line is longer than " + MAX_LINE_LENGTH + " bytes");
+            } else {
+                if (length > line.length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                segment.get(lineStart, line, 0, length);
+                record = parseLine(line, length, lineNumber);
+            }
+            records.add(record);
+            lineNumber++;
+            lineStart = i + 1;
+        }
+        return records;
+    }
+
+    /**
+     * Parses one line of bytes into a record.
+     * Follows the same rules as DogManager.parseDogLine: 8 comma-separated fields, each trimmed,
+     * with trailing empty fields ignored.
+     * @param line The bytes of the line, without the line ending.
+     * @param length The number of bytes in the line.
+     * @param lineNumber The line number, for the record.
+     * @return Returns a record holding either the dog or the reason it was rejected.
+     */
+    static RosterRecord parseLine(byte[] line, int length, int lineNumber) {
+        // Field boundaries: field f runs from starts[f] to ends[f]
+        int[] starts = new int[8];
+        int[] ends = new int[8];
+        int field = 0;
+        int fieldStart = 0;
+        // Like String.split, empty fields at the end of the line don't count
+        int fields = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || line[i] == ',') {
+                if (field < 8) {
+                    starts[field] = fieldStart;
+                    ends[field] = i;
+                }
+                field++;
+                if (i > fieldStart) {
+                    fields = field;
+                }
+                fieldStart = i + 1;
+            }
+        }
+        if (fields != 8) {
+            return new RosterRecord(lineNumber, null, "Expected 8 fields but found " + fields);
+        }
+        // Trim every field the same way String.trim does
+        for (int f = 0; f < 8; f++) {
+            while (starts[f] < ends[f] && (line[starts[f]] & 0xFF) <= ' ') {
+                starts[f]++;
+            }
+            while (ends[f] > starts[f] && (line[ends[f] - 1] & 0xFF) <= ' ') {
+                ends[f]--;
+            }
+        }
+
+        int id;
+        int food;
+        try {
+            id = parseInt(line, starts[0], ends[0]);
+            food = parseInt(line, starts[4], ends[4]);
+        } catch (NumberFormatException e) {
+            return new RosterRecord(lineNumber, null, "ID and food type must be whole numbers");
+        }
+        String name = text(line, starts[1], ends[1]);
+        String breed = text(line, starts[2], ends[2]);
+        String dob = text(line, starts[3], ends[3]);
+        String gender = text(line, starts[5], ends[5]);
+        String spayedNeutered = text(line, starts[6], ends[6]);
+        boolean checkedIn = isTrue(line, starts[7], ends[7]);
+
+        return new RosterRecord(lineNumber, new Dog(id, name, breed, dob, food, gender, spayedNeutered, checkedIn), null);
+    }
+
+    /**
+     * Parses a whole number from bytes, accepting the same input as Integer.parseInt.
+     * @throws NumberFormatException If the bytes aren't a valid int.
+     */
+    private static int parseInt(byte[] bytes, int start, int end) {
+        if (start == end) {
+            throw new NumberFormatException();
+        }
+        boolean negative = bytes[start] == '-';
+        int i = (negative || bytes[start] == '+') ? start + 1 : start;
+        if (i == end) {
+            throw new NumberFormatException();
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException();
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException();
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException();
+        }
+        return (int) value;
+    }
+
+    /**
+     * Checks for "true" in any letter case, like Boolean.parseBoolean.
+     */
+    private static boolean isTrue(byte[] bytes, int start, int end) {
+        if (end - start != 4) {
+            return false;
+        }
+        return (bytes[start] | 0x20) == 't' && (bytes[start + 1] | 0x20) == 'r'
+                && (bytes[start + 2] | 0x20) == 'u' && (bytes[start + 3] | 0x20) == 'e';
+    }
+
+    /**
+     * Builds the String for one field.
+     * The one-letter codes used for gender and spay/neuter status reuse shared String constants.
+     */
+    private static String text(byte[] bytes, int start, int end) {
+        if (end - start == 1) {
+            switch (bytes[start]) {
+                case 'M': return "M";
+                case 'F': return "F";
+                case 'U': return "U";
+                case 'Y': return "Y";
+                case 'N': return "N";
+                default: break;
+            }
+        }
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,21 @@
+import java.io.IOException;
+
+/**
+ * RosterSource interface: something the bulk import can read dogs from, one record at a time,
+ * such as a roster text file (RosterFileReader) or a binary export (RosterBinaryReader).
+ */
+public interface RosterSource extends AutoCloseable {
+
+    /**
+     * Takes the next record.
+     * @return Returns the next record, or null when there are no more.
+     * @throws IOException If the source couldn't be read.
+     */
+    RosterFileReader.RosterRecord next() throws IOException;
+
+    /**
+     * Stops reading and releases any threads or files.
+     */
+    @Override
+    void close();
+}
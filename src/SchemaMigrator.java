@@ -0,0 +1,147 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * SchemaMigrator class: creates and upgrades the database schema, one numbered version at a time.
+ * The version a database is at is kept in SQLite's "user_version" setting. At startup, every
+ * migration after that version is run, in order, each in its own transaction, so an old database
+ * is brought up to date and a new one is created from scratch.
+ *
+ * To change the schema, add a new entry to the end of MIGRATIONS. Never change an entry that
+ * has already been released, since existing databases have already run it.
+ */
+public class SchemaMigrator {
+    // Migration n (1-based) is MIGRATIONS[n - 1]; each one is a list of SQL statements
+    private static final String[][] MIGRATIONS = {
+            // 1: The dogs table
+            {
+                    "CREATE TABLE IF NOT EXISTS dogs ("
+                            + "id integer PRIMARY KEY,"
+                            + "name text NOT NULL,"
+                            + "breed text NOT NULL,"
+                            + "dob text NOT NULL,"
+                            + "food integer NOT NULL,"
+                            + "gender text NOT NULL,"
+                            + "spayedneutered text NOT NULL,"
+                            + "checkedin boolean NOT NULL);"
+            },
+            // 2: Indexes for listing dogs by name, and for listing only checked-in dogs by name
+            {
+                    "CREATE INDEX IF NOT EXISTS idx_dogs_name ON dogs (name, id);",
+                    "CREATE INDEX IF NOT EXISTS idx_dogs_checkedin_name ON dogs (name, id) WHERE checkedin = 1;"
+            },
+            // 3: Check-in history: every check-in and check-out, the stays still going on, and hourly totals
+            //    (times are milliseconds since 1970 UTC; "hour" is hours since 1970 UTC)
+            {
+                    "CREATE TABLE IF NOT EXISTS checkin_events ("
+                            + "seq integer PRIMARY KEY,"
+                            + "dog_id integer NOT NULL,"
+                            + "at integer NOT NULL,"
+                            + "checked_in boolean NOT NULL);",
+                    "CREATE INDEX IF NOT EXISTS idx_checkin_events_at ON checkin_events (at);",
+                    "CREATE TABLE IF NOT EXISTS open_stays ("
+                            + "dog_id integer PRIMARY KEY,"
+                            + "since integer NOT NULL);",
+                    "CREATE TABLE IF NOT EXISTS attendance_hourly ("
+                            + "hour integer PRIMARY KEY,"
+                            + "check_ins integer NOT NULL,"
+                            + "check_outs integer NOT NULL,"
+                            + "present_ms integer NOT NULL,"
+                            + "stays integer NOT NULL,"
+                            + "stay_ms integer NOT NULL);",
+                    // Dogs already checked in have no check-in time on record; their stays count from the upgrade
+                    "INSERT OR IGNORE INTO open_stays (dog_id, since) "
+                            + "SELECT id, CAST(strftime('%s', 'now') AS integer) * 1000 FROM dogs WHERE checkedin = 1;"
+            },
+            // 4: A version number on every dog, raised by each change, so a desk can't overwrite a change it hasn't seen
+            {
+                    "ALTER TABLE dogs ADD COLUMN version integer NOT NULL DEFAULT 0;"
+            },
+    };
+
+    /**
+     * Gets the schema version this program expects.
+     * @return Returns the number of the newest migration.
+     */
+    public static int latestVersion() {
+        return MIGRATIONS.length;
+    }
+
+    /**
+     * Brings the database up to the newest schema version.
+     * @param conn This is the active database connection.
+     * @return Returns the number of migrations that were run.
+     * @throws SQLException If a migration fails; that migration is rolled back.
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        return migrate(conn, latestVersion());
+    }
+
+    /**
+     * Brings the database up to a given schema version. Used by benchmarks to compare schema versions.
+     * @param conn This is the active database connection.
+     * @param targetVersion The version to stop at.
+     * @return Returns the number of migrations that were run.
+     * @throws SQLException If a migration fails; that migration is rolled back.
+     */
+    static int migrate(Connection conn, int targetVersion) throws SQLException {
+        int version = getVersion(conn);
+        int applied = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        try (Statement stmt = conn.createStatement()) {
+            while (version < targetVersion) {
+                conn.setAutoCommit(false);
+                try {
+                    for (String sql : MIGRATIONS[version]) {
+                        stmt.execute(sql);
+                    }
+                    version++;
+                    // PRAGMA doesn't take parameters; version is always a plain int
+                    stmt.execute("PRAGMA user_version = " + version);
+                    conn.commit();
+                    applied++;
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    throw new SQLException("Schema migration " + (version + 1) + " failed", ex);
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return applied;
+    }
+
+    /**
+     * Reads the schema version of the database.
+     * @param conn This is the active database connection.
+     * @return Returns the schema version, 0 for a new database.
+     * @throws SQLException If the version can't be read.
+     */
+    public static int getVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Tunes SQLite for this program. Called for every new connection.
+     * WAL mode lets the list be read while a write is going on and makes each commit cheaper,
+     * "synchronous = NORMAL" is safe with WAL and skips most disk flushes, and the larger page cache
+     * keeps the dogs table and its indexes in memory. When several desks share the database file,
+     * a write that finds the file locked by another desk waits up to 5 seconds instead of failing at once.
+     * @param conn This is the new database connection.
+     * @throws SQLException If a setting can't be changed.
+     */
+    public static void configure(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = WAL");
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            stmt.execute("PRAGMA cache_size = -16000"); // Negative means KiB: a 16 MB cache
+            stmt.execute("PRAGMA temp_store = MEMORY");
+            stmt.execute("PRAGMA busy_timeout = 5000");
+        }
+    }
+}
@@ -0,0 +1,448 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BinaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * ShardedDogStore class: the dogs of several daycare locations, served by one program.
+ * Each location keeps its dogs in its own SQLite file (e.g. north.db in one directory) with its own
+ * connection pool, DogManager, and attendance log. The locations share nothing, so a location that is
+ * slow or locked only holds up the requests for that location.
+ * Operations for one location are sent to its shard by the location key, e.g.
+ *   store.call("north", (manager, conn) -> manager.setCheckedIn(12, true, conn));
+ * Reports for every location (attendance, food) fork a task per location on a fork/join pool and join
+ * each one only until a deadline: a location that doesn't answer in time is listed as unavailable,
+ * and the report is made from the others.
+ */
+public class ShardedDogStore implements AutoCloseable {
+    // Each location's database is the location key plus this, in the store's directory
+    static final String DB_SUFFIX = ".db";
+    // Connections in each location's pool, including the one its attendance log keeps
+    static final int SHARD_POOL_SIZE = 4;
+    // How long an operation waits for one of a location's connections before giving up
+    static final long SHARD_BORROW_TIMEOUT_MILLIS = 2_000;
+    // How long a report for every location waits for the slowest one
+    static final long DEFAULT_REPORT_TIMEOUT_MILLIS = 5_000;
+    // Location keys are used in file names and URLs, so only letters, digits, '-' and '_' are allowed
+    private static final Pattern LOCATION_KEY = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final Path directory;
+    // Every location's shard, by location key, in the order given
+    private final Map<String, Shard> shards = new LinkedHashMap<>();
+    // Runs the per-location tasks of the reports
+    private final ForkJoinPool reportPool;
+    private final long reportTimeoutMillis;
+
+    /**
+     * ShardCall interface: an operation on one location's DogManager with one of its connections.
+     * @param <T> The type of the answer.
+     */
+    @FunctionalInterface
+    public interface ShardCall<T> {
+        T call(DogManager manager, Connection conn) throws SQLException;
+    }
+
+    /**
+     * ShardTask interface: work on a whole shard, e.g. opening it.
+     */
+    @FunctionalInterface
+    interface ShardTask<T> {
+        T run(Shard shard) throws Exception;
+    }
+
+    /**
+     * Shard class: one location's database, connection pool, DogManager, and attendance log.
+     */
+    public static final class Shard {
+        private final String location;
+        private final ConnectionPool pool;
+        private final DogManager manager = new DogManager();
+        // Guards opening and closing, apart from the report bookkeeping, so a slow open doesn't hold up reports
+        private final Object lifecycle = new Object();
+        private AttendanceLog attendanceLog;
+        // A task a report stopped waiting for; the location gets no more report tasks until it finishes
+        private Future<?> late;
+
+        Shard(String location, ConnectionPool pool) {
+            this.location = location;
+            this.pool = pool;
+        }
+
+        public String getLocation() { return location; }
+        public ConnectionPool getPool() { return pool; }
+        public DogManager getManager() { return manager; }
+
+        /**
+         * Runs an operation with a connection borrowed from this location's pool.
+         * @param call The operation.
+         * @return Returns the operation's answer.
+         * @throws SQLException If no connection was free in time, or the operation failed.
+         */
+        public <T> T call(ShardCall<T> call) throws SQLException {
+            try (Connection conn = pool.borrow()) {
+                return call.call(manager, conn);
+            }
+        }
+
+        /**
+         * Creates or upgrades the database, warms the cache, and starts the attendance log, which keeps
+         * a connection of its own.
+         * @return Returns the number of dogs cached.
+         */
+        int open() throws SQLException {
+            synchronized (lifecycle) {
+                int cached;
+                try (Connection conn = pool.borrow()) {
+                    SchemaMigrator.migrate(conn);
+                    cached = manager.warmCache(conn);
+                }
+                if (attendanceLog == null) {
+                    attendanceLog = new AttendanceLog(pool.borrow());
+                    manager.setAttendanceLog(attendanceLog);
+                }
+                return cached;
+            }
+        }
+
+        /**
+         * Forks a report task for this location, unless an earlier one it was late with is still running.
+         * @return Returns the forked task, or null if the location is still busy.
+         */
+        synchronized <T> ForkJoinTask<T> fork(ShardTask<T> task, ForkJoinPool forkJoinPool) {
+            if (late != null && !late.isDone()) {
+                return null;
+            }
+            late = null;
+            return forkJoinPool.submit(ForkJoinTask.adapt(() -> runBlocking(task, this)));
+        }
+
+        synchronized void late(Future<?> task) {
+            late = task;
+        }
+
+        void close() {
+            synchronized (lifecycle) {
+                if (attendanceLog != null) {
+                    attendanceLog.close();
+                    attendanceLog = null;
+                }
+                pool.close();
+            }
+        }
+    }
+
+    /**
+     * Results class: the answer from every location that answered, and why each of the others didn't.
+     * @param <T> The type of each location's answer.
+     */
+    public static final class Results<T> {
+        private final Map<String, T> answers = new LinkedHashMap<>();
+        private final Map<String, String> unavailable = new LinkedHashMap<>();
+
+        /**
+         * Gets the answers.
+         * @return Returns each answer by location key, in the store's order.
+         */
+        public Map<String, T> getAnswers() {
+            return Collections.unmodifiableMap(answers);
+        }
+
+        /**
+         * Gets the locations that didn't answer.
+         * @return Returns the reason for each, e.g. "No answer within 5000 ms", by location key.
+         */
+        public Map<String, String> getUnavailable() {
+            return Collections.unmodifiableMap(unavailable);
+        }
+
+        /**
+         * Checks if every location answered.
+         * @return Returns true if no location is unavailable.
+         */
+        public boolean isComplete() {
+            return unavailable.isEmpty();
+        }
+
+        /**
+         * Adds the answers together, e.g. FeedingPlan::plus for the plan of every location.
+         * @param plus Adds two answers.
+         * @return Returns the total, or null if no location answered.
+         */
+        public T combine(BinaryOperator<T> plus) {
+            T total = null;
+            for (T answer : answers.values()) {
+                total = total == null ? answer : plus.apply(total, answer);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Opens the store for every database file in a directory: the location keys are the file names
+     * without ".db". To add a location, create an empty file for it and restart.
+     * @param directory The directory holding the databases.
+     * @return Returns the store; call open() before using it.
+     * @throws IOException If the directory can't be read.
+     * @throws IllegalArgumentException If there are no databases in the directory.
+     */
+    public static ShardedDogStore inDirectory(Path directory) throws IOException {
+        List<String> locations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + DB_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                locations.add(name.substring(0, name.length() - DB_SUFFIX.length()));
+            }
+        }
+        Collections.sort(locations);
+        return new ShardedDogStore(directory, locations);
+    }
+
+    /**
+     * Creates a store for some locations; a location's database file is created if it doesn't exist.
+     * @param directory The directory holding the databases.
+     * @param locations The location keys, e.g. "north".
+     * @throws IllegalArgumentException If there are no locations or a key isn't allowed.
+     */
+    public ShardedDogStore(Path directory, Collection<String> locations) {
+        this(directory, locations, DEFAULT_REPORT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Creates a store for some locations; a location's database file is created if it doesn't exist.
+     * @param directory The directory holding the databases.
+     * @param locations The location keys, e.g. "north".
+     * @param reportTimeoutMillis How long a report for every location waits for the slowest one.
+     * @throws IllegalArgumentException If there are no locations or a key isn't allowed.
+     */
+    public ShardedDogStore(Path directory, Collection<String> locations, long reportTimeoutMillis) {
+        if (locations.isEmpty()) {
+            throw new IllegalArgumentException("No locations in " + directory);
+        }
+        this.directory = directory;
+        this.reportTimeoutMillis = reportTimeoutMillis;
+        for (String location : locations) {
+            if (!LOCATION_KEY.matcher(location).matches()) {
+                throw new IllegalArgumentException("Location keys may only have letters, digits, '-' and '_': " + location);
+            }
+            String dbURL = "jdbc:sqlite:" + directory.resolve(location + DB_SUFFIX);
+            shards.put(location, new Shard(location, new ConnectionPool(dbURL, SHARD_POOL_SIZE, SHARD_BORROW_TIMEOUT_MILLIS)));
+        }
+        // One worker per location, so every location's task starts at once
+        reportPool = new ForkJoinPool(shards.size());
+    }
+
+    /**
+     * Opens every location at the same time: creates or upgrades its database, warms its cache, and
+     * starts its attendance log. A location that fails to open can be opened by calling this again.
+     * @return Returns the number of dogs cached at each location, and why any location couldn't be opened.
+     */
+    public Results<Integer> open() {
+        return forEachShard(Shard::open, 0);
+    }
+
+    public Path getDirectory() { return directory; }
+    public long getReportTimeoutMillis() { return reportTimeoutMillis; }
+
+    /**
+     * Gets the location keys.
+     * @return Returns the keys, in the store's order.
+     */
+    public Set<String> getLocations() {
+        return Collections.unmodifiableSet(shards.keySet());
+    }
+
+    /**
+     * Gets a location's shard.
+     * @param location The location key.
+     * @return Returns the shard.
+     * @throws IllegalArgumentException If there is no such location.
+     */
+    public Shard getShard(String location) {
+        Shard shard = shards.get(location);
+        if (shard == null) {
+            throw new IllegalArgumentException("Unknown location: " + location);
+        }
+        return shard;
+    }
+
+    /**
+     * Gets the DogManager of a location, to use with a connection from getShard(location).getPool().
+     * @param location The location key.
+     * @return Returns the location's DogManager.
+     * @throws IllegalArgumentException If there is no such location.
+     */
+    public DogManager getManager(String location) {
+        return getShard(location).getManager();
+    }
+
+    /**
+     * Runs an operation at one location, with a connection borrowed from that location's pool.
+     * @param location The location key.
+     * @param call The operation, e.g. (manager, conn) -> manager.findDogById(12, conn).
+     * @return Returns the operation's answer.
+     * @throws SQLException If none of the location's connections was free in time, or the operation failed.
+     * @throws IllegalArgumentException If there is no such location.
+     */
+    public <T> T call(String location, ShardCall<T> call) throws SQLException {
+        return getShard(location).call(call);
+    }
+
+    /**
+     * Runs an operation at every location at the same time.
+     * @param call The operation, run once for each location with that location's DogManager and a connection.
+     * @return Returns the answers of the locations that answered within the report timeout, and why the others didn't.
+     */
+    public <T> Results<T> callAll(ShardCall<T> call) {
+        return forEachShard(shard -> shard.call(call), reportTimeoutMillis);
+    }
+
+    /**
+     * Gets the attendance of every location and the totals.
+     * @return Returns the report; locations that didn't answer in time are listed in it.
+     */
+    public CombinedAttendanceReport getAttendanceReport() {
+        return new CombinedAttendanceReport(callAll(DogManager::getAttendanceReport));
+    }
+
+    /**
+     * Gets the feeding plan of every location for the dogs checked in now; combine(FeedingPlan::plus) gives the total.
+     * @return Returns each location's plan.
+     */
+    public Results<FeedingPlan> getFeedingPlans() {
+        return callAll(DogManager::getFeedingPlan);
+    }
+
+    /**
+     * Gets the feeding plan expected at every location on a day, from past attendance.
+     * @param date The day to plan for.
+     * @return Returns each location's plan.
+     */
+    public Results<FeedingPlan> getExpectedFeedingPlans(LocalDate date) {
+        return callAll((manager, conn) -> manager.getExpectedFeedingPlan(date, conn));
+    }
+
+    /**
+     * Closes every location's attendance log and connections, and stops the report workers.
+     */
+    @Override
+    public void close() {
+        reportPool.shutdownNow();
+        for (Shard shard : shards.values()) {
+            shard.close();
+        }
+    }
+
+    /**
+     * Forks a task for every location, then joins each one until the deadline. A location whose task
+     * is still running at the deadline is reported as unavailable, and gets no new tasks until that
+     * one finishes, so a stuck location can't take up more and more workers.
+     * @param task The work for one location.
+     * @param timeoutMillis How long to wait for every location, or 0 to wait as long as it takes.
+     */
+    <T> Results<T> forEachShard(ShardTask<T> task, long timeoutMillis) {
+        Results<T> results = new Results<>();
+        Map<Shard, ForkJoinTask<T>> forked = new LinkedHashMap<>();
+        for (Shard shard : shards.values()) {
+            ForkJoinTask<T> fork = shard.fork(task, reportPool);
+            if (fork == null) {
+                results.unavailable.put(shard.getLocation(), "Still busy with an earlier request");
+            } else {
+                forked.put(shard, fork);
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Map.Entry<Shard, ForkJoinTask<T>> entry : forked.entrySet()) {
+            String location = entry.getKey().getLocation();
+            ForkJoinTask<T> fork = entry.getValue();
+            try {
+                T answer = timeoutMillis > 0
+                        ? fork.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                        : fork.get();
+                results.answers.put(location, answer);
+            } catch (TimeoutException e) {
+                entry.getKey().late(fork);
+                results.unavailable.put(location, "No answer within " + timeoutMillis + " ms");
+            } catch (ExecutionException e) {
+                results.unavailable.put(location, reason(e));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.unavailable.put(location, "Interrupted");
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs a location's task on a fork/join worker, telling the pool the worker may be blocked on the
+     * database so it can start another worker for the other tasks meanwhile.
+     */
+    private static <T> T runBlocking(ShardTask<T> task, Shard shard) throws Exception {
+        BlockingTask<T> blocking = new BlockingTask<>(task, shard);
+        ForkJoinPool.managedBlock(blocking);
+        if (blocking.failure != null) {
+            throw blocking.failure;
+        }
+        return blocking.answer;
+    }
+
+    /**
+     * BlockingTask class: a shard task as a ForkJoinPool.ManagedBlocker.
+     */
+    private static final class BlockingTask<T> implements ForkJoinPool.ManagedBlocker {
+        private final ShardTask<T> task;
+        private final Shard shard;
+        private T answer;
+        private Exception failure;
+        private boolean done;
+
+        BlockingTask(ShardTask<T> task, Shard shard) {
+            this.task = task;
+            this.shard = shard;
+        }
+
+        @Override
+        public boolean block() {
+            try {
+                answer = task.run(shard);
+            } catch (Exception e) {
+                failure = e;
+            }
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+
+    /**
+     * Gets the message of the exception that made a task fail, under any wrapping.
+     */
+    private static String reason(Throwable failure) {
+        while (failure.getCause() != null && (failure instanceof ExecutionException
+                || failure.getClass() == RuntimeException.class)) {
+            failure = failure.getCause();
+        }
+        return failure.getMessage() != null ? failure.getMessage() : failure.getClass().getSimpleName();
+    }
+}
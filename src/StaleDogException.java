@@ -0,0 +1,34 @@
+import java.sql.SQLException;
+
+/**
+ * StaleDogException class: thrown when a dog can't be updated or removed because it was changed
+ * (or removed) by someone else since it was read, for example at another front desk.
+ * Nothing is written; the caller should show the dog as it is now and let the user try again.
+ */
+public class StaleDogException extends SQLException {
+    private static final long serialVersionUID = 1L;
+
+    private final int dogId;
+    private final Dog current;
+
+    /**
+     * Creates the exception.
+     * @param dogId The ID of the dog.
+     * @param current The dog as it is now stored, or null if it has been removed.
+     */
+    public StaleDogException(int dogId, Dog current) {
+        super(current == null
+                ? "Dog " + dogId + " has been removed by someone else"
+                : "Dog " + dogId + " has been changed by someone else");
+        this.dogId = dogId;
+        this.current = current;
+    }
+
+    public int getDogId() { return dogId; }
+
+    /**
+     * Gets the dog as it is now stored.
+     * @return Returns the current dog, or null if it has been removed.
+     */
+    public Dog getCurrent() { return current; }
+}
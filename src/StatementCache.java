@@ -0,0 +1,81 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * StatementCache class: keeps the prepared statements for one database connection.
+ * Each SQL string is prepared once and then reused, instead of being parsed again on every call.
+ * All statements are closed together when the cache is closed.
+ */
+public class StatementCache implements AutoCloseable {
+    // The connection that owns every statement in this cache
+    private final Connection conn;
+    // Prepared statements, keyed by their SQL text
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    // Number of times a cached statement was reused
+    private long hits;
+    // Number of statements that had to be prepared
+    private long prepared;
+
+    /**
+     * Creates an empty cache for one connection.
+     * @param conn This is the connection the statements are prepared on.
+     */
+    public StatementCache(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Gets a prepared statement for the SQL, preparing it only the first time.
+     * Parameters left over from the last use are cleared.
+     * @param sql The SQL text of the statement.
+     * @return Returns a prepared statement owned by this cache; callers must not close it.
+     * @throws SQLException If the statement can't be prepared.
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt != null && !stmt.isClosed()) {
+            hits++;
+            stmt.clearParameters();
+            return stmt;
+        }
+        prepared++;
+        stmt = conn.prepareStatement(sql);
+        statements.put(sql, stmt);
+        return stmt;
+    }
+
+    /**
+     * Checks if the connection behind this cache has been closed.
+     * @return Returns true if the connection is closed and the cache can be thrown away.
+     */
+    public boolean isConnectionClosed() {
+        try {
+            return conn.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getPrepared() { return prepared; }
+    public synchronized int size() { return statements.size(); }
+
+    /**
+     * Closes every statement in the cache. The connection itself is left open.
+     */
+    @Override
+    public synchronized void close() {
+        for (PreparedStatement stmt : statements.values()) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                // Nothing more can be done with a statement that won't close
+            }
+        }
+        statements.clear();
+    }
+}